@@ -0,0 +1,19 @@
+/*
+ * Runs the Rhino JavaScript compiler (jsc) with the instruction observer enabled. The jsc bundled with Rhino 1.7.10
+ * describes the -observe-instruction-count option, but rejects it while parsing arguments, so the option is set
+ * directly in the compiler environment. Usage (the same arguments as jsc):
+ * java -cp rhino.jar org.mozilla.javascript.tools.shell.Main jsc.js [OPTION]... SOURCE...
+ */
+var jsc = new Packages.org.mozilla.javascript.tools.jsc.Main();
+var options = java.lang.reflect.Array.newInstance(java.lang.String, arguments.length);
+for (var i = 0; i < arguments.length; ++i) {
+    options[i] = arguments[i];
+}
+var sources = jsc.processOptions(options);
+if (sources == null) {
+    java.lang.System.exit(1);
+}
+var field = jsc.getClass().getDeclaredField("compilerEnv");
+field.setAccessible(true);
+field.get(jsc).setGenerateObserverCount(true);
+jsc.processSource(sources);
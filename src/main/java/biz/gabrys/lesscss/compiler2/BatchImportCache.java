@@ -0,0 +1,137 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import biz.gabrys.lesscss.compiler2.filesystem.FetchingFileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
+
+/**
+ * Responsible for sharing resolved paths and fetched files between compilations of a single batch. Every distinct
+ * {@link FileSystemOption file system option} is created only once per batch and its results are remembered, so files
+ * imported by many source files are normalized, checked and fetched only once. The cache is thread safe.
+ * @since 2.0.1
+ */
+final class BatchImportCache {
+
+    private final Map<LessOptions, PreparedLessOptions> preparedOptions = new ConcurrentHashMap<>();
+    private final Map<FileSystemOption, FileSystem> fileSystems = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the prepared options with file systems shared by the batch.
+     * @param options the Less options.
+     * @return the prepared options.
+     * @throws ConfigurationException if any file system cannot be created or configured.
+     */
+    PreparedLessOptions getPreparedOptions(final LessOptions options) {
+        return preparedOptions.computeIfAbsent(new LessOptions(options), key -> new PreparedLessOptions(key, this::getFileSystem));
+    }
+
+    private FileSystem getFileSystem(final FileSystemOption option) {
+        return fileSystems.computeIfAbsent(option, key -> new SharedFileSystem(PreparedLessOptions.createFileSystem(key)));
+    }
+
+    static final class SharedFileSystem implements FetchingFileSystem {
+
+        private final FileSystem fileSystem;
+        private final Map<String, Boolean> supported = new ConcurrentHashMap<>();
+        private final Map<String, String> normalized = new ConcurrentHashMap<>();
+        private final Map<String, String> expanded = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> existing = new ConcurrentHashMap<>();
+        private final Map<String, FileData> fetched = new ConcurrentHashMap<>();
+
+        SharedFileSystem(final FileSystem fileSystem) {
+            this.fileSystem = fileSystem;
+        }
+
+        @Override
+        public void configure(final Map<String, String> parameters) throws Exception {
+            fileSystem.configure(parameters);
+        }
+
+        @Override
+        public boolean isSupported(final String path) {
+            Boolean value = supported.get(path);
+            if (value == null) {
+                value = fileSystem.isSupported(path);
+                supported.put(path, value);
+            }
+            return value;
+        }
+
+        @Override
+        public String normalize(final String path) throws Exception {
+            String value = normalized.get(path);
+            if (value == null) {
+                value = fileSystem.normalize(path);
+                normalized.put(path, value);
+            }
+            return value;
+        }
+
+        @Override
+        public String expandRedirection(final String path) throws Exception {
+            String value = expanded.get(path);
+            if (value == null) {
+                value = fileSystem.expandRedirection(path);
+                expanded.put(path, value);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean exists(final String path) throws Exception {
+            Boolean value = existing.get(path);
+            if (value == null) {
+                value = fileSystem.exists(path);
+                existing.put(path, value);
+            }
+            return value;
+        }
+
+        @Override
+        public FileData fetch(final String path) throws Exception {
+            FileData value = fetched.get(path);
+            if (value == null) {
+                value = fileSystem.fetch(path);
+                // missing files and errors are not cached, so they are reported by every compilation
+                if (value != null) {
+                    fetched.put(path, value);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public FileData fetchIfExists(final String path) throws Exception {
+            if (!(fileSystem instanceof FetchingFileSystem)) {
+                return exists(path) ? fetch(path) : null;
+            }
+            if (Boolean.FALSE.equals(existing.get(path))) {
+                return null;
+            }
+            FileData value = fetched.get(path);
+            if (value == null) {
+                value = ((FetchingFileSystem) fileSystem).fetchIfExists(path);
+                existing.put(path, value != null);
+                if (value != null) {
+                    fetched.put(path, value);
+                }
+            }
+            return value;
+        }
+    }
+}
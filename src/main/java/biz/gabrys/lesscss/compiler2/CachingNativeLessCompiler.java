@@ -0,0 +1,868 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.DirectoryCacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.HttpCacheBackend;
+import biz.gabrys.lesscss.compiler2.filesystem.FetchingFileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.VersionedFileSystem;
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+import biz.gabrys.lesscss.compiler2.util.DigestBuilder;
+
+/**
+ * <p>
+ * Native Less compiler which caches CSS codes generated by an other {@link NativeLessCompiler}. The cache stores
+ * results of {@link #execute(NativeLessOptions) compilations with immutable options} which return the CSS code (an
+ * {@link NativeLessOptions#getOutputFile() output file} and a {@link NativeLessOptions#getSourceMapFile() Source Map
+ * file} are not set). Compilations with command line options are always delegated to the compiler.
+ * </p>
+ * <p>
+ * Entries are identified by a digest of the canonicalized {@link LessOptions Less options}, the input file path and the
+ * {@link NativeLessOptions#getInputCode() input code}. Every entry remembers content digests of all files fetched
+ * during the compilation (the source file, imported files and files embedded by the {@code data-uri} function). A
+ * cached CSS code is returned only when all these files fetched again through the configured
+ * {@link LessOptions#getFileSystems() file systems} have not changed, otherwise the source file is compiled again.
+ * Entries also remember files which did not exist during the compilation (e.g. import candidates from include paths
+ * checked before the path of the imported file), so a file created later, which would shadow an imported one, makes
+ * the entry outdated. The existence of these files is checked on every lookup. File systems which implement the {@link VersionedFileSystem} interface (e.g. the local file system and the HTTP
+ * file system with enabled cache) are asked for cheap file versions first, so a file is fetched again only when its
+ * version has changed since the last check of its content.
+ * </p>
+ * <p>
+ * The cache is bounded by the {@link #getMaxEntries() max entries} and the {@link #getMaxSize() max size} (the total
+ * number of characters of the cached CSS codes and Source Maps). When any of the limits is exceeded, the least recently
+ * used entries are evicted.
+ * </p>
+ * <p>
+ * Optionally the compiler stores results in a {@link #getDirectory() directory}, so they survive JVM restarts and can
+ * be shared by many JVMs at the same time (e.g. parallel builds on a CI server), and in remote
+ * {@link #getBackends() backends} shared by many machines (e.g. the {@link HttpCacheBackend}). Backends are
+ * content-addressed stores:
+ * </p>
+ * <ul>
+ * <li>a manifest identified by the digest of the options lists paths of the files fetched (or not found) during the
+ * compilation and
+ * digests of the recently stored results</li>
+ * <li>a result (the CSS code and the Source Map) is identified by the digest of the options and contents of all listed
+ * files fetched through the configured file systems</li>
+ * </ul>
+ * <p>
+ * The compiler checks the memory, the directory and then remote backends in the configured order. A backend is asked
+ * for the manifest only when the paths of fetched files are unknown, and for the result only when its digest is known
+ * to be stored, so a miss costs at most one request per backend. Results found in a backend are copied to the memory
+ * and the preceding backends. New results are written to the directory synchronously and to remote backends by the
+ * {@link #getExecutor() executor}, so compilations do not wait for remote writes. The directory files are written
+ * atomically and the least recently used files are removed when the directory exceeds the
+ * {@link #getMaxDirectorySize() max directory size}. Example code:
+ * </p>
+ *
+ * <pre>
+ * NativeLessCompiler nativeCompiler = null;
+ *
+ * // cache results in memory
+ * nativeCompiler = new {@link #CachingNativeLessCompiler(NativeLessCompiler, int, long) CachingNativeLessCompiler}(new {@link PooledNativeLessCompiler}(), 500, 16 * 1024 * 1024);
+ *
+ * // cache results in memory and in a directory
+ * nativeCompiler = new {@link CachingNativeLessCompilerBuilder#CachingNativeLessCompilerBuilder() CachingNativeLessCompilerBuilder}().{@link CachingNativeLessCompilerBuilder#directory(File) directory}(new File("target/less-cache")).{@link CachingNativeLessCompilerBuilder#build() build}();
+ *
+ * // cache results in memory and on a remote server
+ * nativeCompiler = new {@link CachingNativeLessCompilerBuilder#CachingNativeLessCompilerBuilder() CachingNativeLessCompilerBuilder}().{@link CachingNativeLessCompilerBuilder#backend(CacheBackend) backend}(new {@link HttpCacheBackend#HttpCacheBackend(String) HttpCacheBackend}("http://cache.example.com/less/")).{@link CachingNativeLessCompilerBuilder#build() build}();
+ *
+ * {@link LessCompiler} compiler = new {@link LessCompiler#LessCompiler(NativeLessCompiler) LessCompiler}(nativeCompiler);
+ * </pre>
+ *
+ * @since 2.0.1
+ * @see CachingNativeLessCompilerBuilder
+ * @see CacheBackend
+ */
+public class CachingNativeLessCompiler extends NativeLessCompiler {
+
+    /**
+     * The default maximum number of cached entries.
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    /**
+     * The default maximum number of characters of the cached CSS codes and Source Maps (32 M characters).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+    /**
+     * The default maximum size of the cache directory in bytes (256 MB).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_MAX_DIRECTORY_SIZE = 256L * 1024 * 1024;
+
+    private static final int MAX_MANIFEST_RESULTS = 16;
+    // digests of existing files are hexadecimal, so they never equal this value
+    private static final String MISSING_FILE_DIGEST = "missing";
+    private static final FileData MISSING_FILE = new FileData(new byte[0]);
+    private static final int MAX_PREPARED_OPTIONS = 64;
+
+    private final NativeLessCompiler compiler;
+    private final int maxEntries;
+    private final long maxSize;
+    private final File directory;
+    private final long maxDirectorySize;
+    private final List<CacheBackend> backends;
+    private final Executor executor;
+    private final List<CacheTier> tiers;
+
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<LessOptions, PreparedLessOptions> preparedOptions = new LinkedHashMap<LessOptions, PreparedLessOptions>(16, 0.75f,
+            true) {
+
+        private static final long serialVersionUID = -4386375146353432706L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<LessOptions, PreparedLessOptions> eldest) {
+            return size() > MAX_PREPARED_OPTIONS;
+        }
+    };
+    private long size;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a new instance which caches results of a new {@link NativeLessCompiler} with default limits.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler() {
+        this(new NativeLessCompiler());
+    }
+
+    /**
+     * Constructs a new instance with default limits.
+     * @param compiler the compiler which compiles source files when the cache does not contain an up-to-date result
+     *            (cannot be {@code null}).
+     * @throws IllegalArgumentException if the compiler is {@code null}.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler(final NativeLessCompiler compiler) {
+        this(compiler, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param compiler the compiler which compiles source files when the cache does not contain an up-to-date result
+     *            (cannot be {@code null}).
+     * @param maxEntries the maximum number of cached entries (must be positive).
+     * @param maxSize the maximum number of characters of the cached CSS codes and Source Maps (must be positive).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler(final NativeLessCompiler compiler, final int maxEntries, final long maxSize) {
+        this(compiler, maxEntries, maxSize, null, DEFAULT_MAX_DIRECTORY_SIZE);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param compiler the compiler which compiles source files when the cache does not contain an up-to-date result
+     *            (cannot be {@code null}).
+     * @param maxEntries the maximum number of entries cached in memory (must be positive).
+     * @param maxSize the maximum number of characters of the CSS codes and Source Maps cached in memory (must be
+     *            positive).
+     * @param directory the directory which stores results between JVM restarts ({@code null} means results are cached
+     *            only in memory).
+     * @param maxDirectorySize the maximum size of the directory in bytes (must be positive).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler(final NativeLessCompiler compiler, final int maxEntries, final long maxSize, final File directory,
+            final long maxDirectorySize) {
+        this(compiler, maxEntries, maxSize, directory, maxDirectorySize, Collections.<CacheBackend>emptyList(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param compiler the compiler which compiles source files when the cache does not contain an up-to-date result
+     *            (cannot be {@code null}).
+     * @param maxEntries the maximum number of entries cached in memory (must be positive).
+     * @param maxSize the maximum number of characters of the CSS codes and Source Maps cached in memory (must be
+     *            positive).
+     * @param directory the directory which stores results between JVM restarts ({@code null} means results are not
+     *            cached in a directory).
+     * @param maxDirectorySize the maximum size of the directory in bytes (must be positive).
+     * @param backends the remote backends checked after the directory in the list order (cannot be {@code null}).
+     * @param executor the executor which writes new results to the remote backends (cannot be {@code null}).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler(final NativeLessCompiler compiler, final int maxEntries, final long maxSize, final File directory,
+            final long maxDirectorySize, final List<CacheBackend> backends, final Executor executor) {
+        super(getEngineOptions(compiler));
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        if (maxDirectorySize < 1) {
+            throw new IllegalArgumentException("Max directory size must be positive");
+        }
+        if (backends == null || backends.contains(null)) {
+            throw new IllegalArgumentException("Backends cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.compiler = compiler;
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.directory = directory != null ? directory.getAbsoluteFile() : null;
+        this.maxDirectorySize = maxDirectorySize;
+        this.backends = Collections.unmodifiableList(new ArrayList<>(backends));
+        this.executor = executor;
+        tiers = new ArrayList<>();
+        if (directory != null) {
+            tiers.add(new CacheTier(new DirectoryCacheBackend(directory, maxDirectorySize), Runnable::run));
+        }
+        for (final CacheBackend backend : backends) {
+            tiers.add(new CacheTier(backend, executor));
+        }
+    }
+
+    private static EngineOptions getEngineOptions(final NativeLessCompiler compiler) {
+        if (compiler == null) {
+            throw new IllegalArgumentException("Native Less compiler cannot be null");
+        }
+        return compiler.getEngineOptions();
+    }
+
+    /**
+     * Returns the maximum number of cached entries.
+     * @return the maximum number of cached entries.
+     * @since 2.0.1
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum number of characters of the cached CSS codes and Source Maps.
+     * @return the maximum size.
+     * @since 2.0.1
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the directory which stores results between JVM restarts.
+     * @return the absolute directory or {@code null} if results are cached only in memory.
+     * @since 2.0.1
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum size of the cache directory in bytes.
+     * @return the maximum directory size.
+     * @since 2.0.1
+     */
+    public long getMaxDirectorySize() {
+        return maxDirectorySize;
+    }
+
+    /**
+     * Returns the remote backends checked after the directory.
+     * @return the unmodifiable list of the backends (never {@code null}).
+     * @since 2.0.1
+     */
+    public List<CacheBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Returns the executor which writes new results to the remote {@link #getBackends() backends}.
+     * @return the executor.
+     * @since 2.0.1
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     * @return the number of cached entries.
+     * @since 2.0.1
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of characters of the cached CSS codes and Source Maps.
+     * @return the size of the cache.
+     * @since 2.0.1
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the number of compilations which returned a result cached in memory, in the directory or in a backend.
+     * @return the number of cache hits.
+     * @since 2.0.1
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of cacheable compilations which have been delegated to the compiler, because the cache did not
+     * contain an up-to-date result.
+     * @return the number of cache misses.
+     * @since 2.0.1
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Removes all entries cached in memory. The {@link #getDirectory() directory} and the {@link #getBackends()
+     * backends} are not modified.
+     * @since 2.0.1
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Initializes the compiler which compiles source files.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @since 2.0.1
+     */
+    @Override
+    public void initialize() {
+        compiler.initialize();
+    }
+
+    /**
+     * Checks whether the compiler which compiles source files has been initialized.
+     * @return {@code true} whether the compiler has been initialized, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    @Override
+    public boolean isInitialized() {
+        return compiler.isInitialized();
+    }
+
+    /**
+     * Warms up the compiler which compiles source files. The warm-up compilations are never cached.
+     * @param iterations the number of warm-up compilations (cannot be negative).
+     * @throws IllegalArgumentException if the number of iterations is negative.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws CompilerException if an error occurred during warm-up compilations.
+     * @since 2.0.1
+     */
+    @Override
+    public void warmUp(final int iterations) {
+        compiler.warmUp(iterations);
+    }
+
+    @Override
+    CompilationOutput compile(final CompilationRequest request) {
+        final NativeLessOptions options = request.getOptions();
+        if (!isCacheable(options)) {
+            return compiler.compile(request);
+        }
+
+        final String key = createKey(options);
+        final CacheEntry cached = get(key);
+        final PreparedLessOptions prepared = getPreparedOptions(options);
+        final List<FileSystem> fileSystems = prepared.getFileSystems();
+        // current contents of the files fetched during the compilation, null when the paths are unknown
+        Map<String, FileData> files = null;
+        Map<String, String> digests = null;
+        Map<String, String> versions = Collections.emptyMap();
+        if (cached != null) {
+            versions = new LinkedHashMap<>();
+            files = validateFiles(fileSystems, cached, versions);
+            digests = files != null ? getDigests(files, cached) : null;
+            if (cached.digests.equals(digests)) {
+                hitCount.incrementAndGet();
+                if (!cached.versions.equals(versions)) {
+                    put(key, new CacheEntry(cached.output, cached.digests, versions));
+                }
+                return withFiles(cached.output, files, fileSystems);
+            }
+        }
+
+        final Manifest[] manifests = new Manifest[tiers.size()];
+        for (int i = 0; i < tiers.size(); ++i) {
+            final CacheBackend backend = tiers.get(i).backend;
+            if (digests == null) {
+                manifests[i] = loadManifest(backend, key);
+                if (manifests[i] == null) {
+                    continue;
+                }
+                files = fetchFiles(fileSystems, manifests[i].paths);
+                digests = files != null ? createDigests(files) : null;
+                versions = Collections.emptyMap();
+                if (digests == null || !manifests[i].results.contains(createResultKey(key, digests))) {
+                    continue;
+                }
+            }
+            final CompilationOutput output = loadOutput(backend, createResultKey(key, digests));
+            if (output != null) {
+                hitCount.incrementAndGet();
+                final CacheEntry entry = new CacheEntry(output, digests, versions);
+                put(key, entry);
+                for (int j = 0; j < i; ++j) {
+                    store(tiers.get(j), key, entry, manifests[j]);
+                }
+                return withFiles(output, files, fileSystems);
+            }
+        }
+        missCount.incrementAndGet();
+
+        final CompilationOutput output = compiler.compile(request);
+        final Map<String, String> newDigests = createDigests(fileSystems, output);
+        if (newDigests == null) {
+            return output;
+        }
+        // the versions are read before the contents during the next check, so a file changed in the meantime is not
+        // treated as unchanged
+        final CacheEntry entry = new CacheEntry(new CompilationOutput(output.getCss(), output.getSourceMap(), output.getEncoding()),
+                newDigests, Collections.<String, String>emptyMap());
+        put(key, entry);
+        for (int i = 0; i < tiers.size(); ++i) {
+            store(tiers.get(i), key, entry, manifests[i]);
+        }
+        return output;
+    }
+
+    // the fetched files are returned to decorators which track dependencies, but they are not cached, the data of
+    // files validated by their versions is null
+    private static CompilationOutput withFiles(final CompilationOutput output, final Map<String, FileData> files,
+            final List<FileSystem> fileSystems) {
+        final Map<String, FileData> fetchedFiles = new LinkedHashMap<>();
+        final Map<String, String> fileSystemClassNames = new LinkedHashMap<>();
+        final List<String> missingFiles = new ArrayList<>();
+        for (final Map.Entry<String, FileData> file : files.entrySet()) {
+            final String path = file.getKey();
+            if (file.getValue() == MISSING_FILE) {
+                missingFiles.add(path);
+            } else {
+                fetchedFiles.put(path, file.getValue());
+                fileSystemClassNames.put(path, getFileSystem(fileSystems, path).getClass().getName());
+            }
+        }
+        return output.withFiles(fetchedFiles, fileSystemClassNames, missingFiles);
+    }
+
+    private static boolean isCacheable(final NativeLessOptions options) {
+        return options != null && options.getOutputFile() == null && options.getSourceMapFile() == null
+                && !options.isSourceMapDefault();
+    }
+
+    private static String createKey(final NativeLessOptions options) {
+        final DigestBuilder builder = new DigestBuilder();
+        for (final String option : new NativeLessOptionsBuilder().options(options.getLessOptionsReference())
+                .sourceMapInline(options.isSourceMapInline()).build()) {
+            builder.append(option);
+        }
+        return builder.append(options.getInputFile()).append(options.getInputCode()).build();
+    }
+
+    private PreparedLessOptions getPreparedOptions(final NativeLessOptions options) {
+        if (options.getPreparedOptions() != null) {
+            return options.getPreparedOptions();
+        }
+        // the file systems are created only once per Less options and reused by all entries
+        final LessOptions lessOptions = options.getLessOptionsReference();
+        synchronized (preparedOptions) {
+            PreparedLessOptions prepared = preparedOptions.get(lessOptions);
+            if (prepared == null) {
+                prepared = new PreparedLessOptions(lessOptions);
+                preparedOptions.put(lessOptions, prepared);
+            }
+            return prepared;
+        }
+    }
+
+    private static String createDigest(final FileData data) {
+        if (data == MISSING_FILE) {
+            return MISSING_FILE_DIGEST;
+        }
+        return new DigestBuilder().append(data.getContent()).append(data.getEncoding()).build();
+    }
+
+    private static String createManifestKey(final String key) {
+        return new DigestBuilder().append("manifest").append(key).build();
+    }
+
+    private static String createResultKey(final String key, final Map<String, String> digests) {
+        final DigestBuilder builder = new DigestBuilder().append("result").append(key);
+        for (final Map.Entry<String, String> file : digests.entrySet()) {
+            builder.append(file.getKey()).append(file.getValue());
+        }
+        return builder.build();
+    }
+
+    private static Map<String, String> createDigests(final Map<String, FileData> files) {
+        final Map<String, String> digests = new LinkedHashMap<>();
+        for (final Map.Entry<String, FileData> file : files.entrySet()) {
+            digests.put(file.getKey(), createDigest(file.getValue()));
+        }
+        return digests;
+    }
+
+    // returns null when the output cannot be cached, files returned by a nested cache without data are fetched again
+    private static Map<String, String> createDigests(final List<FileSystem> fileSystems, final CompilationOutput output) {
+        final Map<String, FileData> files = new LinkedHashMap<>();
+        try {
+            for (final Map.Entry<String, FileData> file : output.getFiles().entrySet()) {
+                FileData data = file.getValue();
+                if (data == null) {
+                    final FileSystem fileSystem = getFileSystem(fileSystems, file.getKey());
+                    data = fileSystem != null ? fileSystem.fetch(file.getKey()) : null;
+                }
+                if (data == null) {
+                    return null;
+                }
+                files.put(file.getKey(), data);
+            }
+        } catch (final Exception e) {
+            // the file has been changed or removed during the compilation
+            return null;
+        }
+        for (final String path : output.getMissingFiles()) {
+            if (!files.containsKey(path)) {
+                files.put(path, MISSING_FILE);
+            }
+        }
+        return createDigests(files);
+    }
+
+    private static Map<String, FileData> fetchFiles(final List<FileSystem> fileSystems, final Collection<String> paths) {
+        final Map<String, FileData> files = new LinkedHashMap<>();
+        try {
+            for (final String path : paths) {
+                final FileSystem fileSystem = getFileSystem(fileSystems, path);
+                if (fileSystem == null) {
+                    return null;
+                }
+                final FileData data = fetchIfExists(fileSystem, path);
+                files.put(path, data != null ? data : MISSING_FILE);
+            }
+        } catch (final Exception e) {
+            // the file will be fetched again during compilation, which reports the problem
+            return null;
+        }
+        return files;
+    }
+
+    // fetches only the files whose versions have changed, the data of unchanged files is null
+    private static Map<String, FileData> validateFiles(final List<FileSystem> fileSystems, final CacheEntry cached,
+            final Map<String, String> versions) {
+        final Map<String, FileData> files = new LinkedHashMap<>();
+        try {
+            for (final Map.Entry<String, String> digest : cached.digests.entrySet()) {
+                final String path = digest.getKey();
+                final FileSystem fileSystem = getFileSystem(fileSystems, path);
+                if (fileSystem == null) {
+                    return null;
+                }
+                if (MISSING_FILE_DIGEST.equals(digest.getValue())) {
+                    if (fileSystem.exists(path)) {
+                        return null;
+                    }
+                    files.put(path, MISSING_FILE);
+                    continue;
+                }
+                final String version = fileSystem instanceof VersionedFileSystem ? ((VersionedFileSystem) fileSystem).getVersion(path)
+                        : null;
+                if (version != null) {
+                    versions.put(path, version);
+                }
+                if (version != null && version.equals(cached.versions.get(path))) {
+                    files.put(path, null);
+                    continue;
+                }
+                final FileData data = fileSystem.fetch(path);
+                if (data == null) {
+                    return null;
+                }
+                files.put(path, data);
+            }
+        } catch (final Exception e) {
+            // the file will be fetched again during compilation, which reports the problem
+            return null;
+        }
+        return files;
+    }
+
+    private static FileData fetchIfExists(final FileSystem fileSystem, final String path) throws Exception {
+        if (fileSystem instanceof FetchingFileSystem) {
+            return ((FetchingFileSystem) fileSystem).fetchIfExists(path);
+        }
+        return fileSystem.exists(path) ? fileSystem.fetch(path) : null;
+    }
+
+    private static Map<String, String> getDigests(final Map<String, FileData> files, final CacheEntry cached) {
+        final Map<String, String> digests = new LinkedHashMap<>();
+        for (final Map.Entry<String, FileData> file : files.entrySet()) {
+            final FileData data = file.getValue();
+            digests.put(file.getKey(), data != null ? createDigest(data) : cached.digests.get(file.getKey()));
+        }
+        return digests;
+    }
+
+    private static FileSystem getFileSystem(final List<FileSystem> fileSystems, final String path) {
+        for (final FileSystem fileSystem : fileSystems) {
+            if (fileSystem.isSupported(path)) {
+                return fileSystem;
+            }
+        }
+        return null;
+    }
+
+    private static Manifest loadManifest(final CacheBackend backend, final String key) {
+        final byte[] manifest = load(backend, createManifestKey(key));
+        if (manifest == null) {
+            return null;
+        }
+        try {
+            return readManifest(manifest);
+        } catch (final IOException e) {
+            // corrupted entries are overwritten after the compilation
+            return null;
+        }
+    }
+
+    private static CompilationOutput loadOutput(final CacheBackend backend, final String resultKey) {
+        final byte[] result = load(backend, resultKey);
+        if (result == null) {
+            return null;
+        }
+        try {
+            return readOutput(result);
+        } catch (final IOException e) {
+            // corrupted entries are overwritten after the compilation
+            return null;
+        }
+    }
+
+    private static byte[] load(final CacheBackend backend, final String digest) {
+        try (InputStream stream = backend.get(digest)) {
+            return stream != null ? IOUtils.toByteArray(stream) : null;
+        } catch (final IOException | RuntimeException e) {
+            // unavailable backends are treated as empty
+            return null;
+        }
+    }
+
+    private static void store(final CacheTier tier, final String key, final CacheEntry entry, final Manifest previous) {
+        final String resultKey = createResultKey(key, entry.digests);
+        final List<String> results = new ArrayList<>();
+        results.add(resultKey);
+        if (previous != null && previous.paths.equals(new ArrayList<>(entry.digests.keySet()))) {
+            for (final String result : previous.results) {
+                if (results.size() < MAX_MANIFEST_RESULTS && !results.contains(result)) {
+                    results.add(result);
+                }
+            }
+        }
+        final byte[] result;
+        final byte[] manifest;
+        try {
+            result = writeOutput(entry.output);
+            manifest = writeManifest(new Manifest(new ArrayList<>(entry.digests.keySet()), results));
+        } catch (final IOException e) {
+            return;
+        }
+        try {
+            tier.executor.execute(() -> {
+                try {
+                    // the result is stored first, so the manifest never lists a missing result
+                    tier.backend.put(resultKey, new ByteArrayInputStream(result));
+                    tier.backend.put(createManifestKey(key), new ByteArrayInputStream(manifest));
+                } catch (final IOException | RuntimeException e) {
+                    // the cache is best-effort
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the cache is best-effort
+        }
+    }
+
+    private static byte[] writeManifest(final Manifest manifest) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            writeStrings(output, manifest.paths);
+            writeStrings(output, manifest.results);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Manifest readManifest(final byte[] manifest) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(manifest))) {
+            return new Manifest(readStrings(input), readStrings(input));
+        }
+    }
+
+    private static void writeStrings(final DataOutputStream output, final List<String> texts) throws IOException {
+        output.writeInt(texts.size());
+        for (final String text : texts) {
+            writeString(output, text);
+        }
+    }
+
+    private static List<String> readStrings(final DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid list size: " + size);
+        }
+        final List<String> texts = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            texts.add(readString(input));
+        }
+        return texts;
+    }
+
+    private static byte[] writeOutput(final CompilationOutput output) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(bytes)) {
+            writeString(stream, output.getCss());
+            writeString(stream, output.getSourceMap());
+            writeString(stream, output.getEncoding());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CompilationOutput readOutput(final byte[] result) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(result))) {
+            return new CompilationOutput(readString(input), readString(input), readString(input));
+        }
+    }
+
+    private static void writeString(final DataOutputStream output, final String text) throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private CacheEntry get(final String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(final String key, final CacheEntry entry) {
+        synchronized (entries) {
+            final CacheEntry previous = entries.remove(key);
+            if (previous != null) {
+                size -= previous.size;
+            }
+            if (entry.size > maxSize) {
+                return;
+            }
+            entries.put(key, entry);
+            size += entry.size;
+            final Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries || size > maxSize) {
+                size -= iterator.next().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final CompilationOutput output;
+        private final Map<String, String> digests;
+        // versions of the files whose contents matched the digests, read before the contents
+        private final Map<String, String> versions;
+        private final long size;
+
+        CacheEntry(final CompilationOutput output, final Map<String, String> digests, final Map<String, String> versions) {
+            this.output = output;
+            this.digests = digests;
+            this.versions = versions;
+            size = length(output.getCss()) + length(output.getSourceMap());
+        }
+
+        private static long length(final String text) {
+            return text != null ? text.length() : 0;
+        }
+    }
+
+    private static final class Manifest {
+
+        private final List<String> paths;
+        private final List<String> results;
+
+        Manifest(final List<String> paths, final List<String> results) {
+            this.paths = paths;
+            this.results = results;
+        }
+    }
+
+    private static final class CacheTier {
+
+        private final CacheBackend backend;
+        private final Executor executor;
+
+        CacheTier(final CacheBackend backend, final Executor executor) {
+            this.backend = backend;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.HttpCacheBackend;
+
+/**
+ * <p>
+ * Responsible for creating new instances of the {@link CachingNativeLessCompiler}.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link CachingNativeLessCompiler} compiler = null;
+ *
+ * // create a compiler which caches results of a new native compiler in memory
+ * compiler = new {@link #CachingNativeLessCompilerBuilder() CachingNativeLessCompilerBuilder}().{@link #build() build}();
+ *
+ * // create a compiler which caches results of a pooled compiler in memory and in a directory shared by many JVMs
+ * compiler = new {@link #CachingNativeLessCompilerBuilder() CachingNativeLessCompilerBuilder}() //
+ *                      .{@link #compiler(NativeLessCompiler) compiler}(new {@link PooledNativeLessCompiler}()) //
+ *                      .{@link #maxEntries(int) maxEntries}(500) //
+ *                      .{@link #directory(File) directory}(new File("/var/cache/less")) //
+ *                      .{@link #maxDirectorySize(long) maxDirectorySize}(64 * 1024 * 1024) //
+ *                      .{@link #build() build}();
+ *
+ * // create a compiler which caches results in memory and on a remote server shared by many machines
+ * compiler = new {@link #CachingNativeLessCompilerBuilder() CachingNativeLessCompilerBuilder}() //
+ *                      .{@link #backend(CacheBackend) backend}(new {@link HttpCacheBackend#HttpCacheBackend(String) HttpCacheBackend}("http://cache.example.com/less/")) //
+ *                      .{@link #build() build}();
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class CachingNativeLessCompilerBuilder {
+
+    private NativeLessCompiler compiler;
+    private int maxEntries = CachingNativeLessCompiler.DEFAULT_MAX_ENTRIES;
+    private long maxSize = CachingNativeLessCompiler.DEFAULT_MAX_SIZE;
+    private File directory;
+    private long maxDirectorySize = CachingNativeLessCompiler.DEFAULT_MAX_DIRECTORY_SIZE;
+    private final List<CacheBackend> backends = new ArrayList<>();
+    private Executor executor;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder() {
+        // do nothing
+    }
+
+    /**
+     * Sets the compiler which compiles source files when the cache does not contain an up-to-date result (default: a
+     * new {@link NativeLessCompiler}).
+     * @param compiler the compiler (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the compiler is {@code null}.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder compiler(final NativeLessCompiler compiler) {
+        if (compiler == null) {
+            throw new IllegalArgumentException("Native Less compiler cannot be null");
+        }
+        this.compiler = compiler;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of entries cached in memory (default:
+     * {@link CachingNativeLessCompiler#DEFAULT_MAX_ENTRIES}).
+     * @param maxEntries the maximum number of entries (must be positive).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the max entries is not positive.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder maxEntries(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of characters of the CSS codes and Source Maps cached in memory (default:
+     * {@link CachingNativeLessCompiler#DEFAULT_MAX_SIZE}).
+     * @param maxSize the maximum size (must be positive).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the max size is not positive.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder maxSize(final long maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Sets the directory which stores results between JVM restarts (default: {@code null}).
+     * @param directory the directory ({@code null} means results are cached only in memory).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder directory(final File directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of the cache directory in bytes (default:
+     * {@link CachingNativeLessCompiler#DEFAULT_MAX_DIRECTORY_SIZE}).
+     * @param maxDirectorySize the maximum directory size (must be positive).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the max directory size is not positive.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder maxDirectorySize(final long maxDirectorySize) {
+        if (maxDirectorySize < 1) {
+            throw new IllegalArgumentException("Max directory size must be positive");
+        }
+        this.maxDirectorySize = maxDirectorySize;
+        return this;
+    }
+
+    /**
+     * Adds a remote backend which stores results shared by many machines. Backends are checked after the
+     * {@link #directory(File) directory} in the order of addition.
+     * @param backend the backend (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the backend is {@code null}.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder backend(final CacheBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend cannot be null");
+        }
+        backends.add(backend);
+        return this;
+    }
+
+    /**
+     * Sets the executor which writes new results to the remote {@link #backend(CacheBackend) backends} (default:
+     * {@link ForkJoinPool#commonPool()}).
+     * @param executor the executor (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the executor is {@code null}.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompilerBuilder executor(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Builds a new caching compiler.
+     * @return the caching compiler.
+     * @since 2.0.1
+     */
+    public CachingNativeLessCompiler build() {
+        final NativeLessCompiler nativeCompiler = compiler != null ? compiler : new NativeLessCompiler();
+        return new CachingNativeLessCompiler(nativeCompiler, maxEntries, maxSize, directory, maxDirectorySize, backends,
+                executor != null ? executor : ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+/**
+ * Thrown to indicate that a compilation has been stopped before completion, because the compiling thread has been
+ * interrupted (e.g. the future returned by {@link LessCompiler#compileAsync(java.io.File, LessOptions)} has been
+ * cancelled). The interrupted status of the thread is preserved.
+ * @since 2.0.1
+ * @see LessContextFactory
+ * @see CompilationTimeoutException
+ */
+public class CompilationInterruptedException extends CompilerException {
+
+    private static final long serialVersionUID = 4163529872730521764L;
+
+    /**
+     * Constructs a new instance with the specified detail message.
+     * @param message the detail message.
+     * @since 2.0.1
+     */
+    public CompilationInterruptedException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new instance with the specified detail message and cause.
+     * @param message the detail message.
+     * @param cause the cause.
+     * @since 2.0.1
+     */
+    public CompilationInterruptedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
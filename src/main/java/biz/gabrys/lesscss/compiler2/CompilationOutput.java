@@ -0,0 +1,192 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+
+/**
+ * Represents an output returned by the native Less compiler JavaScript entry point.
+ * @since 2.0.1
+ */
+final class CompilationOutput {
+
+    private final String css;
+    private final String sourceMap;
+    private final String encoding;
+    private final Map<String, FileData> files;
+    private final Map<String, String> fileSystemClassNames;
+    private final List<String> missingFiles;
+    private final Map<CompilationPhase, Long> timings;
+
+    CompilationOutput(final String css, final String sourceMap, final String encoding) {
+        this(css, sourceMap, encoding, Collections.<String, FileData>emptyMap(), Collections.<String, String>emptyMap(),
+                Collections.<String>emptyList(), Collections.<CompilationPhase, Long>emptyMap());
+    }
+
+    CompilationOutput(final String css, final String sourceMap, final String encoding, final Map<String, FileData> files,
+            final Map<String, String> fileSystemClassNames, final List<String> missingFiles, final Map<CompilationPhase, Long> timings) {
+        this.css = css;
+        this.sourceMap = sourceMap;
+        this.encoding = encoding;
+        this.files = Collections.unmodifiableMap(files);
+        this.fileSystemClassNames = Collections.unmodifiableMap(fileSystemClassNames);
+        this.missingFiles = Collections.unmodifiableList(missingFiles);
+        this.timings = Collections.unmodifiableMap(timings);
+    }
+
+    static CompilationOutput fromScriptable(final Scriptable result) {
+        final Map<String, FileData> files = new LinkedHashMap<>();
+        final Map<String, String> fileSystemClassNames = new LinkedHashMap<>();
+        final Object value = ScriptableObject.getProperty(result, "files");
+        if (value instanceof Scriptable) {
+            final Scriptable array = (Scriptable) value;
+            final int length = (int) Context.toNumber(ScriptableObject.getProperty(array, "length"));
+            for (int i = 0; i < length; ++i) {
+                final Scriptable element = (Scriptable) ScriptableObject.getProperty(array, i);
+                final String path = getString(element, "path");
+                if (!files.containsKey(path)) {
+                    files.put(path, (FileData) Context.jsToJava(ScriptableObject.getProperty(element, "data"), FileData.class));
+                    fileSystemClassNames.put(path, getString(element, "className"));
+                }
+            }
+        }
+        return new CompilationOutput(getString(result, "css"), getString(result, "sourceMap"), getString(result, "encoding"), files,
+                fileSystemClassNames, getMissingFiles(result, files), getTimings(result));
+    }
+
+    // a path checked many times is listed once, paths fetched by other lookups are not missing
+    private static List<String> getMissingFiles(final Scriptable result, final Map<String, FileData> files) {
+        final List<String> missingFiles = new ArrayList<>();
+        final Object value = ScriptableObject.getProperty(result, "missingFiles");
+        if (!(value instanceof Scriptable)) {
+            return missingFiles;
+        }
+        final Scriptable array = (Scriptable) value;
+        final int length = (int) Context.toNumber(ScriptableObject.getProperty(array, "length"));
+        for (int i = 0; i < length; ++i) {
+            final String path = Context.toString(ScriptableObject.getProperty(array, i));
+            if (!files.containsKey(path) && !missingFiles.contains(path)) {
+                missingFiles.add(path);
+            }
+        }
+        return missingFiles;
+    }
+
+    private static Map<CompilationPhase, Long> getTimings(final Scriptable result) {
+        final Map<CompilationPhase, Long> timings = new EnumMap<>(CompilationPhase.class);
+        final Object value = ScriptableObject.getProperty(result, "timings");
+        if (!(value instanceof Scriptable)) {
+            return timings;
+        }
+        final Scriptable object = (Scriptable) value;
+        for (final CompilationPhase phase : CompilationPhase.values()) {
+            final Object time = ScriptableObject.getProperty(object, phase.name().toLowerCase(Locale.ENGLISH));
+            if (time instanceof Number) {
+                timings.put(phase, ((Number) time).longValue());
+            }
+        }
+        return timings;
+    }
+
+    private static String getString(final Scriptable object, final String name) {
+        final Object value = ScriptableObject.getProperty(object, name);
+        if (value == null || value == Scriptable.NOT_FOUND || Undefined.isUndefined(value)) {
+            return null;
+        }
+        return Context.toString(value);
+    }
+
+    /**
+     * Returns the generated CSS code.
+     * @return the CSS code or {@code null} if the code has been saved to an output file.
+     */
+    String getCss() {
+        return css;
+    }
+
+    /**
+     * Returns the generated source map.
+     * @return the source map or {@code null} if the source map has not been generated or has been inlined.
+     */
+    String getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * Returns the encoding used to read source files and save generated code.
+     * @return the encoding.
+     */
+    String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the files fetched from the file systems during the compilation (the source file, imported files and files
+     * embedded by the {@code data-uri} function).
+     * @return the unmodifiable map with direct normalized file paths and fetched data in the fetch order.
+     */
+    Map<String, FileData> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns class names of the file systems which fetched the {@link #getFiles() files}.
+     * @return the unmodifiable map with direct normalized file paths and class names in the fetch order.
+     */
+    Map<String, String> getFileSystemClassNames() {
+        return fileSystemClassNames;
+    }
+
+    /**
+     * Returns paths of the files which did not exist during the compilation (e.g. import candidates from include paths
+     * checked before the path of the imported file).
+     * @return the unmodifiable list with direct normalized file paths in the check order.
+     */
+    List<String> getMissingFiles() {
+        return missingFiles;
+    }
+
+    /**
+     * Returns durations of the compilation phases in nanoseconds.
+     * @return the unmodifiable map with the durations (empty if the phases have not been measured).
+     */
+    Map<CompilationPhase, Long> getTimings() {
+        return timings;
+    }
+
+    /**
+     * Creates a copy of the output with other fetched and missing files. Phase durations are not copied.
+     * @param files the fetched files.
+     * @param fileSystemClassNames the class names of the file systems which fetched the files.
+     * @param missingFiles the paths of the missing files.
+     * @return the new output.
+     */
+    CompilationOutput withFiles(final Map<String, FileData> files, final Map<String, String> fileSystemClassNames,
+            final List<String> missingFiles) {
+        return new CompilationOutput(css, sourceMap, encoding, files, fileSystemClassNames, missingFiles,
+                Collections.<CompilationPhase, Long>emptyMap());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+/**
+ * Phases of a single compilation measured by the native Less compiler.
+ * @since 2.0.1
+ * @see CompilationResult#getTimings()
+ */
+public enum CompilationPhase {
+
+    /**
+     * Reading the source file (skipped when the {@link NativeLessOptions#getInputCode() input code} is compiled).
+     * @since 2.0.1
+     */
+    READ,
+    /**
+     * Parsing the source code, including resolving and fetching imported files.
+     * @since 2.0.1
+     */
+    PARSE,
+    /**
+     * Evaluating the parsed tree and generating the CSS code and the Source Map (including saving the Source Map
+     * file).
+     * @since 2.0.1
+     */
+    GENERATE,
+    /**
+     * Saving the CSS code in the output file (skipped when the CSS code is returned).
+     * @since 2.0.1
+     */
+    WRITE
+}
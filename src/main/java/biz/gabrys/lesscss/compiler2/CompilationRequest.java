@@ -0,0 +1,238 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import biz.gabrys.lesscss.compiler2.util.StringUtils;
+
+/**
+ * Represents a single call of the native Less compiler JavaScript entry point: a function name and a function argument
+ * created in the compilation scope.
+ * @since 2.0.1
+ */
+abstract class CompilationRequest {
+
+    static final String COMPILE_FUNCTION = "compile";
+    static final String COMPILE_CONFIGURATION_FUNCTION = "compileConfiguration";
+
+    abstract String getFunctionName();
+
+    abstract Object createArgument(Context context, Scriptable scope);
+
+    // returns null when the request contains command line arguments
+    NativeLessOptions getOptions() {
+        return null;
+    }
+
+    boolean hasDeadline() {
+        return false;
+    }
+
+    // returns the System.nanoTime() value after which the compilation is stopped, valid only when hasDeadline() is true
+    long getDeadline() {
+        return 0;
+    }
+
+    static CompilationRequest fromArguments(final Collection<?> arguments) {
+        return new ArgumentsRequest(arguments);
+    }
+
+    static CompilationRequest fromOptions(final NativeLessOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        return new OptionsRequest(options);
+    }
+
+    private static final class ArgumentsRequest extends CompilationRequest {
+
+        private final Collection<?> arguments;
+
+        ArgumentsRequest(final Collection<?> arguments) {
+            this.arguments = arguments;
+        }
+
+        @Override
+        String getFunctionName() {
+            return COMPILE_FUNCTION;
+        }
+
+        @Override
+        Object createArgument(final Context context, final Scriptable scope) {
+            return context.newArray(scope, arguments.toArray(new Object[0]));
+        }
+    }
+
+    private static final class OptionsRequest extends CompilationRequest {
+
+        private final NativeLessOptions options;
+        private final long deadline;
+
+        OptionsRequest(final NativeLessOptions options) {
+            this.options = options;
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeout());
+        }
+
+        @Override
+        String getFunctionName() {
+            return COMPILE_CONFIGURATION_FUNCTION;
+        }
+
+        @Override
+        NativeLessOptions getOptions() {
+            return options;
+        }
+
+        @Override
+        boolean hasDeadline() {
+            return options.getTimeout() > 0;
+        }
+
+        @Override
+        long getDeadline() {
+            return deadline;
+        }
+
+        @Override
+        Object createArgument(final Context context, final Scriptable scope) {
+            final LessOptions lessOptions = options.getLessOptionsReference();
+            final Scriptable configuration = context.newObject(scope);
+            put(configuration, "options", createParserOptions(context, scope, lessOptions));
+            final PreparedLessOptions preparedOptions = options.getPreparedOptions();
+            if (preparedOptions != null) {
+                put(configuration, "additionalData", createAdditionalData(context, scope, lessOptions.getBanner(),
+                        preparedOptions.getGlobalVariables(), preparedOptions.getModifyVariables()));
+                put(configuration, "includePaths", context.newArray(scope, preparedOptions.getIncludePaths().toArray()));
+                put(configuration, "fileSystems", createFileSystems(context, scope, preparedOptions.getPreparedFileSystems()));
+            } else {
+                put(configuration, "additionalData", createAdditionalData(context, scope, lessOptions.getBanner(),
+                        lessOptions.getGlobalVariables(), lessOptions.getModifyVariables()));
+                put(configuration, "includePaths", createIncludePaths(context, scope, lessOptions));
+                put(configuration, "fileSystems", createFileSystems(context, scope, lessOptions));
+            }
+            put(configuration, "encoding", lessOptions.getEncoding());
+            put(configuration, "sourceMapFilePath", options.getSourceMapFile() != null ? options.getSourceMapFile().getPath() : null);
+            put(configuration, "sourceMapInline", options.isSourceMapInline());
+            put(configuration, "source", StringUtils.isNotBlank(options.getInputFile()) ? options.getInputFile() : null);
+            putIfNotNull(configuration, "code", options.getInputCode());
+            put(configuration, "output", options.getOutputFile() != null ? options.getOutputFile().getPath() : null);
+            return configuration;
+        }
+
+        private Scriptable createParserOptions(final Context context, final Scriptable scope, final LessOptions lessOptions) {
+            final Scriptable parserOptions = context.newObject(scope);
+            put(parserOptions, "compress", lessOptions.isCompress());
+            put(parserOptions, "silent", lessOptions.isSilent());
+            put(parserOptions, "paths", context.newArray(scope, 0));
+            put(parserOptions, "strictImports", lessOptions.isStrictImports());
+            final String rootPath = lessOptions.getRootPath();
+            put(parserOptions, "rootpath", rootPath != null ? rootPath.replace('\\', '/') : "");
+            put(parserOptions, "relativeUrls", lessOptions.isRelativeUrls());
+            put(parserOptions, "ieCompat", lessOptions.isIeCompatibility());
+            put(parserOptions, "strictMath", lessOptions.isStrictMath());
+            put(parserOptions, "strictUnits", lessOptions.isStrictUnits());
+            if (!lessOptions.isJavaScript()) {
+                put(parserOptions, "javascriptEnabled", false);
+            }
+            if (lessOptions.getLineNumbers() != LineNumbersValue.OFF) {
+                put(parserOptions, "dumpLineNumbers", lessOptions.getLineNumbers().getValue());
+            }
+            if (options.isSourceMapDefault() || options.getSourceMapFile() != null || options.isSourceMapInline()) {
+                put(parserOptions, "sourceMap", true);
+            }
+            if (lessOptions.isSourceMapLessInline()) {
+                put(parserOptions, "outputSourceFiles", true);
+            }
+            putIfNotNull(parserOptions, "sourceMapRootpath", lessOptions.getSourceMapRootPath());
+            putIfNotNull(parserOptions, "sourceMapBasepath", lessOptions.getSourceMapBasePath());
+            putIfNotNull(parserOptions, "sourceMapURL", lessOptions.getSourceMapUrl());
+            return parserOptions;
+        }
+
+        private static Scriptable createAdditionalData(final Context context, final Scriptable scope, final String banner,
+                final List<LessVariableOption> globalVariables, final List<LessVariableOption> modifyVariables) {
+            final Scriptable additionalData = context.newObject(scope);
+            put(additionalData, "banner", StringUtils.isNotBlank(banner) ? banner : "");
+            put(additionalData, "globalVars", createVariables(context, scope, globalVariables));
+            put(additionalData, "modifyVars", createVariables(context, scope, modifyVariables));
+            return additionalData;
+        }
+
+        private static Scriptable createVariables(final Context context, final Scriptable scope, final List<LessVariableOption> variables) {
+            final List<Object> elements = new ArrayList<>(variables.size());
+            for (final LessVariableOption variable : variables) {
+                if (variable != null) {
+                    final Scriptable element = context.newObject(scope);
+                    put(element, "name", variable.getName());
+                    put(element, "value", variable.getValue());
+                    elements.add(element);
+                }
+            }
+            return context.newArray(scope, elements.toArray());
+        }
+
+        private static Scriptable createIncludePaths(final Context context, final Scriptable scope, final LessOptions lessOptions) {
+            final List<Object> includePaths = new ArrayList<>();
+            for (final String includePath : lessOptions.getIncludePaths()) {
+                if (StringUtils.isNotBlank(includePath)) {
+                    includePaths.add(includePath);
+                }
+            }
+            return context.newArray(scope, includePaths.toArray());
+        }
+
+        private static Scriptable createFileSystems(final Context context, final Scriptable scope, final LessOptions lessOptions) {
+            final List<Object> fileSystems = new ArrayList<>();
+            for (final FileSystemOption fileSystem : lessOptions.getFileSystems()) {
+                if (fileSystem != null) {
+                    final Scriptable element = context.newObject(scope);
+                    put(element, "className", fileSystem.getClassName());
+                    put(element, "parameters", Context.javaToJS(fileSystem.getParameters(), scope));
+                    fileSystems.add(element);
+                }
+            }
+            return context.newArray(scope, fileSystems.toArray());
+        }
+
+        private static Scriptable createFileSystems(final Context context, final Scriptable scope,
+                final List<PreparedLessOptions.PreparedFileSystem> preparedFileSystems) {
+            final Object[] fileSystems = new Object[preparedFileSystems.size()];
+            for (int i = 0; i < fileSystems.length; ++i) {
+                final PreparedLessOptions.PreparedFileSystem fileSystem = preparedFileSystems.get(i);
+                final Scriptable element = context.newObject(scope);
+                put(element, "className", fileSystem.getClassName());
+                put(element, "instance", Context.javaToJS(fileSystem.getInstance(), scope));
+                fileSystems[i] = element;
+            }
+            return context.newArray(scope, fileSystems);
+        }
+
+        private static void putIfNotNull(final Scriptable object, final String name, final String value) {
+            if (value != null) {
+                put(object, name, value);
+            }
+        }
+
+        private static void put(final Scriptable object, final String name, final Object value) {
+            ScriptableObject.putProperty(object, name, value);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Represents a result of a single compilation: the generated CSS code, the Source Map, files on which the source file
+ * depends (similar to the {@code lessc --depends} option) and durations of the compilation phases. All data are
+ * collected during the same compilation, so the source file is not compiled again to find its dependencies.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link CompilationResult} result = new {@link LessCompiler}().{@link LessCompiler#compileWithResult(java.io.File, LessOptions) compileWithResult}(new File("source.less"), new {@link LessOptions}());
+ * String css = result.{@link #getCss() getCss}();
+ * for (ResolvedImport resolvedImport : result.{@link #getImports() getImports}()) {
+ *     System.out.println(resolvedImport.{@link ResolvedImport#getPath() getPath}());
+ * }
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public final class CompilationResult {
+
+    private final String css;
+    private final String sourceMap;
+    private final String encoding;
+    private final List<ResolvedImport> imports;
+    private final Map<CompilationPhase, Long> timings;
+
+    CompilationResult(final String css, final String sourceMap, final String encoding, final List<ResolvedImport> imports,
+            final Map<CompilationPhase, Long> timings) {
+        this.css = css;
+        this.sourceMap = sourceMap;
+        this.encoding = encoding;
+        this.imports = Collections.unmodifiableList(imports);
+        final Map<CompilationPhase, Long> phases = new EnumMap<>(CompilationPhase.class);
+        phases.putAll(timings);
+        this.timings = Collections.unmodifiableMap(phases);
+    }
+
+    /**
+     * Returns the generated CSS code.
+     * @return the CSS code or {@code null} if the code has been saved in an output file.
+     * @since 2.0.1
+     */
+    public String getCss() {
+        return css;
+    }
+
+    /**
+     * Returns the generated Source Map.
+     * @return the Source Map or {@code null} if the Source Map has not been generated or has been inlined in the CSS
+     *         code.
+     * @since 2.0.1
+     */
+    public String getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * Returns the encoding used to read source files and save generated code.
+     * @return the encoding.
+     * @since 2.0.1
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns files fetched during the compilation (imported files and files embedded by the {@code data-uri}
+     * function) in the fetch order. The source file is not included.
+     * @return the unmodifiable list of the files (never {@code null}).
+     * @since 2.0.1
+     */
+    public List<ResolvedImport> getImports() {
+        return imports;
+    }
+
+    /**
+     * Returns durations of the compilation phases in nanoseconds. The map does not contain phases which were not
+     * measured, e.g. when the result has been returned from a cache.
+     * @return the unmodifiable map with the durations (never {@code null}).
+     * @since 2.0.1
+     */
+    public Map<CompilationPhase, Long> getTimings() {
+        return timings;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+/**
+ * Thrown to indicate that a compilation has been stopped, because it has exceeded its
+ * {@link NativeLessOptions#getTimeout() timeout}. The time includes waiting for an available compiler engine.
+ * @since 2.0.1
+ * @see NativeLessOptionsBuilder#timeout(long)
+ * @see LessContextFactory
+ */
+public class CompilationTimeoutException extends CompilationInterruptedException {
+
+    private static final long serialVersionUID = -2871402964615190553L;
+
+    /**
+     * Constructs a new instance with the specified detail message.
+     * @param message the detail message.
+     * @since 2.0.1
+     */
+    public CompilationTimeoutException(final String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new instance with the specified detail message and cause.
+     * @param message the detail message.
+     * @param cause the cause.
+     * @since 2.0.1
+     */
+    public CompilationTimeoutException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
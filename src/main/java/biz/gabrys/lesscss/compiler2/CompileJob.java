@@ -0,0 +1,88 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.io.File;
+
+/**
+ * Represents a single source file compiled by the {@link LessCompiler#compileAll(java.util.Collection)} method.
+ * @since 2.0.1
+ */
+public class CompileJob {
+
+    private final File input;
+    private final File output;
+    private final LessOptions options;
+
+    /**
+     * Constructs a new instance which returns the CSS code.
+     * @param input the source file (cannot be {@code null}).
+     * @param options the configuration options (cannot be {@code null}).
+     * @throws IllegalArgumentException if any parameter is {@code null}.
+     * @since 2.0.1
+     */
+    public CompileJob(final File input, final LessOptions options) {
+        this(input, null, options);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param input the source file (cannot be {@code null}).
+     * @param output the output file ({@code null} means the CSS code is returned).
+     * @param options the configuration options (cannot be {@code null}).
+     * @throws IllegalArgumentException if the input or the options is {@code null}.
+     * @since 2.0.1
+     */
+    public CompileJob(final File input, final File output, final LessOptions options) {
+        if (input == null) {
+            throw new IllegalArgumentException("Source file cannot be null");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        this.input = input;
+        this.output = output;
+        this.options = new LessOptions(options);
+    }
+
+    /**
+     * Returns the source file.
+     * @return the source file (never {@code null}).
+     * @since 2.0.1
+     */
+    public File getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the output file.
+     * @return the output file or {@code null} if the CSS code is returned.
+     * @since 2.0.1
+     */
+    public File getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns a copy of the configuration options.
+     * @return the configuration options (never {@code null}).
+     * @since 2.0.1
+     */
+    public LessOptions getOptions() {
+        return new LessOptions(options);
+    }
+
+    LessOptions getOptionsReference() {
+        return options;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+/**
+ * Represents a result of a single {@link CompileJob job} compiled by the
+ * {@link LessCompiler#compileAll(java.util.Collection)} method. A failed job does not abort the batch, its exception
+ * is returned instead of the result.
+ * @since 2.0.1
+ */
+public class CompileJobResult {
+
+    private final CompileJob job;
+    private final CompilationResult result;
+    private final CompilerException exception;
+
+    CompileJobResult(final CompileJob job, final CompilationResult result, final CompilerException exception) {
+        this.job = job;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns the compiled job.
+     * @return the job (never {@code null}).
+     * @since 2.0.1
+     */
+    public CompileJob getJob() {
+        return job;
+    }
+
+    /**
+     * Checks whether the job has been compiled successfully.
+     * @return {@code true} whether the job has been compiled successfully, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    /**
+     * Returns the compilation result.
+     * @return the result or {@code null} if the compilation failed.
+     * @since 2.0.1
+     */
+    public CompilationResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the exception thrown during the compilation.
+     * @return the exception or {@code null} if the job has been compiled successfully.
+     * @since 2.0.1
+     */
+    public CompilerException getException() {
+        return exception;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * Factory of executors which run batch compilations (see {@link LessCompiler#compileAll(java.util.Collection,
+ * java.util.concurrent.Executor)}). The library is published as a multi-release jar: on Java 21 and newer the
+ * executors run every job in a new virtual thread, so jobs which wait for an engine or for imported files do not
+ * occupy platform threads. On older Java versions the executors use a fixed number of platform threads.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link LessCompiler} compiler = new {@link LessCompiler#LessCompiler(NativeLessCompiler) LessCompiler}(new {@link PooledNativeLessCompiler#PooledNativeLessCompiler() PooledNativeLessCompiler}());
+ * ExecutorService executor = CompilerExecutors.{@link #newBatchExecutor() newBatchExecutor}();
+ * try {
+ *     List&lt;CompileJobResult&gt; results = compiler.{@link LessCompiler#compileAll(java.util.Collection, java.util.concurrent.Executor) compileAll}(jobs, executor);
+ * } finally {
+ *     executor.shutdown();
+ * }
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public final class CompilerExecutors {
+
+    private CompilerExecutors() {
+        // do nothing
+    }
+
+    /**
+     * Checks whether the executors created by the {@link #newBatchExecutor()} use virtual threads.
+     * @return {@code true} whether the executors use virtual threads, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    /**
+     * Creates a new executor for batch compilations. On Java 21 and newer the executor starts a new virtual thread for
+     * every job. On older Java versions it uses as many platform threads as there are available processors.
+     * @return the new executor (shut it down when it is no longer needed).
+     * @since 2.0.1
+     */
+    public static ExecutorService newBatchExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+}
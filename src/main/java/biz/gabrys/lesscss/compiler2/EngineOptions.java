@@ -0,0 +1,321 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.Objects;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * <p>
+ * Represents options responsible for configuring the <a href=
+ * "https://developer.mozilla.org/en-US/docs/Mozilla/Projects/Rhino">Rhino</a> engine used by the
+ * {@link NativeLessCompiler}.
+ * </p>
+ * <p>
+ * Options:
+ * </p>
+ * <ul>
+ * <li>{@link #getOptimizationLevel() optimization level} - a Rhino optimization level from {@code -1} (interpreted
+ * mode) to {@code 9} (default: {@value #DEFAULT_OPTIMIZATION_LEVEL})</li>
+ * <li>{@link #isGenerateDebugInfo() generate debug info} - whether the engine should generate debug information
+ * (default: {@code false})</li>
+ * <li>{@link #isPrecompiledScripts() precompiled scripts} - whether the engine should use the Less scripts compiled
+ * into JVM bytecode during the build instead of compiling them at runtime (default: {@code true})</li>
+ * <li>{@link #getContextFactory() context factory} - a factory of the Rhino contexts (default: an instance of the
+ * {@link LessContextFactory})</li>
+ * <li>{@link #getMaxCompilations() max compilations}, {@link #getMaxRetainedSize() max retained size} and
+ * {@link #getMaxIdleTime() max idle time} - limits after which the engine replaces its JavaScript scope with a new one
+ * (default: {@code 0} - no limit, see <a href="#recycling">recycling</a>)</li>
+ * </ul>
+ * <p>
+ * The precompiled scripts are used only when the optimization level is not negative and debug information is disabled.
+ * The default options load them, because it gives the shortest time to the first compilation, which matters for
+ * short-lived processes (e.g. command line tools). Long-lived processes (e.g. servers) which compile many files can
+ * use the interpreted mode ({@code -1}), because the JVM optimizes the Rhino interpreter better than the huge methods
+ * generated from the Less scripts, so the steady-state compilation is faster, at the cost of a longer
+ * initialization.
+ * </p>
+ * <p id="recycling">
+ * Objects attached to the JavaScript global objects by Less or by the JavaScript code embedded in source files stay
+ * reachable as long as the engine is used, so the memory used by a long-lived engine can grow. The recycling limits
+ * make the {@link NativeLessCompiler} replace the scope after a number of compilations, when the estimated size of
+ * the scope exceeds the limit or after a period without compilations. The new scope is created in the background and
+ * swapped between compilations, so compilations never wait for it. The {@link SharedScopeNativeLessCompiler} ignores
+ * the limits.
+ * </p>
+ * @since 2.0.1
+ * @see EngineOptionsBuilder
+ */
+public class EngineOptions {
+
+    /**
+     * Stores a default value of the optimization level option ({@value}).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_OPTIMIZATION_LEVEL = 9;
+
+    private static final ContextFactory DEFAULT_CONTEXT_FACTORY = new LessContextFactory();
+
+    private int optimizationLevel;
+    private boolean generateDebugInfo;
+    private boolean precompiledScripts;
+    private ContextFactory contextFactory;
+    private int maxCompilations;
+    private long maxRetainedSize;
+    private long maxIdleTime;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public EngineOptions() {
+        optimizationLevel = DEFAULT_OPTIMIZATION_LEVEL;
+        precompiledScripts = true;
+        contextFactory = DEFAULT_CONTEXT_FACTORY;
+    }
+
+    /**
+     * Constructs a new instance as a copy of the another options object.
+     * @param options the another options object (cannot be {@code null}).
+     * @throws IllegalArgumentException if options is {@code null}.
+     * @since 2.0.1
+     */
+    public EngineOptions(final EngineOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        optimizationLevel = options.optimizationLevel;
+        generateDebugInfo = options.generateDebugInfo;
+        precompiledScripts = options.precompiledScripts;
+        contextFactory = options.contextFactory;
+        maxCompilations = options.maxCompilations;
+        maxRetainedSize = options.maxRetainedSize;
+        maxIdleTime = options.maxIdleTime;
+    }
+
+    /**
+     * Returns a Rhino optimization level (default: {@value #DEFAULT_OPTIMIZATION_LEVEL}).
+     * @return the optimization level.
+     * @since 2.0.1
+     */
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Sets a Rhino optimization level (default: {@value #DEFAULT_OPTIMIZATION_LEVEL}).
+     * @param optimizationLevel the optimization level from {@code -1} (interpreted mode) to {@code 9}.
+     * @throws IllegalArgumentException if the optimization level is invalid.
+     * @since 2.0.1
+     */
+    public void setOptimizationLevel(final int optimizationLevel) {
+        if (!Context.isValidOptimizationLevel(optimizationLevel)) {
+            throw new IllegalArgumentException(
+                    String.format("Optimization level must be between -1 and 9, but it is equal to %s", optimizationLevel));
+        }
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Checks whether the engine should generate debug information (default: {@code false}). Generating debug
+     * information limits the optimization level to {@code 0}.
+     * @return {@code true} whether the engine should generate debug information, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isGenerateDebugInfo() {
+        return generateDebugInfo;
+    }
+
+    /**
+     * Sets whether the engine should generate debug information (default: {@code false}). Generating debug information
+     * limits the optimization level to {@code 0}.
+     * @param generateDebugInfo {@code true} whether the engine should generate debug information, otherwise
+     *            {@code false}.
+     * @since 2.0.1
+     */
+    public void setGenerateDebugInfo(final boolean generateDebugInfo) {
+        this.generateDebugInfo = generateDebugInfo;
+    }
+
+    /**
+     * Checks whether the engine should use the Less scripts compiled into JVM bytecode during the build (default:
+     * {@code true}).
+     * @return {@code true} whether the engine should use the precompiled scripts, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isPrecompiledScripts() {
+        return precompiledScripts;
+    }
+
+    /**
+     * Sets whether the engine should use the Less scripts compiled into JVM bytecode during the build (default:
+     * {@code true}).
+     * @param precompiledScripts {@code true} whether the engine should use the precompiled scripts, otherwise
+     *            {@code false}.
+     * @since 2.0.1
+     */
+    public void setPrecompiledScripts(final boolean precompiledScripts) {
+        this.precompiledScripts = precompiledScripts;
+    }
+
+    /**
+     * Returns a factory of the Rhino contexts (default: an instance of the {@link LessContextFactory}).
+     * @return the context factory (never {@code null}).
+     * @since 2.0.1
+     */
+    public ContextFactory getContextFactory() {
+        return contextFactory;
+    }
+
+    /**
+     * Sets a factory of the Rhino contexts (default: an instance of the {@link LessContextFactory}). The
+     * {@link SharedScopeNativeLessCompiler} requires a factory with enabled {@link Context#FEATURE_DYNAMIC_SCOPE dynamic
+     * scope} feature.
+     * @param contextFactory the context factory ({@code null} means the default factory).
+     * @since 2.0.1
+     */
+    public void setContextFactory(final ContextFactory contextFactory) {
+        if (contextFactory == null) {
+            this.contextFactory = DEFAULT_CONTEXT_FACTORY;
+        } else {
+            this.contextFactory = contextFactory;
+        }
+    }
+
+    /**
+     * Returns the number of compilations after which the engine replaces its scope (default: {@code 0}).
+     * @return the number of compilations or {@code 0} if the number is not limited.
+     * @since 2.0.1
+     */
+    public int getMaxCompilations() {
+        return maxCompilations;
+    }
+
+    /**
+     * Sets the number of compilations after which the engine replaces its scope (default: {@code 0}).
+     * @param maxCompilations the number of compilations ({@code 0} means no limit, cannot be negative).
+     * @throws IllegalArgumentException if the number of compilations is negative.
+     * @since 2.0.1
+     */
+    public void setMaxCompilations(final int maxCompilations) {
+        if (maxCompilations < 0) {
+            throw new IllegalArgumentException("Max compilations cannot be negative");
+        }
+        this.maxCompilations = maxCompilations;
+    }
+
+    /**
+     * Returns the estimated size of the scope in bytes after which the engine replaces it (default: {@code 0}).
+     * @return the size or {@code 0} if the size is not limited.
+     * @since 2.0.1
+     */
+    public long getMaxRetainedSize() {
+        return maxRetainedSize;
+    }
+
+    /**
+     * Sets the estimated size of the scope in bytes after which the engine replaces it (default: {@code 0}). The engine
+     * estimates the size after every 8 compilations by walking the JavaScript objects reachable from the scope, so the
+     * value approximates the retained heap rather than measures it. A new scope takes about 170 KB and the estimation
+     * takes about a millisecond.
+     * @param maxRetainedSize the size in bytes ({@code 0} means no limit, cannot be negative).
+     * @throws IllegalArgumentException if the size is negative.
+     * @since 2.0.1
+     */
+    public void setMaxRetainedSize(final long maxRetainedSize) {
+        if (maxRetainedSize < 0) {
+            throw new IllegalArgumentException("Max retained size cannot be negative");
+        }
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    /**
+     * Returns the time in milliseconds without compilations after which the engine replaces its scope (default:
+     * {@code 0}).
+     * @return the time or {@code 0} if the time is not limited.
+     * @since 2.0.1
+     */
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Sets the time in milliseconds without compilations after which the engine replaces its scope (default:
+     * {@code 0}). The scope is replaced only if it has been used since its creation.
+     * @param maxIdleTime the time in milliseconds ({@code 0} means no limit, cannot be negative).
+     * @throws IllegalArgumentException if the time is negative.
+     * @since 2.0.1
+     */
+    public void setMaxIdleTime(final long maxIdleTime) {
+        if (maxIdleTime < 0) {
+            throw new IllegalArgumentException("Max idle time cannot be negative");
+        }
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    boolean isRecyclingEnabled() {
+        return maxCompilations > 0 || maxRetainedSize > 0 || maxIdleTime > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = prime + (contextFactory == null ? 0 : contextFactory.hashCode());
+        result = prime * result + (generateDebugInfo ? 1231 : 1237);
+        result = prime * result + maxCompilations;
+        result = prime * result + (int) (maxIdleTime ^ maxIdleTime >>> 32);
+        result = prime * result + (int) (maxRetainedSize ^ maxRetainedSize >>> 32);
+        result = prime * result + optimizationLevel;
+        return prime * result + (precompiledScripts ? 1231 : 1237);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EngineOptions other = (EngineOptions) obj;
+        if (!Objects.equals(contextFactory, other.contextFactory)) {
+            return false;
+        }
+        if (generateDebugInfo != other.generateDebugInfo) {
+            return false;
+        }
+        if (maxCompilations != other.maxCompilations) {
+            return false;
+        }
+        if (maxIdleTime != other.maxIdleTime) {
+            return false;
+        }
+        if (maxRetainedSize != other.maxRetainedSize) {
+            return false;
+        }
+        if (optimizationLevel != other.optimizationLevel) {
+            return false;
+        }
+        return precompiledScripts == other.precompiledScripts;
+    }
+}
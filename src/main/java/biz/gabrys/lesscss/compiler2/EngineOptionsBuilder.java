@@ -0,0 +1,218 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * <p>
+ * Responsible for creating new instances of the {@link EngineOptions}.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link EngineOptions} options = null;
+ *
+ * // create options for a long-lived process which compiles many files
+ * options = new {@link #EngineOptionsBuilder() EngineOptionsBuilder}().{@link #optimizationLevel(int) optimizationLevel}(-1).{@link #build() build}();
+ *
+ * // create options with enabled debug information and a custom context factory
+ * options = new {@link #EngineOptionsBuilder() EngineOptionsBuilder}().{@link #generateDebugInfoOn() generateDebugInfoOn}().{@link #contextFactory(ContextFactory) contextFactory}(new CustomContextFactory()).{@link #build() build}();
+ *
+ * // use options to create a compiler
+ * {@link NativeLessCompiler} compiler = new {@link NativeLessCompiler#NativeLessCompiler(EngineOptions) NativeLessCompiler}(options);
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class EngineOptionsBuilder {
+
+    private final EngineOptions options;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public EngineOptionsBuilder() {
+        options = new EngineOptions();
+    }
+
+    /**
+     * Constructs a new instance and copies options into {@code this} builder.
+     * @param options the copied options.
+     * @throws IllegalArgumentException if the options object is {@code null}.
+     * @since 2.0.1
+     */
+    public EngineOptionsBuilder(final EngineOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        this.options = new EngineOptions(options);
+    }
+
+    /**
+     * Sets a Rhino optimization level (default: {@value EngineOptions#DEFAULT_OPTIMIZATION_LEVEL}).
+     * @param optimizationLevel the optimization level from {@code -1} (interpreted mode) to {@code 9}.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the optimization level is invalid.
+     * @since 2.0.1
+     */
+    public EngineOptionsBuilder optimizationLevel(final int optimizationLevel) {
+        getOptions().setOptimizationLevel(optimizationLevel);
+        return this;
+    }
+
+    /**
+     * Sets whether the engine should generate debug information (default: {@code false}).
+     * @param generateDebugInfo {@code true} whether the engine should generate debug information, otherwise
+     *            {@code false}.
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #generateDebugInfoOn()
+     * @see #generateDebugInfoOff()
+     */
+    public EngineOptionsBuilder generateDebugInfo(final boolean generateDebugInfo) {
+        getOptions().setGenerateDebugInfo(generateDebugInfo);
+        return this;
+    }
+
+    /**
+     * Enables generating debug information (default: {@code off}).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #generateDebugInfo(boolean)
+     * @see #generateDebugInfoOff()
+     */
+    public EngineOptionsBuilder generateDebugInfoOn() {
+        return generateDebugInfo(true);
+    }
+
+    /**
+     * Disables generating debug information (default: {@code off}).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #generateDebugInfo(boolean)
+     * @see #generateDebugInfoOn()
+     */
+    public EngineOptionsBuilder generateDebugInfoOff() {
+        return generateDebugInfo(false);
+    }
+
+    /**
+     * Sets whether the engine should use the Less scripts compiled into JVM bytecode during the build (default:
+     * {@code true}).
+     * @param precompiledScripts {@code true} whether the engine should use the precompiled scripts, otherwise
+     *            {@code false}.
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #precompiledScriptsOn()
+     * @see #precompiledScriptsOff()
+     */
+    public EngineOptionsBuilder precompiledScripts(final boolean precompiledScripts) {
+        getOptions().setPrecompiledScripts(precompiledScripts);
+        return this;
+    }
+
+    /**
+     * Enables usage of the precompiled scripts (default: {@code on}).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #precompiledScripts(boolean)
+     * @see #precompiledScriptsOff()
+     */
+    public EngineOptionsBuilder precompiledScriptsOn() {
+        return precompiledScripts(true);
+    }
+
+    /**
+     * Disables usage of the precompiled scripts (default: {@code on}).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #precompiledScripts(boolean)
+     * @see #precompiledScriptsOn()
+     */
+    public EngineOptionsBuilder precompiledScriptsOff() {
+        return precompiledScripts(false);
+    }
+
+    /**
+     * Sets a factory of the Rhino contexts (default: an instance of the {@link LessContextFactory}).
+     * @param contextFactory the context factory ({@code null} means the default factory).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     */
+    public EngineOptionsBuilder contextFactory(final ContextFactory contextFactory) {
+        getOptions().setContextFactory(contextFactory);
+        return this;
+    }
+
+    /**
+     * Sets the number of compilations after which the engine replaces its scope (default: {@code 0}).
+     * @param maxCompilations the number of compilations ({@code 0} means no limit, cannot be negative).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the number of compilations is negative.
+     * @since 2.0.1
+     * @see EngineOptions#setMaxCompilations(int)
+     */
+    public EngineOptionsBuilder maxCompilations(final int maxCompilations) {
+        getOptions().setMaxCompilations(maxCompilations);
+        return this;
+    }
+
+    /**
+     * Sets the estimated size of the scope in bytes after which the engine replaces it (default: {@code 0}).
+     * @param maxRetainedSize the size in bytes ({@code 0} means no limit, cannot be negative).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the size is negative.
+     * @since 2.0.1
+     * @see EngineOptions#setMaxRetainedSize(long)
+     */
+    public EngineOptionsBuilder maxRetainedSize(final long maxRetainedSize) {
+        getOptions().setMaxRetainedSize(maxRetainedSize);
+        return this;
+    }
+
+    /**
+     * Sets the time in milliseconds without compilations after which the engine replaces its scope (default:
+     * {@code 0}).
+     * @param maxIdleTime the time in milliseconds ({@code 0} means no limit, cannot be negative).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the time is negative.
+     * @since 2.0.1
+     * @see EngineOptions#setMaxIdleTime(long)
+     */
+    public EngineOptionsBuilder maxIdleTime(final long maxIdleTime) {
+        getOptions().setMaxIdleTime(maxIdleTime);
+        return this;
+    }
+
+    /**
+     * Creates a new instance of the {@link EngineOptions}.
+     * @return the new instance of the {@link EngineOptions}.
+     * @since 2.0.1
+     */
+    public EngineOptions build() {
+        return new EngineOptions(getOptions());
+    }
+
+    /**
+     * Returns an internal state of the builder.
+     * @return the internal state.
+     * @since 2.0.1
+     */
+    protected EngineOptions getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
+
+/**
+ * <p>
+ * Compiler which recompiles only source files affected by changed files. The compiler records a dependency graph: for
+ * every compiled root source file (identified by the {@link NativeLessOptions immutable options}) it remembers paths of
+ * all files fetched during the last compilation (the source file, imported files and files embedded by the
+ * {@code data-uri} function). The paths are resolved by the Less file loader, so they are normalized and redirections
+ * are expanded. The graph is kept between compilations.
+ * </p>
+ * <p>
+ * When some files change, the {@link #recompile(Collection)} method compiles again only roots which depend on any of
+ * them. Changed paths are normalized by the file systems configured in the root options (once for all roots with
+ * equal file systems options), so relative and non-canonical paths of local files are supported. Files which did not
+ * exist during the last compilation (e.g. candidates from other include paths) are not tracked. Roots whose
+ * compilations have always failed are compiled again after every change. Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link IncrementalLessCompiler} compiler = new {@link #IncrementalLessCompiler(NativeLessCompiler) IncrementalLessCompiler}(new {@link PooledNativeLessCompiler}());
+ * for (NativeLessOptions options : roots) {
+ *     compiler.{@link #compile(NativeLessOptions) compile}(options);
+ * }
+ *
+ * // after a partial file has been changed
+ * compiler.{@link #recompile(Collection) recompile}(Collections.singleton("src/main/less/_variables.less"));
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class IncrementalLessCompiler {
+
+    private final NativeLessCompiler compiler;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<NativeLessOptions, Root> roots = new LinkedHashMap<>();
+    private final Map<String, Set<NativeLessOptions>> dependents = new HashMap<>();
+    private final Map<List<FileSystemOption>, FileSystems> fileSystems = new HashMap<>();
+
+    /**
+     * Constructs a new instance which uses a new {@link NativeLessCompiler}.
+     * @since 2.0.1
+     */
+    public IncrementalLessCompiler() {
+        this(new NativeLessCompiler());
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param compiler the compiler which compiles source files (cannot be {@code null}).
+     * @throws IllegalArgumentException if the compiler is {@code null}.
+     * @since 2.0.1
+     */
+    public IncrementalLessCompiler(final NativeLessCompiler compiler) {
+        if (compiler == null) {
+            throw new IllegalArgumentException("Native Less compiler cannot be null");
+        }
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns the compiler which compiles source files.
+     * @return the compiler.
+     * @since 2.0.1
+     */
+    public NativeLessCompiler getCompiler() {
+        return compiler;
+    }
+
+    /**
+     * Compiles a root source file and records its dependencies. The root is registered before the compilation. If the
+     * compilation fails, then the dependencies recorded during the previous compilation are kept, so the root is
+     * compiled again when any of them changes. A root which has never been compiled successfully has no known
+     * dependencies, so it is compiled again when any file changes.
+     * @param options the root options (cannot be {@code null}).
+     * @return the generated CSS code followed by a line separator or an empty string if the options contain an output
+     *         file.
+     * @throws IllegalArgumentException if the options is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution.
+     * @since 2.0.1
+     */
+    public String compile(final NativeLessOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        register(options);
+        final CompilationOutput output = compiler.compile(CompilationRequest.fromOptions(options));
+        lock.lock();
+        try {
+            // the root could be removed during the compilation
+            final Root root = register(options);
+            root.compiled = true;
+            setDependencies(options, root, output.getFiles().keySet());
+        } finally {
+            lock.unlock();
+        }
+        return NativeLessCompiler.toString(output);
+    }
+
+    /**
+     * Compiles again roots which depend on any of the changed files. Roots are compiled in the order of their first
+     * compilation.
+     * @param changedPaths the paths of the changed files (cannot be {@code null}).
+     * @return the map with the compiled roots and generated CSS codes.
+     * @throws IllegalArgumentException if the paths collection is {@code null}.
+     * @throws CompilerException if an error occurred during any compilation. The remaining roots are not compiled.
+     * @since 2.0.1
+     * @see #compile(NativeLessOptions)
+     */
+    public Map<NativeLessOptions, String> recompile(final Collection<String> changedPaths) {
+        final Map<NativeLessOptions, String> codes = new LinkedHashMap<>();
+        for (final NativeLessOptions options : getAffectedRoots(changedPaths)) {
+            codes.put(options, compile(options));
+        }
+        return codes;
+    }
+
+    /**
+     * Returns roots which depend on any of the changed files.
+     * @param changedPaths the paths of the changed files (cannot be {@code null}).
+     * @return the roots in the order of their first compilation. Roots which have never been compiled successfully are
+     *         always returned.
+     * @throws IllegalArgumentException if the paths collection is {@code null}.
+     * @since 2.0.1
+     */
+    public Set<NativeLessOptions> getAffectedRoots(final Collection<String> changedPaths) {
+        if (changedPaths == null) {
+            throw new IllegalArgumentException("Changed paths cannot be null");
+        }
+        final Set<String> paths = new HashSet<>(changedPaths);
+        paths.remove(null);
+        final List<FileSystems> systemsList;
+        lock.lock();
+        try {
+            systemsList = new ArrayList<>(fileSystems.values());
+        } finally {
+            lock.unlock();
+        }
+        // roots with equal file systems options normalize paths in the same way, the paths are normalized outside the
+        // lock, because file systems can access the network
+        final Map<FileSystems, Set<String>> normalizedPaths = new HashMap<>();
+        for (final FileSystems systems : systemsList) {
+            final Set<String> normalized = new HashSet<>();
+            for (final String path : paths) {
+                normalized.add(normalize(systems.instances, path));
+            }
+            normalizedPaths.put(systems, normalized);
+        }
+        lock.lock();
+        try {
+            final Set<NativeLessOptions> candidates = new HashSet<>();
+            for (final String path : paths) {
+                addDependents(candidates, path, null);
+            }
+            for (final Map.Entry<FileSystems, Set<String>> entry : normalizedPaths.entrySet()) {
+                for (final String path : entry.getValue()) {
+                    addDependents(candidates, path, entry.getKey());
+                }
+            }
+            final Set<NativeLessOptions> affected = new LinkedHashSet<>();
+            for (final Map.Entry<NativeLessOptions, Root> root : roots.entrySet()) {
+                final NativeLessOptions options = root.getKey();
+                if (!root.getValue().compiled || candidates.contains(options)) {
+                    affected.add(options);
+                }
+            }
+            return affected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns paths of the files fetched during the last successful compilation of a root.
+     * @param options the root options.
+     * @return the unmodifiable set of the normalized paths in the fetch order or an empty set if the root has not been
+     *         compiled.
+     * @since 2.0.1
+     */
+    public Set<String> getDependencies(final NativeLessOptions options) {
+        lock.lock();
+        try {
+            final Root root = roots.get(options);
+            return root != null ? Collections.unmodifiableSet(new LinkedHashSet<>(root.dependencies)) : Collections.<String>emptySet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns all compiled roots (including roots whose compilations have failed).
+     * @return the unmodifiable set of the roots in the order of their first compilation.
+     * @since 2.0.1
+     */
+    public Set<NativeLessOptions> getRoots() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(roots.keySet()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a root and its dependencies from the graph.
+     * @param options the root options.
+     * @since 2.0.1
+     */
+    public void remove(final NativeLessOptions options) {
+        lock.lock();
+        try {
+            final Root root = roots.remove(options);
+            if (root != null) {
+                setDependencies(options, root, Collections.<String>emptySet());
+                if (--root.fileSystems.roots == 0) {
+                    fileSystems.values().remove(root.fileSystems);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all roots from the graph.
+     * @since 2.0.1
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            roots.clear();
+            dependents.clear();
+            fileSystems.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setDependencies(final NativeLessOptions options, final Root root, final Set<String> dependencies) {
+        for (final String path : root.dependencies) {
+            final Set<NativeLessOptions> dependentRoots = dependents.get(path);
+            dependentRoots.remove(options);
+            if (dependentRoots.isEmpty()) {
+                dependents.remove(path);
+            }
+        }
+        root.dependencies = new LinkedHashSet<>(dependencies);
+        for (final String path : root.dependencies) {
+            Set<NativeLessOptions> dependentRoots = dependents.get(path);
+            if (dependentRoots == null) {
+                dependentRoots = new HashSet<>();
+                dependents.put(path, dependentRoots);
+            }
+            dependentRoots.add(options);
+        }
+    }
+
+    private Root register(final NativeLessOptions options) {
+        lock.lock();
+        try {
+            Root root = roots.get(options);
+            if (root == null) {
+                root = new Root(getFileSystems(options));
+                roots.put(options, root);
+            }
+            return root;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileSystems getFileSystems(final NativeLessOptions options) {
+        final List<FileSystemOption> key = options.getLessOptionsReference().getFileSystems();
+        FileSystems systems = fileSystems.get(key);
+        if (systems == null) {
+            final PreparedLessOptions preparedOptions = options.getPreparedOptions() != null ? options.getPreparedOptions()
+                    : new PreparedLessOptions(options.getLessOptionsReference());
+            systems = new FileSystems(preparedOptions.getFileSystems());
+            fileSystems.put(key, systems);
+        }
+        ++systems.roots;
+        return systems;
+    }
+
+    // adds only roots which use the file systems when they are specified
+    private void addDependents(final Set<NativeLessOptions> affected, final String path, final FileSystems systems) {
+        final Set<NativeLessOptions> dependentRoots = dependents.get(path);
+        if (dependentRoots == null) {
+            return;
+        }
+        for (final NativeLessOptions options : dependentRoots) {
+            if (systems == null || roots.get(options).fileSystems == systems) {
+                affected.add(options);
+            }
+        }
+    }
+
+    private static String normalize(final List<FileSystem> fileSystems, final String path) {
+        for (final FileSystem fileSystem : fileSystems) {
+            try {
+                if (fileSystem.isSupported(path)) {
+                    return fileSystem.expandRedirection(fileSystem.normalize(path));
+                }
+            } catch (final Exception e) {
+                // the path cannot be normalized, so it is compared directly
+                return path;
+            }
+        }
+        return path;
+    }
+
+    private static final class Root {
+
+        private final FileSystems fileSystems;
+        private Set<String> dependencies = Collections.emptySet();
+        private boolean compiled;
+
+        Root(final FileSystems fileSystems) {
+            this.fileSystems = fileSystems;
+        }
+    }
+
+    private static final class FileSystems {
+
+        private final List<FileSystem> instances;
+        private int roots;
+
+        FileSystems(final List<FileSystem> instances) {
+            this.instances = new ArrayList<>(instances);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Future of a task run by an executor which interrupts the thread running the task when it is
+ * {@link #cancel(boolean) cancelled} with the {@code mayInterruptIfRunning} flag (the {@link CompletableFuture} ignores
+ * the flag). The interrupt never leaks to the next task run by the same thread.
+ * @param <T> the type of the result.
+ * @since 2.0.1
+ */
+final class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+    private final Object mutex = new Object();
+    private Thread runner;
+
+    private InterruptibleFuture() {
+        // do nothing
+    }
+
+    static <T> InterruptibleFuture<T> submit(final Supplier<T> supplier, final Executor executor) {
+        final InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        try {
+            executor.execute(() -> future.run(supplier));
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    void run(final Supplier<T> supplier) {
+        synchronized (mutex) {
+            if (isDone()) {
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        try {
+            complete(supplier.get());
+        } catch (final Throwable e) {
+            completeExceptionally(e);
+        } finally {
+            synchronized (mutex) {
+                runner = null;
+                if (isCancelled()) {
+                    // clears the interrupt set by cancel method
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && mayInterruptIfRunning) {
+            synchronized (mutex) {
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+        }
+        return cancelled;
+    }
+}
@@ -16,6 +16,13 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import biz.gabrys.lesscss.compiler2.io.FileUtils;
 import biz.gabrys.lesscss.compiler2.io.SystemDefaultTemporaryFileFactory;
@@ -134,6 +141,22 @@ import biz.gabrys.lesscss.compiler2.util.StringUtils;
  * 
  * // compile source file and generate source map (save it in output.css.map file)
  * compiler.{@link #compileWithSourceMap(File, File, LessOptions) compileWithSourceMap}(new File("source.less"), new File("output.css"), options);
+ *
+ * // compile many source files which share imported files
+ * List&lt;CompileJob&gt; jobs = Arrays.asList(new {@link CompileJob}(new File("theme1.less"), options), new {@link CompileJob}(new File("theme2.less"), options));
+ * List&lt;CompileJobResult&gt; results = compiler.{@link #compileAll(Collection) compileAll}(jobs);
+ *
+ * // compile many source files in parallel (the pooled compiler provides many engines)
+ * compiler = new {@link #LessCompiler(NativeLessCompiler) LessCompiler}(new {@link PooledNativeLessCompiler#PooledNativeLessCompiler() PooledNativeLessCompiler}());
+ * results = compiler.{@link #compileAll(Collection, int) compileAll}(jobs, Runtime.getRuntime().availableProcessors());
+ *
+ * // compile source file in the background and stop the compilation if it takes too long
+ * CompletableFuture&lt;String&gt; future = compiler.{@link #compileAsync(File, LessOptions, Executor) compileAsync}(new File("source.less"), options, executor);
+ * try {
+ *     cssCode = future.get(5, TimeUnit.SECONDS);
+ * } catch (TimeoutException e) {
+ *     future.cancel(true);
+ * }
  * </pre>
  * 
  * @since 2.0.0
@@ -153,28 +176,39 @@ public class LessCompiler {
     }
 
     /**
-     * Constructs a new instance.
+     * Constructs a new instance. The instance passes Less code given by string parameter directly to the native
+     * compiler (see {@link NativeLessOptionsBuilder#inputCode(CharSequence)}), so relative {@code @import} operations
+     * are resolved against the current working directory.
      * @param compiler the native Less compiler used to compile source files (cannot be {@code null}).
      * @throws IllegalArgumentException if the native compiler is {@code null}.
      * @since 2.0.0
      */
     public LessCompiler(final NativeLessCompiler compiler) {
-        this(compiler, new SystemDefaultTemporaryFileFactory());
+        if (compiler == null) {
+            throw new IllegalArgumentException("Native Less compiler cannot be null");
+        }
+        this.compiler = compiler;
+        fileFactory = null;
     }
 
     /**
-     * Constructs a new instance.
+     * Constructs a new instance. The instance saves Less code given by string parameter in temporary files created by
+     * the factory and compiles them, so relative {@code @import} operations are resolved against the directories of
+     * the temporary files.
      * @param fileFactory the file factory used to create source files when Less code is passed by string parameter
      *            (cannot be {@code null}).
      * @throws IllegalArgumentException if the file factory is {@code null}.
      * @since 2.0.0
+     * @see SystemDefaultTemporaryFileFactory
      */
     public LessCompiler(final TemporaryFileFactory fileFactory) {
         this(new NativeLessCompiler(), fileFactory);
     }
 
     /**
-     * Constructs a new instance.
+     * Constructs a new instance. The instance saves Less code given by string parameter in temporary files created by
+     * the factory and compiles them, so relative {@code @import} operations are resolved against the directories of
+     * the temporary files.
      * @param compiler the native Less compiler used to compile source files (cannot be {@code null}).
      * @param fileFactory the file factory used to create source files when Less code is passed by string parameter
      *            (cannot be {@code null}).
@@ -206,13 +240,8 @@ public class LessCompiler {
      */
     public String compileCode(final CharSequence code) {
         validateSourceCode(code);
-        final String encoding = getDefaultPlatformEncoding();
-        final File sourceFile = createTemporaryFileWithCode(code, encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
-        builder.inputFile(sourceFile.getAbsolutePath()).encoding(encoding);
-        final String css = compiler.execute(builder.build());
-        deleteFile(sourceFile);
-        return css;
+        return compileCode(code, builder, getDefaultPlatformEncoding());
     }
 
     /**
@@ -231,13 +260,9 @@ public class LessCompiler {
     public String compileCode(final CharSequence code, final LessOptions options) {
         validateSourceCode(code);
         validateOptions(options);
-        final String encoding = StringUtils.defaultString(options.getEncoding(), getDefaultPlatformEncoding());
-        final File sourceFile = createTemporaryFileWithCode(code, encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
-        builder.inputFile(sourceFile.getAbsolutePath()).options(options).encoding(encoding);
-        final String css = compiler.execute(builder.build());
-        deleteFile(sourceFile);
-        return css;
+        builder.options(options);
+        return compileCode(code, builder, StringUtils.defaultString(options.getEncoding(), getDefaultPlatformEncoding()));
     }
 
     /**
@@ -257,7 +282,7 @@ public class LessCompiler {
         validateInputPath(input);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -277,7 +302,7 @@ public class LessCompiler {
         validateInputFile(input);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath());
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -299,7 +324,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).encoding(encoding.name());
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -321,7 +346,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).encoding(encoding.name());
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -342,7 +367,7 @@ public class LessCompiler {
         validateOutputFile(output);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -363,7 +388,7 @@ public class LessCompiler {
         validateOutputFile(output);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -386,7 +411,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).encoding(encoding.name());
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -409,7 +434,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).encoding(encoding.name());
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -431,7 +456,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).options(options);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -453,7 +478,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).options(options);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -477,7 +502,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -500,7 +525,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -517,13 +542,9 @@ public class LessCompiler {
      */
     public String compileCodeAndCompress(final CharSequence code) {
         validateSourceCode(code);
-        final String encoding = getDefaultPlatformEncoding();
-        final File sourceFile = createTemporaryFileWithCode(code, encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
-        builder.inputFile(sourceFile.getAbsolutePath()).compress(true).encoding(encoding);
-        final String css = compiler.execute(builder.build());
-        deleteFile(sourceFile);
-        return css;
+        builder.compress(true);
+        return compileCode(code, builder, getDefaultPlatformEncoding());
     }
 
     /**
@@ -543,7 +564,7 @@ public class LessCompiler {
         validateInputPath(input);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).compress(true);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -563,7 +584,7 @@ public class LessCompiler {
         validateInputFile(input);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).compress(true);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -585,7 +606,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).encoding(encoding.name()).compress(true);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -607,7 +628,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).encoding(encoding.name()).compress(true);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -628,7 +649,7 @@ public class LessCompiler {
         validateOutputFile(output);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).compress(true);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -649,7 +670,7 @@ public class LessCompiler {
         validateOutputFile(output);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).compress(true);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -673,7 +694,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).encoding(encoding.name()).compress(true);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -696,7 +717,7 @@ public class LessCompiler {
         validateEncoding(encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).encoding(encoding.name()).compress(true);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -715,13 +736,9 @@ public class LessCompiler {
     public String compileCodeWithInlineSourceMap(final CharSequence code, final LessOptions options) {
         validateSourceCode(code);
         validateOptions(options);
-        final String encoding = StringUtils.defaultString(options.getEncoding(), getDefaultPlatformEncoding());
-        final File sourceFile = createTemporaryFileWithCode(code, encoding);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
-        builder.inputFile(sourceFile.getAbsolutePath()).sourceMapInline(true).options(options).encoding(encoding);
-        final String css = compiler.execute(builder.build());
-        deleteFile(sourceFile);
-        return css;
+        builder.sourceMapInline(true).options(options);
+        return compileCode(code, builder, StringUtils.defaultString(options.getEncoding(), getDefaultPlatformEncoding()));
     }
 
     /**
@@ -744,7 +761,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).sourceMapInline(true).options(options);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -766,7 +783,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).sourceMapInline(true).options(options);
-        return compiler.execute(builder.build());
+        return compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -790,7 +807,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).sourceMapInline(true).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -814,7 +831,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).sourceMapInline(true).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -839,7 +856,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).sourceMapDefault(true).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -864,7 +881,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).sourceMapDefault(true).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -890,7 +907,7 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input).outputFile(output).sourceMapFile(outputSourceMap).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
     }
 
     /**
@@ -916,7 +933,273 @@ public class LessCompiler {
         validateOptions(options);
         final NativeLessOptionsBuilder builder = createOptionsBuilder();
         builder.inputFile(input.getAbsolutePath()).outputFile(output).sourceMapFile(outputSourceMap).options(options);
-        compiler.execute(builder.build());
+        compiler.execute(builder.buildOptions());
+    }
+
+    /**
+     * Compiles a Less source code with custom configuration options and returns the structured result: the CSS code,
+     * files imported by the code and durations of the compilation phases.
+     * @param code the Less code (cannot be {@code null}).
+     * @param options the configuration options (cannot be {@code null}).
+     * @return the compilation result.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if any &#64;import operation point to non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution.
+     * @since 2.0.1
+     */
+    public CompilationResult compileCodeWithResult(final CharSequence code, final LessOptions options) {
+        validateSourceCode(code);
+        validateOptions(options);
+        final String encoding = StringUtils.defaultString(options.getEncoding(), getDefaultPlatformEncoding());
+        final NativeLessOptionsBuilder builder = createOptionsBuilder();
+        builder.options(options).encoding(encoding);
+        if (fileFactory == null) {
+            return compiler.executeForResult(builder.inputCode(code).buildOptions());
+        }
+        final File sourceFile = createTemporaryFileWithCode(code, encoding);
+        builder.inputFile(sourceFile.getAbsolutePath());
+        final CompilationResult result = compiler.executeForResult(builder.buildOptions());
+        deleteFile(sourceFile);
+        return result;
+    }
+
+    /**
+     * Compiles a Less source file with custom configuration options and returns the structured result: the CSS code,
+     * files imported by the source file and durations of the compilation phases.
+     * @param input the source file (cannot be {@code null} and must exist).
+     * @param options the configuration options (cannot be {@code null}).
+     * @return the compilation result.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution.
+     * @since 2.0.1
+     */
+    public CompilationResult compileWithResult(final File input, final LessOptions options) {
+        validateInputFile(input);
+        validateOptions(options);
+        final NativeLessOptionsBuilder builder = createOptionsBuilder();
+        builder.inputFile(input.getAbsolutePath()).options(options);
+        return compiler.executeForResult(builder.buildOptions());
+    }
+
+    /**
+     * Compiles a Less source file with custom configuration options to a CSS code in the background using the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     * @param input the source file (cannot be {@code null} and must exist).
+     * @param options the configuration options (cannot be {@code null}).
+     * @return the future of the CSS code.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     * @see #compileAsync(File, LessOptions, Executor)
+     */
+    public CompletableFuture<String> compileAsync(final File input, final LessOptions options) {
+        return compileAsync(input, options, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compiles a Less source file with custom configuration options to a CSS code in the background using the
+     * executor. The future completes exceptionally with the same exceptions which are thrown by the
+     * {@link #compile(File, LessOptions)} method. Cancelling the future with the {@code mayInterruptIfRunning} flag
+     * interrupts the thread which runs the compilation, so the compiler stops it and releases the engine (see
+     * {@link LessContextFactory}). Futures created by the dependent stages do not propagate the cancellation, so
+     * cancel the returned future.
+     * @param input the source file (cannot be {@code null} and must exist).
+     * @param options the configuration options (cannot be {@code null}).
+     * @param executor the executor (cannot be {@code null}).
+     * @return the future of the CSS code.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public CompletableFuture<String> compileAsync(final File input, final LessOptions options, final Executor executor) {
+        validateInputFile(input);
+        validateOptions(options);
+        validateExecutor(executor);
+        return InterruptibleFuture.submit(() -> compile(input, options), executor);
+    }
+
+    /**
+     * Compiles a Less source code with custom configuration options to a CSS code in the background using the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     * @param code the Less code (cannot be {@code null}).
+     * @param options the configuration options (cannot be {@code null}).
+     * @return the future of the CSS code.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     * @see #compileCodeAsync(CharSequence, LessOptions, Executor)
+     */
+    public CompletableFuture<String> compileCodeAsync(final CharSequence code, final LessOptions options) {
+        return compileCodeAsync(code, options, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compiles a Less source code with custom configuration options to a CSS code in the background using the
+     * executor. The future completes exceptionally with the same exceptions which are thrown by the
+     * {@link #compileCode(CharSequence, LessOptions)} method. Cancelling the future with the
+     * {@code mayInterruptIfRunning} flag interrupts the thread which runs the compilation (see
+     * {@link #compileAsync(File, LessOptions, Executor)}).
+     * @param code the Less code (cannot be {@code null}).
+     * @param options the configuration options (cannot be {@code null}).
+     * @param executor the executor (cannot be {@code null}).
+     * @return the future of the CSS code.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public CompletableFuture<String> compileCodeAsync(final CharSequence code, final LessOptions options, final Executor executor) {
+        validateSourceCode(code);
+        validateOptions(options);
+        validateExecutor(executor);
+        final String codeCopy = code.toString();
+        return InterruptibleFuture.submit(() -> compileCode(codeCopy, options), executor);
+    }
+
+    /**
+     * Compiles many source files in a single batch. Files imported by many source files are normalized, checked and
+     * fetched only once per batch (source files which use the same file system options share results). An error of any
+     * job does not abort the batch, it is returned in the job result.
+     * @param jobs the jobs (cannot be {@code null} and contain {@code null} elements).
+     * @return the results in the order of the jobs.
+     * @throws IllegalArgumentException if the jobs collection is {@code null} or contains {@code null} element.
+     * @since 2.0.1
+     */
+    public List<CompileJobResult> compileAll(final Collection<CompileJob> jobs) {
+        validateJobs(jobs);
+        final BatchImportCache cache = new BatchImportCache();
+        final List<CompileJobResult> results = new ArrayList<>(jobs.size());
+        for (final CompileJob job : jobs) {
+            results.add(compile(job, cache, compiler));
+        }
+        return results;
+    }
+
+    /**
+     * Compiles many source files in a single batch using the given executor. Jobs are submitted one by one, so idle
+     * threads take the next waiting job and a single large source file does not block the remaining ones. The
+     * {@link NativeLessCompiler} compiles source files one by one, so use the {@link PooledNativeLessCompiler} (see
+     * {@link #LessCompiler(NativeLessCompiler)}) to compile them in parallel. The
+     * {@link CompilerExecutors#newBatchExecutor()} creates an executor which uses virtual threads on Java 21 and newer,
+     * so jobs waiting for an engine or for imported files do not block platform threads. Files imported by many source
+     * files are normalized, checked and fetched only once per batch. An error of any job does not abort the batch, it
+     * is returned in the job result (runtime exceptions other than {@link CompilerException} are wrapped in it).
+     * @param jobs the jobs (cannot be {@code null} and contain {@code null} elements).
+     * @param executor the executor which runs the jobs (cannot be {@code null}).
+     * @return the results in the order of the jobs.
+     * @throws IllegalArgumentException if the jobs collection is {@code null} or contains {@code null} element or the
+     *             executor is {@code null}.
+     * @since 2.0.1
+     */
+    public List<CompileJobResult> compileAll(final Collection<CompileJob> jobs, final Executor executor) {
+        return compileAll(jobs, executor, compiler);
+    }
+
+    private List<CompileJobResult> compileAll(final Collection<CompileJob> jobs, final Executor executor,
+            final NativeLessCompiler batchCompiler) {
+        validateJobs(jobs);
+        validateExecutor(executor);
+        final BatchImportCache cache = new BatchImportCache();
+        final List<CompletableFuture<CompileJobResult>> futures = new ArrayList<>(jobs.size());
+        for (final CompileJob job : jobs) {
+            futures.add(CompletableFuture.supplyAsync(() -> compile(job, cache, batchCompiler), executor));
+        }
+        final List<CompileJobResult> results = new ArrayList<>(futures.size());
+        for (final CompletableFuture<CompileJobResult> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    /**
+     * Compiles many source files in a single batch using a new work-stealing {@link ForkJoinPool} with the given
+     * parallelism. The pool is shut down when the batch ends. If the compiler is a single {@link NativeLessCompiler}
+     * (see {@link #LessCompiler()}), which compiles source files one by one, then the batch uses a temporary
+     * {@link PooledNativeLessCompiler} with up to the parallelism engines: the first one is the compiler and the other
+     * ones are created on demand with its {@link NativeLessCompiler#getEngineOptions() engine options}. Other compilers
+     * (e.g. the {@link PooledNativeLessCompiler}) are used directly. See {@link #compileAll(Collection, Executor)} for
+     * details.
+     * @param jobs the jobs (cannot be {@code null} and contain {@code null} elements).
+     * @param parallelism the maximum number of jobs compiled at the same time (must be positive).
+     * @return the results in the order of the jobs.
+     * @throws IllegalArgumentException if the jobs collection is {@code null} or contains {@code null} element or the
+     *             parallelism is not positive.
+     * @since 2.0.1
+     */
+    public List<CompileJobResult> compileAll(final Collection<CompileJob> jobs, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        // a single engine compiles under a lock, so parallel jobs would only wait for it
+        final NativeLessCompiler batchCompiler = parallelism > 1 && compiler.getClass() == NativeLessCompiler.class
+                ? new BatchNativeLessCompiler(compiler, parallelism) : compiler;
+        final ForkJoinPool pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        try {
+            return compileAll(jobs, pool, batchCompiler);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static CompileJobResult join(final CompletableFuture<CompileJobResult> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    CompileJobResult compile(final CompileJob job, final BatchImportCache cache, final NativeLessCompiler batchCompiler) {
+        try {
+            final NativeLessOptionsBuilder builder = createOptionsBuilder();
+            builder.preparedOptions(cache.getPreparedOptions(job.getOptionsReference())).inputFile(job.getInput().getAbsolutePath())
+                    .outputFile(job.getOutput());
+            return new CompileJobResult(job, batchCompiler.executeForResult(builder.buildOptions()), null);
+        } catch (final CompilerException e) {
+            return new CompileJobResult(job, null, e);
+        } catch (final RuntimeException e) {
+            // e.g. a custom file system or compiler has failed, the remaining jobs are still compiled
+            return new CompileJobResult(job, null, new CompilerException(e));
+        }
+    }
+
+    String compileCode(final CharSequence code, final NativeLessOptionsBuilder builder, final String encoding) {
+        builder.encoding(encoding);
+        if (fileFactory == null) {
+            builder.inputCode(code);
+            return compiler.execute(builder.buildOptions());
+        }
+        final File sourceFile = createTemporaryFileWithCode(code, encoding);
+        builder.inputFile(sourceFile.getAbsolutePath());
+        final String css = compiler.execute(builder.buildOptions());
+        deleteFile(sourceFile);
+        return css;
+    }
+
+    void validateJobs(final Collection<CompileJob> jobs) {
+        if (jobs == null) {
+            throw new IllegalArgumentException("Jobs cannot be null");
+        }
+        for (final CompileJob job : jobs) {
+            if (job == null) {
+                throw new IllegalArgumentException("Jobs cannot contain null element");
+            }
+        }
+    }
+
+    void validateExecutor(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
     }
 
     void validateSourceCode(final CharSequence code) {
@@ -997,4 +1280,25 @@ public class LessCompiler {
             throw new CompilerException("Cannot delete the temporary file", e);
         }
     }
+
+    // reuses the initialized engine of the facade, so a batch creates only the missing engines
+    private static final class BatchNativeLessCompiler extends PooledNativeLessCompiler {
+
+        private NativeLessCompiler engine;
+
+        BatchNativeLessCompiler(final NativeLessCompiler engine, final int parallelism) {
+            super(0, parallelism, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT, engine.getEngineOptions());
+            this.engine = engine;
+        }
+
+        @Override
+        protected synchronized NativeLessCompiler createEngine() {
+            if (engine == null) {
+                return super.createEngine();
+            }
+            final NativeLessCompiler firstEngine = engine;
+            engine = null;
+            return firstEngine;
+        }
+    }
 }
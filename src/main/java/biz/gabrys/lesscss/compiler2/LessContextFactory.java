@@ -0,0 +1,82 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * <p>
+ * Default factory of the Rhino contexts used by the native Less compilers. It enables the
+ * {@link Context#FEATURE_DYNAMIC_SCOPE dynamic scope} feature required by the {@link SharedScopeNativeLessCompiler}
+ * and stops a running compilation when the compiling thread is interrupted or the compilation exceeds its
+ * {@link NativeLessOptions#getTimeout() timeout} (see {@link #observeInstructionCount(Context, int)}).
+ * </p>
+ * <p>
+ * Extend this class when you need a custom {@link ContextFactory}, e.g. to register listeners or change other
+ * features, and pass it to the compiler via {@link EngineOptionsBuilder#contextFactory(ContextFactory)}.
+ * </p>
+ * @since 2.0.1
+ * @see EngineOptions
+ */
+public class LessContextFactory extends ContextFactory {
+
+    private static final Object DEADLINE_KEY = new Object();
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public LessContextFactory() {
+        // do nothing
+    }
+
+    /**
+     * {@inheritDoc} Enables the {@link Context#FEATURE_DYNAMIC_SCOPE dynamic scope} feature.
+     * @since 2.0.1
+     */
+    @Override
+    protected boolean hasFeature(final Context context, final int featureIndex) {
+        if (featureIndex == Context.FEATURE_DYNAMIC_SCOPE) {
+            return true;
+        }
+        return super.hasFeature(context, featureIndex);
+    }
+
+    /**
+     * {@inheritDoc} Throws the {@link CompilationInterruptedException} when the current thread is interrupted and the
+     * {@link CompilationTimeoutException} when the compilation deadline has passed. The native Less compilers call this
+     * method every {@link NativeLessCompiler#INSTRUCTION_OBSERVER_THRESHOLD} executed instructions.
+     * @throws CompilationInterruptedException if the current thread is interrupted.
+     * @throws CompilationTimeoutException if the compilation deadline has passed.
+     * @since 2.0.1
+     */
+    @Override
+    protected void observeInstructionCount(final Context context, final int instructionCount) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CompilationInterruptedException("Compilation has been interrupted");
+        }
+        final Object deadline = context.getThreadLocal(DEADLINE_KEY);
+        if (deadline != null && System.nanoTime() - (Long) deadline > 0) {
+            throw new CompilationTimeoutException("Compilation has exceeded its timeout");
+        }
+    }
+
+    static void setDeadline(final Context context, final CompilationRequest request) {
+        if (request.hasDeadline()) {
+            context.putThreadLocal(DEADLINE_KEY, request.getDeadline());
+        } else {
+            context.removeThreadLocal(DEADLINE_KEY);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Represents the bundled Less scripts ({@code less-rhino-1.7.5.js} and {@code lessc-rhino-1.7.5.js}). The scripts are
+ * compiled into JVM bytecode by the Rhino {@code jsc} tool during the build and loaded as classes. If the classes are
+ * unavailable, disabled, the context generates debug information or runs in the interpreted mode (optimization level
+ * {@code -1}), then the scripts are compiled from sources.
+ * @since 2.0.1
+ */
+final class LessLibrary {
+
+    private static final String PACKAGE = "biz.gabrys.lesscss.compiler2.";
+    private static final String[] PRECOMPILED_SCRIPTS = { PACKAGE + "LessRhinoScript", PACKAGE + "LesscRhinoScript" };
+
+    private static final String DIRECTORY = "/biz/gabrys/lesscss/compiler2/";
+    private static final String[] SOURCE_SCRIPTS = { DIRECTORY + "less-rhino-1.7.5.js", DIRECTORY + "lessc-rhino-1.7.5.js" };
+
+    private final List<Script> scripts;
+    private final boolean precompiled;
+
+    private LessLibrary(final List<Script> scripts, final boolean precompiled) {
+        this.scripts = Collections.unmodifiableList(scripts);
+        this.precompiled = precompiled;
+    }
+
+    static LessLibrary load(final Context context, final boolean usePrecompiledScripts) throws IOException {
+        if (usePrecompiledScripts && context.getOptimizationLevel() >= 0 && !context.isGeneratingDebug()) {
+            final List<Script> scripts = loadPrecompiledScripts();
+            if (scripts != null) {
+                return new LessLibrary(scripts, true);
+            }
+        }
+        return new LessLibrary(compileSourceScripts(context), false);
+    }
+
+    boolean isPrecompiled() {
+        return precompiled;
+    }
+
+    void execute(final Context context, final Scriptable scope) {
+        for (final Script script : scripts) {
+            script.exec(context, scope);
+        }
+    }
+
+    private static List<Script> loadPrecompiledScripts() {
+        final List<Script> scripts = new ArrayList<>(PRECOMPILED_SCRIPTS.length);
+        try {
+            for (final String className : PRECOMPILED_SCRIPTS) {
+                final Class<?> scriptClass = Class.forName(className, true, LessLibrary.class.getClassLoader());
+                scripts.add(scriptClass.asSubclass(Script.class).newInstance());
+            }
+        } catch (final ReflectiveOperationException | ClassCastException | LinkageError e) {
+            return null;
+        }
+        return scripts;
+    }
+
+    private static List<Script> compileSourceScripts(final Context context) throws IOException {
+        final List<Script> scripts = new ArrayList<>(SOURCE_SCRIPTS.length);
+        for (final String path : SOURCE_SCRIPTS) {
+            final URL file = LessLibrary.class.getResource(path);
+            try (final InputStream inputStream = file.openConnection().getInputStream();
+                    final InputStreamReader streamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                scripts.add(context.compileReader(streamReader, file.toString(), 1, null));
+            }
+        }
+        return scripts;
+    }
+}
@@ -12,17 +12,23 @@
  */
 package biz.gabrys.lesscss.compiler2;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.io.SequenceInputStream;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +54,15 @@ import org.mozilla.javascript.tools.shell.Global;
  * <a href="https://github.com/marceloverdijk">Marcel Overdijk</a>.
  * </p>
  * <p>
+ * The compiler is thread safe, but it executes only one compilation at a time. Use the
+ * {@link PooledNativeLessCompiler} or the {@link SharedScopeNativeLessCompiler} to compile multiple source files
+ * concurrently.
+ * </p>
+ * <p>
+ * A long-lived compiler can replace its JavaScript scope to release objects attached to it by previous compilations,
+ * see the <a href="EngineOptions.html#recycling">recycling limits</a> of the {@link EngineOptions}.
+ * </p>
+ * <p>
  * Example code:
  * </p>
  * 
@@ -62,25 +77,193 @@ import org.mozilla.javascript.tools.shell.Global;
  * // compile source file with enabled CSS code compression
  * Collection&lt;Object&gt; options = new {@link NativeLessOptionsBuilder}().inputFile(input).compress(true).build();
  * String cssCompressedCode = compiler.{@link #execute(Collection) execute}(options);
+ * 
+ * // compile source file using immutable options object (faster, can be reused)
+ * {@link NativeLessOptions} nativeOptions = new {@link NativeLessOptionsBuilder}().inputFile(input).{@link NativeLessOptionsBuilder#buildOptions() buildOptions}();
+ * String css = compiler.{@link #execute(NativeLessOptions) execute}(nativeOptions);
+ * 
+ * // compile source file and write CSS code directly to the stream
+ * compiler.{@link #execute(Collection, OutputStream) execute}(options, response.getOutputStream());
+ * 
+ * // initialize and warm up compiler in the background, report readiness when the future is done
+ * CompletableFuture&lt;Void&gt; ready = compiler.{@link #warmUpAsync(int) warmUpAsync}(20);
  * </pre>
  * 
  * @since 2.0.0
  * @see NativeLessOptionsBuilder
+ * @see PooledNativeLessCompiler
+ * @see SharedScopeNativeLessCompiler
  */
 public class NativeLessCompiler {
 
-    private final Object mutex = new Object();
+    /**
+     * The number of executed JavaScript instructions after which the engine calls
+     * {@link org.mozilla.javascript.ContextFactory#observeInstructionCount(Context, int)} ({@value}). The
+     * {@link LessContextFactory} uses it to stop compilations on interrupted threads.
+     * @since 2.0.1
+     */
+    public static final int INSTRUCTION_OBSERVER_THRESHOLD = 10000;
+
+    static final String LESS_COMPILER_OBJECT = "gabrysLessCompiler";
+
+    // the number of compilations between the estimations of the scope size
+    static final int SIZE_SAMPLING_INTERVAL = 8;
+    private static final String WARM_UP_FILE = "classpath://biz/gabrys/lesscss/compiler2/warm-up.less";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final EngineOptions engineOptions;
 
     private Scriptable scope;
-    private ByteArrayOutputStream console;
-    private Function compiler;
+    private volatile LessLibrary library;
+
+    // the recycling state is guarded by the lock, except the fields changed by the recycler thread
+    private int compilations;
+    private volatile boolean recycling;
+    private volatile Scriptable replacementScope;
+    private ScheduledFuture<?> idleRecycling;
 
     /**
      * Constructs a new instance.
      * @since 2.0.0
      */
     public NativeLessCompiler() {
-        // do nothing
+        this(new EngineOptions());
+    }
+
+    /**
+     * Constructs a new instance with custom engine options.
+     * @param engineOptions the engine options (cannot be {@code null}).
+     * @throws IllegalArgumentException if the engine options is {@code null}.
+     * @since 2.0.1
+     */
+    public NativeLessCompiler(final EngineOptions engineOptions) {
+        if (engineOptions == null) {
+            throw new IllegalArgumentException("Engine options cannot be null");
+        }
+        this.engineOptions = new EngineOptions(engineOptions);
+    }
+
+    /**
+     * Returns a copy of the engine options used by the compiler.
+     * @return the engine options.
+     * @since 2.0.1
+     */
+    public EngineOptions getEngineOptions() {
+        return new EngineOptions(engineOptions);
+    }
+
+    /**
+     * Initializes the compiler if it has not been initialized yet. Otherwise the compiler is initialized during the
+     * first {@link #execute(Collection) execution}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @since 2.0.1
+     */
+    public void initialize() {
+        lock.lock();
+        try {
+            if (library == null) {
+                initializeEngine();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the compiler has been initialized.
+     * @return {@code true} whether the compiler has been initialized, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isInitialized() {
+        return library != null;
+    }
+
+    /**
+     * Initializes the compiler in the background using the {@link ForkJoinPool#commonPool() common pool}.
+     * @return the future completed when the compiler is initialized (completes exceptionally with the
+     *         {@link InitializationException} if an error occurred).
+     * @since 2.0.1
+     * @see #initialize()
+     */
+    public CompletableFuture<Void> initializeAsync() {
+        return initializeAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Initializes the compiler in the background using the executor.
+     * @param executor the executor (cannot be {@code null}).
+     * @return the future completed when the compiler is initialized (completes exceptionally with the
+     *         {@link InitializationException} if an error occurred).
+     * @throws IllegalArgumentException if the executor is {@code null}.
+     * @since 2.0.1
+     * @see #initialize()
+     */
+    public CompletableFuture<Void> initializeAsync(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        return CompletableFuture.runAsync(this::initialize, executor);
+    }
+
+    /**
+     * Initializes the compiler (if needed) and compiles a bundled representative stylesheet multiple times, so the JVM
+     * optimizes the compilation code before the first real compilation.
+     * @param iterations the number of compilations (cannot be negative).
+     * @throws IllegalArgumentException if the number of iterations is negative.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws CompilerException if an error occurred during compilation.
+     * @since 2.0.1
+     */
+    public void warmUp(final int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Iterations cannot be negative");
+        }
+        initialize();
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(WARM_UP_FILE)
+                .fileSystems(new FileSystemOptionsBuilder().appendClassPath().build()).compress(true).buildOptions();
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(NativeLessCompiler.class.getClassLoader());
+        try {
+            for (int i = 0; i < iterations; ++i) {
+                execute(options);
+            }
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Warms up the compiler in the background using the {@link ForkJoinPool#commonPool() common pool}. Use the returned
+     * future e.g. to report the application readiness.
+     * @param iterations the number of compilations (cannot be negative).
+     * @return the future completed when the warm-up is done.
+     * @throws IllegalArgumentException if the number of iterations is negative.
+     * @since 2.0.1
+     * @see #warmUp(int)
+     */
+    public CompletableFuture<Void> warmUpAsync(final int iterations) {
+        return warmUpAsync(iterations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Warms up the compiler in the background using the executor. Use the returned future e.g. to report the
+     * application readiness.
+     * @param iterations the number of compilations (cannot be negative).
+     * @param executor the executor (cannot be {@code null}).
+     * @return the future completed when the warm-up is done.
+     * @throws IllegalArgumentException if the number of iterations is negative or the executor is {@code null}.
+     * @since 2.0.1
+     * @see #warmUp(int)
+     */
+    public CompletableFuture<Void> warmUpAsync(final int iterations, final Executor executor) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Iterations cannot be negative");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        return CompletableFuture.runAsync(() -> warmUp(iterations), executor);
     }
 
     /**
@@ -93,7 +276,8 @@ public class NativeLessCompiler {
      * <ul>
      * <li>allow importing from insecure HTTPS hosts ({@code --insecure})</li>
      * <li>lint ({@code -l} or {@code --lint})</li>
-     * <li>makefile ({@code -M} or {@code --depends})</li>
+     * <li>makefile ({@code -M} or {@code --depends}) - use the {@link #executeForResult(NativeLessOptions)} method to
+     * get dependencies of the source file</li>
      * <li>no color ({@code --no-color})</li>
      * <li>plugins ({@code --plugin})</li>
      * <li>version ({@code -v} or {@code --version})</li>
@@ -111,7 +295,8 @@ public class NativeLessCompiler {
      * This option could be specified multiple times (the order matters)</li>
      * </ul>
      * @param options the compiler options (cannot be {@code null}).
-     * @return the compiler output (depends on options it can be e.g. CSS code, logs).
+     * @return the generated CSS code followed by a line separator or an empty string if the options contain an output
+     *         file.
      * @throws InitializationException if an error occurred during compiler initialization.
      * @throws ConfigurationException if the compiler is configured incorrectly.
      * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
@@ -122,57 +307,318 @@ public class NativeLessCompiler {
      * @see NativeLessOptionsBuilder
      */
     public String execute(final Collection<?> options) {
-        synchronized (mutex) {
-            if (compiler == null) {
-                initialize();
+        return toString(compile(CompilationRequest.fromArguments(options)));
+    }
+
+    /**
+     * Executes the compiler using the immutable options object. The object is passed directly to the compiler, so the
+     * method is faster than the {@link #execute(Collection)} method.
+     * @param options the compiler options (cannot be {@code null}).
+     * @return the generated CSS code followed by a line separator or an empty string if the options contain an output
+     *         file.
+     * @throws IllegalArgumentException if the options is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution.
+     * @since 2.0.1
+     * @see NativeLessOptionsBuilder#buildOptions()
+     */
+    public String execute(final NativeLessOptions options) {
+        return toString(compile(CompilationRequest.fromOptions(options)));
+    }
+
+    /**
+     * Executes the compiler using the immutable options object and returns the structured result: the CSS code, the
+     * Source Map, files fetched during the compilation and durations of the compilation phases. All data are collected
+     * during the same compilation.
+     * @param options the compiler options (cannot be {@code null}).
+     * @return the compilation result.
+     * @throws IllegalArgumentException if the options is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution.
+     * @since 2.0.1
+     * @see NativeLessOptionsBuilder#buildOptions()
+     */
+    public CompilationResult executeForResult(final NativeLessOptions options) {
+        final CompilationOutput output = compile(CompilationRequest.fromOptions(options));
+        final List<ResolvedImport> imports = new ArrayList<>();
+        // the source file is always fetched first
+        boolean source = options.getInputCode() == null;
+        for (final Map.Entry<String, String> file : output.getFileSystemClassNames().entrySet()) {
+            if (source) {
+                source = false;
+            } else {
+                imports.add(new ResolvedImport(file.getKey(), file.getValue()));
+            }
+        }
+        return new CompilationResult(output.getCss(), output.getSourceMap(), output.getEncoding(), imports, output.getTimings());
+    }
+
+    /**
+     * Executes the compiler and writes the generated CSS code to the writer. Unlike {@link #execute(Collection)} the
+     * method does not append a line separator to the code and writes nothing if the options contain an output file.
+     * The writer is not closed.
+     * @param options the compiler options (cannot be {@code null}).
+     * @param writer the writer (cannot be {@code null}).
+     * @throws IllegalArgumentException if the writer is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution (e.g. the writer throws an exception).
+     * @since 2.0.1
+     * @see #execute(Collection)
+     */
+    public void execute(final Collection<?> options, final Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        write(compile(CompilationRequest.fromArguments(options)), writer);
+    }
+
+    /**
+     * Executes the compiler using the immutable options object and writes the generated CSS code to the writer. The
+     * writer is not closed.
+     * @param options the compiler options (cannot be {@code null}).
+     * @param writer the writer (cannot be {@code null}).
+     * @throws IllegalArgumentException if the options or writer is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution (e.g. the writer throws an exception).
+     * @since 2.0.1
+     * @see #execute(Collection, Writer)
+     */
+    public void execute(final NativeLessOptions options, final Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        write(compile(CompilationRequest.fromOptions(options)), writer);
+    }
+
+    /**
+     * Executes the compiler and writes the generated CSS code to the stream using the compiler encoding (see the
+     * {@code --encoding} option). Unlike {@link #execute(Collection)} the method does not append a line separator to
+     * the code and writes nothing if the options contain an output file. The stream is not closed.
+     * @param options the compiler options (cannot be {@code null}).
+     * @param outputStream the output stream (cannot be {@code null}).
+     * @throws IllegalArgumentException if the output stream is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution (e.g. the stream throws an exception).
+     * @since 2.0.1
+     * @see #execute(Collection)
+     */
+    public void execute(final Collection<?> options, final OutputStream outputStream) {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        write(compile(CompilationRequest.fromArguments(options)), outputStream);
+    }
+
+    /**
+     * Executes the compiler using the immutable options object and writes the generated CSS code to the stream using
+     * the compiler encoding. The stream is not closed.
+     * @param options the compiler options (cannot be {@code null}).
+     * @param outputStream the output stream (cannot be {@code null}).
+     * @throws IllegalArgumentException if the options or output stream is {@code null}.
+     * @throws InitializationException if an error occurred during compiler initialization.
+     * @throws ConfigurationException if the compiler is configured incorrectly.
+     * @throws ReadFileException if the compiler cannot read source file or any &#64;import operation point to
+     *             non-existent file.
+     * @throws SyntaxException if a syntax error occurred during source file compilation.
+     * @throws CompilerException if an other error occurred during execution (e.g. the stream throws an exception).
+     * @since 2.0.1
+     * @see #execute(Collection, OutputStream)
+     */
+    public void execute(final NativeLessOptions options, final OutputStream outputStream) {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        write(compile(CompilationRequest.fromOptions(options)), outputStream);
+    }
+
+    static String toString(final CompilationOutput output) {
+        final String css = output.getCss();
+        return css != null ? css + System.lineSeparator() : "";
+    }
+
+    private static void write(final CompilationOutput output, final Writer writer) {
+        if (output.getCss() == null) {
+            return;
+        }
+        try {
+            writer.write(output.getCss());
+            writer.flush();
+        } catch (final IOException e) {
+            throw new CompilerException(e);
+        }
+    }
+
+    private static void write(final CompilationOutput output, final OutputStream outputStream) {
+        if (output.getCss() == null) {
+            return;
+        }
+        try {
+            write(output, new OutputStreamWriter(outputStream, output.getEncoding()));
+        } catch (final IOException e) {
+            throw new CompilerException(e);
+        }
+    }
+
+    CompilationOutput compile(final CompilationRequest request) {
+        lockEngine(request);
+        try {
+            if (library == null) {
+                initializeEngine();
+            } else if (replacementScope != null) {
+                useScope(replacementScope);
             }
             try {
-                final Context context = Context.enter();
+                final Context context = enterContext();
+                LessContextFactory.setDeadline(context, request);
 
                 final ScriptableObject compileScope = (ScriptableObject) context.newObject(scope);
                 compileScope.setParentScope(null);
                 compileScope.setPrototype(scope);
 
-                final Scriptable arguments = context.newArray(compileScope, options.toArray(new Object[0]));
-                compileScope.defineProperty("arguments", arguments, ScriptableObject.DONTENUM);
+                library.execute(context, compileScope);
 
-                compiler.call(context, compileScope, null, new Object[0]);
-                return console.toString(StandardCharsets.UTF_8.name());
+                final Scriptable lessCompiler = (Scriptable) ScriptableObject.getProperty(compileScope, LESS_COMPILER_OBJECT);
+                return callCompileFunction(context, compileScope, lessCompiler, request);
 
             } catch (final JavaScriptException e) {
                 throw parseException(e);
+            } catch (final CompilationInterruptedException e) {
+                throw e;
             } catch (final Exception e) {
                 throw new CompilerException(e);
             } finally {
-                console.reset();
+                if (engineOptions.isRecyclingEnabled()) {
+                    recycleIfNeeded();
+                }
                 Context.exit();
             }
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void initialize() {
-        try {
-            final Context context = Context.enter();
-            context.setLanguageVersion(Context.VERSION_1_8);
+    private void recycleIfNeeded() {
+        ++compilations;
+        if (engineOptions.getMaxIdleTime() > 0) {
+            if (idleRecycling != null) {
+                idleRecycling.cancel(false);
+            }
+            idleRecycling = Recycler.EXECUTOR.schedule(new IdleRecycling(this), engineOptions.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+        }
+        if (recycling) {
+            return;
+        }
+        final int maxCompilations = engineOptions.getMaxCompilations();
+        final long maxRetainedSize = engineOptions.getMaxRetainedSize();
+        if (maxCompilations > 0 && compilations >= maxCompilations
+                || maxRetainedSize > 0 && compilations % SIZE_SAMPLING_INTERVAL == 0
+                        && ScopeSizeEstimator.estimate(scope, maxRetainedSize) >= maxRetainedSize) {
+            recycling = true;
+            Recycler.EXECUTOR.execute(this::createReplacementScope);
+        }
+    }
 
-            final Global global = new Global();
-            global.init(context);
-            scope = context.initStandardObjects(global);
+    private void recycleIdleEngine() {
+        if (!lock.tryLock()) {
+            // the running compilation schedules the next check
+            return;
+        }
+        try {
+            if (recycling || compilations == 0) {
+                return;
+            }
+            recycling = true;
+        } finally {
+            lock.unlock();
+        }
+        createReplacementScope();
+    }
 
-            console = new ByteArrayOutputStream();
-            global.setOut(new PrintStream(console, false, StandardCharsets.UTF_8.name()));
+    private void createReplacementScope() {
+        final Scriptable replacement;
+        try {
+            final Context context = enterContext();
+            try {
+                replacement = createScope(context);
+            } finally {
+                Context.exit();
+            }
+        } catch (final RuntimeException e) {
+            // keeps the current scope and tries again after the next compilation
+            recycling = false;
+            return;
+        }
+        if (lock.tryLock()) {
+            try {
+                useScope(replacement);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            // the next compilation swaps the scope
+            replacementScope = replacement;
+        }
+    }
 
-            final URL lessFile = NativeLessCompiler.class.getResource("/biz/gabrys/lesscss/compiler2/less-rhino-1.7.5.js");
-            final URL lesscFile = NativeLessCompiler.class.getResource("/biz/gabrys/lesscss/compiler2/lessc-rhino-1.7.5.js");
+    private void useScope(final Scriptable replacement) {
+        scope = replacement;
+        replacementScope = null;
+        compilations = 0;
+        recycling = false;
+    }
 
-            final Collection<InputStream> streams = new ArrayList<>();
-            streams.add(lessFile.openConnection().getInputStream());
-            streams.add(lesscFile.openConnection().getInputStream());
+    // returns the current scope, used by tests to detect recycling
+    Scriptable getScope() {
+        lock.lock();
+        try {
+            return scope;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            try (final InputStream inputStream = new SequenceInputStream(Collections.enumeration(streams));
-                    final InputStreamReader streamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-                compiler = (Function) context.compileReader(streamReader, lessFile.toString(), 1, null);
+    private void lockEngine(final CompilationRequest request) {
+        try {
+            // the lock does not pin virtual threads waiting for the engine (unlike synchronized blocks)
+            if (!request.hasDeadline()) {
+                lock.lockInterruptibly();
+            } else if (!lock.tryLock(request.getDeadline() - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new CompilationTimeoutException("Compilation has exceeded its timeout while waiting for the compiler engine");
             }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilationInterruptedException("Interrupted while waiting for the compiler engine", e);
+        }
+    }
+
+    private void initializeEngine() {
+        try {
+            final Context context = enterContext();
+
+            scope = createScope(context);
+            library = LessLibrary.load(context, engineOptions.isPrecompiledScripts());
+        } catch (final CompilationInterruptedException e) {
+            throw e;
         } catch (final Exception e) {
             throw new InitializationException("Failed to initialize native Less compiler", e);
         } finally {
@@ -180,7 +626,34 @@ public class NativeLessCompiler {
         }
     }
 
-    private static CompilerException parseException(final JavaScriptException exception) {
+    private static Scriptable createScope(final Context context) {
+        final Global global = new Global();
+        global.init(context);
+        return context.initStandardObjects(global);
+    }
+
+    Context enterContext() {
+        final Context context = engineOptions.getContextFactory().enterContext();
+        context.setLanguageVersion(Context.VERSION_1_8);
+        context.setOptimizationLevel(engineOptions.getOptimizationLevel());
+        context.setGeneratingDebug(engineOptions.isGenerateDebugInfo());
+        context.setGenerateObserverCount(true);
+        context.setInstructionObserverThreshold(INSTRUCTION_OBSERVER_THRESHOLD);
+        return context;
+    }
+
+    static CompilationOutput callCompileFunction(final Context context, final Scriptable scope, final Scriptable lessCompiler,
+            final CompilationRequest request) {
+        final Function compile = (Function) ScriptableObject.getProperty(lessCompiler, request.getFunctionName());
+        final Object argument = request.createArgument(context, scope);
+        return CompilationOutput.fromScriptable((Scriptable) compile.call(context, scope, lessCompiler, new Object[] { argument }));
+    }
+
+    static CompilerException parseException(final JavaScriptException exception) {
+        if (Thread.currentThread().isInterrupted()) {
+            // interruptible I/O operations (e.g. reading local files) fail before the instruction observer is called
+            return new CompilationInterruptedException("Compilation has been interrupted", exception);
+        }
         final Scriptable value = (Scriptable) exception.getValue();
         if (value != null && ScriptableObject.hasProperty(value, "message")) {
             final String message = ScriptableObject.getProperty(value, "message").toString();
@@ -270,4 +743,44 @@ public class NativeLessCompiler {
             return new ReadFileException(message, cause, matcher.group(1));
         }
     }
+
+    // the compiler can be garbage collected before the scheduled task is executed
+    private static class IdleRecycling implements Runnable {
+
+        private final WeakReference<NativeLessCompiler> compiler;
+
+        IdleRecycling(final NativeLessCompiler compiler) {
+            this.compiler = new WeakReference<>(compiler);
+        }
+
+        @Override
+        public void run() {
+            final NativeLessCompiler target = compiler.get();
+            if (target != null) {
+                target.recycleIdleEngine();
+            }
+        }
+    }
+
+    // the recycler thread is created when the first compiler recycles its scope
+    private static class Recycler {
+
+        static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private Recycler() {
+            // do nothing
+        }
+
+        private static ScheduledThreadPoolExecutor createExecutor() {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "lesscss-engine-recycler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+            executor.allowCoreThreadTimeOut(true);
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Represents immutable options that control the {@link NativeLessCompiler} compilation process. Unlike the command line
+ * options returned by the {@link NativeLessOptionsBuilder#build()} method, the object is converted directly to the
+ * JavaScript configuration of the compiler, so the compiler does not format and parse command line arguments on every
+ * compilation. The object can be created once and used by many threads at the same time.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link NativeLessOptions} options = new {@link NativeLessOptionsBuilder}().inputFile("/less/file.less").compress(true).{@link NativeLessOptionsBuilder#buildOptions() buildOptions}();
+ * String cssCode = compiler.{@link NativeLessCompiler#execute(NativeLessOptions) execute}(options);
+ * </pre>
+ *
+ * @since 2.0.1
+ * @see NativeLessOptionsBuilder#buildOptions()
+ */
+public final class NativeLessOptions {
+
+    private final LessOptions options;
+    private final PreparedLessOptions preparedOptions;
+    private final String inputFile;
+    private final String inputCode;
+    private final File outputFile;
+    private final boolean sourceMapDefault;
+    private final File sourceMapFile;
+    private final boolean sourceMapInline;
+    private final long timeout;
+
+    NativeLessOptions(final LessOptions options, final String inputFile, final String inputCode, final File outputFile,
+            final boolean sourceMapDefault, final File sourceMapFile, final boolean sourceMapInline, final long timeout) {
+        this(new LessOptions(options), null, inputFile, inputCode, outputFile, sourceMapDefault, sourceMapFile, sourceMapInline,
+                timeout);
+    }
+
+    NativeLessOptions(final PreparedLessOptions preparedOptions, final String inputFile, final String inputCode, final File outputFile,
+            final boolean sourceMapDefault, final File sourceMapFile, final boolean sourceMapInline, final long timeout) {
+        this(preparedOptions.getLessOptionsReference(), preparedOptions, inputFile, inputCode, outputFile, sourceMapDefault,
+                sourceMapFile, sourceMapInline, timeout);
+    }
+
+    private NativeLessOptions(final LessOptions options, final PreparedLessOptions preparedOptions, final String inputFile,
+            final String inputCode, final File outputFile, final boolean sourceMapDefault, final File sourceMapFile,
+            final boolean sourceMapInline, final long timeout) {
+        this.options = options;
+        this.preparedOptions = preparedOptions;
+        this.inputFile = inputFile;
+        this.inputCode = inputCode;
+        this.outputFile = outputFile != null ? outputFile.getAbsoluteFile() : null;
+        this.sourceMapDefault = sourceMapDefault;
+        this.sourceMapFile = sourceMapFile != null ? sourceMapFile.getAbsoluteFile() : null;
+        this.sourceMapInline = sourceMapInline;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns a copy of the Less options.
+     * @return the Less options (never {@code null}).
+     * @since 2.0.1
+     */
+    public LessOptions getLessOptions() {
+        return new LessOptions(options);
+    }
+
+    /**
+     * Returns an input (source) file path.
+     * @return the input file path or {@code null} if it has not been set.
+     * @since 2.0.1
+     */
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * Returns a Less code compiled instead of the input file content. When the code is set, the input file path is a
+     * virtual path: the file is never read, but its directory is used to resolve relative {@code @import} operations.
+     * @return the Less code or {@code null} if the compiler reads the input file.
+     * @since 2.0.1
+     * @see NativeLessOptionsBuilder#inputCode(CharSequence)
+     */
+    public String getInputCode() {
+        return inputCode;
+    }
+
+    /**
+     * Returns an output (destination) file.
+     * @return the absolute output file or {@code null} if the CSS code is returned by the compiler.
+     * @since 2.0.1
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Checks whether the compiler should generate a Source Map file with a default name equal to the output file name
+     * with {@code map} extension.
+     * @return {@code true} whether the compiler should generate the Source Map file, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isSourceMapDefault() {
+        return sourceMapDefault;
+    }
+
+    /**
+     * Returns a Source Map file.
+     * @return the absolute Source Map file or {@code null} if it has not been set.
+     * @since 2.0.1
+     */
+    public File getSourceMapFile() {
+        return sourceMapFile;
+    }
+
+    /**
+     * Checks whether the compiler should put a Source Map to the CSS code.
+     * @return {@code true} whether the compiler should put the Source Map to the CSS code, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    public boolean isSourceMapInline() {
+        return sourceMapInline;
+    }
+
+    /**
+     * Returns the maximum time of a compilation in milliseconds. The time is not a part of the options identity (see
+     * {@link #equals(Object)}), because it does not change the compilation result.
+     * @return the timeout or {@code 0} if the compilation time is not limited.
+     * @since 2.0.1
+     * @see NativeLessOptionsBuilder#timeout(long)
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the prepared options used to create {@code this} object.
+     * @return the prepared options or {@code null} if the object has not been created from prepared options.
+     * @since 2.0.1
+     * @see NativeLessOptionsBuilder#preparedOptions(PreparedLessOptions)
+     */
+    public PreparedLessOptions getPreparedOptions() {
+        return preparedOptions;
+    }
+
+    // used by the compiler to avoid copying the options on every compilation
+    LessOptions getLessOptionsReference() {
+        return options;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = prime + (inputFile == null ? 0 : inputFile.hashCode());
+        result = prime * result + (inputCode == null ? 0 : inputCode.hashCode());
+        result = prime * result + options.hashCode();
+        result = prime * result + (outputFile == null ? 0 : outputFile.hashCode());
+        result = prime * result + (sourceMapDefault ? 1231 : 1237);
+        result = prime * result + (sourceMapFile == null ? 0 : sourceMapFile.hashCode());
+        return prime * result + (sourceMapInline ? 1231 : 1237);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final NativeLessOptions other = (NativeLessOptions) obj;
+        if (!Objects.equals(inputFile, other.inputFile)) {
+            return false;
+        }
+        if (!Objects.equals(inputCode, other.inputCode)) {
+            return false;
+        }
+        if (!options.equals(other.options)) {
+            return false;
+        }
+        if (!Objects.equals(outputFile, other.outputFile)) {
+            return false;
+        }
+        if (sourceMapDefault != other.sourceMapDefault) {
+            return false;
+        }
+        if (!Objects.equals(sourceMapFile, other.sourceMapFile)) {
+            return false;
+        }
+        return sourceMapInline == other.sourceMapInline;
+    }
+}
@@ -33,6 +33,8 @@ import biz.gabrys.lesscss.compiler2.util.StringUtils;
  * <li>{@link #ieCompatibility(boolean) IE compatibility} - whether a CSS code should be compatible with Internet
  * Explorer browser (default: {@code true})</li>
  * <li>{@link #includePaths(List) included paths} - available include paths (default: {@code []})</li>
+ * <li>{@link #inputCode(CharSequence) code} - a Less code compiled instead of the input file content (supported only by
+ * the {@link #buildOptions()} method)</li>
  * <li>{@link #inputFile(String) path} - an input (source) file path</li>
  * <li>{@link #javaScript(boolean) JavaScript} - whether a compiler should allow usage of JavaScript language (default:
  * {@code true})</li>
@@ -104,6 +106,12 @@ import biz.gabrys.lesscss.compiler2.util.StringUtils;
  * // create options with an input file and compression enabled
  * options = new {@link #NativeLessOptionsBuilder() NativeLessOptionsBuilder}().{@link #inputFile(String) inputFile}("/less/file.less").{@link #compress(boolean) compress}(true).{@link #build() build}();
  * 
+ * // create immutable options object which is passed directly to the compiler
+ * {@link NativeLessOptions} nativeOptions = new {@link #NativeLessOptionsBuilder() NativeLessOptionsBuilder}().{@link #inputFile(String) inputFile}("/less/file.less").{@link #buildOptions() buildOptions}();
+ * 
+ * // create immutable options object with an in-memory code (relative imports are resolved against the /less directory)
+ * nativeOptions = new {@link #NativeLessOptionsBuilder() NativeLessOptionsBuilder}().{@link #inputCode(CharSequence) inputCode}("&#64;import 'file.less';").{@link #inputFile(String) inputFile}("/less/code.less").{@link #buildOptions() buildOptions}();
+ * 
  * // use {@link LessOptions} object to create options 
  * {@link LessOptions} lessOptions = new {@link LessOptions#LessOptions() LessOptions}();
  * ... // modify options
@@ -115,13 +123,18 @@ import biz.gabrys.lesscss.compiler2.util.StringUtils;
  */
 public class NativeLessOptionsBuilder {
 
+    private static final String DEFAULT_CODE_FILE_NAME = "code.less";
+
     private LessOptions options = new LessOptions();
+    private PreparedLessOptions preparedOptions;
     private String input;
+    private String code;
     private File output;
 
     private boolean sourceMapDefault;
     private File sourceMapFile;
     private boolean sourceMapInline;
+    private long timeout;
 
     /**
      * Constructs a new instance.
@@ -165,6 +178,25 @@ public class NativeLessOptionsBuilder {
             throw new IllegalArgumentException("Options cannot be null");
         }
         this.options = new LessOptions(options);
+        preparedOptions = null;
+        return this;
+    }
+
+    /**
+     * Sets prepared compiler options. This method overwrites the same values as the {@link #options(LessOptions)}
+     * method. The {@link #buildOptions()} method creates an object which uses the file systems instances created by the
+     * prepared options as long as the options are not modified by any other method of {@code this} builder.
+     * @param preparedOptions the prepared options object.
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the prepared options object is {@code null}.
+     * @since 2.0.1
+     */
+    public NativeLessOptionsBuilder preparedOptions(final PreparedLessOptions preparedOptions) {
+        if (preparedOptions == null) {
+            throw new IllegalArgumentException("Prepared options cannot be null");
+        }
+        options = preparedOptions.getLessOptions();
+        this.preparedOptions = preparedOptions;
         return this;
     }
 
@@ -179,6 +211,22 @@ public class NativeLessOptionsBuilder {
         return this;
     }
 
+    /**
+     * Sets a Less code compiled instead of the input file content. The code is passed to the compiler directly, so no
+     * file is created or read. The input file path set by the {@link #inputFile(String)} method becomes a virtual path:
+     * its directory is used to resolve relative {@code @import} operations and its name appears in error messages and
+     * Source Maps. If the input file path is not set, then the {@code code.less} file in the current working directory
+     * is used. This option is supported only by the {@link #buildOptions()} method.
+     * @param code the Less code ({@code null} means the compiler reads the input file).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     * @see #inputFile(String)
+     */
+    public NativeLessOptionsBuilder inputCode(final CharSequence code) {
+        this.code = code != null ? code.toString() : null;
+        return this;
+    }
+
     /**
      * Returns a command line option which represents an absolute path of the input file.
      * @return the command line option (never {@code null}).
@@ -205,6 +253,25 @@ public class NativeLessOptionsBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum time of a compilation in milliseconds (default: {@code 0}). The time is measured from the start
+     * of the {@link NativeLessCompiler} method call and includes waiting for an engine. The compiler stops the
+     * compilation and throws the {@link CompilationTimeoutException} when the time is exceeded (blocking operations,
+     * e.g. fetching imported files, are not interrupted, so the compilation stops when they end). The timeout is used
+     * only by the options object returned by the {@link #buildOptions()} method.
+     * @param timeout the timeout in milliseconds ({@code 0} means no limit, cannot be negative).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the timeout is negative.
+     * @since 2.0.1
+     */
+    public NativeLessOptionsBuilder timeout(final long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        this.timeout = timeout;
+        return this;
+    }
+
     /**
      * Returns a command line option which represents an absolute path of the output file.
      * @return the command line option (never {@code null}).
@@ -1004,7 +1071,8 @@ public class NativeLessOptionsBuilder {
     /**
      * Builds a collection with configuration options for the {@link NativeLessCompiler} compilation process.
      * @return the collection with configuration options.
-     * @throws BuilderCreationException if you set an output file without setting an input file.
+     * @throws BuilderCreationException if you set an output file without setting an input file or you set an input
+     *             code.
      * @since 2.0.0
      */
     public Collection<String> build() {
@@ -1037,6 +1105,9 @@ public class NativeLessOptionsBuilder {
         configurationOptions.append(getEncodingOption());
         configurationOptions.append(getFileSystemsOptions());
 
+        if (code != null) {
+            throw new BuilderCreationException("Input code is supported only by the buildOptions() method");
+        }
         final String inputPath = getInputFileOption();
         configurationOptions.append(inputPath);
         final String outputPath = getOutputFileOption();
@@ -1049,4 +1120,28 @@ public class NativeLessOptionsBuilder {
 
         return configurationOptions.build();
     }
+
+    /**
+     * Builds an immutable options object for the {@link NativeLessCompiler} compilation process. The object is passed
+     * directly to the compiler (see {@link NativeLessCompiler#execute(NativeLessOptions)}), so it is faster than the
+     * collection with configuration options returned by the {@link #build()} method. The {@code get*Option} methods
+     * are not used to create the object.
+     * @return the options object.
+     * @throws BuilderCreationException if you set an output file without setting an input file or an input code.
+     * @since 2.0.1
+     */
+    public NativeLessOptions buildOptions() {
+        String inputFile = input;
+        if (code != null && StringUtils.isBlank(inputFile)) {
+            inputFile = new File(DEFAULT_CODE_FILE_NAME).getAbsolutePath();
+        }
+        if (output != null && StringUtils.isBlank(inputFile)) {
+            throw new BuilderCreationException("Input file is required when otuput file is set (see inputFile(String) method)");
+        }
+        if (preparedOptions != null && preparedOptions.getLessOptionsReference().equals(options)) {
+            return new NativeLessOptions(preparedOptions, inputFile, code, output, sourceMapDefault, sourceMapFile, sourceMapInline,
+                    timeout);
+        }
+        return new NativeLessOptions(options, inputFile, code, output, sourceMapDefault, sourceMapFile, sourceMapInline, timeout);
+    }
 }
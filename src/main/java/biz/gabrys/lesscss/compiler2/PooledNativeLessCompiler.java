@@ -0,0 +1,353 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Native Less compiler which delegates compilations to a bounded pool of independently initialized
+ * {@link NativeLessCompiler} engines. Each engine has its own Rhino scope, so the pool compiles up to
+ * {@link #getMaxSize() max size} source files at the same time, whereas a single {@link NativeLessCompiler} compiles
+ * them one by one.
+ * </p>
+ * <p>
+ * The pool:
+ * </p>
+ * <ul>
+ * <li>creates engines on demand, but never more than {@link #getMaxSize() max size}</li>
+ * <li>reuses the most recently returned engine first, so warm engines stay warm</li>
+ * <li>evicts engines which were idle longer than the {@link #getIdleTimeout() idle timeout}, but always retains at
+ * least {@link #getMinSize() min size} idle engines</li>
+ * <li>throws {@link CompilerException} when no engine becomes available within the {@link #getBorrowTimeout() borrow
+ * timeout}, {@link CompilationTimeoutException} when the compilation {@link NativeLessOptions#getTimeout() timeout}
+ * expires first and {@link CompilationInterruptedException} when the waiting thread is interrupted</li>
+ * </ul>
+ * <p>
+ * The pooled compiler can be used everywhere the {@link NativeLessCompiler} is accepted. Example code:
+ * </p>
+ *
+ * <pre>
+ * NativeLessCompiler nativeCompiler = new {@link PooledNativeLessCompilerBuilder#PooledNativeLessCompilerBuilder() PooledNativeLessCompilerBuilder}().{@link PooledNativeLessCompilerBuilder#maxSize(int) maxSize}(8).{@link PooledNativeLessCompilerBuilder#build() build}();
+ * {@link LessCompiler} compiler = new {@link LessCompiler#LessCompiler(NativeLessCompiler) LessCompiler}(nativeCompiler);
+ * </pre>
+ *
+ * @since 2.0.1
+ * @see PooledNativeLessCompilerBuilder
+ */
+public class PooledNativeLessCompiler extends NativeLessCompiler {
+
+    /**
+     * The default minimum number of idle engines retained by the pool.
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MIN_SIZE = 1;
+    /**
+     * The default maximum number of engines (equal to the number of available processors).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MAX_SIZE = Runtime.getRuntime().availableProcessors();
+    /**
+     * The default idle timeout in milliseconds (5 minutes).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * The default borrow timeout in milliseconds (1 minute).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_BORROW_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+
+    private final Semaphore permits;
+    // guards the idle engines, so the eviction never leaves less than min size idle engines
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Deque<PooledEngine> idleEngines = new ArrayDeque<>();
+
+    /**
+     * Constructs a new instance with default configuration.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompiler() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT, DEFAULT_BORROW_TIMEOUT);
+    }
+
+    /**
+     * Constructs a new instance with default engine options.
+     * @param minSize the minimum number of idle engines retained by the pool (cannot be negative).
+     * @param maxSize the maximum number of engines (must be positive and greater than or equal to the min size).
+     * @param idleTimeout the time in milliseconds after which an idle engine can be evicted (cannot be negative).
+     * @param borrowTimeout the maximum time in milliseconds to wait for an available engine (cannot be negative).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompiler(final int minSize, final int maxSize, final long idleTimeout, final long borrowTimeout) {
+        this(minSize, maxSize, idleTimeout, borrowTimeout, new EngineOptions());
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param minSize the minimum number of idle engines retained by the pool (cannot be negative).
+     * @param maxSize the maximum number of engines (must be positive and greater than or equal to the min size).
+     * @param idleTimeout the time in milliseconds after which an idle engine can be evicted (cannot be negative).
+     * @param borrowTimeout the maximum time in milliseconds to wait for an available engine (cannot be negative).
+     * @param engineOptions the options of the pooled engines (cannot be {@code null}).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompiler(final int minSize, final int maxSize, final long idleTimeout, final long borrowTimeout,
+            final EngineOptions engineOptions) {
+        super(engineOptions);
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Min size cannot be negative");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        if (minSize > maxSize) {
+            throw new IllegalArgumentException(String.format("Min size (%s) cannot be greater than max size (%s)", minSize, maxSize));
+        }
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout cannot be negative");
+        }
+        if (borrowTimeout < 0) {
+            throw new IllegalArgumentException("Borrow timeout cannot be negative");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the minimum number of idle engines retained by the pool.
+     * @return the minimum number of idle engines.
+     * @since 2.0.1
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns the maximum number of engines.
+     * @return the maximum number of engines.
+     * @since 2.0.1
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time in milliseconds after which an idle engine can be evicted.
+     * @return the idle timeout in milliseconds.
+     * @since 2.0.1
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds to wait for an available engine.
+     * @return the borrow timeout in milliseconds.
+     * @since 2.0.1
+     */
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    /**
+     * Returns the number of idle engines.
+     * @return the number of idle engines.
+     * @since 2.0.1
+     */
+    public int getIdleCount() {
+        idleLock.lock();
+        try {
+            return idleEngines.size();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of engines which are currently compiling.
+     * @return the number of busy engines.
+     * @since 2.0.1
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Creates and initializes engines until the pool contains at least {@link #getMinSize() min size} engines (at least
+     * one).
+     * @throws InitializationException if an error occurred during engine initialization.
+     * @throws CompilerException if no engine becomes available within the {@link #getBorrowTimeout() borrow timeout}.
+     * @since 2.0.1
+     */
+    @Override
+    public void initialize() {
+        final int size = Math.max(minSize, 1);
+        final List<PooledEngine> engines = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; ++i) {
+                final PooledEngine engine = borrowEngine();
+                engines.add(engine);
+                engine.compiler.initialize();
+            }
+        } finally {
+            for (final PooledEngine engine : engines) {
+                returnEngine(engine);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pool contains at least one initialized idle engine.
+     * @return {@code true} whether the pool contains at least one initialized idle engine, otherwise {@code false}.
+     * @since 2.0.1
+     */
+    @Override
+    public boolean isInitialized() {
+        final List<PooledEngine> engines;
+        idleLock.lock();
+        try {
+            engines = new ArrayList<>(idleEngines);
+        } finally {
+            idleLock.unlock();
+        }
+        for (final PooledEngine engine : engines) {
+            if (engine.compiler.isInitialized()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    CompilationOutput compile(final CompilationRequest request) {
+        final PooledEngine engine = borrowEngine(request);
+        try {
+            return engine.compiler.compile(request);
+        } finally {
+            returnEngine(engine);
+        }
+    }
+
+    /**
+     * Removes engines which were idle longer than the {@link #getIdleTimeout() idle timeout}, but leaves at least
+     * {@link #getMinSize() min size} idle engines. The method is called automatically every time an engine is returned
+     * to the pool.
+     * @since 2.0.1
+     */
+    public void evictIdleEngines() {
+        final long now = System.nanoTime();
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        idleLock.lock();
+        try {
+            while (idleEngines.size() > minSize && now - idleEngines.peekLast().lastUsed >= timeout) {
+                idleEngines.pollLast();
+            }
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a new engine. The method is called when all existing engines are busy and the pool has not reached the
+     * {@link #getMaxSize() max size}. By default it creates a {@link NativeLessCompiler} configured with the
+     * {@link #getEngineOptions() engine options} of the pool.
+     * @return the new engine (never {@code null}).
+     * @since 2.0.1
+     */
+    protected NativeLessCompiler createEngine() {
+        return new NativeLessCompiler(getEngineOptions());
+    }
+
+    private PooledEngine borrowEngine() {
+        return borrowEngine(TimeUnit.MILLISECONDS.toNanos(borrowTimeout), false);
+    }
+
+    private PooledEngine borrowEngine(final CompilationRequest request) {
+        if (!request.hasDeadline()) {
+            return borrowEngine();
+        }
+        final long remaining = request.getDeadline() - System.nanoTime();
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(borrowTimeout);
+        return remaining < timeout ? borrowEngine(remaining, true) : borrowEngine(timeout, false);
+    }
+
+    private PooledEngine borrowEngine(final long timeout, final boolean deadline) {
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                if (deadline) {
+                    throw new CompilationTimeoutException(
+                            "Compilation has exceeded its timeout while waiting for an available compiler engine");
+                }
+                throw new CompilerException(String.format("No compiler engine became available within %s ms", borrowTimeout));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilationInterruptedException("Interrupted while waiting for an available compiler engine", e);
+        }
+        final PooledEngine engine;
+        idleLock.lock();
+        try {
+            engine = idleEngines.pollFirst();
+        } finally {
+            idleLock.unlock();
+        }
+        if (engine != null) {
+            return engine;
+        }
+        try {
+            return new PooledEngine(createEngine());
+        } catch (final RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void returnEngine(final PooledEngine engine) {
+        engine.lastUsed = System.nanoTime();
+        idleLock.lock();
+        try {
+            idleEngines.offerFirst(engine);
+        } finally {
+            idleLock.unlock();
+        }
+        permits.release();
+        evictIdleEngines();
+    }
+
+    private static class PooledEngine {
+
+        private final NativeLessCompiler compiler;
+        private volatile long lastUsed;
+
+        PooledEngine(final NativeLessCompiler compiler) {
+            this.compiler = compiler;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Responsible for creating new instances of the {@link PooledNativeLessCompiler}.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * {@link PooledNativeLessCompiler} compiler = null;
+ *
+ * // create a compiler with default configuration
+ * compiler = new {@link #PooledNativeLessCompilerBuilder() PooledNativeLessCompilerBuilder}().{@link #build() build}();
+ *
+ * // create a compiler which uses up to 32 engines and evicts them after 10 idle minutes
+ * compiler = new {@link #PooledNativeLessCompilerBuilder() PooledNativeLessCompilerBuilder}() //
+ *                      .{@link #minSize(int) minSize}(4) //
+ *                      .{@link #maxSize(int) maxSize}(32) //
+ *                      .{@link #idleTimeout(long, TimeUnit) idleTimeout}(10, TimeUnit.MINUTES) //
+ *                      .{@link #borrowTimeout(long, TimeUnit) borrowTimeout}(30, TimeUnit.SECONDS) //
+ *                      .{@link #build() build}();
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class PooledNativeLessCompilerBuilder {
+
+    private int minSize = PooledNativeLessCompiler.DEFAULT_MIN_SIZE;
+    private int maxSize = PooledNativeLessCompiler.DEFAULT_MAX_SIZE;
+    private long idleTimeout = PooledNativeLessCompiler.DEFAULT_IDLE_TIMEOUT;
+    private long borrowTimeout = PooledNativeLessCompiler.DEFAULT_BORROW_TIMEOUT;
+    private EngineOptions engineOptions = new EngineOptions();
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder() {
+        // do nothing
+    }
+
+    /**
+     * Sets the minimum number of idle engines retained by the pool (default:
+     * {@link PooledNativeLessCompiler#DEFAULT_MIN_SIZE}).
+     * @param minSize the minimum number of idle engines (cannot be negative).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the min size is negative.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder minSize(final int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Min size cannot be negative");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of engines (default: {@link PooledNativeLessCompiler#DEFAULT_MAX_SIZE}).
+     * @param maxSize the maximum number of engines (must be positive).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the max size is not positive.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder maxSize(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Sets the time after which an idle engine can be evicted (default: 5 minutes).
+     * @param timeout the timeout (cannot be negative).
+     * @param unit the time unit of the timeout (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the timeout is negative or the unit is {@code null}.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder idleTimeout(final long timeout, final TimeUnit unit) {
+        idleTimeout = toMillis(timeout, unit, "Idle timeout");
+        return this;
+    }
+
+    /**
+     * Sets the maximum time to wait for an available engine (default: 1 minute).
+     * @param timeout the timeout (cannot be negative).
+     * @param unit the time unit of the timeout (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the timeout is negative or the unit is {@code null}.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder borrowTimeout(final long timeout, final TimeUnit unit) {
+        borrowTimeout = toMillis(timeout, unit, "Borrow timeout");
+        return this;
+    }
+
+    /**
+     * Sets the options of the pooled engines (default: {@link EngineOptions#EngineOptions() default options}).
+     * @param engineOptions the engine options (cannot be {@code null}).
+     * @return {@code this} builder.
+     * @throws IllegalArgumentException if the engine options is {@code null}.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompilerBuilder engineOptions(final EngineOptions engineOptions) {
+        if (engineOptions == null) {
+            throw new IllegalArgumentException("Engine options cannot be null");
+        }
+        this.engineOptions = new EngineOptions(engineOptions);
+        return this;
+    }
+
+    /**
+     * Builds a new pooled compiler.
+     * @return the pooled compiler.
+     * @throws BuilderCreationException if the min size is greater than the max size.
+     * @since 2.0.1
+     */
+    public PooledNativeLessCompiler build() {
+        if (minSize > maxSize) {
+            throw new BuilderCreationException(String.format("Min size (%s) cannot be greater than max size (%s)", minSize, maxSize));
+        }
+        return new PooledNativeLessCompiler(minSize, maxSize, idleTimeout, borrowTimeout, engineOptions);
+    }
+
+    private static long toMillis(final long timeout, final TimeUnit unit, final String name) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException(name + " cannot be negative");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        return unit.toMillis(timeout);
+    }
+}
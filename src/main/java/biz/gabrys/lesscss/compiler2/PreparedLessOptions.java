@@ -0,0 +1,187 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
+import biz.gabrys.lesscss.compiler2.util.StringUtils;
+
+/**
+ * <p>
+ * Represents {@link LessOptions Less options} prepared once for many compilations. The constructor creates and
+ * {@link FileSystem#configure(java.util.Map) configures} all {@link LessOptions#getFileSystems() file systems} and
+ * filters include paths and variables. The {@link NativeLessCompiler} uses the prepared file systems instances instead
+ * of creating new ones during every compilation, so any state (e.g. caches, connections) built by the file systems is
+ * preserved between compilations.
+ * </p>
+ * <p>
+ * The object is immutable and can be used by many threads at the same time, so the file systems have to be thread
+ * safe (all file systems from the {@link biz.gabrys.lesscss.compiler2.filesystem} package are thread safe). Example
+ * code:
+ * </p>
+ *
+ * <pre>
+ * // create once
+ * {@link PreparedLessOptions} prepared = new {@link #PreparedLessOptions(LessOptions) PreparedLessOptions}(new {@link LessOptionsBuilder}().compressOn().build());
+ *
+ * // use in every compilation
+ * {@link NativeLessOptions} options = new {@link NativeLessOptionsBuilder}().{@link NativeLessOptionsBuilder#preparedOptions(PreparedLessOptions) preparedOptions}(prepared).inputFile(input).buildOptions();
+ * String cssCode = compiler.{@link NativeLessCompiler#execute(NativeLessOptions) execute}(options);
+ * </pre>
+ *
+ * @since 2.0.1
+ * @see NativeLessOptionsBuilder#preparedOptions(PreparedLessOptions)
+ */
+public final class PreparedLessOptions {
+
+    private final LessOptions options;
+    private final List<String> includePaths;
+    private final List<PreparedFileSystem> fileSystems;
+    private final List<LessVariableOption> globalVariables;
+    private final List<LessVariableOption> modifyVariables;
+
+    /**
+     * Constructs a new instance and creates file systems.
+     * @param options the Less options (cannot be {@code null}).
+     * @throws IllegalArgumentException if the options is {@code null}.
+     * @throws ConfigurationException if any file system cannot be created or configured.
+     * @since 2.0.1
+     */
+    public PreparedLessOptions(final LessOptions options) {
+        this(options, PreparedLessOptions::createFileSystem);
+    }
+
+    PreparedLessOptions(final LessOptions options, final Function<FileSystemOption, FileSystem> fileSystemFactory) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
+        }
+        this.options = new LessOptions(options);
+
+        final List<String> paths = new ArrayList<>();
+        for (final String includePath : this.options.getIncludePaths()) {
+            if (StringUtils.isNotBlank(includePath)) {
+                paths.add(includePath);
+            }
+        }
+        includePaths = Collections.unmodifiableList(paths);
+
+        final List<PreparedFileSystem> systems = new ArrayList<>();
+        for (final FileSystemOption fileSystem : this.options.getFileSystems()) {
+            if (fileSystem != null) {
+                systems.add(new PreparedFileSystem(fileSystem.getClassName(), fileSystemFactory.apply(fileSystem)));
+            }
+        }
+        fileSystems = Collections.unmodifiableList(systems);
+
+        globalVariables = filterVariables(this.options.getGlobalVariables());
+        modifyVariables = filterVariables(this.options.getModifyVariables());
+    }
+
+    /**
+     * Returns a copy of the Less options.
+     * @return the Less options (never {@code null}).
+     * @since 2.0.1
+     */
+    public LessOptions getLessOptions() {
+        return new LessOptions(options);
+    }
+
+    /**
+     * Returns the created and configured file systems in the order of the {@link LessOptions#getFileSystems() file
+     * systems options}.
+     * @return the unmodifiable list with file systems (never {@code null}).
+     * @since 2.0.1
+     */
+    public List<FileSystem> getFileSystems() {
+        final List<FileSystem> instances = new ArrayList<>(fileSystems.size());
+        for (final PreparedFileSystem fileSystem : fileSystems) {
+            instances.add(fileSystem.instance);
+        }
+        return Collections.unmodifiableList(instances);
+    }
+
+    LessOptions getLessOptionsReference() {
+        return options;
+    }
+
+    List<String> getIncludePaths() {
+        return includePaths;
+    }
+
+    List<PreparedFileSystem> getPreparedFileSystems() {
+        return fileSystems;
+    }
+
+    List<LessVariableOption> getGlobalVariables() {
+        return globalVariables;
+    }
+
+    List<LessVariableOption> getModifyVariables() {
+        return modifyVariables;
+    }
+
+    static FileSystem createFileSystem(final FileSystemOption option) {
+        final String className = option.getClassName();
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName(className);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            throw new ConfigurationException("Cannot load a file system class: " + className, e);
+        }
+        final FileSystem fileSystem;
+        try {
+            fileSystem = (FileSystem) clazz.newInstance();
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            throw new ConfigurationException("Cannot create a new instance of the file system: " + className, e);
+        }
+        try {
+            fileSystem.configure(option.getParameters());
+        } catch (final Exception e) {
+            throw new ConfigurationException("Cannot configure a new instance of the file system: " + className, e);
+        }
+        return fileSystem;
+    }
+
+    private static List<LessVariableOption> filterVariables(final List<LessVariableOption> variables) {
+        final List<LessVariableOption> filtered = new ArrayList<>(variables.size());
+        for (final LessVariableOption variable : variables) {
+            if (variable != null) {
+                filtered.add(variable);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    static final class PreparedFileSystem {
+
+        private final String className;
+        private final FileSystem instance;
+
+        PreparedFileSystem(final String className, final FileSystem instance) {
+            this.className = className;
+            this.instance = instance;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        FileSystem getInstance() {
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+/**
+ * Represents a file fetched during a compilation: an imported file or a file embedded by the {@code data-uri} function.
+ * @since 2.0.1
+ * @see CompilationResult#getImports()
+ */
+public class ResolvedImport {
+
+    private final String path;
+    private final String fileSystemClassName;
+
+    /**
+     * Constructs a new instance.
+     * @param path the normalized path of the file (cannot be {@code null}).
+     * @param fileSystemClassName the class name of the file system which fetched the file (cannot be {@code null}).
+     * @throws IllegalArgumentException if any parameter is {@code null}.
+     * @since 2.0.1
+     */
+    public ResolvedImport(final String path, final String fileSystemClassName) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        if (fileSystemClassName == null) {
+            throw new IllegalArgumentException("File system class name cannot be null");
+        }
+        this.path = path;
+        this.fileSystemClassName = fileSystemClassName;
+    }
+
+    /**
+     * Returns the path of the file resolved by the Less file loader (normalized and with expanded redirections).
+     * @return the path (never {@code null}).
+     * @since 2.0.1
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the class name of the {@link biz.gabrys.lesscss.compiler2.filesystem.FileSystem file system} which
+     * fetched the file.
+     * @return the class name (never {@code null}).
+     * @since 2.0.1
+     */
+    public String getFileSystemClassName() {
+        return fileSystemClassName;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        final int result = prime + path.hashCode();
+        return prime * result + fileSystemClassName.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ResolvedImport other = (ResolvedImport) obj;
+        return path.equals(other.path) && fileSystemClassName.equals(other.fileSystemClassName);
+    }
+
+    /**
+     * Returns a string representation of the import in the following format: {@code path (fileSystemClassName)}.
+     * @return the string representation of the import.
+     * @since 2.0.1
+     */
+    @Override
+    public String toString() {
+        return path + " (" + fileSystemClassName + ')';
+    }
+}
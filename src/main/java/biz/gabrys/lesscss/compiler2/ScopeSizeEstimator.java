@@ -0,0 +1,105 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+/**
+ * Estimates the heap retained by a JavaScript scope by walking the objects reachable from it. The estimate counts the
+ * objects, their properties and the characters of string values, so it only approximates the real size. The
+ * estimator reads the property slots without running accessor functions, so it never executes scripts.
+ * @since 2.0.1
+ */
+final class ScopeSizeEstimator {
+
+    static final int OBJECT_SIZE = 64;
+    static final int PROPERTY_SIZE = 48;
+
+    private ScopeSizeEstimator() {
+        // do nothing
+    }
+
+    // stops walking the objects when the estimate reaches the limit
+    static long estimate(final Scriptable scope, final long limit) {
+        final Map<Scriptable, Boolean> visited = new IdentityHashMap<>();
+        final Deque<Scriptable> objects = new ArrayDeque<>();
+        push(scope, visited, objects);
+        long size = 0;
+        while (!objects.isEmpty() && size < limit) {
+            final Scriptable object = objects.pop();
+            final Object[] ids = getIds(object);
+            size += OBJECT_SIZE + (long) ids.length * PROPERTY_SIZE;
+            push(object.getPrototype(), visited, objects);
+            push(object.getParentScope(), visited, objects);
+            for (final Object id : ids) {
+                final Object value = getProperty(object, id);
+                if (value instanceof CharSequence) {
+                    size += 2L * ((CharSequence) value).length();
+                } else if (value instanceof Scriptable) {
+                    push((Scriptable) value, visited, objects);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static void push(final Scriptable object, final Map<Scriptable, Boolean> visited, final Deque<Scriptable> objects) {
+        // Java objects are not owned by the scope
+        if (object != null && !(object instanceof Wrapper) && visited.put(object, Boolean.TRUE) == null) {
+            objects.push(object);
+        }
+    }
+
+    private static Object[] getIds(final Scriptable object) {
+        try {
+            return object instanceof ScriptableObject ? ((ScriptableObject) object).getAllIds() : object.getIds();
+        } catch (final RuntimeException e) {
+            // e.g. Rhino 1.7.10 fails to list the properties of the typed array prototypes
+            return new Object[0];
+        }
+    }
+
+    private static Object getProperty(final Scriptable object, final Object id) {
+        // the values of host objects can be computed by any code, so only the script objects are walked
+        if (!(object instanceof ScriptableObject)) {
+            return Scriptable.NOT_FOUND;
+        }
+        final ScriptableObject scriptable = (ScriptableObject) object;
+        final String name = id instanceof Number ? null : id.toString();
+        final int index = id instanceof Number ? ((Number) id).intValue() : 0;
+        try {
+            // reading an accessor property runs its getter, so the estimator visits the accessor functions instead
+            final Object getter = scriptable.getGetterOrSetter(name, index, false);
+            final Object setter = scriptable.getGetterOrSetter(name, index, true);
+            if (isAccessor(getter) || isAccessor(setter)) {
+                return isAccessor(getter) ? getter : setter;
+            }
+            return name != null ? scriptable.get(name, scriptable) : scriptable.get(index, scriptable);
+        } catch (final RuntimeException e) {
+            // e.g. a lazily initialized standard object has failed to load
+            return Scriptable.NOT_FOUND;
+        }
+    }
+
+    private static boolean isAccessor(final Object function) {
+        return function != null && function != Undefined.instance;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.tools.shell.Global;
+
+/**
+ * <p>
+ * Native Less compiler which evaluates the <a href="https://github.com/less/less.js/releases/tag/v1.7.5">Less
+ * 1.7.5</a> library only once per class loader into a sealed top-level scope shared by all instances. Every
+ * compilation enters its own Rhino {@link Context} and runs in a child scope which holds the mutable compiler state
+ * (encoding, file systems and include paths). Thanks to that many threads can compile source files at the same time
+ * and the memory contains only one copy of the library.
+ * </p>
+ * <p>
+ * Compilers share a scope when their engine options have the same optimization level, debug information and
+ * precompiled scripts flags and context factories of the same class. The scope is held weakly and is released when
+ * the last compiler which uses it becomes unreachable.
+ * </p>
+ * <p>
+ * The compiler supports the same options as the {@link NativeLessCompiler}. Example code:
+ * </p>
+ *
+ * <pre>
+ * NativeLessCompiler nativeCompiler = new {@link #SharedScopeNativeLessCompiler() SharedScopeNativeLessCompiler}();
+ * {@link LessCompiler} compiler = new {@link LessCompiler#LessCompiler(NativeLessCompiler) LessCompiler}(nativeCompiler);
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class SharedScopeNativeLessCompiler extends NativeLessCompiler {
+
+    private static final Map<ScopeKey, WeakReference<ScriptableObject>> SHARED_SCOPES = new ConcurrentHashMap<>();
+    private static final ReentrantLock INITIALIZATION_LOCK = new ReentrantLock();
+
+    private final EngineOptions engineOptions;
+    private final ScopeKey scopeKey;
+    private volatile ScriptableObject sharedScope;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public SharedScopeNativeLessCompiler() {
+        this(new EngineOptions());
+    }
+
+    /**
+     * Constructs a new instance with custom engine options. Compilers with the same optimization level, debug
+     * information and precompiled scripts flags and context factories of the same class share the same top-level
+     * scope.
+     * @param engineOptions the engine options (cannot be {@code null}). The context factory must enable the
+     *            {@link Context#FEATURE_DYNAMIC_SCOPE dynamic scope} feature, see {@link LessContextFactory}.
+     * @throws IllegalArgumentException if the engine options is {@code null}.
+     * @since 2.0.1
+     */
+    public SharedScopeNativeLessCompiler(final EngineOptions engineOptions) {
+        super(engineOptions);
+        this.engineOptions = getEngineOptions();
+        scopeKey = new ScopeKey(this.engineOptions);
+    }
+
+    /**
+     * {@inheritDoc} The shared scope is initialized only once for all compilers which share it.
+     * @since 2.0.1
+     */
+    @Override
+    public void initialize() {
+        getSharedScope();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public boolean isInitialized() {
+        return sharedScope != null || getRegisteredScope() != null;
+    }
+
+    @Override
+    CompilationOutput compile(final CompilationRequest request) {
+        final ScriptableObject scope = getSharedScope();
+        try {
+            final Context context = enterContext();
+            LessContextFactory.setDeadline(context, request);
+
+            final ScriptableObject compileScope = (ScriptableObject) context.newObject(scope);
+            compileScope.setParentScope(null);
+            compileScope.setPrototype(scope);
+
+            final Scriptable lessCompiler = context.newObject(compileScope);
+            lessCompiler.setPrototype((Scriptable) ScriptableObject.getProperty(scope, LESS_COMPILER_OBJECT));
+            lessCompiler.put("encoding", lessCompiler, null);
+            lessCompiler.put("fileSystems", lessCompiler, context.newArray(compileScope, 0));
+            lessCompiler.put("includePaths", lessCompiler, context.newArray(compileScope, 0));
+            compileScope.defineProperty(LESS_COMPILER_OBJECT, lessCompiler, ScriptableObject.DONTENUM);
+
+            return callCompileFunction(context, compileScope, lessCompiler, request);
+
+        } catch (final JavaScriptException e) {
+            throw parseException(e);
+        } catch (final CompilationInterruptedException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CompilerException(e);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private ScriptableObject getSharedScope() {
+        ScriptableObject scope = sharedScope;
+        if (scope != null) {
+            return scope;
+        }
+        INITIALIZATION_LOCK.lock();
+        try {
+            scope = getRegisteredScope();
+            if (scope == null) {
+                SHARED_SCOPES.values().removeIf(reference -> reference.get() == null);
+                scope = createSharedScope();
+                SHARED_SCOPES.put(scopeKey, new WeakReference<>(scope));
+            }
+            sharedScope = scope;
+            return scope;
+        } finally {
+            INITIALIZATION_LOCK.unlock();
+        }
+    }
+
+    private ScriptableObject getRegisteredScope() {
+        final WeakReference<ScriptableObject> reference = SHARED_SCOPES.get(scopeKey);
+        return reference != null ? reference.get() : null;
+    }
+
+    private ScriptableObject createSharedScope() {
+        try {
+            final Context context = enterContext();
+            if (!context.hasFeature(Context.FEATURE_DYNAMIC_SCOPE)) {
+                throw new InitializationException("Context factory must enable the dynamic scope feature");
+            }
+
+            final Global global = new Global();
+            global.setSealedStdLib(true);
+            global.init(context);
+
+            LessLibrary.load(context, engineOptions.isPrecompiledScripts()).execute(context, global);
+            global.sealObject();
+            return global;
+        } catch (final InitializationException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new InitializationException("Failed to initialize native Less compiler", e);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static final class ScopeKey {
+
+        private final int optimizationLevel;
+        private final boolean generateDebugInfo;
+        private final boolean precompiledScripts;
+        private final Class<?> contextFactoryClass;
+
+        ScopeKey(final EngineOptions options) {
+            optimizationLevel = options.getOptimizationLevel();
+            generateDebugInfo = options.isGenerateDebugInfo();
+            precompiledScripts = options.isPrecompiledScripts();
+            contextFactoryClass = options.getContextFactory().getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = prime + contextFactoryClass.hashCode();
+            result = prime * result + (generateDebugInfo ? 1231 : 1237);
+            result = prime * result + optimizationLevel;
+            return prime * result + (precompiledScripts ? 1231 : 1237);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final ScopeKey other = (ScopeKey) obj;
+            return contextFactoryClass == other.contextFactoryClass && generateDebugInfo == other.generateDebugInfo
+                    && optimizationLevel == other.optimizationLevel && precompiledScripts == other.precompiledScripts;
+        }
+    }
+}
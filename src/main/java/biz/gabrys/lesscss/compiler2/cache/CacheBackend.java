@@ -0,0 +1,60 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * Responsible for storing entries of the
+ * {@link biz.gabrys.lesscss.compiler2.CachingNativeLessCompiler CachingNativeLessCompiler} outside of the JVM memory,
+ * e.g. in a local directory ({@link DirectoryCacheBackend}) or on a remote server shared by many machines
+ * ({@link HttpCacheBackend}). Entries are identified by digests: lowercase hexadecimal representations of SHA-256
+ * hashes (64 characters). The compiler stores two kinds of entries:
+ * </p>
+ * <ul>
+ * <li>results - CSS codes and Source Maps identified by digests of the options and contents of all source files, so
+ * they never change</li>
+ * <li>manifests - lists of source files paths and recently stored results identified by digests of the options, so
+ * they are replaced after compilations</li>
+ * </ul>
+ * <p>
+ * Implementations have to be thread safe. The compiler treats all exceptions thrown by the backend as missing entries,
+ * so backend failures never break compilations. During a single compilation the compiler sends at most two
+ * {@link #get(String) get} requests to every backend and only when the first one returns an entry.
+ * </p>
+ * @since 2.0.1
+ * @see biz.gabrys.lesscss.compiler2.CachingNativeLessCompilerBuilder#backend(CacheBackend)
+ */
+public interface CacheBackend {
+
+    /**
+     * Returns an entry content.
+     * @param digest the entry digest (never {@code null}).
+     * @return the stream with the entry content or {@code null} if the entry does not exist. The compiler closes the
+     *         stream.
+     * @throws IOException if an I/O error occurred.
+     * @since 2.0.1
+     */
+    InputStream get(String digest) throws IOException;
+
+    /**
+     * Stores an entry content. If the entry already exists, then it is replaced.
+     * @param digest the entry digest (never {@code null}).
+     * @param content the stream with the entry content (never {@code null}). The compiler closes the stream.
+     * @throws IOException if an I/O error occurred.
+     * @since 2.0.1
+     */
+    void put(String digest, InputStream content) throws IOException;
+}
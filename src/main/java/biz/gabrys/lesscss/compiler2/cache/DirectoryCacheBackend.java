@@ -0,0 +1,227 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Cache backend which keeps entries in files of a directory. Entries are stored in subdirectories named after the
+ * first two characters of the digests. The directory can be shared by many JVMs at the same time:
+ * </p>
+ * <ul>
+ * <li>entries are written to temporary files and atomically moved to their final location, so readers never see
+ * partially written entries</li>
+ * <li>read entries are touched, so the eviction, which deletes the least recently used entries when the directory
+ * exceeds its {@link #getMaxSize() max size}, keeps entries used by any JVM</li>
+ * <li>temporary files abandoned by crashed JVMs are deleted during the eviction</li>
+ * </ul>
+ * @since 2.0.1
+ */
+public class DirectoryCacheBackend implements CacheBackend {
+
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final long TEMPORARY_FILE_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long size = -1;
+
+    /**
+     * Constructs a new instance.
+     * @param directory the directory which stores entries (cannot be {@code null}). It is created when the first
+     *            entry is stored.
+     * @param maxSize the maximum size of the directory in bytes (must be positive).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public DirectoryCacheBackend(final File directory, final long maxSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        this.directory = directory.toPath().toAbsolutePath();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the directory which stores entries.
+     * @return the absolute directory.
+     * @since 2.0.1
+     */
+    public File getDirectory() {
+        return directory.toFile();
+    }
+
+    /**
+     * Returns the maximum size of the directory in bytes.
+     * @return the maximum size.
+     * @since 2.0.1
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the digest is not a valid SHA-256 digest.
+     * @since 2.0.1
+     */
+    @Override
+    public InputStream get(final String digest) throws IOException {
+        final Path file = resolve(digest);
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {
+            // the entry could be evicted by an other JVM in the meantime
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the digest is not a valid SHA-256 digest.
+     * @since 2.0.1
+     */
+    @Override
+    public void put(final String digest, final InputStream content) throws IOException {
+        final Path file = resolve(digest);
+        Files.createDirectories(file.getParent());
+        final Path temporaryFile = Files.createTempFile(file.getParent(), digest, TEMPORARY_FILE_SUFFIX);
+        final long length;
+        try {
+            length = Files.copy(content, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            move(temporaryFile, file);
+        } catch (final IOException | RuntimeException e) {
+            deleteQuietly(temporaryFile);
+            throw e;
+        }
+        lock.lock();
+        try {
+            if (size < 0) {
+                evict();
+            } else {
+                size += length;
+                if (size > maxSize) {
+                    evict();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path resolve(final String digest) {
+        if (digest == null || !DIGEST_PATTERN.matcher(digest).matches()) {
+            throw new IllegalArgumentException("Invalid digest: " + digest);
+        }
+        return directory.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // removes the least recently used entries and abandoned temporary files, and recalculates the size
+    private void evict() {
+        final List<CachedFile> files = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        long total = 0;
+        try (DirectoryStream<Path> subdirectories = Files.newDirectoryStream(directory)) {
+            for (final Path subdirectory : subdirectories) {
+                if (!Files.isDirectory(subdirectory)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(subdirectory)) {
+                    for (final Path entry : entries) {
+                        final BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                        final long lastModified = attributes.lastModifiedTime().toMillis();
+                        if (entry.getFileName().toString().endsWith(TEMPORARY_FILE_SUFFIX)) {
+                            if (now - lastModified > TEMPORARY_FILE_TIMEOUT) {
+                                deleteQuietly(entry);
+                            }
+                            continue;
+                        }
+                        files.add(new CachedFile(entry, attributes.size(), lastModified));
+                        total += attributes.size();
+                    }
+                } catch (final IOException e) {
+                    // the subdirectory could be modified by an other JVM in the meantime
+                }
+            }
+        } catch (final IOException e) {
+            size = 0;
+            return;
+        }
+        files.sort(Comparator.comparingLong(file -> file.lastModified));
+        for (int i = 0; i < files.size() && total > maxSize; ++i) {
+            final CachedFile file = files.get(i);
+            deleteQuietly(file.path);
+            total -= file.size;
+        }
+        size = total;
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            // the file will be deleted during the next eviction
+        }
+    }
+
+    private static final class CachedFile {
+
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        CachedFile(final Path path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
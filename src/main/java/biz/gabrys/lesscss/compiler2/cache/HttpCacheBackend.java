@@ -0,0 +1,183 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.URL;
+
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+
+/**
+ * <p>
+ * Cache backend which keeps entries on a remote HTTP server. The backend uses a simple protocol, where every entry is
+ * a resource located at the {@link #getBaseUrl() base URL} followed by the entry digest:
+ * </p>
+ * <ul>
+ * <li>{@code GET} request returns the entry content ({@code 200 OK}) or {@code 404 Not Found} if the entry does not
+ * exist</li>
+ * <li>{@code PUT} request stores the content sent in the request body (the server responds with any {@code 2xx}
+ * code)</li>
+ * </ul>
+ * <p>
+ * The protocol is supported by the {@link HttpCacheServer}, but it can also be served by any HTTP server which allows
+ * to upload files (e.g. nginx with the WebDAV module).
+ * </p>
+ * @since 2.0.1
+ * @see HttpCacheServer
+ */
+public class HttpCacheBackend implements CacheBackend {
+
+    /**
+     * The default connect and read timeout in milliseconds (5 seconds).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    private final String baseUrl;
+    private final int timeout;
+
+    /**
+     * Constructs a new instance with the default timeout.
+     * @param baseUrl the base URL of the entries (cannot be {@code null}).
+     * @throws IllegalArgumentException if the base URL is {@code null}.
+     * @since 2.0.1
+     */
+    public HttpCacheBackend(final String baseUrl) {
+        this(baseUrl, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Constructs a new instance.
+     * @param baseUrl the base URL of the entries (cannot be {@code null}). If it does not end with the slash, then the
+     *            slash is appended.
+     * @param timeout the connect and read timeout in milliseconds (cannot be negative, zero means no timeout).
+     * @throws IllegalArgumentException if any parameter is invalid.
+     * @since 2.0.1
+     */
+    public HttpCacheBackend(final String baseUrl, final int timeout) {
+        if (baseUrl == null) {
+            throw new IllegalArgumentException("Base URL cannot be null");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + '/';
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the base URL of the entries.
+     * @return the base URL which ends with the slash.
+     * @since 2.0.1
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Returns the connect and read timeout in milliseconds.
+     * @return the timeout.
+     * @since 2.0.1
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public InputStream get(final String digest) throws IOException {
+        final HttpURLConnection connection = openConnection(digest, "GET");
+        final int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            closeErrorStream(connection);
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw new IOException(String.format("Unexpected response code %s for %s", responseCode, connection.getURL()));
+        }
+        try (InputStream input = connection.getInputStream()) {
+            return new ByteArrayInputStream(IOUtils.toByteArray(input));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public void put(final String digest, final InputStream content) throws IOException {
+        if (content.markSupported()) {
+            content.mark(Integer.MAX_VALUE);
+            try {
+                upload(digest, content);
+                return;
+            } catch (final SocketException e) {
+                // the server may close a reused keep-alive connection and the JDK does not retry streamed requests
+                content.reset();
+            }
+        }
+        upload(digest, content);
+    }
+
+    private void upload(final String digest, final InputStream content) throws IOException {
+        final HttpURLConnection connection = openConnection(digest, "PUT");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(0);
+        try (OutputStream output = connection.getOutputStream()) {
+            final byte[] buffer = new byte[8192];
+            for (int length = content.read(buffer); length != -1; length = content.read(buffer)) {
+                output.write(buffer, 0, length);
+            }
+        }
+        final int responseCode = connection.getResponseCode();
+        if (responseCode / 100 != 2) {
+            closeErrorStream(connection);
+            throw new IOException(String.format("Unexpected response code %s for %s", responseCode, connection.getURL()));
+        }
+        connection.getInputStream().close();
+    }
+
+    // connections are not disconnected, so the JVM can reuse them (HTTP keep-alive)
+    private static void closeErrorStream(final HttpURLConnection connection) throws IOException {
+        final InputStream errorStream = connection.getErrorStream();
+        if (errorStream != null) {
+            IOUtils.toByteArray(errorStream);
+            errorStream.close();
+        }
+    }
+
+    /**
+     * Opens and configures a new {@link HttpURLConnection} to an entry.
+     * @param digest the entry digest (never {@code null}).
+     * @param method the request method.
+     * @return the new configured connection.
+     * @throws IOException if an I/O exception occurs.
+     * @since 2.0.1
+     */
+    protected HttpURLConnection openConnection(final String digest, final String method) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + digest).openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setUseCaches(false);
+        connection.setRequestMethod(method);
+        return connection;
+    }
+}
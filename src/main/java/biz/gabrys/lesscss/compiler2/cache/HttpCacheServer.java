@@ -0,0 +1,188 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+
+/**
+ * <p>
+ * Embeddable HTTP server which serves entries of a {@link CacheBackend} using the protocol of the
+ * {@link HttpCacheBackend}. The server is based on the {@code com.sun.net.httpserver} package, so it does not require
+ * any external dependencies. It is intended for tests and small teams; it does not support authentication or HTTPS.
+ * </p>
+ * <p>
+ * Example code:
+ * </p>
+ *
+ * <pre>
+ * try ({@link HttpCacheServer} server = new {@link #HttpCacheServer(InetSocketAddress, CacheBackend) HttpCacheServer}(new InetSocketAddress(8080), new {@link DirectoryCacheBackend}(new File("/var/cache/less"), 1024 * 1024 * 1024))) {
+ *     server.{@link #start() start}();
+ *     ...
+ * }
+ *
+ * // on build machines
+ * NativeLessCompiler compiler = new {@link biz.gabrys.lesscss.compiler2.CachingNativeLessCompilerBuilder CachingNativeLessCompilerBuilder}().{@link biz.gabrys.lesscss.compiler2.CachingNativeLessCompilerBuilder#backend(CacheBackend) backend}(new {@link HttpCacheBackend}("http://cache-server:8080/")).build();
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class HttpCacheServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final CacheBackend storage;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new instance which listens on an ephemeral port of the loopback address. The server is not started.
+     * @param storage the backend which stores entries (cannot be {@code null}).
+     * @throws IllegalArgumentException if the storage is {@code null}.
+     * @throws IOException if the server cannot be bound.
+     * @since 2.0.1
+     */
+    public HttpCacheServer(final CacheBackend storage) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), storage);
+    }
+
+    /**
+     * Constructs a new instance. The server is not started.
+     * @param address the address to listen on (cannot be {@code null}).
+     * @param storage the backend which stores entries (cannot be {@code null}).
+     * @throws IllegalArgumentException if any parameter is {@code null}.
+     * @throws IOException if the server cannot be bound.
+     * @since 2.0.1
+     */
+    public HttpCacheServer(final InetSocketAddress address, final CacheBackend storage) throws IOException {
+        if (address == null) {
+            throw new IllegalArgumentException("Address cannot be null");
+        }
+        if (storage == null) {
+            throw new IllegalArgumentException("Storage cannot be null");
+        }
+        this.storage = storage;
+        server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the server.
+     * @since 2.0.1
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the base URL of the entries served by the server.
+     * @return the base URL which ends with the slash.
+     * @since 2.0.1
+     */
+    public String getBaseUrl() {
+        final InetSocketAddress address = server.getAddress();
+        final String host = address.getAddress().isAnyLocalAddress() ? InetAddress.getLoopbackAddress().getHostAddress()
+                : address.getAddress().getHostAddress();
+        return String.format("http://%s:%s/", host.contains(":") ? '[' + host + ']' : host, address.getPort());
+    }
+
+    /**
+     * Stops the server. Requests which are being processed are completed.
+     * @since 2.0.1
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        // the request body is always consumed, otherwise the server does not reuse the connection (HTTP keep-alive)
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            final String digest = exchange.getRequestURI().getPath().substring(1);
+            final String method = exchange.getRequestMethod();
+            if ("GET".equals(method)) {
+                handleGet(exchange, digest);
+            } else if ("PUT".equals(method)) {
+                storage.put(digest, requestBody);
+                sendEmptyResponse(exchange, HttpURLConnection.HTTP_NO_CONTENT);
+            } else {
+                sendEmptyResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD);
+            }
+        } catch (final IllegalArgumentException e) {
+            sendErrorResponse(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+        } catch (final IOException | RuntimeException e) {
+            sendErrorResponse(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // the entry is read before the headers are sent, so a storage failure is reported by the response code and the
+    // content length lets clients detect a body truncated by a connection failure
+    private void handleGet(final HttpExchange exchange, final String digest) throws IOException {
+        final byte[] content;
+        try (InputStream stream = storage.get(digest)) {
+            if (stream == null) {
+                sendEmptyResponse(exchange, HttpURLConnection.HTTP_NOT_FOUND);
+                return;
+            }
+            content = IOUtils.toByteArray(stream);
+        }
+        if (content.length == 0) {
+            // the length 0 means a chunked response body
+            sendEmptyResponse(exchange, HttpURLConnection.HTTP_OK);
+            return;
+        }
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, content.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content);
+        }
+    }
+
+    private static void sendEmptyResponse(final HttpExchange exchange, final int responseCode) throws IOException {
+        exchange.sendResponseHeaders(responseCode, -1);
+    }
+
+    // headers cannot be sent twice, so a failure after sending them only closes the exchange
+    private static void sendErrorResponse(final HttpExchange exchange, final int responseCode) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            sendEmptyResponse(exchange, responseCode);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "lesscss-cache-server-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+/**
+ * Backends responsible for storing cache entries outside of the JVM memory, e.g. in a local directory or on a remote
+ * server.
+ * @since 2.0.1
+ */
+package biz.gabrys.lesscss.compiler2.cache;
@@ -0,0 +1,385 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * Represents a decorator which remembers results of operations executed by an other file system, so files imported
+ * by many source files or by many compilations are normalized, checked and fetched once per configured period. The
+ * decorated file system is configured via parameters:
+ * </p>
+ * <ul>
+ * <li>{@value #DELEGATE_PARAMETER} - a class name of the decorated file system (required), the file system is
+ * configured with the same parameters</li>
+ * <li>{@value #NORMALIZE_TTL_PARAMETER}, {@value #EXPAND_REDIRECTION_TTL_PARAMETER}, {@value #EXISTS_TTL_PARAMETER}
+ * and {@value #FETCH_TTL_PARAMETER} - times in milliseconds after which results of the operations expire (default:
+ * {@code -1} for the normalization, {@value #DEFAULT_TTL} for other operations)</li>
+ * <li>{@value #MISSING_TTL_PARAMETER} - a time in milliseconds after which information about missing files (the
+ * {@code false} existence checks and failed fetches) expires (default: {@value #DEFAULT_MISSING_TTL})</li>
+ * <li>{@value #MAX_FILES_PARAMETER} - a maximum number of remembered files data, the least recently used files are
+ * removed first (default: {@value #DEFAULT_MAX_FILES})</li>
+ * <li>{@value #MAX_PATHS_PARAMETER} - a maximum number of remembered results of every other operation (default:
+ * {@value #DEFAULT_MAX_PATHS})</li>
+ * </ul>
+ * <p>
+ * The time {@code 0} disables remembering of results, a negative time means that results never expire. A remembered
+ * failed fetch is reported by a new exception of the same type (or an {@link IOException} if the type cannot be
+ * created) with the same message, whose cause is the original exception. The
+ * {@link #fetchIfExists(String)} method uses the same method of the decorated file system when it is a
+ * {@link FetchingFileSystem}, otherwise the {@link #exists(String)} and {@link #fetch(String)} methods. File systems
+ * configured with equal parameters share the remembered results in the JVM, so they are reused by all compilers and
+ * compilations (add e.g. a {@code cacheName} parameter to separate caches). Example:
+ * </p>
+ *
+ * <pre>
+ * Map&lt;String, String&gt; parameters = new HashMap&lt;&gt;();
+ * parameters.put(CachingFileSystem.DELEGATE_PARAMETER, HttpFileSystem.class.getName());
+ * parameters.put(CachingFileSystem.FETCH_TTL_PARAMETER, "300000");
+ * List&lt;FileSystemOption&gt; fileSystems = new FileSystemOptionsBuilder().appendCustom(CachingFileSystem.class, parameters)
+ *         .appendLocal().build();
+ * </pre>
+ *
+ * @since 2.0.1
+ */
+public class CachingFileSystem implements FetchingFileSystem {
+
+    /**
+     * Stores a name of the parameter which contains a class name of the decorated file system ({@value}).
+     * @since 2.0.1
+     */
+    public static final String DELEGATE_PARAMETER = "delegate";
+    /**
+     * Stores a name of the parameter which contains an expiration time of the normalized paths ({@value}).
+     * @since 2.0.1
+     */
+    public static final String NORMALIZE_TTL_PARAMETER = "normalizeTtl";
+    /**
+     * Stores a name of the parameter which contains an expiration time of the expanded redirections ({@value}).
+     * @since 2.0.1
+     */
+    public static final String EXPAND_REDIRECTION_TTL_PARAMETER = "expandRedirectionTtl";
+    /**
+     * Stores a name of the parameter which contains an expiration time of the positive existence checks ({@value}).
+     * @since 2.0.1
+     */
+    public static final String EXISTS_TTL_PARAMETER = "existsTtl";
+    /**
+     * Stores a name of the parameter which contains an expiration time of the fetched files data ({@value}).
+     * @since 2.0.1
+     */
+    public static final String FETCH_TTL_PARAMETER = "fetchTtl";
+    /**
+     * Stores a name of the parameter which contains an expiration time of information about missing files
+     * ({@value}).
+     * @since 2.0.1
+     */
+    public static final String MISSING_TTL_PARAMETER = "missingTtl";
+    /**
+     * Stores a name of the parameter which contains a maximum number of remembered files data ({@value}).
+     * @since 2.0.1
+     */
+    public static final String MAX_FILES_PARAMETER = "maxFiles";
+    /**
+     * Stores a name of the parameter which contains a maximum number of remembered results of other operations
+     * ({@value}).
+     * @since 2.0.1
+     */
+    public static final String MAX_PATHS_PARAMETER = "maxPaths";
+
+    /**
+     * Stores a default expiration time of the remembered results in milliseconds ({@value}).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_TTL = 60000;
+    /**
+     * Stores a default expiration time of information about missing files in milliseconds ({@value}).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_MISSING_TTL = 5000;
+    /**
+     * Stores a default maximum number of remembered files data ({@value}).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MAX_FILES = 100;
+    /**
+     * Stores a default maximum number of remembered results of other operations ({@value}).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MAX_PATHS = 10000;
+
+    private static final Map<Map<String, String>, Cache> CACHES = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+    private FileSystem delegate;
+    private Cache cache;
+    private long normalizeTtl;
+    private long expandRedirectionTtl;
+    private long existsTtl;
+    private long fetchTtl;
+    private long missingTtl;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public CachingFileSystem() {
+        this(CachingFileSystem::currentTime);
+    }
+
+    // the clock returns the current time in milliseconds
+    CachingFileSystem(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Removes all results remembered by the file systems in the JVM.
+     * @since 2.0.1
+     */
+    public static void clearCaches() {
+        CACHES.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the parameters do not contain a class name of the decorated file system or
+     *             contain an invalid number.
+     * @throws Exception if the decorated file system cannot be created or configured.
+     * @since 2.0.1
+     */
+    @Override
+    public void configure(final Map<String, String> parameters) throws Exception {
+        final String className = parameters.get(DELEGATE_PARAMETER);
+        if (className == null || className.trim().isEmpty()) {
+            throw new IllegalArgumentException(String.format("Parameter \"%s\" is required", DELEGATE_PARAMETER));
+        }
+        normalizeTtl = getNumber(parameters, NORMALIZE_TTL_PARAMETER, -1);
+        expandRedirectionTtl = getNumber(parameters, EXPAND_REDIRECTION_TTL_PARAMETER, DEFAULT_TTL);
+        existsTtl = getNumber(parameters, EXISTS_TTL_PARAMETER, DEFAULT_TTL);
+        fetchTtl = getNumber(parameters, FETCH_TTL_PARAMETER, DEFAULT_TTL);
+        missingTtl = getNumber(parameters, MISSING_TTL_PARAMETER, DEFAULT_MISSING_TTL);
+        final int maxFiles = (int) getNumber(parameters, MAX_FILES_PARAMETER, DEFAULT_MAX_FILES);
+        final int maxPaths = (int) getNumber(parameters, MAX_PATHS_PARAMETER, DEFAULT_MAX_PATHS);
+
+        delegate = Class.forName(className.trim()).asSubclass(FileSystem.class).newInstance();
+        delegate.configure(parameters);
+        cache = CACHES.computeIfAbsent(new TreeMap<>(parameters), key -> new Cache(maxFiles, maxPaths));
+    }
+
+    private static long getNumber(final Map<String, String> parameters, final String name, final long defaultValue) {
+        final String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Parameter \"%s\" must be a number, but it is equal to \"%s\"", name, value),
+                    e);
+        }
+    }
+
+    @Override
+    public boolean isSupported(final String path) {
+        return delegate.isSupported(path);
+    }
+
+    @Override
+    public String normalize(final String path) throws Exception {
+        final long now = clock.getAsLong();
+        final Entry<String> entry = cache.normalized.get(path, now);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        final String normalized = delegate.normalize(path);
+        cache.normalized.put(path, new Entry<>(normalized, null, normalizeTtl, now));
+        return normalized;
+    }
+
+    @Override
+    public String expandRedirection(final String path) throws Exception {
+        final long now = clock.getAsLong();
+        final Entry<String> entry = cache.expanded.get(path, now);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        final String expanded = delegate.expandRedirection(path);
+        cache.expanded.put(path, new Entry<>(expanded, null, expandRedirectionTtl, now));
+        return expanded;
+    }
+
+    @Override
+    public boolean exists(final String path) throws Exception {
+        final long now = clock.getAsLong();
+        final Entry<Boolean> entry = cache.existing.get(path, now);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        final boolean exists = delegate.exists(path);
+        cache.existing.put(path, new Entry<>(exists, null, exists ? existsTtl : missingTtl, now));
+        return exists;
+    }
+
+    @Override
+    public FileData fetch(final String path) throws Exception {
+        final long now = clock.getAsLong();
+        final Entry<FileData> entry = cache.fetched.get(path, now);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        final FileData data;
+        try {
+            data = delegate.fetch(path);
+        } catch (final Exception e) {
+            cache.fetched.put(path, new Entry<FileData>(null, e, missingTtl, now));
+            throw e;
+        }
+        cache.fetched.put(path, new Entry<>(data, null, fetchTtl, now));
+        return data;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public FileData fetchIfExists(final String path) throws Exception {
+        if (!(delegate instanceof FetchingFileSystem)) {
+            return exists(path) ? fetch(path) : null;
+        }
+        final long now = clock.getAsLong();
+        final Entry<Boolean> existence = cache.existing.get(path, now);
+        if (existence != null && !existence.getValue()) {
+            return null;
+        }
+        final Entry<FileData> entry = cache.fetched.get(path, now);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        final FileData data;
+        try {
+            data = ((FetchingFileSystem) delegate).fetchIfExists(path);
+        } catch (final Exception e) {
+            cache.fetched.put(path, new Entry<FileData>(null, e, missingTtl, now));
+            throw e;
+        }
+        if (data == null) {
+            cache.existing.put(path, new Entry<>(false, null, missingTtl, now));
+            return null;
+        }
+        cache.existing.put(path, new Entry<>(true, null, existsTtl, now));
+        cache.fetched.put(path, new Entry<>(data, null, fetchTtl, now));
+        return data;
+    }
+
+    FileSystem getDelegate() {
+        return delegate;
+    }
+
+    private static long currentTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static class Cache {
+
+        private final Store<String> normalized;
+        private final Store<String> expanded;
+        private final Store<Boolean> existing;
+        private final Store<FileData> fetched;
+
+        Cache(final int maxFiles, final int maxPaths) {
+            normalized = new Store<>(maxPaths);
+            expanded = new Store<>(maxPaths);
+            existing = new Store<>(maxPaths);
+            fetched = new Store<>(maxFiles);
+        }
+    }
+
+    private static class Store<V> {
+
+        private final Map<String, Entry<V>> entries;
+
+        Store(final int maxSize) {
+            entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 5474521853716270839L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Entry<V>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized Entry<V> get(final String path, final long now) {
+            final Entry<V> entry = entries.get(path);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(path);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(final String path, final Entry<V> entry) {
+            if (entry.ttl != 0) {
+                entries.put(path, entry);
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final Class<? extends Exception> failureType;
+        private final String failureMessage;
+        private final Exception failure;
+        private final long ttl;
+        private final long expiration;
+
+        Entry(final V value, final Exception failure, final long ttl, final long now) {
+            this.value = value;
+            failureType = failure != null ? failure.getClass() : null;
+            failureMessage = failure != null ? failure.getMessage() : null;
+            this.failure = failure;
+            this.ttl = ttl;
+            expiration = now + ttl;
+        }
+
+        boolean isExpired(final long now) {
+            return ttl >= 0 && now - expiration >= 0;
+        }
+
+        V getValue() throws Exception {
+            if (failure != null) {
+                throw createException();
+            }
+            return value;
+        }
+
+        // every call throws a new exception, so callers do not share stack traces and suppressed exceptions
+        private Exception createException() {
+            try {
+                return failureType.getConstructor(String.class, Throwable.class).newInstance(failureMessage, failure);
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                return new IOException(failureMessage, failure);
+            }
+        }
+    }
+}
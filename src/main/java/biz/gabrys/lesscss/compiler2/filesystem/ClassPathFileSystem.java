@@ -33,7 +33,7 @@ import biz.gabrys.lesscss.compiler2.io.IOUtils;
  * </ul>
  * @since 2.0.0
  */
-public class ClassPathFileSystem implements FileSystem {
+public class ClassPathFileSystem implements FetchingFileSystem {
 
     private static final String PROTOCOL_PREFIX = "classpath://";
 
@@ -82,6 +82,20 @@ public class ClassPathFileSystem implements FileSystem {
         return new FileData(IOUtils.toByteArray(stream));
     }
 
+    /**
+     * {@inheritDoc}
+     * @since 2.0.1
+     */
+    @Override
+    public FileData fetchIfExists(final String path) throws IOException {
+        final String name = path.substring(PROTOCOL_PREFIX.length());
+        final InputStream stream = getClassLoader().getResourceAsStream(name);
+        if (stream == null) {
+            return null;
+        }
+        return new FileData(IOUtils.toByteArray(stream));
+    }
+
     /**
      * Returns the context {@link ClassLoader} for the currently executing thread object. The reason why this method has
      * been extracted is allow stubbing and mocking class loader objects in tests.
@@ -0,0 +1,34 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+/**
+ * Represents a {@link FileSystem file system} which checks whether a file exists and fetches its data in a single
+ * operation. The compiler prefers the {@link #fetchIfExists(String)} method over the {@link #exists(String)} and
+ * {@link #fetch(String)} pair while resolving imported files, so file systems which access files via network (e.g. HTTP
+ * or FTP) need only one request per file.
+ * @since 2.0.1
+ */
+public interface FetchingFileSystem extends FileSystem {
+
+    /**
+     * Returns a data of the file specified by a path or {@code null} if the file does not exist. The method is
+     * equivalent to the {@link #exists(String)} method followed by the {@link #fetch(String)} method.
+     * @param path the direct normalized file path (never {@code null}).
+     * @return the file data or {@code null} if the file does not exist.
+     * @throws Exception if any error occurs.
+     * @since 2.0.1
+     * @see #expandRedirection(String)
+     */
+    FileData fetchIfExists(String path) throws Exception;
+}
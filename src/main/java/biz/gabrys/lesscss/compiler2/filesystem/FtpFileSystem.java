@@ -41,7 +41,7 @@ import org.apache.commons.net.ftp.FTPReply;
  * </p>
  * @since 2.0.0
  */
-public class FtpFileSystem implements FileSystem {
+public class FtpFileSystem implements FetchingFileSystem {
 
     /**
      * Constructs a new instance.
@@ -131,6 +131,27 @@ public class FtpFileSystem implements FileSystem {
         }
     }
 
+    /**
+     * {@inheritDoc} The file is checked and downloaded using a single connection. Like in {@link #exists(String)}, every
+     * refused retrieval of the file is treated as a missing file.
+     * @since 2.0.1
+     */
+    @Override
+    public FileData fetchIfExists(final String path) throws IOException {
+        final URL url = new URL(path);
+        FTPClient connection = null;
+        try {
+            connection = makeConnection(url);
+            try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+                return connection.retrieveFile(url.getPath(), outputStream) ? new FileData(outputStream.toByteArray()) : null;
+            }
+        } catch (final IOException e) {
+            throw new IOException(String.format("cannot download source \"%s\" file", url), e);
+        } finally {
+            disconnect(connection);
+        }
+    }
+
     /**
      * Opens and configures a new {@link FTPClient} instance that represents a connection to the remote server referred
      * to by the URL.
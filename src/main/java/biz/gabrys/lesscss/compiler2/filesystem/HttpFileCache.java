@@ -0,0 +1,292 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+import biz.gabrys.lesscss.compiler2.util.DigestBuilder;
+
+/**
+ * Stores files downloaded by the {@link HttpFileSystem} with their validators ({@code ETag} and {@code Last-Modified}
+ * headers) and freshness lifetimes ({@code Cache-Control} header). Files are kept in memory and optionally in a
+ * {@link CacheBackend}, which shares them with other JVMs and restarted applications. The backend stores metadata of
+ * a file separately from its content, so a revalidated file updates only the metadata. The cache is best-effort, so
+ * backend failures are treated as missing files.
+ * @since 2.0.1
+ */
+class HttpFileCache {
+
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("(?i)(?:^|,)\\s*max-age\\s*=\\s*\"?(\\d+)");
+    private static final Pattern NO_CACHE_PATTERN = Pattern.compile("(?i)(?:^|,)\\s*no-cache\\b");
+    private static final Pattern NO_STORE_PATTERN = Pattern.compile("(?i)(?:^|,)\\s*no-store\\b");
+
+    private final Map<String, Entry> entries;
+    private final CacheBackend backend;
+
+    HttpFileCache(final int maxFiles, final CacheBackend backend) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 8406126738236640952L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxFiles;
+            }
+        };
+        this.backend = backend;
+    }
+
+    Entry get(final String url) {
+        synchronized (entries) {
+            final Entry entry = entries.get(url);
+            if (entry != null || backend == null) {
+                return entry;
+            }
+        }
+        final Entry entry = load(url);
+        if (entry != null) {
+            synchronized (entries) {
+                entries.put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    void put(final String url, final Entry entry) {
+        synchronized (entries) {
+            entries.put(url, entry);
+        }
+        if (backend != null) {
+            final byte[] content = entry.data.getContent();
+            final String contentDigest = createContentDigest(content);
+            if (storeContent(contentDigest, content)) {
+                storeMetadata(url, entry, contentDigest);
+            }
+        }
+    }
+
+    // the entry is confirmed by a 304 response, so its content is already stored by the backend
+    void update(final String url, final Entry entry) {
+        synchronized (entries) {
+            entries.put(url, entry);
+        }
+        if (backend != null) {
+            storeMetadata(url, entry, createContentDigest(entry.data.getContent()));
+        }
+    }
+
+    // the entry stored by the backend is stale, so it is always revalidated
+    void remove(final String url) {
+        synchronized (entries) {
+            entries.remove(url);
+        }
+    }
+
+    private Entry load(final String url) {
+        try (InputStream stream = backend.get(createDigest(url))) {
+            if (stream == null) {
+                return null;
+            }
+            try (DataInputStream input = new DataInputStream(stream)) {
+                if (!url.equals(readString(input))) {
+                    return null;
+                }
+                final String etag = readString(input);
+                final String lastModified = readString(input);
+                final long time = input.readLong();
+                final long maxAge = input.readLong();
+                final String encoding = readString(input);
+                final byte[] content = loadContent(readString(input));
+                return content != null ? new Entry(new FileData(content, encoding), etag, lastModified, time, maxAge) : null;
+            }
+        } catch (final IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private byte[] loadContent(final String digest) throws IOException {
+        try (InputStream stream = backend.get(digest)) {
+            if (stream == null) {
+                return null;
+            }
+            final byte[] content = IOUtils.toByteArray(stream);
+            return digest.equals(createContentDigest(content)) ? content : null;
+        }
+    }
+
+    private boolean storeContent(final String digest, final byte[] content) {
+        try {
+            backend.put(digest, new ByteArrayInputStream(content));
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            // the cache is best-effort
+            return false;
+        }
+    }
+
+    private void storeMetadata(final String url, final Entry entry, final String contentDigest) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                writeString(output, url);
+                writeString(output, entry.etag);
+                writeString(output, entry.lastModified);
+                output.writeLong(entry.time);
+                output.writeLong(entry.maxAge);
+                writeString(output, entry.data.getEncoding());
+                writeString(output, contentDigest);
+            }
+            backend.put(createDigest(url), new ByteArrayInputStream(bytes.toByteArray()));
+        } catch (final IOException | RuntimeException e) {
+            // the cache is best-effort
+        }
+    }
+
+    private static String createDigest(final String url) {
+        return new DigestBuilder().append("http-file").append(url).build();
+    }
+
+    private static String createContentDigest(final byte[] content) {
+        return new DigestBuilder().append("http-file-content").append(content).build();
+    }
+
+    private static void writeString(final DataOutputStream output, final String text) throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Entry {
+
+        private final FileData data;
+        private final String etag;
+        private final String lastModified;
+        private final long time;
+        private final long maxAge;
+
+        Entry(final FileData data, final String etag, final String lastModified, final long time, final long maxAge) {
+            this.data = data;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.time = time;
+            this.maxAge = maxAge;
+        }
+
+        /**
+         * Creates an entry from a downloaded file.
+         * @param data the file data.
+         * @param connection the connection which has downloaded the file.
+         * @param now the current time in milliseconds.
+         * @return the entry or {@code null} if the response forbids storing or can be neither reused nor revalidated.
+         */
+        static Entry create(final FileData data, final HttpURLConnection connection, final long now) {
+            final String cacheControl = connection.getHeaderField("Cache-Control");
+            if (cacheControl != null && NO_STORE_PATTERN.matcher(cacheControl).find()) {
+                return null;
+            }
+            final String etag = connection.getHeaderField("ETag");
+            final String lastModified = connection.getHeaderField("Last-Modified");
+            final long maxAge = readMaxAge(cacheControl, 0);
+            if (etag == null && lastModified == null && maxAge == 0) {
+                return null;
+            }
+            return new Entry(data, etag, lastModified, now, maxAge);
+        }
+
+        // the Cache-Control header value is null when the header is missing
+        private static long readMaxAge(final String cacheControl, final long defaultValue) {
+            if (cacheControl == null) {
+                return defaultValue;
+            }
+            if (NO_CACHE_PATTERN.matcher(cacheControl).find()) {
+                return 0;
+            }
+            final Matcher matcher = MAX_AGE_PATTERN.matcher(cacheControl);
+            if (!matcher.find()) {
+                return 0;
+            }
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+            } catch (final NumberFormatException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * Creates an entry confirmed by a {@code 304 Not Modified} response. Headers sent with the response replace
+         * the stored ones.
+         * @param connection the connection which has revalidated the file.
+         * @param now the current time in milliseconds.
+         * @return the new entry.
+         */
+        Entry revalidate(final HttpURLConnection connection, final long now) {
+            final String newEtag = connection.getHeaderField("ETag");
+            final String newLastModified = connection.getHeaderField("Last-Modified");
+            return new Entry(data, newEtag != null ? newEtag : etag, newLastModified != null ? newLastModified : lastModified, now,
+                    readMaxAge(connection.getHeaderField("Cache-Control"), maxAge));
+        }
+
+        void addValidators(final HttpURLConnection connection) {
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+
+        boolean isFresh(final long now) {
+            return now - time < maxAge && now >= time;
+        }
+
+        FileData getData() {
+            return data;
+        }
+
+        // returns null when the response has not contained any validator
+        String getVersion() {
+            if (etag == null && lastModified == null) {
+                return null;
+            }
+            return etag + '|' + lastModified;
+        }
+    }
+}
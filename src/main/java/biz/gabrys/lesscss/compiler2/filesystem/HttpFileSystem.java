@@ -12,7 +12,10 @@
  */
 package biz.gabrys.lesscss.compiler2.filesystem;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -21,12 +24,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import biz.gabrys.lesscss.compiler2.cache.DirectoryCacheBackend;
 import biz.gabrys.lesscss.compiler2.io.IOUtils;
 
 /**
@@ -48,9 +56,61 @@ import biz.gabrys.lesscss.compiler2.io.IOUtils;
  * <li>http://example.org/style.less</li>
  * <li>https://example.org/styles/main.less</li>
  * </ul>
+ * <p>
+ * The file system is configured via optional parameters:
+ * </p>
+ * <ul>
+ * <li>{@value #KEEP_ALIVE_PARAMETER} - whether connections are kept open for next requests (HTTP keep-alive) instead
+ * of being closed after every request (default: {@code false})</li>
+ * <li>{@value #MAX_CONNECTIONS_PARAMETER} - a maximum number of simultaneous connections to a single host used by
+ * the keep-alive file systems in the JVM, the requests above the limit wait for a free connection. The limit is
+ * shared by all file systems and equals the value of the file system which has connected to the host first (default:
+ * {@value #DEFAULT_MAX_CONNECTIONS})</li>
+ * <li>{@value #CONNECT_TIMEOUT_PARAMETER} and {@value #READ_TIMEOUT_PARAMETER} - connect and read timeouts in
+ * milliseconds, {@code 0} means an infinite timeout (default: {@code 0})</li>
+ * <li>{@value #SINGLE_REQUEST_PARAMETER} - whether a file is resolved using a single chain of {@code GET} requests
+ * (default: {@code false}), see below</li>
+ * </ul>
+ * <p>
+ * By default the {@link #expandRedirection(String)} method sends a {@code HEAD} request for every redirection and for
+ * the final path, and the {@link #exists(String)} and {@link #fetch(String)} methods send own requests. In the single
+ * request mode the {@link #expandRedirection(String)} method follows redirections using {@code GET} requests and
+ * remembers the last response, so the next {@link #expandRedirection(String)}, {@link #exists(String)},
+ * {@link #fetch(String)} and {@link #fetchIfExists(String)} calls for the final path do not send requests. A
+ * remembered response is used by one fetch and expires after 10 seconds.
+ * </p>
+ * <p>
+ * The file system can also keep downloaded files in an HTTP cache configured via parameters:
+ * </p>
+ * <ul>
+ * <li>{@value #HTTP_CACHE_PARAMETER} - whether downloaded files are kept in the JVM memory (default:
+ * {@code false})</li>
+ * <li>{@value #HTTP_CACHE_DIRECTORY_PARAMETER} - a directory which additionally stores downloaded files, so they are
+ * shared by many JVMs and restarted applications (enables the cache, default: none)</li>
+ * <li>{@value #HTTP_CACHE_MAX_FILES_PARAMETER} - a maximum number of files kept in memory, the least recently used
+ * files are removed first (default: {@value #DEFAULT_HTTP_CACHE_MAX_FILES})</li>
+ * <li>{@value #HTTP_CACHE_MAX_SIZE_PARAMETER} - a maximum size of the directory in bytes (default:
+ * {@value #DEFAULT_HTTP_CACHE_MAX_SIZE})</li>
+ * </ul>
+ * <p>
+ * A cached file is used without requests until its {@code Cache-Control: max-age} lifetime expires. Then it is
+ * revalidated using the {@code If-None-Match} and {@code If-Modified-Since} headers with values of the stored
+ * {@code ETag} and {@code Last-Modified} headers, so an unchanged file costs a {@code 304 Not Modified} response
+ * without a body. Responses with the {@code Cache-Control: no-store} directive are not cached and responses with the
+ * {@code no-cache} directive are revalidated every time. File systems configured with equal cache parameters share
+ * the cached files in the JVM (see {@link #clearCaches()}). The validators of cached files are also returned as
+ * {@link #getVersion(String) file versions}.
+ * </p>
+ * <p>
+ * Kept-alive connections are stored by the JVM (see the {@code http.keepAlive} and {@code http.maxConnections}
+ * <a href="https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html">system properties</a>),
+ * so an import of many files from the same host pays for the TCP and TLS handshakes once. The JVM keeps up to
+ * {@code http.maxConnections} (default: 5) idle connections per host, so the maximum number of connections should
+ * not be greater than this value.
+ * </p>
  * @since 2.0.0
  */
-public class HttpFileSystem implements FileSystem {
+public class HttpFileSystem implements FetchingFileSystem, VersionedFileSystem {
 
     /**
      * Stores HTTP {@code OK} (200) and {@code NOT FOUND} (404) codes.
@@ -90,7 +150,92 @@ public class HttpFileSystem implements FileSystem {
         OK_NOTFOUND_REDIRECT_CODES = Collections.unmodifiableCollection(codes);
     }
 
+    /**
+     * Stores a name of the parameter which enables the HTTP keep-alive connections ({@value}).
+     * @since 2.0.1
+     */
+    public static final String KEEP_ALIVE_PARAMETER = "keepAlive";
+    /**
+     * Stores a name of the parameter which contains a maximum number of simultaneous connections to a single host
+     * ({@value}).
+     * @since 2.0.1
+     */
+    public static final String MAX_CONNECTIONS_PARAMETER = "maxConnections";
+    /**
+     * Stores a name of the parameter which contains a connect timeout in milliseconds ({@value}).
+     * @since 2.0.1
+     */
+    public static final String CONNECT_TIMEOUT_PARAMETER = "connectTimeout";
+    /**
+     * Stores a name of the parameter which contains a read timeout in milliseconds ({@value}).
+     * @since 2.0.1
+     */
+    public static final String READ_TIMEOUT_PARAMETER = "readTimeout";
+    /**
+     * Stores a name of the parameter which enables resolving files using a single chain of {@code GET} requests
+     * ({@value}).
+     * @since 2.0.1
+     */
+    public static final String SINGLE_REQUEST_PARAMETER = "singleRequest";
+    /**
+     * Stores a name of the parameter which enables the HTTP cache ({@value}).
+     * @since 2.0.1
+     */
+    public static final String HTTP_CACHE_PARAMETER = "httpCache";
+    /**
+     * Stores a name of the parameter which contains a directory of the HTTP cache ({@value}).
+     * @since 2.0.1
+     */
+    public static final String HTTP_CACHE_DIRECTORY_PARAMETER = "httpCacheDirectory";
+    /**
+     * Stores a name of the parameter which contains a maximum number of files kept in memory by the HTTP cache
+     * ({@value}).
+     * @since 2.0.1
+     */
+    public static final String HTTP_CACHE_MAX_FILES_PARAMETER = "httpCacheMaxFiles";
+    /**
+     * Stores a name of the parameter which contains a maximum size of the HTTP cache directory in bytes ({@value}).
+     * @since 2.0.1
+     */
+    public static final String HTTP_CACHE_MAX_SIZE_PARAMETER = "httpCacheMaxSize";
+
+    /**
+     * Stores a default maximum number of simultaneous connections to a single host ({@value}).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+    /**
+     * Stores a default maximum number of files kept in memory by the HTTP cache ({@value}).
+     * @since 2.0.1
+     */
+    public static final int DEFAULT_HTTP_CACHE_MAX_FILES = 100;
+    /**
+     * Stores a default maximum size of the HTTP cache directory in bytes ({@value}).
+     * @since 2.0.1
+     */
+    public static final long DEFAULT_HTTP_CACHE_MAX_SIZE = 50L * 1024 * 1024;
+
     private static final Pattern CHARSET_PATTERN = Pattern.compile("(?i)\\bcharset=\\s*\"?([^\\s;\"]*)");
+    private static final Map<String, Semaphore> HOST_CONNECTIONS = new ConcurrentHashMap<>();
+    private static final Map<String, HttpFileCache> HTTP_CACHES = new ConcurrentHashMap<>();
+    private static final long RESPONSE_TTL = 10000;
+    private static final int MAX_RESPONSES = 32;
+
+    private final Map<String, Response> responses = new LinkedHashMap<String, Response>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = -3183906255218047012L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Response> eldest) {
+            return size() > MAX_RESPONSES;
+        }
+    };
+    private boolean keepAlive;
+    private boolean singleRequest;
+    private HttpFileCache httpCache;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int connectTimeout;
+    private int readTimeout;
 
     /**
      * Constructs a new instance.
@@ -100,9 +245,71 @@ public class HttpFileSystem implements FileSystem {
         // do nothing
     }
 
+    /**
+     * Removes all files kept in the JVM memory by the HTTP caches of the file systems. Files stored in the cache
+     * directories are not removed.
+     * @since 2.0.1
+     */
+    public static void clearCaches() {
+        HTTP_CACHES.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the parameters contain an invalid number.
+     * @since 2.0.0
+     */
     @Override
     public void configure(final Map<String, String> parameters) {
-        // do nothing
+        keepAlive = Boolean.parseBoolean(parameters.get(KEEP_ALIVE_PARAMETER));
+        singleRequest = Boolean.parseBoolean(parameters.get(SINGLE_REQUEST_PARAMETER));
+        maxConnections = getInt(parameters, MAX_CONNECTIONS_PARAMETER, DEFAULT_MAX_CONNECTIONS, 1);
+        connectTimeout = getInt(parameters, CONNECT_TIMEOUT_PARAMETER, 0, 0);
+        readTimeout = getInt(parameters, READ_TIMEOUT_PARAMETER, 0, 0);
+        httpCache = createHttpCache(parameters);
+    }
+
+    private static HttpFileCache createHttpCache(final Map<String, String> parameters) {
+        final String directory = parameters.get(HTTP_CACHE_DIRECTORY_PARAMETER);
+        final boolean directoryDefined = directory != null && !directory.trim().isEmpty();
+        if (!directoryDefined && !Boolean.parseBoolean(parameters.get(HTTP_CACHE_PARAMETER))) {
+            return null;
+        }
+        final int maxFiles = getInt(parameters, HTTP_CACHE_MAX_FILES_PARAMETER, DEFAULT_HTTP_CACHE_MAX_FILES, 1);
+        final long maxSize = getNumber(parameters, HTTP_CACHE_MAX_SIZE_PARAMETER, DEFAULT_HTTP_CACHE_MAX_SIZE, 1);
+        final File cacheDirectory = directoryDefined ? new File(directory.trim()).getAbsoluteFile() : null;
+        final String key = String.format("%s|%s|%s", cacheDirectory, maxFiles, maxSize);
+        return HTTP_CACHES.computeIfAbsent(key,
+                k -> new HttpFileCache(maxFiles, cacheDirectory != null ? new DirectoryCacheBackend(cacheDirectory, maxSize) : null));
+    }
+
+    private static long getNumber(final Map<String, String> parameters, final String name, final long defaultValue,
+            final long minValue) {
+        final String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        final long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Parameter \"%s\" must be a number, but it is equal to \"%s\"", name, value),
+                    e);
+        }
+        if (number < minValue) {
+            throw new IllegalArgumentException(
+                    String.format("Parameter \"%s\" must be greater than or equal to %s, but it is equal to %s", name, minValue, number));
+        }
+        return number;
+    }
+
+    private static int getInt(final Map<String, String> parameters, final String name, final int defaultValue, final int minValue) {
+        final long number = getNumber(parameters, name, defaultValue, minValue);
+        if (number > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Parameter \"%s\" must be less than or equal to %s, but it is equal to %s",
+                    name, Integer.MAX_VALUE, number));
+        }
+        return (int) number;
     }
 
     @Override
@@ -117,25 +324,51 @@ public class HttpFileSystem implements FileSystem {
 
     @Override
     public String expandRedirection(final String path) throws IOException, URISyntaxException {
+        if (singleRequest && getResponse(path, false) != null) {
+            return path;
+        }
+        final HttpFileCache.Entry cachedFile = getCachedFile(path);
+        if (cachedFile != null && cachedFile.isFresh(System.currentTimeMillis())) {
+            return path;
+        }
         HttpURLConnection connection = null;
         String redirectedPath;
         try {
-            connection = makeConnection(new URL(path), false);
+            connection = makeConnection(new URL(path), singleRequest);
+            if (singleRequest) {
+                addValidators(connection, cachedFile);
+            }
             final int responseCode = connection.getResponseCode();
+            if (singleRequest && isNotModified(responseCode, cachedFile)) {
+                putResponse(path, new Response(revalidate(path, cachedFile, connection), currentTime()));
+                return path;
+            }
             validateResponseCode(responseCode, OK_NOTFOUND_REDIRECT_CODES);
             if (OK_NOTFOUND_CODES.contains(responseCode)) {
+                if (singleRequest) {
+                    final FileData data = responseCode == HttpURLConnection.HTTP_OK ? download(path, connection) : forget(path);
+                    putResponse(path, new Response(data, currentTime()));
+                }
                 return path;
             }
             final String location = connection.getHeaderField("Location");
             redirectedPath = connection.getURL().toURI().resolve(location).toString();
         } finally {
-            disconnect(connection);
+            release(connection);
         }
         return expandRedirection(redirectedPath);
     }
 
     @Override
     public boolean exists(final String path) throws IOException {
+        final Response response = getResponse(path, false);
+        if (response != null) {
+            return response.data != null;
+        }
+        final HttpFileCache.Entry cachedFile = getCachedFile(path);
+        if (cachedFile != null && cachedFile.isFresh(System.currentTimeMillis())) {
+            return true;
+        }
         HttpURLConnection connection = null;
         try {
             connection = makeConnection(new URL(path), false);
@@ -143,24 +376,160 @@ public class HttpFileSystem implements FileSystem {
             validateResponseCode(responseCode, OK_NOTFOUND_CODES);
             return responseCode == HttpURLConnection.HTTP_OK;
         } finally {
-            disconnect(connection);
+            release(connection);
         }
     }
 
     @Override
     public FileData fetch(final String path) throws IOException {
+        final Response response = getResponse(path, true);
+        if (response != null) {
+            if (response.data == null) {
+                validateResponseCode(HttpURLConnection.HTTP_NOT_FOUND, Arrays.asList(HttpURLConnection.HTTP_OK));
+            }
+            return response.data;
+        }
+        final HttpFileCache.Entry cachedFile = getCachedFile(path);
+        if (cachedFile != null && cachedFile.isFresh(System.currentTimeMillis())) {
+            return cachedFile.getData();
+        }
         HttpURLConnection connection = null;
         try {
             connection = makeConnection(new URL(path), true);
-            validateResponseCode(connection.getResponseCode(), Arrays.asList(HttpURLConnection.HTTP_OK));
-            final String responseEncoding = readEncoding(connection);
-            try {
-                return new FileData(IOUtils.toByteArray(connection.getInputStream()), responseEncoding);
-            } catch (final IOException e) {
-                throw new IOException("cannot download file", e);
+            addValidators(connection, cachedFile);
+            final int responseCode = connection.getResponseCode();
+            if (isNotModified(responseCode, cachedFile)) {
+                return revalidate(path, cachedFile, connection);
             }
+            validateResponseCode(responseCode, Arrays.asList(HttpURLConnection.HTTP_OK));
+            return download(path, connection);
         } finally {
-            disconnect(connection);
+            release(connection);
+        }
+    }
+
+    /**
+     * {@inheritDoc} The file is checked and downloaded using a single {@code GET} request.
+     * @since 2.0.1
+     */
+    @Override
+    public FileData fetchIfExists(final String path) throws IOException {
+        final Response response = getResponse(path, true);
+        if (response != null) {
+            return response.data;
+        }
+        final HttpFileCache.Entry cachedFile = getCachedFile(path);
+        if (cachedFile != null && cachedFile.isFresh(System.currentTimeMillis())) {
+            return cachedFile.getData();
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = makeConnection(new URL(path), true);
+            addValidators(connection, cachedFile);
+            final int responseCode = connection.getResponseCode();
+            if (isNotModified(responseCode, cachedFile)) {
+                return revalidate(path, cachedFile, connection);
+            }
+            validateResponseCode(responseCode, OK_NOTFOUND_CODES);
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                return forget(path);
+            }
+            return download(path, connection);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * {@inheritDoc} The version contains the validators ({@code ETag} and {@code Last-Modified} headers) of the file
+     * kept in the HTTP cache. A stale file is revalidated first, so an unchanged file costs a
+     * {@code 304 Not Modified} response. Versions are unknown when the HTTP cache is disabled.
+     * @since 2.0.1
+     */
+    @Override
+    public String getVersion(final String path) throws IOException {
+        HttpFileCache.Entry cachedFile = getCachedFile(path);
+        if (cachedFile == null) {
+            return null;
+        }
+        if (!cachedFile.isFresh(System.currentTimeMillis())) {
+            // revalidates the file, a changed file is downloaded and replaces the cached one
+            if (fetchIfExists(path) == null) {
+                return null;
+            }
+            cachedFile = getCachedFile(path);
+        }
+        return cachedFile != null ? cachedFile.getVersion() : null;
+    }
+
+    private HttpFileCache.Entry getCachedFile(final String path) {
+        return httpCache != null ? httpCache.get(path) : null;
+    }
+
+    private static void addValidators(final HttpURLConnection connection, final HttpFileCache.Entry cachedFile) {
+        if (cachedFile != null) {
+            cachedFile.addValidators(connection);
+        }
+    }
+
+    private static boolean isNotModified(final int responseCode, final HttpFileCache.Entry cachedFile) {
+        return cachedFile != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    private FileData revalidate(final String path, final HttpFileCache.Entry cachedFile, final HttpURLConnection connection) {
+        final HttpFileCache.Entry entry = cachedFile.revalidate(connection, System.currentTimeMillis());
+        httpCache.update(path, entry);
+        return entry.getData();
+    }
+
+    private FileData download(final String path, final HttpURLConnection connection) throws IOException {
+        final FileData data = readFileData(connection);
+        if (httpCache != null) {
+            final HttpFileCache.Entry entry = HttpFileCache.Entry.create(data, connection, System.currentTimeMillis());
+            if (entry != null) {
+                httpCache.put(path, entry);
+            } else {
+                httpCache.remove(path);
+            }
+        }
+        return data;
+    }
+
+    // returns null, so missing files can be forgotten in return statements
+    private FileData forget(final String path) {
+        if (httpCache != null) {
+            httpCache.remove(path);
+        }
+        return null;
+    }
+
+    private Response getResponse(final String path, final boolean remove) {
+        if (!singleRequest) {
+            return null;
+        }
+        final Response response;
+        synchronized (responses) {
+            response = remove ? responses.remove(path) : responses.get(path);
+        }
+        return response != null && currentTime() - response.time < RESPONSE_TTL ? response : null;
+    }
+
+    private void putResponse(final String path, final Response response) {
+        synchronized (responses) {
+            responses.put(path, response);
+        }
+    }
+
+    private static long currentTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private FileData readFileData(final HttpURLConnection connection) throws IOException {
+        final String responseEncoding = readEncoding(connection);
+        try {
+            return new FileData(IOUtils.toByteArray(connection.getInputStream()), responseEncoding);
+        } catch (final IOException e) {
+            throw new IOException("cannot download file", e);
         }
     }
 
@@ -175,10 +544,36 @@ public class HttpFileSystem implements FileSystem {
      * @since 2.0.0
      */
     protected HttpURLConnection makeConnection(final URL url, final boolean fetchResponseBody) throws IOException {
-        final HttpURLConnection connection = openConnection(url);
-        connection.setInstanceFollowRedirects(false);
-        connection.setRequestMethod(fetchResponseBody ? "GET" : "HEAD");
-        return connection;
+        if (keepAlive) {
+            acquireConnection(url);
+        }
+        try {
+            final HttpURLConnection connection = openConnection(url);
+            connection.setInstanceFollowRedirects(false);
+            connection.setRequestMethod(fetchResponseBody ? "GET" : "HEAD");
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            return connection;
+        } catch (final IOException | RuntimeException e) {
+            if (keepAlive) {
+                getHostConnections(url).release();
+            }
+            throw e;
+        }
+    }
+
+    private void acquireConnection(final URL url) throws InterruptedIOException {
+        try {
+            getHostConnections(url).acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a connection to " + url.getHost());
+        }
+    }
+
+    private Semaphore getHostConnections(final URL url) {
+        final String key = String.format("%s://%s:%s", url.getProtocol(), url.getHost(), url.getPort());
+        return HOST_CONNECTIONS.computeIfAbsent(key, k -> new Semaphore(maxConnections, true));
     }
 
     /**
@@ -226,6 +621,47 @@ public class HttpFileSystem implements FileSystem {
         return null;
     }
 
+    /**
+     * Releases a connection after a request. The keep-alive file system reads the remaining response body, so the JVM
+     * can reuse the connection for next requests, other file systems {@link #disconnect(HttpURLConnection) disconnect}
+     * the connection.
+     * @param connection the connection to release (can be {@code null} or already released).
+     * @since 2.0.1
+     */
+    protected void release(final HttpURLConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        if (!keepAlive) {
+            disconnect(connection);
+            return;
+        }
+        try {
+            drain(connection);
+        } finally {
+            getHostConnections(connection.getURL()).release();
+        }
+    }
+
+    // the JVM reuses a connection only when its response body has been read to the end and closed
+    private static void drain(final HttpURLConnection connection) {
+        InputStream stream = null;
+        try {
+            stream = connection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream()
+                    : connection.getInputStream();
+            if (stream != null) {
+                final byte[] buffer = new byte[4096];
+                while (stream.read(buffer) != -1) {
+                    // skip the remaining response body
+                }
+            }
+        } catch (final IOException e) {
+            // the stream has already been closed or the JVM has dropped the broken connection
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
     /**
      * Disconnects a connection unconditionally.
      * @param connection the connection to close (can be {@code null} or already closed).
@@ -241,4 +677,15 @@ public class HttpFileSystem implements FileSystem {
             // do nothing
         }
     }
+
+    private static class Response {
+
+        private final FileData data;
+        private final long time;
+
+        Response(final FileData data, final long time) {
+            this.data = data;
+            this.time = time;
+        }
+    }
 }
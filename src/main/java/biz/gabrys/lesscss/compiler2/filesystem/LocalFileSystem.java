@@ -14,9 +14,13 @@ package biz.gabrys.lesscss.compiler2.filesystem;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import biz.gabrys.lesscss.compiler2.io.IOUtils;
 
@@ -36,7 +40,7 @@ import biz.gabrys.lesscss.compiler2.io.IOUtils;
  * </p>
  * @since 2.0.0
  */
-public class LocalFileSystem implements FileSystem {
+public class LocalFileSystem implements FetchingFileSystem, VersionedFileSystem {
 
     /**
      * Constructs a new instance.
@@ -81,4 +85,38 @@ public class LocalFileSystem implements FileSystem {
     public FileData fetch(final String path) throws IOException {
         return new FileData(IOUtils.toByteArray(Files.newInputStream(Paths.get(path))));
     }
+
+    /**
+     * {@inheritDoc} A file is missing when the {@link #exists(String)} method returns {@code false} for it, e.g. when
+     * any parent of the file is a regular file.
+     * @since 2.0.1
+     */
+    @Override
+    public FileData fetchIfExists(final String path) throws IOException {
+        try {
+            return fetch(path);
+        } catch (final FileSystemException e) {
+            // the existence is checked only after a failure, so existing files cost a single operation
+            if (!exists(path)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc} The version contains the size, the modification time and the identifier (if supported by the
+     * operating system) of the file.
+     * @since 2.0.1
+     */
+    @Override
+    public String getVersion(final String path) throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+        return String.format("%s:%s:%s", attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.fileKey());
+    }
 }
@@ -0,0 +1,34 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+/**
+ * Represents a {@link FileSystem file system} which returns versions of files built from cheap metadata (e.g. the
+ * size and the modification time of a local file or the validators of a cached HTTP response). The
+ * {@link biz.gabrys.lesscss.compiler2.CachingNativeLessCompiler} compares versions of the files fetched during a
+ * cached compilation and fetches contents only of the files whose versions have changed.
+ * @since 2.0.1
+ */
+public interface VersionedFileSystem extends FileSystem {
+
+    /**
+     * Returns a version of the file specified by a path. The version must change whenever the file content changes.
+     * @param path the direct normalized file path (never {@code null}).
+     * @return the version or {@code null} if the version is unknown (e.g. the file does not exist), then the content of
+     *         the file is compared.
+     * @throws Exception if any error occurs.
+     * @since 2.0.1
+     * @see #expandRedirection(String)
+     */
+    String getVersion(String path) throws Exception;
+}
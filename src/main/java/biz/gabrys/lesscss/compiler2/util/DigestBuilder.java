@@ -0,0 +1,96 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Responsible for creating SHA-256 digests of texts and byte arrays. Every appended value is preceded by its length, so
+ * different sequences of values always produce different digests (e.g. {@code "ab", "c"} and {@code "a", "bc"}).
+ * @since 2.0.1
+ */
+public class DigestBuilder {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    /**
+     * Constructs a new instance.
+     * @since 2.0.1
+     */
+    public DigestBuilder() {
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends a text.
+     * @param text the text ({@code null} is different from an empty text).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     */
+    public DigestBuilder append(final String text) {
+        return append(text != null ? text.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    /**
+     * Appends a boolean value.
+     * @param value the value.
+     * @return {@code this} builder.
+     * @since 2.0.1
+     */
+    public DigestBuilder append(final boolean value) {
+        return append(new byte[] { (byte) (value ? 1 : 0) });
+    }
+
+    /**
+     * Appends a byte array.
+     * @param bytes the byte array ({@code null} is different from an empty array).
+     * @return {@code this} builder.
+     * @since 2.0.1
+     */
+    public DigestBuilder append(final byte[] bytes) {
+        final int length = bytes != null ? bytes.length : -1;
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+        if (bytes != null) {
+            digest.update(bytes);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the digest computation and returns the digest. The builder is reset after this call.
+     * @return the lowercase hexadecimal representation of the digest (never {@code null}).
+     * @since 2.0.1
+     */
+    public String build() {
+        final byte[] bytes = digest.digest();
+        final char[] text = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            text[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            text[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * LessCSS Compiler
+ * http://lesscss-compiler.projects.gabrys.biz/
+ *
+ * Copyright (c) 2015 Adam Gabrys
+ *
+ * This file is licensed under the BSD 3-Clause (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain:
+ *  - a copy of the License at project page
+ *  - a template of the License at https://opensource.org/licenses/BSD-3-Clause
+ */
+package biz.gabrys.lesscss.compiler2;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version of the factory of executors which run batch compilations. See the base version for details.
+ * @since 2.0.1
+ */
+public final class CompilerExecutors {
+
+    private CompilerExecutors() {
+        // do nothing
+    }
+
+    /**
+     * Checks whether the executors created by the {@link #newBatchExecutor()} use virtual threads.
+     * @return {@code true}.
+     * @since 2.0.1
+     */
+    public static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    /**
+     * Creates a new executor for batch compilations which starts a new virtual thread for every job.
+     * @return the new executor (shut it down when it is no longer needed).
+     * @since 2.0.1
+     */
+    public static ExecutorService newBatchExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -6729,10 +6729,7 @@ less.Parser.serializeVars = function(variables) {
 
 (function(tree) {
 
-    var _visitArgs = {
-            visitDeeper: true
-        },
-        _hasIndexed = false;
+    var _hasIndexed = false;
 
     function _noop(node) {
         return node;
@@ -6764,6 +6761,10 @@ less.Parser.serializeVars = function(variables) {
     tree.visitor = function(implementation) {
         this._implementation = implementation;
         this._visitFnCache = [];
+        // stored per visitor, because compilations running in parallel can share the library
+        this._visitArgs = {
+            visitDeeper: true
+        };
 
         if (!_hasIndexed) {
             indexNodeTypes(tree, 1);
@@ -6788,7 +6789,7 @@ less.Parser.serializeVars = function(variables) {
                 outAryIndex = aryIndx | 1,
                 func = visitFnCache[aryIndx],
                 funcOut = visitFnCache[outAryIndex],
-                visitArgs = _visitArgs,
+                visitArgs = this._visitArgs,
                 fnName;
 
             visitArgs.visitDeeper = true;
@@ -3,6 +3,9 @@
  * Modified by Adam Gabryś
  */
 
+// index tree node types during the library initialization, so compilations never modify shared prototypes
+new less.tree.visitor({});
+
 less.Parser.fileLoader = function(file, currentFileInfo, callback, env) {
     var filePath = file;
     var absolute = true;
@@ -15,6 +18,7 @@ less.Parser.fileLoader = function(file, currentFileInfo, callback, env) {
     includePaths = gabrysLessCompiler.removeDuplications(includePaths.concat(gabrysLessCompiler.includePaths));
 
     var fileSystem;
+    var fileData = null;
     try {
         for (var i = 0; i < includePaths.length; ++i) {
             if (i > 1) {
@@ -30,7 +34,9 @@ less.Parser.fileLoader = function(file, currentFileInfo, callback, env) {
                 fileSystem = gabrysLessCompiler.getFileSystem(tmpPath);
                 expandedPath = fileSystem.expandRedirection(tmpPath);
             }
-            if (fileSystem.exists(expandedPath)) {
+            // checks and fetches the file using one operation when the file system supports it
+            fileData = fileSystem.fetchIfExists(expandedPath);
+            if (fileData != null) {
                 absolute = filePath !== expandedPath;
                 filePath = expandedPath;
                 break;
@@ -75,7 +81,10 @@ less.Parser.fileLoader = function(file, currentFileInfo, callback, env) {
 
     var content;
     try {
-        var fileData = fileSystem.fetch(filePath);
+        if (fileData == null) {
+            // reports why the file cannot be fetched
+            fileData = fileSystem.fetch(filePath);
+        }
         content = fileData.getContentAsString();
     } catch (e) {
         callback(convertException(e, file));
@@ -141,210 +150,276 @@ gabrysLessCompiler.removeDuplications = function(array) {
     }
 };
 
-(function(args) {
-
-    var options = {
-        compress: false,
-        silent: false,
-        paths: [],
-        strictImports: false,
-        rootpath: '',
-        relativeUrls: false,
-        ieCompat: true,
-        strictMath: false,
-        strictUnits: false
-    };
+(function() {
 
-    var sourceMapFilePath;
-    var sourceMapInline = false;
-    var fileSystemOptions = [];
+    gabrysLessCompiler.compile = function(args) {
+        return compile(parseArguments(args));
+    };
 
-    var additionalData = {
-        banner: '',
-        globalVars: [],
-        modifyVars: []
+    gabrysLessCompiler.compileConfiguration = function(configuration) {
+        return compile(configuration);
     };
 
-    var files = args.filter(function(arg) {
-        var match = arg.match(/^-I(.+)$/);
-        if (match) {
-            options.paths.push(match[1]);
-            return false;
-        }
+    function parseArguments(args) {
+        var configuration = {
+            options: {
+                compress: false,
+                silent: false,
+                paths: [],
+                strictImports: false,
+                rootpath: '',
+                relativeUrls: false,
+                ieCompat: true,
+                strictMath: false,
+                strictUnits: false
+            },
+            additionalData: {
+                banner: '',
+                globalVars: [],
+                modifyVars: []
+            },
+            encoding: null,
+            includePaths: [],
+            fileSystems: [],
+            sourceMapFilePath: null,
+            sourceMapInline: false,
+            source: null,
+            code: null,
+            output: null
+        };
+        var options = configuration.options;
+        var additionalData = configuration.additionalData;
+
+        var files = args.filter(function(arg) {
+            var match = arg.match(/^-I(.+)$/);
+            if (match) {
+                options.paths.push(match[1]);
+                return false;
+            }
 
-        match = arg.match(/^--?([a-z][0-9a-z-]*)(?:=(.*))?$/i);
-        if (match == null) {
-            // input or output file
-            return true;
-        }
+            match = arg.match(/^--?([a-z][0-9a-z-]*)(?:=(.*))?$/i);
+            if (match == null) {
+                // input or output file
+                return true;
+            }
 
-        switch (match[1]) {
-            case 's':
-            case 'silent':
-                options.silent = true;
-                break;
-            case 'strict-imports':
-                options.strictImports = true;
-                break;
-            case 'x':
-            case 'compress':
-                options.compress = true;
-                break;
-            case 'no-ie-compat':
-                options.ieCompat = false;
-                break;
-            case 'no-js':
-                options.javascriptEnabled = false;
-                break;
-            case 'include-path':
-                validateArgument(arg, match[2]);
-                gabrysLessCompiler.includePaths[gabrysLessCompiler.includePaths.length] = match[2];
-                break;
-            case 'line-numbers':
-                validateArgument(arg, match[2]);
-                options.dumpLineNumbers = match[2];
-                break;
-            case 'source-map':
-                options.sourceMap = true;
-                if (match[2]) {
-                    sourceMapFilePath = match[2];
-                }
-                break;
-            case 'source-map-rootpath':
-                validateArgument(arg, match[2]);
-                options.sourceMapRootpath = match[2];
-                break;
-            case 'source-map-basepath':
-                validateArgument(arg, match[2]);
-                options.sourceMapBasepath = match[2];
-                break;
-            case 'source-map-map-inline':
-                sourceMapInline = true;
-                options.sourceMap = true;
-                break;
-            case 'source-map-less-inline':
-                options.outputSourceFiles = true;
-                break;
-            case 'source-map-url':
-                validateArgument(arg, match[2]);
-                options.sourceMapURL = match[2];
-                break;
-            case 'rp':
-            case 'rootpath':
-                validateArgument(arg, match[2]);
-                options.rootpath = match[2].replace(/\\/g, '/');
-                break;
-            case 'ru':
-            case 'relative-urls':
-                options.relativeUrls = true;
-                break;
-            case 'sm':
-            case 'strict-math':
-                validateArgument(arg, match[2]);
-                options.strictMath = convertToBoolean(arg, match[2]);
-                break;
-            case 'su':
-            case 'strict-units':
-                validateArgument(arg, match[2]);
-                options.strictUnits = convertToBoolean(arg, match[2]);
-                break;
-            case 'encoding':
-                validateArgument(arg, match[2]);
-                validateEncoding(match[2]);
-                gabrysLessCompiler.encoding = match[2];
-                break;
-            case 'file-system':
-                validateArgument(arg, match[2]);
-                fileSystemOptions[fileSystemOptions.length] = match[2];
-                break;
-            case 'banner':
-                validateArgument(arg, match[2]);
-                additionalData.banner = match[2];
-                break;
-            case 'global-var':
-                validateArgument(arg, match[2]);
-                additionalData.globalVars[additionalData.globalVars.length] = parseVariable(match[2]);
-                break;
-            case 'modify-var':
-                validateArgument(arg, match[2]);
-                additionalData.modifyVars[additionalData.modifyVars.length] = parseVariable(match[2]);
-                break;
-            default:
-                throwConfigurationError('Invalid option "' + arg + '"');
-        }
-        return false;
-    });
+            switch (match[1]) {
+                case 's':
+                case 'silent':
+                    options.silent = true;
+                    break;
+                case 'strict-imports':
+                    options.strictImports = true;
+                    break;
+                case 'x':
+                case 'compress':
+                    options.compress = true;
+                    break;
+                case 'no-ie-compat':
+                    options.ieCompat = false;
+                    break;
+                case 'no-js':
+                    options.javascriptEnabled = false;
+                    break;
+                case 'include-path':
+                    validateArgument(arg, match[2]);
+                    configuration.includePaths[configuration.includePaths.length] = match[2];
+                    break;
+                case 'line-numbers':
+                    validateArgument(arg, match[2]);
+                    options.dumpLineNumbers = match[2];
+                    break;
+                case 'source-map':
+                    options.sourceMap = true;
+                    if (match[2]) {
+                        configuration.sourceMapFilePath = match[2];
+                    }
+                    break;
+                case 'source-map-rootpath':
+                    validateArgument(arg, match[2]);
+                    options.sourceMapRootpath = match[2];
+                    break;
+                case 'source-map-basepath':
+                    validateArgument(arg, match[2]);
+                    options.sourceMapBasepath = match[2];
+                    break;
+                case 'source-map-map-inline':
+                    configuration.sourceMapInline = true;
+                    options.sourceMap = true;
+                    break;
+                case 'source-map-less-inline':
+                    options.outputSourceFiles = true;
+                    break;
+                case 'source-map-url':
+                    validateArgument(arg, match[2]);
+                    options.sourceMapURL = match[2];
+                    break;
+                case 'rp':
+                case 'rootpath':
+                    validateArgument(arg, match[2]);
+                    options.rootpath = match[2].replace(/\\/g, '/');
+                    break;
+                case 'ru':
+                case 'relative-urls':
+                    options.relativeUrls = true;
+                    break;
+                case 'sm':
+                case 'strict-math':
+                    validateArgument(arg, match[2]);
+                    options.strictMath = convertToBoolean(arg, match[2]);
+                    break;
+                case 'su':
+                case 'strict-units':
+                    validateArgument(arg, match[2]);
+                    options.strictUnits = convertToBoolean(arg, match[2]);
+                    break;
+                case 'encoding':
+                    validateArgument(arg, match[2]);
+                    configuration.encoding = match[2];
+                    break;
+                case 'file-system':
+                    validateArgument(arg, match[2]);
+                    configuration.fileSystems[configuration.fileSystems.length] = parseFileSystemOption(match[2]);
+                    break;
+                case 'banner':
+                    validateArgument(arg, match[2]);
+                    additionalData.banner = match[2];
+                    break;
+                case 'global-var':
+                    validateArgument(arg, match[2]);
+                    additionalData.globalVars[additionalData.globalVars.length] = parseVariable(match[2]);
+                    break;
+                case 'modify-var':
+                    validateArgument(arg, match[2]);
+                    additionalData.modifyVars[additionalData.modifyVars.length] = parseVariable(match[2]);
+                    break;
+                default:
+                    throwConfigurationError('Invalid option "' + arg + '"');
+            }
+            return false;
+        });
 
-    gabrysLessCompiler.includePaths = gabrysLessCompiler.removeDuplications(gabrysLessCompiler.includePaths);
-    if (gabrysLessCompiler.encoding == null) {
-        gabrysLessCompiler.encoding = java.nio.charset.Charset.defaultCharset().name();
-    }
-    if (fileSystemOptions.length === 0) {
-        fileSystemOptions[fileSystemOptions.length] = 'biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem';
+        configuration.source = files[0];
+        configuration.output = files[1];
+        return configuration;
     }
-    gabrysLessCompiler.fileSystems = createFileSystems(fileSystemOptions);
 
-    var source = files[0];
-    if (source == null) {
-        throwConfigurationError('Source file has not been specified');
-    }
-    var output = files[1];
+    function compile(configuration) {
+        var options = configuration.options;
+        var additionalData = configuration.additionalData;
 
-    if (options.sourceMap) {
-        if (sourceMapFilePath == null && output == null && !sourceMapInline) {
-            throwConfigurationError('The sourcemap option has an optional filename only if the output CSS filename'
-                    + ' is given or you also pass the source-map-map-inline option');
+        gabrysLessCompiler.includePaths = gabrysLessCompiler.removeDuplications(configuration.includePaths);
+        if (configuration.encoding != null) {
+            validateEncoding(configuration.encoding);
+            gabrysLessCompiler.encoding = configuration.encoding;
+        } else {
+            gabrysLessCompiler.encoding = java.nio.charset.Charset.defaultCharset().name();
         }
-        if (!sourceMapInline) {
-            var sourceMapFilename = sourceMapFilePath;
-            if (sourceMapFilePath == null) {
-                sourceMapFilePath = output + '.map';
-                sourceMapFilename = less.modules.path.basename(sourceMapFilePath);
-            }
-            options.writeSourceMap = function(sourceMapContent) {
-                writeFile(sourceMapFilePath, sourceMapContent);
-            };
-            options.sourceMapFilename = sourceMapFilename;
-            options.sourceMapOutputFilename = output;
+        var fileSystemOptions = configuration.fileSystems;
+        if (fileSystemOptions.length === 0) {
+            fileSystemOptions = [{
+                className: 'biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem',
+                parameters: java.util.Collections.emptyMap()
+            }];
         }
-    }
+        var fetchedFiles = [];
+        var missingFiles = [];
+        gabrysLessCompiler.fileSystems = createFileSystems(fileSystemOptions, fetchedFiles, missingFiles);
 
-    var input = null;
-    try {
-        var fileData = gabrysLessCompiler.readFile(source);
-        input = fileData.getContentAsString();
-    } catch (e) {
-        throw new Error('Couldn\'t open file ' + source);
-    }
+        var source = configuration.source;
+        if (source == null) {
+            throwConfigurationError('Source file has not been specified');
+        }
+        var output = configuration.output;
+        var sourceMapFilePath = configuration.sourceMapFilePath;
+
+        var result = {
+            css: null,
+            sourceMap: null,
+            encoding: gabrysLessCompiler.encoding,
+            files: fetchedFiles,
+            missingFiles: missingFiles,
+            timings: {
+                read: 0,
+                parse: 0,
+                generate: 0,
+                write: 0
+            }
+        };
 
-    options.filename = source;
-    var result;
-    try {
-        var parser = new less.Parser(options);
-        parser.parse(input, function(e, root) {
-            if (e) {
-                throw new Error(formatError(e));
+        if (options.sourceMap) {
+            if (sourceMapFilePath == null && output == null && !configuration.sourceMapInline) {
+                throwConfigurationError('The sourcemap option has an optional filename only if the output CSS filename'
+                        + ' is given or you also pass the source-map-map-inline option');
             }
-            result = root.toCSS(options);
-            if (output != null) {
-                writeFile(output, result);
-            } else {
-                print(result);
+            if (!configuration.sourceMapInline) {
+                var sourceMapFilename = sourceMapFilePath;
+                if (sourceMapFilePath == null) {
+                    sourceMapFilePath = output + '.map';
+                    sourceMapFilename = less.modules.path.basename(sourceMapFilePath);
+                }
+                options.writeSourceMap = function(sourceMapContent) {
+                    result.sourceMap = sourceMapContent;
+                    writeFile(sourceMapFilePath, sourceMapContent);
+                };
+                options.sourceMapFilename = sourceMapFilename;
+                options.sourceMapOutputFilename = output;
             }
-            quit(0);
-        }, additionalData);
-    } catch (e) {
-        throw new Error(formatError(e));
+        }
+
+        var time = java.lang.System.nanoTime();
+        var input = configuration.code;
+        if (input == null) {
+            try {
+                var fileData = gabrysLessCompiler.readFile(source);
+                input = fileData.getContentAsString();
+            } catch (e) {
+                throw new Error('Couldn\'t open file ' + source);
+            }
+        }
+        result.timings.read = java.lang.System.nanoTime() - time;
+
+        options.filename = source;
+        try {
+            time = java.lang.System.nanoTime();
+            var parser = new less.Parser(options);
+            parser.parse(input, function(e, root) {
+                if (e) {
+                    throw new Error(formatError(e));
+                }
+                result.timings.parse = java.lang.System.nanoTime() - time;
+                time = java.lang.System.nanoTime();
+                var css = root.toCSS(options);
+                result.timings.generate = java.lang.System.nanoTime() - time;
+                if (output != null) {
+                    time = java.lang.System.nanoTime();
+                    writeFile(output, css);
+                    result.timings.write = java.lang.System.nanoTime() - time;
+                } else {
+                    result.css = css;
+                }
+            }, additionalData);
+        } catch (e) {
+            throw new Error(formatError(e));
+        }
+        return result;
     }
 
     function throwConfigurationError(message) {
         throw new Error('Configuration problem: ' + message);
     }
 
-    function createFileSystems(options) {
+    function createFileSystems(options, fetchedFiles, missingFiles) {
         var fileSystems = [];
         for (var i = 0; i < options.length; ++i) {
-            var option = parseOption(options[i]);
+            var option = options[i];
+            // prepared options contain already created and configured file systems
+            var fileSystem = option.instance != null ? option.instance : createFileSystem(option);
+            fileSystems[fileSystems.length] = new FileSystem(fileSystem, option.className);
+        }
+        return fileSystems;
+
+        function createFileSystem(option) {
             var clazz;
             try {
                 clazz = java.lang.Class.forName(option.className);
@@ -362,73 +437,12 @@ gabrysLessCompiler.removeDuplications = function(array) {
             } catch (e) {
                 throwConfigurationError('Cannot configure a new instance of the file system: ' + option.className);
             }
-            fileSystems[fileSystems.length] = new FileSystem(fileSystem, option.className);
-        }
-        return fileSystems;
-
-        function parseOption(option) {
-            var index = option.indexOf(',');
-            if (index === -1) {
-                return {
-                    className: option,
-                    parameters: java.util.Collections.emptyMap()
-                };
-            }
-
-            var parameters = new java.util.HashMap();
-            var params = parseParameters(option.substr(index + 1));
-            for (var i = 0; i < params.length; ++i) {
-                parameters.put(params[i].name, params[i].value);
-            }
-            return {
-                className: option.substring(0, index),
-                parameters: parameters
-            };
-        }
-
-        function parseParameters(paramsText) {
-            var encoder = new ParametersEncoder(paramsText);
-            var params = encoder.getEncoded().split(',');
-
-            var parameters = [];
-            for (var i = 0; i < params.length; ++i) {
-                var index = params[i].indexOf('=');
-                var name = index === -1 ? params[i] : params[i].substring(0, index);
-                var value = index === -1 ? '' : params[i].substr(index + 1);
-                parameters[parameters.length] = {
-                    name: encoder.decode(name),
-                    value: encoder.decode(value)
-                };
-            }
-            return parameters;
-        }
-
-        function ParametersEncoder(paramsText) {
-            this.underscoreToken = generateToken(paramsText);
-            var encoded = paramsText.split('__').join(this.underscoreToken);
-            this.commaToken = generateToken(encoded);
-            encoded = encoded.split('_,').join(this.commaToken);
-            this.equalToken = generateToken(encoded);
-            encoded = encoded.split('_=').join(this.equalToken);
-
-            this.getEncoded = function() {
-                return encoded;
-            };
-
-            this.decode = function(text) {
-                return text.split(this.equalToken).join('=').split(this.commaToken).join(',').split(this.underscoreToken).join('_');
-            };
-
-            function generateToken(text) {
-                var token;
-                do {
-                    token = '{gabrys-' + java.util.UUID.randomUUID().toString() + '}';
-                } while (text.indexOf(token) !== -1);
-                return token;
-            }
+            return fileSystem;
         }
 
         function FileSystem(fileSystem, className) {
+            var fetching = fileSystem instanceof Packages.biz.gabrys.lesscss.compiler2.filesystem.FetchingFileSystem;
+
             this.getClassName = function() {
                 return className;
             };
@@ -474,9 +488,38 @@ gabrysLessCompiler.removeDuplications = function(array) {
                 } catch (e) {
                     throw convertFileSystemException(e);
                 }
+                return wrapFileData(path, fileData);
+            };
+
+            this.fetchIfExists = function(path) {
+                var fileData = null;
+                if (!fetching) {
+                    fileData = this.exists(path) ? this.fetch(path) : null;
+                } else {
+                    var data = null;
+                    try {
+                        data = fileSystem.fetchIfExists(path);
+                    } catch (e) {
+                        throw convertFileSystemException(e);
+                    }
+                    fileData = wrapFileData(path, data);
+                }
+                if (fileData == null) {
+                    // caches check the missing files, because they can shadow the fetched ones later
+                    missingFiles[missingFiles.length] = path;
+                }
+                return fileData;
+            };
+
+            function wrapFileData(path, fileData) {
                 if (fileData == null) {
                     return null;
                 }
+                fetchedFiles[fetchedFiles.length] = {
+                    path: path,
+                    data: fileData,
+                    className: className
+                };
                 return {
                     getEncoding: function() {
                         return fileData.getEncoding();
@@ -493,7 +536,7 @@ gabrysLessCompiler.removeDuplications = function(array) {
                         return '' + new java.lang.String(fileData.getContent(), encoding);
                     }
                 };
-            };
+            }
 
             function convertFileSystemException(exception) {
                 var markup = '{gabrys-lesscss-compiler-filesystem-exception}';
@@ -502,6 +545,68 @@ gabrysLessCompiler.removeDuplications = function(array) {
         }
     }
 
+    function parseFileSystemOption(option) {
+        var index = option.indexOf(',');
+        if (index === -1) {
+            return {
+                className: option,
+                parameters: java.util.Collections.emptyMap()
+            };
+        }
+
+        var parameters = new java.util.HashMap();
+        var params = parseParameters(option.substr(index + 1));
+        for (var i = 0; i < params.length; ++i) {
+            parameters.put(params[i].name, params[i].value);
+        }
+        return {
+            className: option.substring(0, index),
+            parameters: parameters
+        };
+    }
+
+    function parseParameters(paramsText) {
+        var encoder = new ParametersEncoder(paramsText);
+        var params = encoder.getEncoded().split(',');
+
+        var parameters = [];
+        for (var i = 0; i < params.length; ++i) {
+            var index = params[i].indexOf('=');
+            var name = index === -1 ? params[i] : params[i].substring(0, index);
+            var value = index === -1 ? '' : params[i].substr(index + 1);
+            parameters[parameters.length] = {
+                name: encoder.decode(name),
+                value: encoder.decode(value)
+            };
+        }
+        return parameters;
+    }
+
+    function ParametersEncoder(paramsText) {
+        this.underscoreToken = generateToken(paramsText);
+        var encoded = paramsText.split('__').join(this.underscoreToken);
+        this.commaToken = generateToken(encoded);
+        encoded = encoded.split('_,').join(this.commaToken);
+        this.equalToken = generateToken(encoded);
+        encoded = encoded.split('_=').join(this.equalToken);
+
+        this.getEncoded = function() {
+            return encoded;
+        };
+
+        this.decode = function(text) {
+            return text.split(this.equalToken).join('=').split(this.commaToken).join(',').split(this.underscoreToken).join('_');
+        };
+
+        function generateToken(text) {
+            var token;
+            do {
+                token = '{gabrys-' + java.util.UUID.randomUUID().toString() + '}';
+            } while (text.indexOf(token) !== -1);
+            return token;
+        }
+    }
+
     function validateArgument(name, value) {
         if (!value) {
             throwConfigurationError('"' + name + '" option requires a parameter');
@@ -587,4 +692,4 @@ gabrysLessCompiler.removeDuplications = function(array) {
 
         return message;
     }
-}(arguments));
+})();
@@ -0,0 +1,101 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import biz.gabrys.lesscss.compiler2.BatchImportCache.SharedFileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.FetchingFileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
+import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
+
+public final class BatchImportCacheTest {
+
+    @Test
+    public void getPreparedOptions_sameOptions_returnsSameInstance() {
+        final BatchImportCache cache = new BatchImportCache();
+        final LessOptions options = new LessOptions();
+
+        final PreparedLessOptions preparedOptions = cache.getPreparedOptions(options);
+
+        assertThat(cache.getPreparedOptions(new LessOptions())).isSameAs(preparedOptions);
+    }
+
+    @Test
+    public void getPreparedOptions_differentOptionsWithSameFileSystems_sharesFileSystems() {
+        final BatchImportCache cache = new BatchImportCache();
+        final LessOptions options1 = new LessOptionsBuilder().fileSystems(Collections.singletonList(new FileSystemOption(LocalFileSystem.class)))
+                .build();
+        final LessOptions options2 = new LessOptionsBuilder().fileSystems(Collections.singletonList(new FileSystemOption(LocalFileSystem.class)))
+                .compress(true).build();
+
+        final FileSystem fileSystem1 = cache.getPreparedOptions(options1).getFileSystems().get(0);
+        final FileSystem fileSystem2 = cache.getPreparedOptions(options2).getFileSystems().get(0);
+
+        assertThat(fileSystem1).isInstanceOf(SharedFileSystem.class).isSameAs(fileSystem2);
+    }
+
+    @Test
+    public void sharedFileSystem_sameCallsTwice_delegatesOnce() throws Exception {
+        final FileSystem fileSystem = mock(FileSystem.class);
+        final FileData data = new FileData(new byte[] { 1 });
+        when(fileSystem.isSupported("path")).thenReturn(true);
+        when(fileSystem.normalize("path")).thenReturn("normalized");
+        when(fileSystem.expandRedirection("normalized")).thenReturn("expanded");
+        when(fileSystem.exists("expanded")).thenReturn(true);
+        when(fileSystem.fetch("expanded")).thenReturn(data);
+        final SharedFileSystem sharedFileSystem = new SharedFileSystem(fileSystem);
+
+        for (int i = 0; i < 2; ++i) {
+            assertThat(sharedFileSystem.isSupported("path")).isTrue();
+            assertThat(sharedFileSystem.normalize("path")).isEqualTo("normalized");
+            assertThat(sharedFileSystem.expandRedirection("normalized")).isEqualTo("expanded");
+            assertThat(sharedFileSystem.exists("expanded")).isTrue();
+            assertThat(sharedFileSystem.fetch("expanded")).isSameAs(data);
+        }
+
+        verify(fileSystem).isSupported("path");
+        verify(fileSystem).normalize("path");
+        verify(fileSystem).expandRedirection("normalized");
+        verify(fileSystem).exists("expanded");
+        verify(fileSystem).fetch("expanded");
+    }
+
+    @Test
+    public void sharedFileSystem_fileNotFetched_doesNotCacheResult() throws Exception {
+        final FileSystem fileSystem = mock(FileSystem.class);
+        final SharedFileSystem sharedFileSystem = new SharedFileSystem(fileSystem);
+
+        assertThat(sharedFileSystem.fetch("path")).isNull();
+        assertThat(sharedFileSystem.fetch("path")).isNull();
+
+        verify(fileSystem, times(2)).fetch("path");
+    }
+
+    @Test
+    public void sharedFileSystem_fetchIfExistsCalledTwice_delegatesOnce() throws Exception {
+        final FetchingFileSystem fileSystem = mock(FetchingFileSystem.class);
+        final FileData data = new FileData(new byte[] { 1 });
+        when(fileSystem.fetchIfExists("existing")).thenReturn(data);
+        final SharedFileSystem sharedFileSystem = new SharedFileSystem(fileSystem);
+
+        for (int i = 0; i < 2; ++i) {
+            assertThat(sharedFileSystem.fetchIfExists("existing")).isSameAs(data);
+            assertThat(sharedFileSystem.fetchIfExists("missing")).isNull();
+        }
+        assertThat(sharedFileSystem.exists("existing")).isTrue();
+        assertThat(sharedFileSystem.fetch("existing")).isSameAs(data);
+
+        verify(fileSystem).fetchIfExists("existing");
+        verify(fileSystem).fetchIfExists("missing");
+        verifyNoMoreInteractions(fileSystem);
+    }
+}
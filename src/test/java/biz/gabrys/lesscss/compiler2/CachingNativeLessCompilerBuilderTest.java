@@ -0,0 +1,80 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.HttpCacheBackend;
+
+public final class CachingNativeLessCompilerBuilderTest {
+
+    private CachingNativeLessCompilerBuilder builder;
+
+    @Before
+    public void setup() {
+        builder = new CachingNativeLessCompilerBuilder();
+    }
+
+    @Test
+    public void build_defaultConfiguration_returnsCompilerWithDefaultValues() {
+        final CachingNativeLessCompiler compiler = builder.build();
+
+        assertThat(compiler.getMaxEntries()).isEqualTo(CachingNativeLessCompiler.DEFAULT_MAX_ENTRIES);
+        assertThat(compiler.getMaxSize()).isEqualTo(CachingNativeLessCompiler.DEFAULT_MAX_SIZE);
+        assertThat(compiler.getDirectory()).isNull();
+        assertThat(compiler.getMaxDirectorySize()).isEqualTo(CachingNativeLessCompiler.DEFAULT_MAX_DIRECTORY_SIZE);
+        assertThat(compiler.getBackends()).isEmpty();
+        assertThat(compiler.getExecutor()).isSameAs(ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void build_customConfiguration_returnsCompilerWithCustomValues() {
+        final CacheBackend backend = new HttpCacheBackend("http://localhost/cache/");
+        final Executor executor = Runnable::run;
+        final CachingNativeLessCompiler compiler = builder.compiler(new NativeLessCompiler()).maxEntries(2).maxSize(3)
+                .directory(new File("cache")).maxDirectorySize(4).backend(backend).executor(executor).build();
+
+        assertThat(compiler.getMaxEntries()).isEqualTo(2);
+        assertThat(compiler.getMaxSize()).isEqualTo(3);
+        assertThat(compiler.getDirectory()).isEqualTo(new File("cache").getAbsoluteFile());
+        assertThat(compiler.getMaxDirectorySize()).isEqualTo(4);
+        assertThat(compiler.getBackends()).containsExactly(backend);
+        assertThat(compiler.getExecutor()).isSameAs(executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compiler_compilerIsNull_throwsException() {
+        builder.compiler(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxEntries_valueIsZero_throwsException() {
+        builder.maxEntries(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSize_valueIsZero_throwsException() {
+        builder.maxSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxDirectorySize_valueIsZero_throwsException() {
+        builder.maxDirectorySize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void backend_backendIsNull_throwsException() {
+        builder.backend(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void executor_executorIsNull_throwsException() {
+        builder.executor(null);
+    }
+}
@@ -0,0 +1,338 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.DirectoryCacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.HttpCacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.HttpCacheServer;
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
+
+public final class CachingNativeLessCompilerTest {
+
+    private static NativeLessCompiler nativeCompiler;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createNativeCompiler() {
+        nativeCompiler = new NativeLessCompiler();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_compilerIsNull_throwsException() {
+        new CachingNativeLessCompiler(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_maxEntriesIsZero_throwsException() {
+        new CachingNativeLessCompiler(nativeCompiler, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_maxSizeIsZero_throwsException() {
+        new CachingNativeLessCompiler(nativeCompiler, 1, 0);
+    }
+
+    @Test
+    public void execute_sameOptionsTwice_returnsCachedCode() {
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputCode(".basic { display: block; }").buildOptions();
+
+        final String code1 = compiler.execute(options);
+        final String code2 = compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic { display: block; }").buildOptions());
+
+        assertThat(code2).isEqualTo(code1).contains("display: block;");
+        assertThat(compiler.getMissCount()).isEqualTo(1);
+        assertThat(compiler.getHitCount()).isEqualTo(1);
+        assertThat(compiler.getEntryCount()).isEqualTo(1);
+        assertThat(compiler.getSize()).isPositive();
+    }
+
+    @Test
+    public void execute_differentOptions_compilesAgain() {
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptionsBuilder builder = new NativeLessOptionsBuilder().inputCode(".basic { display: block; }");
+
+        final String code1 = compiler.execute(builder.buildOptions());
+        final String code2 = compiler.execute(builder.compress(true).buildOptions());
+
+        assertThat(code2).isNotEqualTo(code1);
+        assertThat(compiler.getMissCount()).isEqualTo(2);
+        assertThat(compiler.getHitCount()).isZero();
+    }
+
+    @Test
+    public void execute_importedFileChanged_compilesAgain() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        final File imported = temporaryFolder.newFile("imported.less");
+        write(imported, ".imported { color: red; }");
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+
+        assertThat(compiler.execute(options)).contains("color: red;");
+        assertThat(compiler.execute(options)).contains("color: red;");
+        write(imported, ".imported { color: blue; }");
+        assertThat(compiler.execute(options)).contains("color: blue;");
+
+        assertThat(compiler.getMissCount()).isEqualTo(2);
+        assertThat(compiler.getHitCount()).isEqualTo(1);
+        assertThat(compiler.getEntryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_fileVersionsHaveNotChanged_doesNotFetchFilesAgain() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        final File imported = temporaryFolder.newFile("imported.less");
+        write(imported, ".imported { color: red; }");
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath())
+                .fileSystems(Collections.singletonList(new FileSystemOption(CountingFileSystem.class))).buildOptions();
+        compiler.execute(options);
+        compiler.execute(options);
+        CountingFileSystem.fetches.set(0);
+
+        assertThat(compiler.execute(options)).contains("color: red;");
+        assertThat(CountingFileSystem.fetches.get()).isZero();
+
+        write(imported, ".imported { color: blue; }");
+        assertThat(compiler.execute(options)).contains("color: blue;");
+        assertThat(compiler.getMissCount()).isEqualTo(2);
+        assertThat(compiler.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void execute_createdFileShadowsImportedFile_compilesAgain() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        final File first = temporaryFolder.newFolder("first");
+        final File second = temporaryFolder.newFolder("second");
+        write(new File(second, "imported.less"), ".imported { color: red; }");
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath())
+                .includePaths(Arrays.asList(first.getAbsolutePath() + File.separator, second.getAbsolutePath() + File.separator))
+                .buildOptions();
+
+        assertThat(compiler.execute(options)).contains("color: red;");
+        assertThat(compiler.execute(options)).contains("color: red;");
+        write(new File(first, "imported.less"), ".imported { color: blue; }");
+        assertThat(compiler.execute(options)).contains("color: blue;");
+
+        assertThat(compiler.getMissCount()).isEqualTo(2);
+        assertThat(compiler.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_nestedCachingCompilerReturnsValidatedFiles_cachesCode() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        write(temporaryFolder.newFile("imported.less"), ".imported { color: red; }");
+        final CachingNativeLessCompiler nestedCompiler = new CachingNativeLessCompiler(nativeCompiler);
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nestedCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+        // the second compilation remembers the file versions, so the next hit does not fetch the files
+        nestedCompiler.execute(options);
+        nestedCompiler.execute(options);
+
+        assertThat(compiler.execute(options)).contains("color: red;");
+        assertThat(compiler.execute(options)).contains("color: red;");
+
+        assertThat(nestedCompiler.getHitCount()).isEqualTo(2);
+        assertThat(compiler.getMissCount()).isEqualTo(1);
+        assertThat(compiler.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_outputFileIsSet_doesNotCacheCode() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, ".basic { display: block; }");
+        final File output = new File(temporaryFolder.getRoot(), "output.css");
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).outputFile(output)
+                .buildOptions();
+
+        compiler.execute(options);
+        compiler.execute(options);
+
+        assertThat(output).exists();
+        assertThat(compiler.getMissCount()).isZero();
+        assertThat(compiler.getHitCount()).isZero();
+        assertThat(compiler.getEntryCount()).isZero();
+    }
+
+    @Test
+    public void execute_maxEntriesExceeded_evictsLeastRecentlyUsedEntry() {
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler, 2, Long.MAX_VALUE);
+        final NativeLessOptions options1 = new NativeLessOptionsBuilder().inputCode(".a { top: 1px; }").buildOptions();
+        final NativeLessOptions options2 = new NativeLessOptionsBuilder().inputCode(".b { top: 2px; }").buildOptions();
+        final NativeLessOptions options3 = new NativeLessOptionsBuilder().inputCode(".c { top: 3px; }").buildOptions();
+
+        compiler.execute(options1);
+        compiler.execute(options2);
+        compiler.execute(options1);
+        compiler.execute(options3);
+        compiler.execute(options1);
+        compiler.execute(options2);
+
+        assertThat(compiler.getEntryCount()).isEqualTo(2);
+        assertThat(compiler.getHitCount()).isEqualTo(2);
+        assertThat(compiler.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void execute_codeIsLargerThanMaxSize_doesNotCacheCode() {
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler, 10, 5);
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputCode(".basic { display: block; }").buildOptions();
+
+        compiler.execute(options);
+
+        assertThat(compiler.getEntryCount()).isZero();
+        assertThat(compiler.getSize()).isZero();
+    }
+
+    @Test
+    public void clear_cacheContainsEntries_removesEntries() {
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompiler(nativeCompiler);
+        compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic { display: block; }").buildOptions());
+
+        compiler.clear();
+
+        assertThat(compiler.getEntryCount()).isZero();
+        assertThat(compiler.getSize()).isZero();
+    }
+
+    @Test
+    public void execute_directoryIsShared_otherInstanceReturnsStoredCode() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        final File imported = temporaryFolder.newFile("imported.less");
+        write(imported, ".imported { color: red; }");
+        final File directory = temporaryFolder.newFolder("cache");
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+        final String code = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler).directory(directory).build().execute(options);
+
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler).directory(directory)
+                .build();
+        assertThat(compiler.execute(options)).isEqualTo(code);
+        assertThat(compiler.getHitCount()).isEqualTo(1);
+        assertThat(compiler.getMissCount()).isZero();
+
+        write(imported, ".imported { color: blue; }");
+        final CachingNativeLessCompiler otherCompiler = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler)
+                .directory(directory).build();
+        assertThat(otherCompiler.execute(options)).contains("color: blue;");
+        assertThat(otherCompiler.getHitCount()).isZero();
+        assertThat(otherCompiler.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_backendIsShared_otherInstanceReturnsStoredCode() throws IOException {
+        final File source = temporaryFolder.newFile("source.less");
+        write(source, "@import 'imported.less';");
+        final File imported = temporaryFolder.newFile("imported.less");
+        write(imported, ".imported { color: red; }");
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+        try (HttpCacheServer server = new HttpCacheServer(new DirectoryCacheBackend(temporaryFolder.newFolder("cache"), 1024 * 1024))) {
+            server.start();
+            final CountingBackend backend = new CountingBackend(new HttpCacheBackend(server.getBaseUrl()));
+            final String code = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler).backend(backend).executor(Runnable::run)
+                    .build().execute(options);
+            // a miss costs a single request
+            assertThat(backend.gets).isEqualTo(1);
+            assertThat(backend.puts).isEqualTo(2);
+
+            final CachingNativeLessCompiler compiler = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler).backend(backend)
+                    .executor(Runnable::run).build();
+            assertThat(compiler.execute(options)).isEqualTo(code);
+            assertThat(compiler.getHitCount()).isEqualTo(1);
+            assertThat(compiler.getMissCount()).isZero();
+            assertThat(backend.gets).isEqualTo(3);
+
+            write(imported, ".imported { color: blue; }");
+            final CachingNativeLessCompiler otherCompiler = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler)
+                    .backend(backend).executor(Runnable::run).build();
+            assertThat(otherCompiler.execute(options)).contains("color: blue;");
+            assertThat(otherCompiler.getMissCount()).isEqualTo(1);
+            assertThat(backend.gets).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void execute_backendFails_compilesSource() {
+        final CacheBackend backend = new CacheBackend() {
+
+            @Override
+            public InputStream get(final String digest) throws IOException {
+                throw new IOException("unavailable");
+            }
+
+            @Override
+            public void put(final String digest, final InputStream content) throws IOException {
+                throw new IOException("unavailable");
+            }
+        };
+        final CachingNativeLessCompiler compiler = new CachingNativeLessCompilerBuilder().compiler(nativeCompiler).backend(backend)
+                .executor(Runnable::run).build();
+
+        final String code = compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic { display: block; }").buildOptions());
+
+        assertThat(code).contains("display: block;");
+        assertThat(compiler.getMissCount()).isEqualTo(1);
+    }
+
+    private static void write(final File file, final String code) throws IOException {
+        Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static class CountingFileSystem extends LocalFileSystem {
+
+        private static final AtomicInteger fetches = new AtomicInteger();
+
+        @Override
+        public FileData fetch(final String path) throws IOException {
+            fetches.incrementAndGet();
+            return super.fetch(path);
+        }
+    }
+
+    private static final class CountingBackend implements CacheBackend {
+
+        private final CacheBackend backend;
+        private int gets;
+        private int puts;
+
+        CountingBackend(final CacheBackend backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        public InputStream get(final String digest) throws IOException {
+            ++gets;
+            return backend.get(digest);
+        }
+
+        @Override
+        public void put(final String digest, final InputStream content) throws IOException {
+            ++puts;
+            backend.put(digest, content);
+        }
+    }
+}
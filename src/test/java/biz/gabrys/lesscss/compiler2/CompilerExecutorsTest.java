@@ -0,0 +1,31 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+public final class CompilerExecutorsTest {
+
+    @Test
+    public void newBatchExecutor_compileAll_compilesJobs() {
+        final File source = new File(CompilerExecutorsTest.class.getResource("/unit/less/style.less").getPath());
+        final File basic = new File(CompilerExecutorsTest.class.getResource("/unit/less/basic.less").getPath());
+        final LessCompiler compiler = new LessCompiler(new PooledNativeLessCompilerBuilder().maxSize(2).build());
+        final ExecutorService executor = CompilerExecutors.newBatchExecutor();
+        try {
+            final List<CompileJobResult> results = compiler.compileAll(
+                    Arrays.asList(new CompileJob(source, new LessOptions()), new CompileJob(basic, new LessOptions())), executor);
+
+            assertThat(results).extracting("successful").containsExactly(true, true);
+            assertThat(results.get(0).getResult().getCss()).contains(".style");
+            assertThat(results.get(1).getResult().getCss()).contains(".basic");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mozilla.javascript.ContextFactory;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class EngineOptionsBuilderTest {
+
+    @Spy
+    private EngineOptionsBuilder builder;
+    @Mock
+    private EngineOptions options;
+
+    @Before
+    public void setup() {
+        doReturn(options).when(builder).getOptions();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_optionsIsNull_throwsException() {
+        new EngineOptionsBuilder(null);
+    }
+
+    @Test
+    public void construct_optionsIsNotNull_constructsNewObject() {
+        final EngineOptions options = new EngineOptions();
+
+        final EngineOptionsBuilder localBuilder = new EngineOptionsBuilder(options);
+
+        assertThat(localBuilder.getOptions()).isEqualTo(options);
+        assertThat(localBuilder.getOptions()).isNotSameAs(options);
+    }
+
+    @Test
+    public void optimizationLevel() {
+        final EngineOptionsBuilder builder2 = builder.optimizationLevel(-1);
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).optimizationLevel(-1);
+        verify(builder).getOptions();
+        verify(options).setOptimizationLevel(-1);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void generateDebugInfoOn() {
+        final EngineOptionsBuilder builder2 = builder.generateDebugInfoOn();
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).generateDebugInfoOn();
+        verify(builder).generateDebugInfo(true);
+        verify(builder).getOptions();
+        verify(options).setGenerateDebugInfo(true);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void precompiledScriptsOff() {
+        final EngineOptionsBuilder builder2 = builder.precompiledScriptsOff();
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).precompiledScriptsOff();
+        verify(builder).precompiledScripts(false);
+        verify(builder).getOptions();
+        verify(options).setPrecompiledScripts(false);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void contextFactory() {
+        final ContextFactory factory = new ContextFactory();
+
+        final EngineOptionsBuilder builder2 = builder.contextFactory(factory);
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).contextFactory(factory);
+        verify(builder).getOptions();
+        verify(options).setContextFactory(factory);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void maxCompilations() {
+        final EngineOptionsBuilder builder2 = builder.maxCompilations(100);
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).maxCompilations(100);
+        verify(builder).getOptions();
+        verify(options).setMaxCompilations(100);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void maxRetainedSize() {
+        final EngineOptionsBuilder builder2 = builder.maxRetainedSize(1024);
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).maxRetainedSize(1024);
+        verify(builder).getOptions();
+        verify(options).setMaxRetainedSize(1024);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void maxIdleTime() {
+        final EngineOptionsBuilder builder2 = builder.maxIdleTime(60000);
+
+        assertThat(builder2).isSameAs(builder);
+        verify(builder).maxIdleTime(60000);
+        verify(builder).getOptions();
+        verify(options).setMaxIdleTime(60000);
+        verifyNoMoreInteractions(builder, options);
+    }
+
+    @Test
+    public void build_customValues_returnsOptionsWithCustomValues() {
+        final EngineOptions built = new EngineOptionsBuilder().optimizationLevel(3).generateDebugInfoOn().build();
+
+        assertThat(built.getOptimizationLevel()).isEqualTo(3);
+        assertThat(built.isGenerateDebugInfo()).isTrue();
+    }
+}
@@ -0,0 +1,97 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static nl.jqno.equalsverifier.Warning.NONFINAL_FIELDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.mozilla.javascript.ContextFactory;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class EngineOptionsTest {
+
+    @Test
+    public void testEqualsAndHashCodeContracts() {
+        EqualsVerifier.forClass(EngineOptions.class).usingGetClass().suppress(NONFINAL_FIELDS)
+                .withPrefabValues(ContextFactory.class, new ContextFactory(), new LessContextFactory()).verify();
+    }
+
+    @Test
+    public void construct_defaultValues() {
+        final EngineOptions options = new EngineOptions();
+
+        assertThat(options.getOptimizationLevel()).isEqualTo(EngineOptions.DEFAULT_OPTIMIZATION_LEVEL);
+        assertThat(options.isGenerateDebugInfo()).isFalse();
+        assertThat(options.isPrecompiledScripts()).isTrue();
+        assertThat(options.getContextFactory()).isInstanceOf(LessContextFactory.class);
+        assertThat(options.getMaxCompilations()).isZero();
+        assertThat(options.getMaxRetainedSize()).isZero();
+        assertThat(options.getMaxIdleTime()).isZero();
+        assertThat(options.isRecyclingEnabled()).isFalse();
+    }
+
+    @Test
+    public void recyclingLimits() {
+        final EngineOptions options = new EngineOptions();
+
+        options.setMaxIdleTime(1000);
+        assertThat(options.getMaxIdleTime()).isEqualTo(1000);
+        assertThat(options.isRecyclingEnabled()).isTrue();
+
+        options.setMaxIdleTime(0);
+        options.setMaxCompilations(100);
+        options.setMaxRetainedSize(1024);
+        assertThat(options.getMaxCompilations()).isEqualTo(100);
+        assertThat(options.getMaxRetainedSize()).isEqualTo(1024);
+        assertThat(new EngineOptions(options)).isEqualTo(options);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxCompilations_valueIsNegative_throwsException() {
+        new EngineOptions().setMaxCompilations(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxRetainedSize_valueIsNegative_throwsException() {
+        new EngineOptions().setMaxRetainedSize(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxIdleTime_valueIsNegative_throwsException() {
+        new EngineOptions().setMaxIdleTime(-1);
+    }
+
+    @Test
+    public void contextFactory() {
+        final EngineOptions options = new EngineOptions();
+        final ContextFactory defaultFactory = options.getContextFactory();
+        final ContextFactory factory = new ContextFactory();
+
+        options.setContextFactory(factory);
+        assertThat(options.getContextFactory()).isSameAs(factory);
+
+        options.setContextFactory(null);
+        assertThat(options.getContextFactory()).isSameAs(defaultFactory);
+    }
+
+    @Test
+    public void optimizationLevel() {
+        final EngineOptions options = new EngineOptions();
+
+        options.setOptimizationLevel(-1);
+        assertThat(options.getOptimizationLevel()).isEqualTo(-1);
+
+        options.setOptimizationLevel(9);
+        assertThat(options.getOptimizationLevel()).isEqualTo(9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setOptimizationLevel_levelIsInvalid_throwsException() {
+        new EngineOptions().setOptimizationLevel(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_optionsIsNull_throwsException() {
+        new EngineOptions(null);
+    }
+}
@@ -0,0 +1,215 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
+
+public final class IncrementalLessCompilerTest {
+
+    private static NativeLessCompiler nativeCompiler;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createNativeCompiler() {
+        nativeCompiler = new NativeLessCompiler();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_compilerIsNull_throwsException() {
+        new IncrementalLessCompiler(null);
+    }
+
+    @Test
+    public void compile_rootImportsFiles_recordsDependencies() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final File root = newFile("root.less", "@import '_variables.less'; .root { color: @color; }");
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        final NativeLessOptions options = options(root);
+
+        final String code = compiler.compile(options);
+
+        assertThat(code).contains("color: #ff0000;");
+        assertThat(compiler.getRoots()).containsExactly(options);
+        assertThat(compiler.getDependencies(options)).containsExactly(root.getCanonicalPath(), variables.getCanonicalPath());
+    }
+
+    @Test
+    public void recompile_partialChanged_compilesOnlyAffectedRoots() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final File mixins = newFile("_mixins.less", ".mixin() { display: block; }");
+        final NativeLessOptions root1 = options(newFile("root1.less", "@import '_variables.less'; .root1 { color: @color; }"));
+        final NativeLessOptions root2 = options(newFile("root2.less", "@import '_mixins.less'; .root2 { .mixin(); }"));
+        final NativeLessOptions root3 = options(
+                newFile("root3.less", "@import '_mixins.less'; @import '_variables.less'; .root3 { color: @color; }"));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        compiler.compile(root1);
+        compiler.compile(root2);
+        compiler.compile(root3);
+        write(variables, "@color: blue;");
+
+        final Map<NativeLessOptions, String> codes = compiler.recompile(Collections.singleton(variables.getAbsolutePath()));
+
+        assertThat(codes.keySet()).containsExactly(root1, root3);
+        assertThat(codes.get(root1)).contains("color: #0000ff;");
+        assertThat(codes.get(root3)).contains("color: #0000ff;");
+        assertThat(compiler.getAffectedRoots(Collections.singleton(mixins.getAbsolutePath()))).containsExactly(root2, root3);
+    }
+
+    @Test
+    public void getAffectedRoots_pathIsNotCanonical_normalizesPath() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final NativeLessOptions root = options(newFile("root.less", "@import '_variables.less'; .root { color: @color; }"));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        compiler.compile(root);
+
+        final String path = new File(new File(variables.getParentFile(), "."), variables.getName()).getPath();
+
+        assertThat(compiler.getAffectedRoots(Collections.singleton(path))).containsExactly(root);
+    }
+
+    @Test
+    public void recompile_importRemoved_updatesDependencies() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final File source = newFile("root.less", "@import '_variables.less'; .root { color: @color; }");
+        final NativeLessOptions root = options(source);
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        compiler.compile(root);
+        write(source, ".root { color: green; }");
+
+        compiler.recompile(Collections.singleton(source.getPath()));
+
+        assertThat(compiler.getDependencies(root)).containsExactly(source.getCanonicalPath());
+        assertThat(compiler.getAffectedRoots(Collections.singleton(variables.getPath()))).isEmpty();
+    }
+
+    @Test
+    public void recompile_compilationFails_keepsPreviousDependencies() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final NativeLessOptions root = options(newFile("root.less", "@import '_variables.less'; .root { color: @color; }"));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        compiler.compile(root);
+        write(variables, "@color: ");
+
+        try {
+            compiler.recompile(Collections.singleton(variables.getPath()));
+        } catch (final CompilerException e) {
+            // expected
+        }
+
+        assertThat(compiler.getDependencies(root)).contains(variables.getCanonicalPath());
+    }
+
+    @Test
+    public void recompile_firstCompilationFailed_compilesRootAgain() throws IOException {
+        final File variables = newFile("_variables.less", "@color: ");
+        final NativeLessOptions root = options(newFile("root.less", "@import '_variables.less'; .root { color: @color; }"));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        try {
+            compiler.compile(root);
+        } catch (final CompilerException e) {
+            // expected
+        }
+        assertThat(compiler.getRoots()).containsExactly(root);
+        write(variables, "@color: red;");
+
+        final Map<NativeLessOptions, String> codes = compiler.recompile(Collections.singleton(variables.getPath()));
+
+        assertThat(codes.keySet()).containsExactly(root);
+        assertThat(codes.get(root)).contains("color: #ff0000;");
+        assertThat(compiler.getDependencies(root)).contains(variables.getCanonicalPath());
+        assertThat(compiler.getAffectedRoots(Collections.singleton("other.less"))).isEmpty();
+    }
+
+    @Test
+    public void remove_rootCompiled_removesDependencies() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final NativeLessOptions root = options(newFile("root.less", "@import '_variables.less'; .root { color: @color; }"));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        compiler.compile(root);
+
+        compiler.remove(root);
+
+        assertThat(compiler.getRoots()).isEmpty();
+        assertThat(compiler.getDependencies(root)).isEmpty();
+        assertThat(compiler.getAffectedRoots(Collections.singleton(variables.getPath()))).isEmpty();
+    }
+
+    @Test
+    public void compile_cachingCompilerReturnsCachedCode_recordsDependencies() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final NativeLessOptions root = options(newFile("root.less", "@import '_variables.less'; .root { color: @color; }"));
+        final CachingNativeLessCompiler cachingCompiler = new CachingNativeLessCompiler(nativeCompiler);
+        cachingCompiler.execute(root);
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(cachingCompiler);
+
+        compiler.compile(root);
+
+        assertThat(cachingCompiler.getHitCount()).isEqualTo(1);
+        assertThat(compiler.getDependencies(root)).contains(variables.getCanonicalPath());
+    }
+
+    @Test
+    public void getAffectedRoots_rootsShareFileSystemsOptions_normalizesEveryPathOncePerConfiguration() throws IOException {
+        final File variables = newFile("_variables.less", "@color: red;");
+        final File mixins = newFile("_mixins.less", ".mixin() { display: block; }");
+        final List<FileSystemOption> fileSystems = Collections.singletonList(new FileSystemOption(CountingFileSystem.class));
+        final IncrementalLessCompiler compiler = new IncrementalLessCompiler(nativeCompiler);
+        final NativeLessOptions root1 = new NativeLessOptionsBuilder().fileSystems(fileSystems)
+                .inputFile(newFile("root1.less", "@import '_variables.less'; .root1 { color: @color; }").getAbsolutePath()).buildOptions();
+        final NativeLessOptions root2 = new NativeLessOptionsBuilder().fileSystems(fileSystems)
+                .inputFile(newFile("root2.less", "@import '_mixins.less'; .root2 { .mixin(); }").getAbsolutePath()).buildOptions();
+        final NativeLessOptions root3 = options(newFile("root3.less", "@import '_variables.less'; .root3 { color: @color; }"));
+        compiler.compile(root1);
+        compiler.compile(root2);
+        compiler.compile(root3);
+        CountingFileSystem.normalizations.set(0);
+
+        final Set<NativeLessOptions> affected = compiler.getAffectedRoots(Arrays.asList(variables.getPath(), mixins.getPath()));
+
+        assertThat(affected).containsExactly(root1, root2, root3);
+        assertThat(CountingFileSystem.normalizations.get()).isEqualTo(2);
+    }
+
+    private File newFile(final String name, final String code) throws IOException {
+        final File file = temporaryFolder.newFile(name);
+        write(file, code);
+        return file;
+    }
+
+    private static NativeLessOptions options(final File source) {
+        return new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+    }
+
+    private static void write(final File file, final String code) throws IOException {
+        Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static class CountingFileSystem extends LocalFileSystem {
+
+        private static final AtomicInteger normalizations = new AtomicInteger();
+
+        @Override
+        public String normalize(final String path) throws IOException {
+            normalizations.incrementAndGet();
+            return super.normalize(path);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public final class InterruptibleFutureTest {
+
+    @Test
+    public void submit_taskSucceeds_completesWithValue() {
+        final CompletableFuture<String> future = InterruptibleFuture.submit(() -> "value", Runnable::run);
+
+        assertThat(future.join()).isEqualTo("value");
+    }
+
+    @Test
+    public void submit_taskThrowsException_completesExceptionally() {
+        final IllegalStateException exception = new IllegalStateException("test");
+
+        final CompletableFuture<String> future = InterruptibleFuture.submit(() -> {
+            throw exception;
+        }, Runnable::run);
+
+        assertThat(future).hasFailedWithThrowableThat().isSameAs(exception);
+    }
+
+    @Test
+    public void submit_executorRejectsTask_completesExceptionally() {
+        final CompletableFuture<String> future = InterruptibleFuture.submit(() -> "value", task -> {
+            throw new RejectedExecutionException("test");
+        });
+
+        assertThat(future).hasFailedWithThrowableThat().isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void cancel_taskIsRunning_interruptsThreadAndClearsInterruptAfterTask() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            final AtomicBoolean interrupted = new AtomicBoolean();
+            final CompletableFuture<String> future = InterruptibleFuture.submit(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    return "value";
+                } catch (final InterruptedException e) {
+                    interrupted.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }, executor);
+            started.await();
+
+            assertThat(future.cancel(true)).isTrue();
+
+            final Boolean nextTaskInterrupted = InterruptibleFuture.submit(Thread.currentThread()::isInterrupted, executor).join();
+            assertThat(future.isCancelled()).isTrue();
+            assertThat(interrupted.get()).isTrue();
+            assertThat(nextTaskInterrupted).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancel_taskIsNotStarted_doesNotRunTask() {
+        final Runnable[] tasks = new Runnable[1];
+        final AtomicBoolean executed = new AtomicBoolean();
+        final CompletableFuture<String> future = InterruptibleFuture.submit(() -> {
+            executed.set(true);
+            return "value";
+        }, task -> tasks[0] = task);
+
+        future.cancel(true);
+        tasks[0].run();
+
+        assertThat(executed.get()).isFalse();
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+}
@@ -1,7 +1,7 @@
 package biz.gabrys.lesscss.compiler2;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -14,39 +14,63 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Answers;
 
+import biz.gabrys.lesscss.compiler2.filesystem.FileData;
+import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
 import biz.gabrys.lesscss.compiler2.io.TemporaryFileFactory;
 
 public final class LessCompilerTest {
 
     private static final String RESULT = "result";
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private NativeLessCompiler nativeCompiler;
     private LessCompiler compiler;
     private NativeLessOptionsBuilder optionsBuilder;
-    private Collection<String> commandLineOptions;
+    private NativeLessOptions nativeOptions;
 
     @Before
     public void setup() throws IOException {
         nativeCompiler = mock(NativeLessCompiler.class);
-        when(nativeCompiler.execute(anyCollection())).thenReturn(RESULT);
+        when(nativeCompiler.execute(any(NativeLessOptions.class))).thenReturn(RESULT);
 
         compiler = spy(new LessCompiler(nativeCompiler));
 
         optionsBuilder = mock(NativeLessOptionsBuilder.class, Answers.RETURNS_SELF);
         doReturn(optionsBuilder).when(compiler).createOptionsBuilder();
 
-        commandLineOptions = Collections.emptyList();
-        doReturn(commandLineOptions).when(optionsBuilder).build();
+        nativeOptions = new NativeLessOptionsBuilder().buildOptions();
+        doReturn(nativeOptions).when(optionsBuilder).buildOptions();
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -62,13 +86,9 @@ public final class LessCompilerTest {
     @Test
     public void compileCode_code() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(encoding).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
 
         final String result = compiler.compileCode(code);
         assertThat(result).isSameAs(RESULT);
@@ -77,26 +97,16 @@ public final class LessCompilerTest {
         verify(compiler).validateSourceCode(code);
         verify(compiler).createOptionsBuilder();
         verify(compiler).getDefaultPlatformEncoding();
-        verify(compiler).createTemporaryFileWithCode(code, encoding);
-        verify(sourceFile).getAbsolutePath();
-        verify(optionsBuilder).inputFile(absolutePath);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
-        verify(compiler).deleteFile(sourceFile);
-        verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
     public void compileCode_code_options_encodingIsNotNull() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(null).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
         final LessOptions options = new LessOptions();
         options.setEncoding(encoding);
 
@@ -108,27 +118,17 @@ public final class LessCompilerTest {
         verify(compiler).validateOptions(options);
         verify(compiler).createOptionsBuilder();
         verify(compiler).getDefaultPlatformEncoding();
-        verify(compiler).createTemporaryFileWithCode(code, encoding);
-        verify(sourceFile).getAbsolutePath();
-        verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
-        verify(compiler).deleteFile(sourceFile);
-        verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
     public void compileCode_code_options_encodingIsNull() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(encoding).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
         final LessOptions options = new LessOptions();
         options.setEncoding(null);
 
@@ -140,13 +140,249 @@ public final class LessCompilerTest {
         verify(compiler).validateOptions(options);
         verify(compiler).createOptionsBuilder();
         verify(compiler).getDefaultPlatformEncoding();
+        verify(optionsBuilder).options(options);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
+    }
+
+    @Test
+    public void compileAsync_fileAndOptions_runsCompilationOnExecutor() {
+        final File input = mock(File.class);
+        final LessOptions options = new LessOptions();
+        doReturn(true).when(input).exists();
+        doReturn(RESULT).when(compiler).compile(input, options);
+
+        final String result = compiler.compileAsync(input, options, Runnable::run).join();
+
+        assertThat(result).isSameAs(RESULT);
+        verify(compiler).validateInputFile(input);
+        verify(compiler).validateOptions(options);
+        verify(compiler).compile(input, options);
+    }
+
+    @Test
+    public void compileCodeAsync_codeAndOptions_runsCompilationOnExecutor() {
+        final LessOptions options = new LessOptions();
+        doReturn(RESULT).when(compiler).compileCode("code", options);
+
+        final String result = compiler.compileCodeAsync(new StringBuilder("code"), options, Runnable::run).join();
+
+        assertThat(result).isSameAs(RESULT);
+        verify(compiler).compileCode("code", options);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileAsync_executorIsNull_throwsException() {
+        final File input = mock(File.class);
+        doReturn(true).when(input).exists();
+        compiler.compileAsync(input, new LessOptions(), null);
+    }
+
+    @Test
+    public void compileAsync_futureIsCancelled_interruptsCompilation() throws IOException, InterruptedException {
+        final StringBuilder code = new StringBuilder(".mixin(@value) { width: (@value * 2px); height: percentage(@value / 20000); }\n");
+        for (int i = 0; i < 20000; ++i) {
+            code.append(".rule").append(i).append(" { .mixin(").append(i).append("); }\n");
+        }
+        final File input = temporaryFolder.newFile("large.less");
+        write(input, code.toString());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<RuntimeException> exception = new AtomicReference<>();
+        final NativeLessCompiler observedCompiler = new NativeLessCompiler() {
+
+            @Override
+            CompilationOutput compile(final CompilationRequest request) {
+                started.countDown();
+                try {
+                    return super.compile(request);
+                } catch (final RuntimeException e) {
+                    exception.set(e);
+                    throw e;
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        observedCompiler.initialize();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<String> future = new LessCompiler(observedCompiler).compileAsync(input, new LessOptions(), executor);
+            started.await();
+
+            future.cancel(true);
+
+            assertThat(finished.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(future.isCancelled()).isTrue();
+            assertThat(exception.get()).isInstanceOf(CompilationInterruptedException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileAll_jobsIsNull_throwsException() {
+        compiler.compileAll(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileAll_jobsContainsNull_throwsException() {
+        compiler.compileAll(Collections.<CompileJob>singletonList(null));
+    }
+
+    @Test
+    public void compileAll_jobsImportSameFile_fetchesFileOnceAndReportsErrors() throws IOException {
+        final File partial = temporaryFolder.newFile("_partial.less");
+        write(partial, "@color: red;");
+        final File root1 = temporaryFolder.newFile("root1.less");
+        write(root1, "@import '_partial.less'; .root1 { color: @color; }");
+        final File root2 = temporaryFolder.newFile("root2.less");
+        write(root2, "@import '_partial.less'; .root2 { color: @color");
+        final File root3 = temporaryFolder.newFile("root3.less");
+        write(root3, "@import '_partial.less'; .root3 { color: @color; }");
+        final LessOptions options = new LessOptionsBuilder().fileSystems(new FileSystemOption(CountingFileSystem.class)).build();
+        CountingFileSystem.FETCHES.clear();
+
+        final List<CompileJobResult> results = new LessCompiler().compileAll(
+                Arrays.asList(new CompileJob(root1, options), new CompileJob(root2, options), new CompileJob(root3, options)));
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isSuccessful()).isTrue();
+        assertThat(results.get(0).getResult().getCss()).contains(".root1");
+        assertThat(results.get(1).isSuccessful()).isFalse();
+        assertThat(results.get(1).getException()).isInstanceOf(SyntaxException.class);
+        assertThat(results.get(2).getResult().getCss()).contains(".root3");
+        assertThat(results.get(2).getResult().getImports()).extracting("path").containsExactly(partial.getCanonicalPath());
+        assertThat(CountingFileSystem.FETCHES.get(partial.getCanonicalPath()).get()).isEqualTo(1);
+    }
+
+    @Test
+    public void compileAll_jobThrowsRuntimeException_reportsErrorAndCompilesRemainingJobs() throws IOException {
+        final File root1 = temporaryFolder.newFile("root1.less");
+        final File root2 = temporaryFolder.newFile("root2.less");
+        final IllegalStateException failure = new IllegalStateException("failure");
+        final CompilationResult result = new CompilationResult(".root2 {}", null, null, Collections.<ResolvedImport>emptyList(),
+                Collections.<CompilationPhase, Long>emptyMap());
+        final NativeLessCompiler failingCompiler = mock(NativeLessCompiler.class);
+        when(failingCompiler.executeForResult(any(NativeLessOptions.class))).thenThrow(failure).thenReturn(result);
+
+        final List<CompileJobResult> results = new LessCompiler(failingCompiler)
+                .compileAll(Arrays.asList(new CompileJob(root1, new LessOptions()), new CompileJob(root2, new LessOptions())), 1);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).isSuccessful()).isFalse();
+        assertThat(results.get(0).getException()).hasCause(failure);
+        assertThat(results.get(1).getResult()).isSameAs(result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileAll_executorIsNull_throwsException() {
+        compiler.compileAll(Collections.<CompileJob>emptyList(), (Executor) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileAll_parallelismIsNotPositive_throwsException() {
+        compiler.compileAll(Collections.<CompileJob>emptyList(), 0);
+    }
+
+    @Test
+    public void compileAll_parallelism_returnsResultsInJobsOrder() throws IOException {
+        final File partial = temporaryFolder.newFile("_partial.less");
+        write(partial, "@color: red;");
+        final List<CompileJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            final File root = temporaryFolder.newFile("root" + i + ".less");
+            write(root, "@import '_partial.less'; .root" + i + " { color: @color" + (i == 3 ? "" : "; }"));
+            jobs.add(new CompileJob(root, new LessOptions()));
+        }
+        final LessCompiler parallelCompiler = new LessCompiler(new PooledNativeLessCompilerBuilder().maxSize(2).build());
+
+        final List<CompileJobResult> results = parallelCompiler.compileAll(jobs, 2);
+
+        assertThat(results).hasSize(8);
+        for (int i = 0; i < 8; ++i) {
+            assertThat(results.get(i).getJob()).isSameAs(jobs.get(i));
+            if (i == 3) {
+                assertThat(results.get(i).getException()).isInstanceOf(SyntaxException.class);
+            } else {
+                assertThat(results.get(i).getResult().getCss()).contains(".root" + i + " {");
+            }
+        }
+    }
+
+    @Test
+    public void compileAll_parallelismAndSingleEngine_compilesJobsInParallel() throws IOException {
+        final List<CompileJob> jobs = new ArrayList<>();
+        final LessOptions options = new LessOptionsBuilder().fileSystems(new FileSystemOption(BarrierFileSystem.class)).build();
+        for (int i = 0; i < 2; ++i) {
+            write(temporaryFolder.newFile("_barrier" + i + ".less"), "@color: red;");
+            final File root = temporaryFolder.newFile("root" + i + ".less");
+            write(root, "@import '_barrier" + i + ".less'; .root" + i + " { color: @color; }");
+            jobs.add(new CompileJob(root, options));
+        }
+        final NativeLessCompiler engine = new NativeLessCompiler();
+
+        // every job waits in the file system until the other one fetches its file, so jobs compiled one by one fail
+        final List<CompileJobResult> results = new LessCompiler(engine).compileAll(jobs, 2);
+
+        assertThat(results.get(0).getResult().getCss()).contains(".root0");
+        assertThat(results.get(1).getResult().getCss()).contains(".root1");
+        assertThat(engine.isInitialized()).isTrue();
+    }
+
+    @Test
+    public void compileAll_executorThrowsUncheckedException_rethrowsException() {
+        final CompileJob job = new CompileJob(new File("source.less"), new LessOptions());
+        final IllegalStateException exception = new IllegalStateException("test");
+        final LessCompiler batchCompiler = spy(compiler);
+        doThrow(exception).when(batchCompiler).compile(any(CompileJob.class), any(BatchImportCache.class), any(NativeLessCompiler.class));
+
+        try {
+            batchCompiler.compileAll(Collections.singletonList(job), Runnable::run);
+        } catch (final IllegalStateException e) {
+            assertThat(e).isSameAs(exception);
+            return;
+        }
+        throw new AssertionError("Exception was not thrown");
+    }
+
+    @Test
+    public void compileCode_code_builder_encoding_fileFactoryIsNotSet_passesCodeToCompiler() {
+        final String code = "code";
+        final String encoding = "encoding";
+
+        final String result = compiler.compileCode(code, optionsBuilder, encoding);
+        assertThat(result).isSameAs(RESULT);
+
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verify(optionsBuilder).encoding(encoding);
+        verify(optionsBuilder).inputCode(code);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
+    }
+
+    @Test
+    public void compileCode_code_builder_encoding_fileFactoryIsSet_compilesTemporaryFile() {
+        compiler = spy(new LessCompiler(nativeCompiler, mock(TemporaryFileFactory.class)));
+        final String code = "code";
+        final File sourceFile = mock(File.class);
+        final String absolutePath = "absolutePath";
+        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
+        final String encoding = "encoding";
+        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
+        doNothing().when(compiler).deleteFile(sourceFile);
+
+        final String result = compiler.compileCode(code, optionsBuilder, encoding);
+        assertThat(result).isSameAs(RESULT);
+
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verify(optionsBuilder).encoding(encoding);
         verify(compiler).createTemporaryFileWithCode(code, encoding);
         verify(sourceFile).getAbsolutePath();
         verify(optionsBuilder).inputFile(absolutePath);
-        verify(optionsBuilder).options(options);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verify(compiler).deleteFile(sourceFile);
         verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
     }
@@ -162,8 +398,8 @@ public final class LessCompilerTest {
         verify(compiler).validateInputPath(input);
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(input);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -181,8 +417,8 @@ public final class LessCompilerTest {
         verify(compiler).validateInputFile(input);
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(absolutePath);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -200,8 +436,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).encoding(encoding.name());
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -222,8 +458,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).encoding(encoding.name());
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -240,8 +476,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).outputFile(output);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -261,8 +497,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).outputFile(output);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -282,8 +518,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).encoding(encoding.name());
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -306,8 +542,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).encoding(encoding.name());
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -325,8 +561,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -347,8 +583,59 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
+    }
+
+    @Test
+    public void compileWithResult_inputFile_options() {
+        final CompilationResult compilationResult = new CompilationResult(RESULT, null, "UTF-8", Collections.<ResolvedImport>emptyList(),
+                Collections.<CompilationPhase, Long>emptyMap());
+        when(nativeCompiler.executeForResult(nativeOptions)).thenReturn(compilationResult);
+        final File input = mock(File.class);
+        final String absolutePath = "absolutePath";
+        when(input.getAbsolutePath()).thenReturn(absolutePath);
+        doNothing().when(compiler).validateInputFile(input);
+        final LessOptions options = new LessOptions();
+
+        final CompilationResult result = compiler.compileWithResult(input, options);
+        assertThat(result).isSameAs(compilationResult);
+
+        verify(compiler).compileWithResult(input, options);
+        verify(compiler).validateInputFile(input);
+        verify(compiler).validateOptions(options);
+        verify(compiler).createOptionsBuilder();
+        verify(optionsBuilder).inputFile(absolutePath);
+        verify(optionsBuilder).options(options);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).executeForResult(nativeOptions);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
+    }
+
+    @Test
+    public void compileCodeWithResult_code_options_fileFactoryIsNotSet_passesCodeToCompiler() {
+        final CompilationResult compilationResult = new CompilationResult(RESULT, null, "UTF-8", Collections.<ResolvedImport>emptyList(),
+                Collections.<CompilationPhase, Long>emptyMap());
+        when(nativeCompiler.executeForResult(nativeOptions)).thenReturn(compilationResult);
+        final String code = "code";
+        final String encoding = "encoding";
+        final LessOptions options = new LessOptions();
+        options.setEncoding(encoding);
+
+        final CompilationResult result = compiler.compileCodeWithResult(code, options);
+        assertThat(result).isSameAs(compilationResult);
+
+        verify(compiler).compileCodeWithResult(code, options);
+        verify(compiler).validateSourceCode(code);
+        verify(compiler).validateOptions(options);
+        verify(compiler).createOptionsBuilder();
+        verify(compiler).getDefaultPlatformEncoding();
+        verify(optionsBuilder).options(options);
+        verify(optionsBuilder).encoding(encoding);
+        verify(optionsBuilder).inputCode(code);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).executeForResult(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -368,8 +655,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -392,21 +679,17 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
     public void compileCodeAndCompress_code() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(encoding).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
 
         final String result = compiler.compileCodeAndCompress(code);
         assertThat(result).isSameAs(RESULT);
@@ -415,15 +698,9 @@ public final class LessCompilerTest {
         verify(compiler).validateSourceCode(code);
         verify(compiler).createOptionsBuilder();
         verify(compiler).getDefaultPlatformEncoding();
-        verify(compiler).createTemporaryFileWithCode(code, encoding);
-        verify(sourceFile).getAbsolutePath();
-        verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
-        verify(compiler).deleteFile(sourceFile);
-        verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
@@ -438,8 +715,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -458,8 +735,8 @@ public final class LessCompilerTest {
         verify(compiler).createOptionsBuilder();
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -478,8 +755,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).encoding(encoding.name());
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -501,8 +778,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).encoding(encoding.name());
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -520,8 +797,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -542,8 +819,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -564,8 +841,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).encoding(encoding.name());
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -589,21 +866,17 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).encoding(encoding.name());
         verify(optionsBuilder).compress(true);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
     public void compileCodeWithInlineSourceMap_code_options_encodingIsNotNull() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(null).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
         final LessOptions options = new LessOptions();
         options.setEncoding(encoding);
 
@@ -614,29 +887,19 @@ public final class LessCompilerTest {
         verify(compiler).validateSourceCode(code);
         verify(compiler).validateOptions(options);
         verify(compiler).getDefaultPlatformEncoding();
-        verify(compiler).createTemporaryFileWithCode(code, encoding);
         verify(compiler).createOptionsBuilder();
-        verify(sourceFile).getAbsolutePath();
-        verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
-        verify(compiler).deleteFile(sourceFile);
-        verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
     public void compileCodeWithInlineSourceMap_code_options_encodingIsNull() {
         final String code = "code";
-        final File sourceFile = mock(File.class);
-        final String absolutePath = "absolutePath";
-        when(sourceFile.getAbsolutePath()).thenReturn(absolutePath);
         final String encoding = "encoding";
         doReturn(encoding).when(compiler).getDefaultPlatformEncoding();
-        doReturn(sourceFile).when(compiler).createTemporaryFileWithCode(code, encoding);
-        doNothing().when(compiler).deleteFile(sourceFile);
+        doReturn(RESULT).when(compiler).compileCode(code, optionsBuilder, encoding);
         final LessOptions options = new LessOptions();
         options.setEncoding(null);
 
@@ -647,17 +910,11 @@ public final class LessCompilerTest {
         verify(compiler).validateSourceCode(code);
         verify(compiler).validateOptions(options);
         verify(compiler).getDefaultPlatformEncoding();
-        verify(compiler).createTemporaryFileWithCode(code, encoding);
         verify(compiler).createOptionsBuilder();
-        verify(sourceFile).getAbsolutePath();
-        verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).encoding(encoding);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
-        verify(compiler).deleteFile(sourceFile);
-        verifyNoMoreInteractions(compiler, sourceFile, optionsBuilder, nativeCompiler);
+        verify(compiler).compileCode(code, optionsBuilder, encoding);
+        verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
     @Test
@@ -675,8 +932,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(input);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -698,8 +955,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).inputFile(absolutePath);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -720,8 +977,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -745,8 +1002,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapInline(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -767,8 +1024,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapDefault(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -792,8 +1049,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapDefault(true);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -816,8 +1073,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapFile(outputSourceMap);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -843,8 +1100,8 @@ public final class LessCompilerTest {
         verify(optionsBuilder).outputFile(output);
         verify(optionsBuilder).sourceMapFile(outputSourceMap);
         verify(optionsBuilder).options(options);
-        verify(optionsBuilder).build();
-        verify(nativeCompiler).execute(commandLineOptions);
+        verify(optionsBuilder).buildOptions();
+        verify(nativeCompiler).execute(nativeOptions);
         verifyNoMoreInteractions(compiler, optionsBuilder, nativeCompiler);
     }
 
@@ -1012,4 +1269,36 @@ public final class LessCompilerTest {
 
         compiler.deleteFile(file);
     }
+
+    private static void write(final File file, final String code) throws IOException {
+        Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static class BarrierFileSystem extends LocalFileSystem {
+
+        static final CyclicBarrier BARRIER = new CyclicBarrier(2);
+
+        @Override
+        public FileData fetch(final String path) throws IOException {
+            if (path.contains("_barrier")) {
+                try {
+                    BARRIER.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new IOException("the other job has not fetched its file", e);
+                }
+            }
+            return super.fetch(path);
+        }
+    }
+
+    public static class CountingFileSystem extends LocalFileSystem {
+
+        static final Map<String, AtomicInteger> FETCHES = new ConcurrentHashMap<>();
+
+        @Override
+        public FileData fetch(final String path) throws IOException {
+            FETCHES.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            return super.fetch(path);
+        }
+    }
 }
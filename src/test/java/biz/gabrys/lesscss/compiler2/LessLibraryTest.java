@@ -0,0 +1,73 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public final class LessLibraryTest {
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = Context.enter();
+        context.setLanguageVersion(Context.VERSION_1_8);
+    }
+
+    @After
+    public void cleanup() {
+        Context.exit();
+    }
+
+    @Test
+    public void load_optimizedMode_usesPrecompiledScripts() throws Exception {
+        context.setOptimizationLevel(9);
+
+        final LessLibrary library = LessLibrary.load(context, true);
+
+        assertThat(library.isPrecompiled()).isTrue();
+        assertDefinesCompiler(library);
+    }
+
+    @Test
+    public void load_interpretedMode_compilesSourceScripts() throws Exception {
+        context.setOptimizationLevel(-1);
+
+        final LessLibrary library = LessLibrary.load(context, true);
+
+        assertThat(library.isPrecompiled()).isFalse();
+        assertDefinesCompiler(library);
+    }
+
+    @Test
+    public void load_precompiledScriptsAreDisabled_compilesSourceScripts() throws Exception {
+        context.setOptimizationLevel(9);
+
+        final LessLibrary library = LessLibrary.load(context, false);
+
+        assertThat(library.isPrecompiled()).isFalse();
+        assertDefinesCompiler(library);
+    }
+
+    @Test
+    public void load_debugInfoIsGenerated_compilesSourceScripts() throws Exception {
+        context.setGeneratingDebug(true);
+
+        final LessLibrary library = LessLibrary.load(context, true);
+
+        assertThat(library.isPrecompiled()).isFalse();
+    }
+
+    private void assertDefinesCompiler(final LessLibrary library) {
+        final Scriptable scope = context.initStandardObjects();
+        library.execute(context, scope);
+        final Scriptable lessCompiler = (Scriptable) ScriptableObject.getProperty(scope, NativeLessCompiler.LESS_COMPILER_OBJECT);
+        assertThat(ScriptableObject.getProperty(lessCompiler, CompilationRequest.COMPILE_FUNCTION)).isInstanceOf(Function.class);
+    }
+}
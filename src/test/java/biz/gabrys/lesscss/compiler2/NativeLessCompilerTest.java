@@ -3,7 +3,15 @@ package biz.gabrys.lesscss.compiler2;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -11,16 +19,30 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mozilla.javascript.Scriptable;
 
+import biz.gabrys.lesscss.compiler2.filesystem.CachingFileSystem;
 import biz.gabrys.lesscss.compiler2.filesystem.FileData;
 import biz.gabrys.lesscss.compiler2.filesystem.FileSystem;
 import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
 
 public final class NativeLessCompilerTest {
 
+    private static final String FAKE_FILE_SYSTEMS_CODE = ".class1 {\n  key: value;\n  param-1: '_=,';\n  empty: 'empty';\n}\n"
+            + ".class2 {\n  key: value;\n  param: 100px;\n  param1_2: 'A__,,==A';\n}\n.class3 {\n  key: value;\n}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private NativeLessOptionsBuilder builder;
 
     @Before
@@ -118,6 +140,75 @@ public final class NativeLessCompilerTest {
         assertThat(code.trim()).isEqualTo(".basic{display:block}.style{width:100px}");
     }
 
+    @Test
+    public void execute_interpretedMode_success() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).compress(true).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler(new EngineOptionsBuilder().optimizationLevel(-1).build());
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(".basic{display:block}.style{width:100px}");
+    }
+
+    @Test
+    public void initializeAsync_compilerIsNotInitialized_initializesCompiler() throws Exception {
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        assertThat(compiler.isInitialized()).isFalse();
+
+        compiler.initializeAsync().get(1, TimeUnit.MINUTES);
+
+        assertThat(compiler.isInitialized()).isTrue();
+    }
+
+    @Test
+    public void warmUp_compilerIsNotInitialized_initializesCompiler() {
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        compiler.warmUp(2);
+
+        assertThat(compiler.isInitialized()).isTrue();
+    }
+
+    @Test
+    public void warmUpAsync_contextClassLoaderDoesNotSeeCompilerResources_warmsUpCompiler() throws Exception {
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable);
+            thread.setContextClassLoader(new ClassLoader(null) {
+            });
+            return thread;
+        });
+        try {
+            compiler.warmUpAsync(1, executor).get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(compiler.isInitialized()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void warmUp_iterationsIsNegative_throwsException() {
+        new NativeLessCompiler().warmUp(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_engineOptionsIsNull_throwsException() {
+        new NativeLessCompiler(null);
+    }
+
+    @Test
+    public void getEngineOptions_returnsCopy() {
+        final EngineOptions engineOptions = new EngineOptionsBuilder().optimizationLevel(3).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler(engineOptions);
+
+        final EngineOptions returned = compiler.getEngineOptions();
+
+        assertThat(returned).isEqualTo(engineOptions);
+        assertThat(returned).isNotSameAs(engineOptions);
+    }
+
     @Test(expected = SyntaxException.class)
     public void execute_fileWithSyntaxError_throwsSyntaxException() {
         final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/syntax.less").getPath());
@@ -220,6 +311,70 @@ public final class NativeLessCompilerTest {
         assertThat(code.trim()).startsWith("div {\n  width: 1px;\n}\n/*# sourceMappingURL=data:application/json;base64,");
     }
 
+    @Test
+    public void executeWithWriter_basicFile_writesCodeWithoutLineSeparator() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).compress(true).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        final StringWriter writer = new StringWriter();
+
+        compiler.execute(options, writer);
+
+        assertThat(writer.toString()).isEqualTo(".basic{display:block}");
+    }
+
+    @Test
+    public void executeWithOutputStream_basicFile_writesCodeUsingEncoding() throws UnsupportedEncodingException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final Collection<String> options = builder.encoding("ISO-8859-2").banner("/* \u017c\u00f3\u0142w */")
+                .inputFile(source.getAbsolutePath()).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        compiler.execute(options, outputStream);
+
+        assertThat(outputStream.toString("ISO-8859-2")).isEqualTo("/* \u017c\u00f3\u0142w */\n.basic {\n  display: block;\n}\n");
+    }
+
+    @Test
+    public void executeWithWriter_outputFileIsSet_writesNothing() throws IOException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final File output = temporaryFolder.newFile("basic.css");
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).outputFile(output).compress(true).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        final StringWriter writer = new StringWriter();
+
+        compiler.execute(options, writer);
+
+        assertThat(writer.toString()).isEmpty();
+        assertThat(new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8)).isEqualTo(".basic{display:block}");
+    }
+
+    @Test
+    public void compile_sourceMapFileIsSet_returnsCodeAndSourceMap() throws IOException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final File sourceMap = temporaryFolder.newFile("basic.css.map");
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).sourceMapFile(sourceMap).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final CompilationOutput output = compiler.compile(CompilationRequest.fromArguments(options));
+
+        assertThat(output.getCss()).startsWith(".basic {\n  display: block;\n}");
+        assertThat(output.getSourceMap()).startsWith("{\"version\":3,");
+        assertThat(output.getSourceMap()).isEqualTo(new String(Files.readAllBytes(sourceMap.toPath()), StandardCharsets.UTF_8));
+        assertThat(output.getEncoding()).isEqualTo("UTF-8");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void executeWithWriter_writerIsNull_throwsException() {
+        new NativeLessCompiler().execute(Collections.emptyList(), (Writer) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void executeWithOutputStream_outputStreamIsNull_throwsException() {
+        new NativeLessCompiler().execute(Collections.emptyList(), (OutputStream) null);
+    }
+
     @Test
     public void execute_basicFileLoadedFromClasspath_success() {
         final List<FileSystemOption> fileSystems = new FileSystemOptionsBuilder().appendClassPath().build();
@@ -316,7 +471,346 @@ public final class NativeLessCompilerTest {
     @Test
     public void execute_useCustomFileSystems_success() {
         final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/filesystems.less").getPath());
+        final Collection<String> options = builder.fileSystems(createFakeFileSystems()).inputFile(source.getAbsolutePath()).build();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code).isNotEmpty();
+        assertThat(code.trim()).isEqualTo(FAKE_FILE_SYSTEMS_CODE);
+    }
+
+    @Test
+    public void executeWithOptions_useCustomFileSystems_success() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/filesystems.less").getPath());
+        final NativeLessOptions options = builder.fileSystems(createFakeFileSystems()).inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(FAKE_FILE_SYSTEMS_CODE);
+    }
+
+    @Test
+    public void executeWithOptions_useGlobalAndModifyVariables_returnsSameCodeAsCommandLineOptions() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/variables.less").getPath());
+        builder.globalVariables(Arrays.asList(new LessVariableOption("height", "80px")))
+                .modifyVariables(Arrays.asList(new LessVariableOption("width", "100px"))).inputFile(source.getAbsolutePath());
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(builder.buildOptions());
+
+        assertThat(code).isNotEmpty();
+        assertThat(code).isEqualTo(compiler.execute(builder.build()));
+    }
+
+    @Test
+    public void executeWithOptions_includePathsBannerAndSourceMapInlineAreSet_returnsSameCodeAsCommandLineOptions() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/include-paths.less").getPath());
+        final List<String> includePaths = Arrays.asList(source.getParentFile().getAbsolutePath() + "/subdir/");
+        builder.includePaths(includePaths).banner("/* banner */").sourceMapInline(true).inputFile(source.getAbsolutePath());
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(builder.buildOptions());
+
+        assertThat(code).startsWith("/* banner */\n.basic {\n  display: inline;\n}");
+        assertThat(code).isEqualTo(compiler.execute(builder.build()));
+    }
+
+    @Test
+    public void executeWithOptions_outputAndDefaultSourceMapAreSet_savesFiles() throws IOException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final File output = temporaryFolder.newFile("basic.css");
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).outputFile(output).sourceMapDefault(true)
+                .buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code).isEmpty();
+        assertThat(new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8))
+                .isEqualTo(".basic {\n  display: block;\n}\n/*# sourceMappingURL=basic.css.map */");
+        assertThat(new File(output.getPath() + ".map")).exists();
+    }
+
+    @Test
+    public void executeWithOptions_codeWithRelativeImport_resolvesImportAgainstVirtualFile() {
+        final File directory = new File(NativeLessCompilerTest.class.getResource("/unit/less/subdir").getPath());
+        final NativeLessOptions options = builder.inputCode("@import 'include-paths-basic.less';\n.code { color: red; }")
+                .inputFile(new File(directory, "virtual.less").getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(".basic {\n  display: inline;\n}\n.code {\n  color: red;\n}");
+    }
+
+    @Test
+    public void executeWithOptions_missingSourceFile_throwsConfigurationExceptionWithCorrectMessage() {
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        try {
+            compiler.execute(builder.buildOptions());
+            fail("Compiler should throw exception");
+        } catch (final ConfigurationException e) {
+            assertThat(e.getMessage()).isEqualTo("Source file has not been specified");
+        }
+    }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void executeWithOptions_optionsIsNull_throwsException() {
+        new NativeLessCompiler().execute((NativeLessOptions) null);
+    }
+
+    @Test
+    public void executeForResult_fileWithImport_returnsCodeImportsAndTimings() throws IOException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final File imported = new File(source.getParentFile(), "basic.less");
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final CompilationResult result = compiler.executeForResult(options);
+
+        assertThat(result.getCss()).isEqualTo(".basic {\n  display: block;\n}\n.style {\n  width: 100px;\n}\n");
+        assertThat(result.getSourceMap()).isNull();
+        assertThat(result.getImports()).containsExactly(new ResolvedImport(imported.getCanonicalPath(), LocalFileSystem.class.getName()));
+        assertThat(result.getTimings()).containsOnlyKeys(CompilationPhase.values());
+        assertThat(result.getTimings().get(CompilationPhase.PARSE)).isPositive();
+        assertThat(result.getTimings().get(CompilationPhase.WRITE)).isZero();
+    }
+
+    @Test
+    public void executeForResult_codeWithImport_returnsImportedFile() throws IOException {
+        final File directory = new File(NativeLessCompilerTest.class.getResource("/unit/less/subdir").getPath());
+        final NativeLessOptions options = builder.inputCode("@import 'include-paths-basic.less';")
+                .inputFile(new File(directory, "virtual.less").getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final CompilationResult result = compiler.executeForResult(options);
+
+        assertThat(result.getImports()).extracting("path").containsExactly(new File(directory, "include-paths-basic.less").getCanonicalPath());
+        assertThat(result.getTimings().get(CompilationPhase.READ)).isNotNull();
+    }
+
+    @Test
+    public void execute_cachingFileSystemDecoratesLocalFileSystem_compilesFile() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put(CachingFileSystem.DELEGATE_PARAMETER, LocalFileSystem.class.getName());
+        parameters.put("cacheName", "NativeLessCompilerTest");
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath())
+                .fileSystems(new FileSystemOptionsBuilder().appendCustom(CachingFileSystem.class, parameters).build()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        try {
+            assertThat(compiler.execute(options)).contains(".style");
+            assertThat(compiler.execute(options)).contains(".style");
+        } finally {
+            CachingFileSystem.clearCaches();
+        }
+    }
+
+    @Test
+    public void execute_fileSystemFetchesIfExists_doesNotCheckExistenceSeparately() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath())
+                .fileSystems(Collections.singletonList(new FileSystemOption(SingleCallFileSystem.class))).buildOptions();
+
+        final String code = new NativeLessCompiler().execute(options);
+
+        assertThat(code).contains(".basic").contains(".style");
+    }
+
+    @Test
+    public void execute_threadIsInterrupted_throwsExceptionAndKeepsInterruptedStatus() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        compiler.initialize();
+
+        assertInterrupted(compiler, options);
+        assertThat(compiler.execute(options)).contains(".style");
+    }
+
+    @Test
+    public void execute_threadIsInterruptedAndScriptsAreInterpreted_throwsException() {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler(
+                new EngineOptionsBuilder().optimizationLevel(-1).precompiledScriptsOff().build());
+        compiler.initialize();
+
+        assertInterrupted(compiler, options);
+    }
+
+    @Test
+    public void execute_threadWaitingForEngineIsInterrupted_throwsException() throws InterruptedException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions blockingOptions = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath())
+                .fileSystems(Collections.singletonList(new FileSystemOption(BlockingFileSystem.class))).buildOptions();
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        BlockingFileSystem.fetching = new CountDownLatch(1);
+        BlockingFileSystem.release = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> compiler.execute(blockingOptions));
+        thread.start();
+        try {
+            BlockingFileSystem.fetching.await();
+
+            assertInterrupted(compiler, options);
+        } finally {
+            BlockingFileSystem.release.countDown();
+            thread.join();
+        }
+        assertThat(compiler.execute(options)).contains(".style");
+    }
+
+    @Test
+    public void execute_compilationExceedsTimeout_throwsExceptionAndEngineIsReusable() {
+        final StringBuilder code = new StringBuilder(".mixin(@value) { width: (@value * 2px); height: percentage(@value / 20000); }\n");
+        for (int i = 0; i < 20000; ++i) {
+            code.append(".rule").append(i).append(" { .mixin(").append(i).append("); }\n");
+        }
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        compiler.initialize();
+
+        try {
+            compiler.execute(new NativeLessOptionsBuilder().inputCode(code).timeout(1).buildOptions());
+            fail("Compiler should throw exception");
+        } catch (final CompilationTimeoutException e) {
+            assertThat(e.getMessage()).isEqualTo("Compilation has exceeded its timeout");
+        }
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        assertThat(compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic { width: 1px; }").timeout(60000).buildOptions()))
+                .contains(".basic");
+    }
+
+    @Test
+    public void execute_waitingForEngineExceedsTimeout_throwsException() throws InterruptedException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions blockingOptions = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath())
+                .fileSystems(Collections.singletonList(new FileSystemOption(BlockingFileSystem.class))).buildOptions();
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).timeout(50).buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+        BlockingFileSystem.fetching = new CountDownLatch(1);
+        BlockingFileSystem.release = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> compiler.execute(blockingOptions));
+        thread.start();
+        try {
+            BlockingFileSystem.fetching.await();
+
+            try {
+                compiler.execute(options);
+                fail("Compiler should throw exception");
+            } catch (final CompilationTimeoutException e) {
+                assertThat(e.getMessage()).isEqualTo("Compilation has exceeded its timeout while waiting for the compiler engine");
+            }
+        } finally {
+            BlockingFileSystem.release.countDown();
+            thread.join();
+        }
+        assertThat(compiler.execute(options)).contains(".style");
+    }
+
+    @Test
+    public void execute_maxCompilationsIsReached_replacesScopeInBackground() throws InterruptedException {
+        final NativeLessCompiler compiler = new NativeLessCompiler(new EngineOptionsBuilder().maxCompilations(2).build());
+        final NativeLessOptions options = builder.inputCode(".basic { width: 1px; }").buildOptions();
+        compiler.execute(options);
+        final Scriptable scope = compiler.getScope();
+
+        compiler.execute(options);
+
+        awaitScopeReplacement(compiler, scope, options);
+    }
+
+    @Test
+    public void execute_engineIsIdle_replacesScopeInBackground() throws InterruptedException {
+        final NativeLessCompiler compiler = new NativeLessCompiler(new EngineOptionsBuilder().maxIdleTime(20).build());
+        final NativeLessOptions options = builder.inputCode(".basic { width: 1px; }").buildOptions();
+        compiler.initialize();
+        final Scriptable scope = compiler.getScope();
+
+        compiler.execute(options);
+
+        awaitScopeReplacement(compiler, scope, options);
+    }
+
+    @Test
+    public void execute_scriptLeaksObjectsAndMaxRetainedSizeIsExceeded_replacesScope() throws InterruptedException {
+        final NativeLessCompiler compiler = new NativeLessCompiler(new EngineOptionsBuilder().maxRetainedSize(300 * 1024).build());
+        final NativeLessOptions check = builder.inputCode(".basic { content: `typeof ({}).leak`; }").buildOptions();
+        assertThat(compiler.execute(check)).contains("\"undefined\"");
+        final Scriptable scope = compiler.getScope();
+
+        compiler.execute(new NativeLessOptionsBuilder()
+                .inputCode(".basic { width: `(function () { Object.prototype.leak = new Array(100000).join('x'); return 1; })()`px; }")
+                .buildOptions());
+
+        awaitScopeReplacement(compiler, scope, check);
+        assertThat(compiler.execute(check)).contains("\"undefined\"");
+    }
+
+    @Test
+    public void execute_maxRetainedSizeIsExceeded_estimatesSizeOnlyEverySamplingInterval() {
+        final NativeLessCompiler compiler = new NativeLessCompiler(new EngineOptionsBuilder().maxRetainedSize(1).build());
+        final NativeLessOptions options = builder.inputCode(".basic { width: 1px; }").buildOptions();
+        compiler.execute(options);
+        final Scriptable scope = compiler.getScope();
+
+        for (int i = 2; i < NativeLessCompiler.SIZE_SAMPLING_INTERVAL; ++i) {
+            compiler.execute(options);
+        }
+
+        assertThat(compiler.getScope()).isSameAs(scope);
+    }
+
+    // the compiler swaps a scope created in the background at the start of the next compilation, the pause between
+    // compilations is longer than the max idle time used by the tests
+    private static void awaitScopeReplacement(final NativeLessCompiler compiler, final Scriptable scope, final NativeLessOptions options)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            assertThat(compiler.execute(options)).isNotEmpty();
+            if (compiler.getScope() != scope) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                fail("Compiler should replace the scope");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    static void assertInterrupted(final NativeLessCompiler compiler, final NativeLessOptions options) {
+        Thread.currentThread().interrupt();
+        try {
+            compiler.execute(options);
+            fail("Exception was not thrown");
+        } catch (final CompilationInterruptedException e) {
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void executeForResult_sourceMapFileIsSet_returnsSourceMap() throws IOException {
+        final File source = new File(NativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final File output = temporaryFolder.newFile("basic.css");
+        final File sourceMap = temporaryFolder.newFile("basic.css.map");
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).outputFile(output).sourceMapFile(sourceMap)
+                .buildOptions();
+        final NativeLessCompiler compiler = new NativeLessCompiler();
+
+        final CompilationResult result = compiler.executeForResult(options);
+
+        assertThat(result.getCss()).isNull();
+        assertThat(result.getSourceMap()).startsWith("{\"version\":3,");
+        assertThat(result.getImports()).isEmpty();
+    }
+
+    private static List<FileSystemOption> createFakeFileSystems() {
         final Map<String, String> parameters1 = new HashMap<>();
         parameters1.put("file=name", "system1.less");
         parameters1.put(",class__name,", "class1");
@@ -336,30 +830,7 @@ public final class NativeLessCompilerTest {
         parameters3.put(",class__name,", "class3");
         final FileSystemOption fileSystem3 = new FileSystemOption(FakeFileSystem.class, parameters3);
 
-        final StringBuilder expectedCode = new StringBuilder();
-        expectedCode.append(".class1 {\n");
-        expectedCode.append("  key: value;\n");
-        expectedCode.append("  param-1: '_=,';\n");
-        expectedCode.append("  empty: 'empty';\n");
-        expectedCode.append("}\n");
-        expectedCode.append(".class2 {\n");
-        expectedCode.append("  key: value;\n");
-        expectedCode.append("  param: 100px;\n");
-        expectedCode.append("  param1_2: 'A__,,==A';\n");
-        expectedCode.append("}\n");
-        expectedCode.append(".class3 {\n");
-        expectedCode.append("  key: value;\n");
-        expectedCode.append("}");
-
-        final Collection<String> options = builder
-                .fileSystems(Arrays.asList(fileSystem1, fileSystem2, fileSystem3, new FileSystemOption(LocalFileSystem.class)))
-                .inputFile(source.getAbsolutePath()).build();
-        final NativeLessCompiler compiler = new NativeLessCompiler();
-
-        final String code = compiler.execute(options);
-
-        assertThat(code).isNotEmpty();
-        assertThat(code.trim()).isEqualTo(expectedCode.toString());
+        return Arrays.asList(fileSystem1, fileSystem2, fileSystem3, new FileSystemOption(LocalFileSystem.class));
     }
 
     public static class FakeFileSystem implements FileSystem {
@@ -420,4 +891,29 @@ public final class NativeLessCompilerTest {
             return !path.startsWith("unsupported://");
         }
     }
+
+    public static class SingleCallFileSystem extends LocalFileSystem {
+
+        @Override
+        public boolean exists(final String path) {
+            throw new UnsupportedOperationException("Existence should be checked by the fetchIfExists method");
+        }
+    }
+
+    public static class BlockingFileSystem extends LocalFileSystem {
+
+        static volatile CountDownLatch fetching;
+        static volatile CountDownLatch release;
+
+        @Override
+        public FileData fetch(final String path) throws IOException {
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.fetch(path);
+        }
+    }
 }
@@ -575,4 +575,58 @@ public final class NativeLessOptionsBuilderTest {
 
         builder.build();
     }
+
+    @Test
+    public void buildOptions_valuesAreSet_returnsOptions() {
+        final File output = new File("/dir/output.css");
+        final File sourceMap = new File("/dir/output.map");
+
+        final NativeLessOptions options = builder.inputFile("/dir/input.less").outputFile(output).compress(true).sourceMapFile(sourceMap)
+                .buildOptions();
+
+        assertThat(options.getInputFile()).isEqualTo("/dir/input.less");
+        assertThat(options.getOutputFile()).isEqualTo(output.getAbsoluteFile());
+        assertThat(options.getLessOptions().isCompress()).isTrue();
+        assertThat(options.isSourceMapDefault()).isFalse();
+        assertThat(options.getSourceMapFile()).isEqualTo(sourceMap.getAbsoluteFile());
+        assertThat(options.isSourceMapInline()).isFalse();
+    }
+
+    @Test
+    public void buildOptions_timeoutIsSet_returnsOptionsWithTimeout() {
+        final NativeLessOptions options = builder.inputFile("/dir/input.less").timeout(250).buildOptions();
+
+        assertThat(options.getTimeout()).isEqualTo(250);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timeout_timeoutIsNegative_throwsException() {
+        builder.timeout(-1);
+    }
+
+    @Test(expected = BuilderCreationException.class)
+    public void buildOptions_inputIsNotSetAndOutputIsSet_throwsException() {
+        builder.outputFile(new File("/dir/output.css")).buildOptions();
+    }
+
+    @Test
+    public void buildOptions_codeIsSetWithoutInput_usesVirtualFileInWorkingDirectory() {
+        final NativeLessOptions options = builder.inputCode(new StringBuilder(".basic {}")).buildOptions();
+
+        assertThat(options.getInputCode()).isEqualTo(".basic {}");
+        assertThat(options.getInputFile()).isEqualTo(new File("code.less").getAbsolutePath());
+    }
+
+    @Test
+    public void buildOptions_codeAndInputAreSet_usesInputAsVirtualFile() {
+        final NativeLessOptions options = builder.inputCode(".basic {}").inputFile("/dir/virtual.less").buildOptions();
+
+        assertThat(options.getInputCode()).isEqualTo(".basic {}");
+        assertThat(options.getInputFile()).isEqualTo("/dir/virtual.less");
+    }
+
+    @Test(expected = BuilderCreationException.class)
+    public void build_codeIsSet_throwsException() {
+        builder.inputCode(".basic {}").build();
+    }
 }
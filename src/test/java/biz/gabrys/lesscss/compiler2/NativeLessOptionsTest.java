@@ -0,0 +1,40 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public final class NativeLessOptionsTest {
+
+    @Test
+    public void testEqualsAndHashCodeContracts() {
+        EqualsVerifier.forClass(NativeLessOptions.class).usingGetClass().withIgnoredFields("preparedOptions", "timeout")
+                .withPrefabValues(LessOptions.class, new LessOptions(), new LessOptionsBuilder().compress(true).build())
+                .withNonnullFields("options").verify();
+    }
+
+    @Test
+    public void construct_filesAreRelative_storesAbsoluteFiles() {
+        final NativeLessOptions options = new NativeLessOptions(new LessOptions(), "input.less", null, new File("output.css"), false,
+                new File("output.css.map"), false, 0);
+
+        assertThat(options.getInputFile()).isEqualTo("input.less");
+        assertThat(options.getOutputFile()).isEqualTo(new File("output.css").getAbsoluteFile());
+        assertThat(options.getSourceMapFile()).isEqualTo(new File("output.css.map").getAbsoluteFile());
+    }
+
+    @Test
+    public void getLessOptions_optionsAreModified_doesNotChangeStoredOptions() {
+        final LessOptions lessOptions = new LessOptions();
+        final NativeLessOptions options = new NativeLessOptions(lessOptions, null, null, null, false, null, false, 0);
+
+        lessOptions.setCompress(true);
+        options.getLessOptions().setCompress(true);
+
+        assertThat(options.getLessOptions().isCompress()).isFalse();
+    }
+}
@@ -0,0 +1,78 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public final class PooledNativeLessCompilerBuilderTest {
+
+    private PooledNativeLessCompilerBuilder builder;
+
+    @Before
+    public void setup() {
+        builder = new PooledNativeLessCompilerBuilder();
+    }
+
+    @Test
+    public void build_defaultConfiguration_returnsCompilerWithDefaultValues() {
+        final PooledNativeLessCompiler compiler = builder.build();
+
+        assertThat(compiler.getMinSize()).isEqualTo(PooledNativeLessCompiler.DEFAULT_MIN_SIZE);
+        assertThat(compiler.getMaxSize()).isEqualTo(PooledNativeLessCompiler.DEFAULT_MAX_SIZE);
+        assertThat(compiler.getIdleTimeout()).isEqualTo(PooledNativeLessCompiler.DEFAULT_IDLE_TIMEOUT);
+        assertThat(compiler.getBorrowTimeout()).isEqualTo(PooledNativeLessCompiler.DEFAULT_BORROW_TIMEOUT);
+    }
+
+    @Test
+    public void build_customConfiguration_returnsCompilerWithCustomValues() {
+        final PooledNativeLessCompiler compiler = builder.minSize(2).maxSize(5).idleTimeout(3, TimeUnit.SECONDS)
+                .borrowTimeout(4, TimeUnit.MINUTES).build();
+
+        assertThat(compiler.getMinSize()).isEqualTo(2);
+        assertThat(compiler.getMaxSize()).isEqualTo(5);
+        assertThat(compiler.getIdleTimeout()).isEqualTo(3000);
+        assertThat(compiler.getBorrowTimeout()).isEqualTo(240000);
+    }
+
+    @Test
+    public void build_engineOptionsAreSet_returnsCompilerWithEngineOptions() {
+        final EngineOptions engineOptions = new EngineOptionsBuilder().optimizationLevel(-1).build();
+
+        final PooledNativeLessCompiler compiler = builder.engineOptions(engineOptions).build();
+
+        assertThat(compiler.getEngineOptions()).isEqualTo(engineOptions);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void engineOptions_null_throwsException() {
+        builder.engineOptions(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minSize_negative_throwsException() {
+        builder.minSize(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSize_zero_throwsException() {
+        builder.maxSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void idleTimeout_negative_throwsException() {
+        builder.idleTimeout(-1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void borrowTimeout_unitIsNull_throwsException() {
+        builder.borrowTimeout(1, null);
+    }
+
+    @Test(expected = BuilderCreationException.class)
+    public void build_minSizeIsGreaterThanMaxSize_throwsException() {
+        builder.minSize(3).maxSize(2).build();
+    }
+}
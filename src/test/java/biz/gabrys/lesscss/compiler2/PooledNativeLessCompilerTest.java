@@ -0,0 +1,367 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public final class PooledNativeLessCompilerTest {
+
+    private static final String RESULT = "result" + System.lineSeparator();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_minSizeIsNegative_throwsException() {
+        new PooledNativeLessCompiler(-1, 1, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_maxSizeIsZero_throwsException() {
+        new PooledNativeLessCompiler(0, 0, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_minSizeIsGreaterThanMaxSize_throwsException() {
+        new PooledNativeLessCompiler(2, 1, 0, 0);
+    }
+
+    @Test
+    public void execute_engineIsReturned_reusesEngine() {
+        final CountingPooledCompiler compiler = new CountingPooledCompiler(1, 2, 1000, 1000);
+
+        assertThat(compiler.execute(Collections.emptyList())).isEqualTo(RESULT);
+        assertThat(compiler.execute(Collections.emptyList())).isEqualTo(RESULT);
+
+        assertThat(compiler.created).isEqualTo(1);
+        assertThat(compiler.getIdleCount()).isEqualTo(1);
+        assertThat(compiler.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void execute_engineThrowsException_returnsEngineToPool() {
+        final NativeLessCompiler engine = mock(NativeLessCompiler.class);
+        when(engine.compile(any(CompilationRequest.class))).thenThrow(new SyntaxException("error"));
+        final PooledNativeLessCompiler compiler = new PooledNativeLessCompiler(0, 1, 1000, 0) {
+
+            @Override
+            protected NativeLessCompiler createEngine() {
+                return engine;
+            }
+        };
+
+        try {
+            compiler.execute(Collections.emptyList());
+            fail("Compiler should throw exception");
+        } catch (final SyntaxException e) {
+            assertThat(e.getMessage()).isEqualTo("error");
+        }
+        assertThat(compiler.getIdleCount()).isEqualTo(1);
+        assertThat(compiler.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void executeWithWriter_engineIsReturned_delegatesToEngine() {
+        final NativeLessCompiler engine = mock(NativeLessCompiler.class);
+        when(engine.compile(any(CompilationRequest.class))).thenReturn(new CompilationOutput("result", null, null));
+        final PooledNativeLessCompiler compiler = new PooledNativeLessCompiler(0, 1, 1000, 0) {
+
+            @Override
+            protected NativeLessCompiler createEngine() {
+                return engine;
+            }
+        };
+        final Collection<String> options = Collections.emptyList();
+        final Writer writer = new StringWriter();
+
+        compiler.execute(options, writer);
+
+        verify(engine).compile(any(CompilationRequest.class));
+        assertThat(writer.toString()).isEqualTo("result");
+        assertThat(compiler.getIdleCount()).isEqualTo(1);
+        assertThat(compiler.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void execute_allEnginesAreBusy_throwsExceptionAfterBorrowTimeout() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final PooledNativeLessCompiler compiler = new BlockingPooledCompiler(1, 1000, started, finish);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> busy = executor.submit(() -> compiler.execute(Collections.emptyList()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            try {
+                compiler.execute(Collections.emptyList());
+                fail("Compiler should throw exception");
+            } catch (final CompilerException e) {
+                assertThat(e.getMessage()).isEqualTo("No compiler engine became available within 50 ms");
+            }
+
+            finish.countDown();
+            assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo(RESULT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_allEnginesAreBusyAndTimeoutIsShorterThanBorrowTimeout_throwsTimeoutException() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final PooledNativeLessCompiler compiler = new BlockingPooledCompiler(1, 1000, started, finish);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> busy = executor.submit(() -> compiler.execute(Collections.emptyList()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            try {
+                compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic {}").timeout(10).buildOptions());
+                fail("Compiler should throw exception");
+            } catch (final CompilationTimeoutException e) {
+                assertThat(e.getMessage()).isEqualTo("Compilation has exceeded its timeout while waiting for an available compiler engine");
+            }
+
+            finish.countDown();
+            assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo(RESULT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executeWithWriter_allEnginesAreBusyAndTimeoutIsShorterThanBorrowTimeout_throwsTimeoutException() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final PooledNativeLessCompiler compiler = new BlockingPooledCompiler(1, 1000, started, finish);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> busy = executor.submit(() -> compiler.execute(Collections.emptyList()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            final NativeLessOptions options = new NativeLessOptionsBuilder().inputCode(".basic {}").timeout(10).buildOptions();
+
+            try {
+                compiler.execute(options, new StringWriter());
+                fail("Compiler should throw exception");
+            } catch (final CompilationTimeoutException e) {
+                assertThat(e.getMessage()).isEqualTo("Compilation has exceeded its timeout while waiting for an available compiler engine");
+            }
+
+            finish.countDown();
+            assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo(RESULT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_threadIsInterruptedWhileWaitingForEngine_throwsInterruptedException() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final PooledNativeLessCompiler compiler = new BlockingPooledCompiler(1, 1000, started, finish);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> busy = executor.submit(() -> compiler.execute(Collections.emptyList()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Thread.currentThread().interrupt();
+            try {
+                compiler.execute(Collections.emptyList());
+                fail("Compiler should throw exception");
+            } catch (final CompilationInterruptedException e) {
+                assertThat(e.getMessage()).isEqualTo("Interrupted while waiting for an available compiler engine");
+                assertThat(Thread.interrupted()).isTrue();
+            }
+
+            finish.countDown();
+            assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo(RESULT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_multipleThreads_compilesInParallel() throws Exception {
+        final int threads = 3;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final BlockingPooledCompiler compiler = new BlockingPooledCompiler(threads, 60000, started, finish);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(() -> compiler.execute(Collections.emptyList())));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(compiler.getActiveCount()).isEqualTo(threads);
+
+            finish.countDown();
+            for (final Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(RESULT);
+            }
+            assertThat(compiler.getIdleCount()).isEqualTo(threads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictIdleEngines_enginesAreExpired_retainsMinSizeEngines() throws Exception {
+        final int threads = 3;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final BlockingPooledCompiler compiler = new BlockingPooledCompiler(threads, 1, started, finish);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(() -> compiler.execute(Collections.emptyList())));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            finish.countDown();
+            for (final Future<String> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Thread.sleep(20);
+        compiler.evictIdleEngines();
+
+        assertThat(compiler.getIdleCount()).isEqualTo(compiler.getMinSize());
+    }
+
+    @Test
+    public void evictIdleEngines_multipleThreads_retainsMinSizeEngines() throws Exception {
+        final int threads = 8;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final BlockingPooledCompiler compiler = new BlockingPooledCompiler(threads, 1, started, finish);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(() -> compiler.execute(Collections.emptyList())));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            finish.countDown();
+            for (final Future<String> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+            Thread.sleep(20);
+
+            final CountDownLatch evict = new CountDownLatch(1);
+            final List<Future<?>> evictions = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                evictions.add(executor.submit(() -> {
+                    evict.await();
+                    compiler.evictIdleEngines();
+                    return null;
+                }));
+            }
+            evict.countDown();
+            for (final Future<?> eviction : evictions) {
+                eviction.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(compiler.getIdleCount()).isEqualTo(compiler.getMinSize());
+    }
+
+    @Test
+    public void initialize_minSizeIsGreaterThanOne_createsMinSizeInitializedEngines() {
+        final PooledNativeLessCompiler compiler = new PooledNativeLessCompiler(2, 3, 60000, 1000);
+        assertThat(compiler.isInitialized()).isFalse();
+
+        compiler.initialize();
+
+        assertThat(compiler.getIdleCount()).isEqualTo(2);
+        assertThat(compiler.isInitialized()).isTrue();
+    }
+
+    @Test
+    public void execute_realEngines_compilesFilesConcurrently() throws Exception {
+        final File source = new File(PooledNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final Collection<String> options = new NativeLessOptionsBuilder().encoding("UTF-8").inputFile(source.getAbsolutePath())
+                .compress(true).build();
+        final PooledNativeLessCompiler compiler = new PooledNativeLessCompilerBuilder().maxSize(2).build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                results.add(executor.submit(() -> compiler.execute(options)));
+            }
+            for (final Future<String> result : results) {
+                assertThat(result.get(1, TimeUnit.MINUTES).trim()).isEqualTo(".basic{display:block}.style{width:100px}");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(compiler.getIdleCount()).isBetween(1, 2);
+    }
+
+    private static class CountingPooledCompiler extends PooledNativeLessCompiler {
+
+        private int created;
+
+        CountingPooledCompiler(final int minSize, final int maxSize, final long idleTimeout, final long borrowTimeout) {
+            super(minSize, maxSize, idleTimeout, borrowTimeout);
+        }
+
+        @Override
+        protected NativeLessCompiler createEngine() {
+            ++created;
+            final NativeLessCompiler engine = mock(NativeLessCompiler.class);
+            when(engine.compile(any(CompilationRequest.class))).thenReturn(new CompilationOutput("result", null, null));
+            return engine;
+        }
+    }
+
+    private static class BlockingPooledCompiler extends PooledNativeLessCompiler {
+
+        private final CountDownLatch started;
+        private final CountDownLatch finish;
+
+        BlockingPooledCompiler(final int maxSize, final long idleTimeout, final CountDownLatch started, final CountDownLatch finish) {
+            super(1, maxSize, idleTimeout, 50);
+            this.started = started;
+            this.finish = finish;
+        }
+
+        @Override
+        protected NativeLessCompiler createEngine() {
+            return new NativeLessCompiler() {
+
+                @Override
+                CompilationOutput compile(final CompilationRequest request) {
+                    started.countDown();
+                    try {
+                        finish.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new CompilationOutput("result", null, null);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import biz.gabrys.lesscss.compiler2.filesystem.LocalFileSystem;
+
+public final class PreparedLessOptionsTest {
+
+    @Before
+    public void setup() {
+        CountingFileSystem.CONFIGURED.set(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_optionsIsNull_throwsException() {
+        new PreparedLessOptions(null);
+    }
+
+    @Test
+    public void construct_fileSystemsAreSet_createsAndConfiguresFileSystems() {
+        final LessOptions options = new LessOptionsBuilder()
+                .fileSystems(Arrays.asList(new FileSystemOption(CountingFileSystem.class), null, new FileSystemOption(LocalFileSystem.class)))
+                .build();
+
+        final PreparedLessOptions preparedOptions = new PreparedLessOptions(options);
+
+        assertThat(preparedOptions.getFileSystems()).hasSize(2);
+        assertThat(preparedOptions.getFileSystems().get(0)).isInstanceOf(CountingFileSystem.class);
+        assertThat(preparedOptions.getFileSystems().get(1)).isInstanceOf(LocalFileSystem.class);
+        assertThat(CountingFileSystem.CONFIGURED.get()).isEqualTo(1);
+        assertThat(preparedOptions.getLessOptions()).isEqualTo(options);
+    }
+
+    @Test
+    public void construct_fileSystemClassDoesNotExist_throwsConfigurationException() {
+        final LessOptions options = new LessOptionsBuilder()
+                .fileSystems(Arrays.asList(new FileSystemOption("org.example.NonExistentFileSystem", Collections.emptyMap()))).build();
+
+        try {
+            new PreparedLessOptions(options);
+            fail("Constructor should throw exception");
+        } catch (final ConfigurationException e) {
+            assertThat(e.getMessage()).isEqualTo("Cannot load a file system class: org.example.NonExistentFileSystem");
+        }
+    }
+
+    @Test
+    public void construct_fileSystemCannotBeConfigured_throwsConfigurationException() {
+        final LessOptions options = new LessOptionsBuilder()
+                .fileSystems(Arrays.asList(new FileSystemOption(CountingFileSystem.class, Collections.singletonMap("fail", "true"))))
+                .build();
+
+        try {
+            new PreparedLessOptions(options);
+            fail("Constructor should throw exception");
+        } catch (final ConfigurationException e) {
+            assertThat(e.getMessage()).isEqualTo("Cannot configure a new instance of the file system: " + CountingFileSystem.class.getName());
+        }
+    }
+
+    @Test
+    public void execute_manyCompilations_reusesFileSystems() {
+        final File source = new File(PreparedLessOptionsTest.class.getResource("/unit/less/style.less").getPath());
+        final LessOptions options = new LessOptionsBuilder().fileSystems(Arrays.asList(new FileSystemOption(CountingFileSystem.class)))
+                .compress(true).build();
+        final PreparedLessOptions preparedOptions = new PreparedLessOptions(options);
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        for (int i = 0; i < 3; ++i) {
+            final NativeLessOptions nativeOptions = new NativeLessOptionsBuilder().preparedOptions(preparedOptions)
+                    .inputFile(source.getAbsolutePath()).buildOptions();
+            assertThat(nativeOptions.getPreparedOptions()).isSameAs(preparedOptions);
+            assertThat(compiler.execute(nativeOptions).trim()).isEqualTo(".basic{display:block}.style{width:100px}");
+        }
+
+        assertThat(CountingFileSystem.CONFIGURED.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void buildOptions_preparedOptionsAreModified_doesNotUsePreparedOptions() {
+        final PreparedLessOptions preparedOptions = new PreparedLessOptions(new LessOptions());
+
+        final NativeLessOptions options = new NativeLessOptionsBuilder().preparedOptions(preparedOptions).compress(true).inputFile("file.less")
+                .buildOptions();
+
+        assertThat(options.getPreparedOptions()).isNull();
+        assertThat(options.getLessOptions().isCompress()).isTrue();
+    }
+
+    public static class CountingFileSystem extends LocalFileSystem {
+
+        static final AtomicInteger CONFIGURED = new AtomicInteger();
+
+        @Override
+        public void configure(final Map<String, String> parameters) {
+            if (parameters.containsKey("fail")) {
+                throw new IllegalStateException("fail");
+            }
+            CONFIGURED.incrementAndGet();
+        }
+    }
+}
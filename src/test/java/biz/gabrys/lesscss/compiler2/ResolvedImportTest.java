@@ -0,0 +1,30 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public final class ResolvedImportTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_pathIsNull_throwsException() {
+        new ResolvedImport(null, "className");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_classNameIsNull_throwsException() {
+        new ResolvedImport("path", null);
+    }
+
+    @Test
+    public void testEqualsAndHashCodeContracts() {
+        EqualsVerifier.forClass(ResolvedImport.class).usingGetClass().withNonnullFields("path", "fileSystemClassName").verify();
+    }
+
+    @Test
+    public void testToString() {
+        assertThat(new ResolvedImport("/less/style.less", "LocalFileSystem")).hasToString("/less/style.less (LocalFileSystem)");
+    }
+}
@@ -0,0 +1,67 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public final class ScopeSizeEstimatorTest {
+
+    private Context context;
+    private Scriptable scope;
+
+    @Before
+    public void setup() {
+        context = Context.enter();
+        scope = context.initStandardObjects();
+    }
+
+    @After
+    public void cleanup() {
+        Context.exit();
+    }
+
+    @Test
+    public void estimate_objectsAreAttachedToScope_returnsGreaterSize() {
+        final long size = ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE);
+
+        context.evaluateString(scope, "Object.prototype.leak = { text: new Array(1001).join('x'), items: [1, 2, 3] };", "leak", 1,
+                null);
+
+        final long minimum = size + 2 * ScopeSizeEstimator.OBJECT_SIZE + 6 * ScopeSizeEstimator.PROPERTY_SIZE + 2 * 1000;
+        assertThat(ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE)).isGreaterThanOrEqualTo(minimum);
+    }
+
+    @Test
+    public void estimate_objectsContainCycle_visitsObjectsOnce() {
+        final long size = ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE);
+        final Scriptable object = context.newObject(scope);
+        ScriptableObject.putProperty(object, "self", object);
+        ScriptableObject.putProperty(scope, "cycle", object);
+
+        final long expected = size + ScopeSizeEstimator.OBJECT_SIZE + 2 * ScopeSizeEstimator.PROPERTY_SIZE;
+        assertThat(ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE)).isEqualTo(expected);
+    }
+
+    @Test
+    public void estimate_objectHasGetter_doesNotRunGetter() {
+        context.evaluateString(scope, "var calls = 0; var accessor = {}; Object.defineProperty(accessor, 'value', "
+                + "{ get: function () { calls++; return new Array(1001).join('x'); } });", "accessor", 1, null);
+
+        ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE);
+
+        assertThat(Context.toNumber(ScriptableObject.getProperty(scope, "calls"))).isZero();
+    }
+
+    @Test
+    public void estimate_sizeReachesLimit_stopsWalking() {
+        final long size = ScopeSizeEstimator.estimate(scope, 1);
+
+        assertThat(size).isGreaterThanOrEqualTo(1);
+        assertThat(size).isLessThan(ScopeSizeEstimator.estimate(scope, Long.MAX_VALUE));
+    }
+}
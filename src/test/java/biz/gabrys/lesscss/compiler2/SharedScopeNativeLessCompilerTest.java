@@ -0,0 +1,219 @@
+package biz.gabrys.lesscss.compiler2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.ContextFactory;
+
+public final class SharedScopeNativeLessCompilerTest {
+
+    private NativeLessOptionsBuilder builder;
+
+    @Before
+    public void setup() {
+        builder = new NativeLessOptionsBuilder().encoding("UTF-8");
+    }
+
+    @Test
+    public void execute_styleFile_success() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(".basic {\n  display: block;\n}\n.style {\n  width: 100px;\n}");
+    }
+
+    @Test
+    public void execute_threadIsInterrupted_throwsException() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions options = new NativeLessOptionsBuilder().inputFile(source.getAbsolutePath()).buildOptions();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+        compiler.initialize();
+
+        NativeLessCompilerTest.assertInterrupted(compiler, options);
+        assertThat(compiler.execute(options)).contains(".style");
+    }
+
+    @Test
+    public void execute_compilationExceedsTimeout_throwsExceptionAndScopeIsReusable() {
+        final StringBuilder code = new StringBuilder(".mixin(@value) { width: (@value * 2px); }\n");
+        for (int i = 0; i < 20000; ++i) {
+            code.append(".rule").append(i).append(" { .mixin(").append(i).append("); }\n");
+        }
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+        compiler.initialize();
+
+        try {
+            compiler.execute(new NativeLessOptionsBuilder().inputCode(code).timeout(1).buildOptions());
+            fail("Compiler should throw exception");
+        } catch (final CompilationTimeoutException e) {
+            assertThat(e.getMessage()).isEqualTo("Compilation has exceeded its timeout");
+        }
+        assertThat(compiler.execute(new NativeLessOptionsBuilder().inputCode(".basic { width: 1px; }").buildOptions())).contains(".basic");
+    }
+
+    @Test
+    public void execute_datauri_success() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/datauri.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).startsWith(".style {\n  background: url(\"data:image/png;base64,");
+    }
+
+    @Test
+    public void execute_debugInfoIsGenerated_success() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).compress(true).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler(new EngineOptionsBuilder().generateDebugInfoOn().build());
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(".basic{display:block}");
+    }
+
+    @Test
+    public void executeWithWriter_styleFile_writesCodeWithoutLineSeparator() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final Collection<String> options = builder.inputFile(source.getAbsolutePath()).compress(true).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+        final StringWriter writer = new StringWriter();
+
+        compiler.execute(options, writer);
+
+        assertThat(writer.toString()).isEqualTo(".basic{display:block}.style{width:100px}");
+    }
+
+    @Test
+    public void executeWithOptions_styleFile_success() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final NativeLessOptions options = builder.inputFile(source.getAbsolutePath()).compress(true).buildOptions();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        final String code = compiler.execute(options);
+
+        assertThat(code.trim()).isEqualTo(".basic{display:block}.style{width:100px}");
+    }
+
+    @Test
+    public void initialize_compilerIsNotInitialized_initializesSharedScope() {
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler(new EngineOptionsBuilder().optimizationLevel(1).build());
+        assertThat(compiler.isInitialized()).isFalse();
+
+        compiler.initialize();
+
+        assertThat(compiler.isInitialized()).isTrue();
+        assertThat(new SharedScopeNativeLessCompiler(compiler.getEngineOptions()).isInitialized()).isTrue();
+    }
+
+    @Test
+    public void initialize_optionsDifferOnlyInRecyclingLimitsAndFactoryInstance_sharesScope() {
+        final EngineOptions engineOptions = new EngineOptionsBuilder().optimizationLevel(2).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler(engineOptions);
+        compiler.initialize();
+
+        final EngineOptions otherOptions = new EngineOptionsBuilder().optimizationLevel(2).contextFactory(new LessContextFactory())
+                .maxCompilations(10).maxRetainedSize(1000).maxIdleTime(1000).build();
+
+        assertThat(new SharedScopeNativeLessCompiler(otherOptions).isInitialized()).isTrue();
+        assertThat(compiler.isInitialized()).isTrue();
+    }
+
+    @Test
+    public void initialize_optionsDifferInDebugInfo_doesNotShareScope() {
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler(new EngineOptionsBuilder().optimizationLevel(3).build());
+        compiler.initialize();
+
+        final EngineOptions otherOptions = new EngineOptionsBuilder().optimizationLevel(3).generateDebugInfoOn().build();
+
+        assertThat(new SharedScopeNativeLessCompiler(otherOptions).isInitialized()).isFalse();
+    }
+
+    @Test(expected = InitializationException.class)
+    public void execute_contextFactoryDoesNotEnableDynamicScope_throwsException() {
+        final EngineOptions engineOptions = new EngineOptionsBuilder().contextFactory(new ContextFactory()).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler(engineOptions);
+
+        compiler.execute(Collections.emptyList());
+    }
+
+    @Test
+    public void execute_missingSourceFile_throwsConfigurationExceptionWithCorrectMessage() {
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        try {
+            compiler.execute(Collections.emptyList());
+            fail("Compiler should throw exception");
+        } catch (final ConfigurationException e) {
+            assertThat(e.getMessage()).isEqualTo("Source file has not been specified");
+        }
+    }
+
+    @Test
+    public void execute_includePathsWereSetInPreviousCompilation_doesNotReuseThem() {
+        final File source = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/include-paths.less").getPath());
+        final List<String> includePaths = Arrays.asList(source.getParentFile().getAbsolutePath() + "/subdir/");
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        final String code = compiler.execute(builder.includePaths(includePaths).inputFile(source.getAbsolutePath()).build());
+        assertThat(code.trim()).isEqualTo(".basic {\n  display: inline;\n}");
+
+        final Collection<String> options = new NativeLessOptionsBuilder().encoding("UTF-8").inputFile(source.getAbsolutePath()).build();
+        try {
+            compiler.execute(options);
+            fail("Compiler should throw exception");
+        } catch (final ReadFileException e) {
+            assertThat(e.getFilePath()).isEqualTo("include-paths-basic.less");
+        }
+    }
+
+    @Test
+    public void execute_multipleThreads_compilesWithIndependentConfigurations() throws Exception {
+        final File style = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/style.less").getPath());
+        final File basic = new File(SharedScopeNativeLessCompilerTest.class.getResource("/unit/less/basic.less").getPath());
+        final Collection<String> styleOptions = builder.inputFile(style.getAbsolutePath()).compress(true).build();
+        final Collection<String> basicOptions = new NativeLessOptionsBuilder().encoding("UTF-8").inputFile(basic.getAbsolutePath()).build();
+        final NativeLessCompiler compiler = new SharedScopeNativeLessCompiler();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> styleResults = new ArrayList<>();
+            final List<Future<String>> basicResults = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                styleResults.add(executor.submit(compile(compiler, styleOptions)));
+                basicResults.add(executor.submit(compile(compiler, basicOptions)));
+            }
+            for (final Future<String> result : styleResults) {
+                assertThat(result.get(1, TimeUnit.MINUTES).trim()).isEqualTo(".basic{display:block}.style{width:100px}");
+            }
+            for (final Future<String> result : basicResults) {
+                assertThat(result.get(1, TimeUnit.MINUTES).trim()).isEqualTo(".basic {\n  display: block;\n}");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<String> compile(final NativeLessCompiler compiler, final Collection<String> options) {
+        return () -> compiler.execute(options);
+    }
+}
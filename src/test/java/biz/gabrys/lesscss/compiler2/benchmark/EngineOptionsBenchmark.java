@@ -0,0 +1,122 @@
+package biz.gabrys.lesscss.compiler2.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import biz.gabrys.lesscss.compiler2.EngineOptions;
+import biz.gabrys.lesscss.compiler2.EngineOptionsBuilder;
+import biz.gabrys.lesscss.compiler2.NativeLessCompiler;
+import biz.gabrys.lesscss.compiler2.NativeLessOptionsBuilder;
+import biz.gabrys.lesscss.compiler2.SharedScopeNativeLessCompiler;
+
+/**
+ * Compares engine configurations. Every configuration runs in fresh JVMs and reports:
+ * <ul>
+ * <li>startup - time from the compiler creation to the end of the first compilation (short-lived CLI usage)</li>
+ * <li>steady - average time of a compilation after the warm-up (long-lived server usage)</li>
+ * </ul>
+ * Run after {@code mvn test-compile} with the test classpath, e.g.:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:rhino.jar biz.gabrys.lesscss.compiler2.benchmark.EngineOptionsBenchmark
+ * </pre>
+ */
+public final class EngineOptionsBenchmark {
+
+    private static final int FORKS = 2;
+    private static final int WARM_UP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 20;
+
+    private static final List<String> COMPILERS = Arrays.asList("native", "shared");
+    private static final List<String> CONFIGURATIONS = Arrays.asList("interpreted", "source-opt-0", "source-opt-9", "precompiled");
+
+    private EngineOptionsBenchmark() {
+        // do nothing
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 2) {
+            runFork(args[0], args[1]);
+            return;
+        }
+        System.out.println(String.format("%-8s %-14s %12s %12s", "compiler", "configuration", "startup [ms]", "steady [ms]"));
+        for (final String compiler : COMPILERS) {
+            for (final String configuration : CONFIGURATIONS) {
+                long startup = 0;
+                double steady = 0;
+                for (int i = 0; i < FORKS; ++i) {
+                    final String[] result = fork(compiler, configuration).split(" ");
+                    startup += Long.parseLong(result[0]);
+                    steady += Double.parseDouble(result[1]);
+                }
+                System.out.println(String.format("%-8s %-14s %12d %12.2f", compiler, configuration, startup / FORKS, steady / FORKS));
+            }
+        }
+    }
+
+    private static String fork(final String compiler, final String configuration) throws Exception {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                EngineOptionsBenchmark.class.getName(), compiler, configuration).redirectErrorStream(true).start();
+        final StringBuilder output = new StringBuilder();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line);
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Benchmark fork failed: " + output);
+        }
+        return output.toString().trim();
+    }
+
+    private static void runFork(final String compilerName, final String configuration) {
+        final String source = new File(EngineOptionsBenchmark.class.getResource("/biz/gabrys/lesscss/compiler2/warm-up.less").getPath()).getAbsolutePath();
+        final Collection<String> options = new NativeLessOptionsBuilder().encoding("UTF-8").inputFile(source).build();
+
+        final long start = System.nanoTime();
+        final NativeLessCompiler compiler = createCompiler(compilerName, createEngineOptions(configuration));
+        compiler.execute(options);
+        final long startup = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+            compiler.execute(options);
+        }
+        final long measureStart = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            compiler.execute(options);
+        }
+        final double steady = (System.nanoTime() - measureStart) / 1_000_000.0 / MEASURED_ITERATIONS;
+
+        System.out.println(String.format("%d %.3f", startup, steady));
+    }
+
+    private static NativeLessCompiler createCompiler(final String name, final EngineOptions engineOptions) {
+        if ("shared".equals(name)) {
+            return new SharedScopeNativeLessCompiler(engineOptions);
+        }
+        return new NativeLessCompiler(engineOptions);
+    }
+
+    private static EngineOptions createEngineOptions(final String configuration) {
+        switch (configuration) {
+            case "interpreted":
+                return new EngineOptionsBuilder().optimizationLevel(-1).build();
+            case "source-opt-0":
+                return new EngineOptionsBuilder().optimizationLevel(0).precompiledScriptsOff().build();
+            case "source-opt-9":
+                return new EngineOptionsBuilder().optimizationLevel(9).precompiledScriptsOff().build();
+            case "precompiled":
+                return new EngineOptionsBuilder().precompiledScriptsOn().build();
+            default:
+                throw new IllegalArgumentException("Unknown configuration: " + configuration);
+        }
+    }
+}
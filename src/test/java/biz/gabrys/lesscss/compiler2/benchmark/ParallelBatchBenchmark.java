@@ -0,0 +1,115 @@
+package biz.gabrys.lesscss.compiler2.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import biz.gabrys.lesscss.compiler2.CompileJob;
+import biz.gabrys.lesscss.compiler2.CompileJobResult;
+import biz.gabrys.lesscss.compiler2.LessCompiler;
+import biz.gabrys.lesscss.compiler2.LessOptions;
+import biz.gabrys.lesscss.compiler2.PooledNativeLessCompilerBuilder;
+
+/**
+ * Measures how batch compilation scales with the number of threads. Every thread count uses a new pooled compiler with
+ * the same number of engines and reports the average time of a batch after the warm-up, the throughput and the
+ * speedup compared to a single thread. The last column reports the speedup of the default compiler (a single engine),
+ * which compiles batches using a temporary pool of engines. The batch contains source files of different sizes which import the same
+ * files. Run after {@code mvn test-compile} with the test classpath, e.g.:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:rhino.jar biz.gabrys.lesscss.compiler2.benchmark.ParallelBatchBenchmark [max threads]
+ * </pre>
+ */
+public final class ParallelBatchBenchmark {
+
+    private static final int SOURCE_FILES = 48;
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private ParallelBatchBenchmark() {
+        // do nothing
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final File directory = Files.createTempDirectory("lesscss-batch").toFile();
+        try {
+            final List<CompileJob> jobs = createJobs(directory);
+            System.out.println(String.format("%7s %12s %14s %8s %16s", "threads", "batch [ms]", "files/second", "speedup",
+                    "default speedup"));
+            double singleThreadTime = 0;
+            double defaultSingleThreadTime = 0;
+            for (int threads = 1; threads <= maxThreads; ++threads) {
+                final double time = measure(
+                        new LessCompiler(new PooledNativeLessCompilerBuilder().minSize(threads).maxSize(threads).build()), jobs, threads);
+                final double defaultTime = measure(new LessCompiler(), jobs, threads);
+                if (threads == 1) {
+                    singleThreadTime = time;
+                    defaultSingleThreadTime = defaultTime;
+                }
+                System.out.println(String.format("%7d %12.1f %14.1f %8.2f %16.2f", threads, time, jobs.size() * 1000.0 / time,
+                        singleThreadTime / time, defaultSingleThreadTime / defaultTime));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static double measure(final LessCompiler compiler, final List<CompileJob> jobs, final int threads) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; ++i) {
+            compile(compiler, jobs, threads);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            compile(compiler, jobs, threads);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ITERATIONS;
+    }
+
+    private static void compile(final LessCompiler compiler, final List<CompileJob> jobs, final int threads) {
+        for (final CompileJobResult result : compiler.compileAll(jobs, threads)) {
+            if (!result.isSuccessful()) {
+                throw result.getException();
+            }
+        }
+    }
+
+    private static List<CompileJob> createJobs(final File directory) throws IOException {
+        write(new File(directory, "_variables.less"), "@primary: #336699; @secondary: #993366; @padding: 4px;");
+        write(new File(directory, "_mixins.less"),
+                ".box(@color) { color: @color; padding: @padding; border: 1px solid darken(@color, 10%); }");
+        final LessOptions options = new LessOptions();
+        final List<CompileJob> jobs = new ArrayList<>(SOURCE_FILES);
+        for (int i = 0; i < SOURCE_FILES; ++i) {
+            final StringBuilder code = new StringBuilder("@import '_variables.less'; @import '_mixins.less';\n");
+            // every eighth source file is much larger, so idle threads have to take the remaining jobs
+            final int rules = i % 8 == 0 ? 400 : 40;
+            for (int j = 0; j < rules; ++j) {
+                code.append(".rule").append(j).append(" { .box(mix(@primary, @secondary, ").append(j % 100)
+                        .append("%)); .nested { width: (@padding * ").append(j).append("); } }\n");
+            }
+            final File source = new File(directory, "root" + i + ".less");
+            write(source, code.toString());
+            jobs.add(new CompileJob(source, options));
+        }
+        return jobs;
+    }
+
+    private static void write(final File file, final String code) throws IOException {
+        Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void delete(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,130 @@
+package biz.gabrys.lesscss.compiler2.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+import biz.gabrys.lesscss.compiler2.util.DigestBuilder;
+
+public final class DirectoryCacheBackendTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void get_entryDoesNotExist_returnsNull() throws IOException {
+        final DirectoryCacheBackend cache = new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000);
+
+        assertThat(cache.get(digest("key"))).isNull();
+    }
+
+    @Test
+    public void put_entryIsStored_otherInstanceReturnsEntry() throws IOException {
+        final String digest = digest("key");
+        new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000).put(digest, new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+
+        final byte[] content = read(new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000), digest);
+
+        assertThat(content).containsExactly(1, 2, 3);
+        assertThat(new File(new File(temporaryFolder.getRoot(), digest.substring(0, 2)), digest)).exists();
+    }
+
+    @Test
+    public void put_maxSizeExceeded_evictsLeastRecentlyUsedEntries() throws IOException {
+        final DirectoryCacheBackend cache = new DirectoryCacheBackend(temporaryFolder.getRoot(), 25);
+        final String digest1 = digest("key1");
+        final String digest2 = digest("key2");
+        final String digest3 = digest("key3");
+        cache.put(digest1, new ByteArrayInputStream(new byte[10]));
+        cache.put(digest2, new ByteArrayInputStream(new byte[10]));
+        setLastModified(digest1, 1000);
+        setLastModified(digest2, 2000);
+
+        cache.put(digest3, new ByteArrayInputStream(new byte[10]));
+
+        assertThat(cache.get(digest1)).isNull();
+        assertThat(read(cache, digest2)).hasSize(10);
+        assertThat(read(cache, digest3)).hasSize(10);
+    }
+
+    @Test
+    public void put_abandonedTemporaryFileExists_deletesTemporaryFile() throws IOException {
+        final File subdirectory = temporaryFolder.newFolder("ab");
+        final File temporaryFile = new File(subdirectory, "abandoned.tmp");
+        Files.write(temporaryFile.toPath(), new byte[10]);
+        Files.setLastModifiedTime(temporaryFile.toPath(), FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+        final DirectoryCacheBackend cache = new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000);
+
+        cache.put(digest("key"), new ByteArrayInputStream(new byte[10]));
+
+        assertThat(temporaryFile).doesNotExist();
+    }
+
+    @Test
+    public void put_manyThreadsWriteSameEntry_entryIsComplete() throws Exception {
+        final String digest = digest("key");
+        final byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < content.length; ++i) {
+            content[i] = (byte) i;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; ++i) {
+                final DirectoryCacheBackend cache = new DirectoryCacheBackend(temporaryFolder.getRoot(), Long.MAX_VALUE);
+                futures.add(executor.submit(() -> {
+                    cache.put(digest, new ByteArrayInputStream(content));
+                    final byte[] read = read(cache, digest);
+                    assertThat(read).isEqualTo(content);
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void get_digestIsInvalid_throwsException() throws IOException {
+        new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000).get("../key");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_maxSizeIsZero_throwsException() {
+        new DirectoryCacheBackend(temporaryFolder.getRoot(), 0);
+    }
+
+    private static byte[] read(final DirectoryCacheBackend cache, final String digest) throws IOException {
+        try (InputStream stream = cache.get(digest)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    private void setLastModified(final String digest, final long time) throws IOException {
+        final File file = new File(new File(temporaryFolder.getRoot(), digest.substring(0, 2)), digest);
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(time));
+    }
+
+    private static String digest(final String text) {
+        return new DigestBuilder().append(text).build();
+    }
+}
@@ -0,0 +1,191 @@
+package biz.gabrys.lesscss.compiler2.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import biz.gabrys.lesscss.compiler2.io.IOUtils;
+import biz.gabrys.lesscss.compiler2.util.DigestBuilder;
+
+public final class HttpCacheBackendTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpCacheServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new HttpCacheServer(new DirectoryCacheBackend(temporaryFolder.getRoot(), 1000));
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void construct_baseUrlIsNull_throwsException() {
+        new HttpCacheBackend(null);
+    }
+
+    @Test
+    public void construct_baseUrlWithoutSlash_appendsSlash() {
+        final HttpCacheBackend backend = new HttpCacheBackend("http://localhost/cache");
+
+        assertThat(backend.getBaseUrl()).isEqualTo("http://localhost/cache/");
+        assertThat(backend.getTimeout()).isEqualTo(HttpCacheBackend.DEFAULT_TIMEOUT);
+    }
+
+    @Test
+    public void get_entryDoesNotExist_returnsNull() throws IOException {
+        final HttpCacheBackend backend = new HttpCacheBackend(server.getBaseUrl());
+
+        assertThat(backend.get(digest("key"))).isNull();
+    }
+
+    @Test
+    public void put_entryIsStored_otherInstanceReturnsEntry() throws IOException {
+        final String digest = digest("key");
+        new HttpCacheBackend(server.getBaseUrl()).put(digest, new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+
+        try (InputStream stream = new HttpCacheBackend(server.getBaseUrl()).get(digest)) {
+            assertThat(IOUtils.toByteArray(stream)).containsExactly(1, 2, 3);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void get_serverIsStopped_throwsException() throws IOException {
+        final HttpCacheBackend backend = new HttpCacheBackend(server.getBaseUrl(), 1000);
+        server.close();
+
+        backend.get(digest("key"));
+    }
+
+    @Test
+    public void put_serverClosesFirstConnection_retriesRequest() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final FutureTask<String> serverTask = new FutureTask<>(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    readHeaders(socket.getInputStream());
+                }
+                try (Socket socket = serverSocket.accept()) {
+                    final InputStream input = socket.getInputStream();
+                    readHeaders(input);
+                    final String body = readChunkedBody(input);
+                    socket.getOutputStream().write("HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    return body;
+                }
+            });
+            new Thread(serverTask).start();
+            final HttpCacheBackend backend = new HttpCacheBackend("http://localhost:" + serverSocket.getLocalPort());
+
+            backend.put(digest("key"), new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+
+            assertThat(serverTask.get(10, TimeUnit.SECONDS)).isEqualTo("content");
+        }
+    }
+
+    @Test
+    public void serve_digestIsInvalid_returnsBadRequest() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(server.getBaseUrl() + "invalid").openConnection();
+        try {
+            assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_BAD_REQUEST);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void serve_methodIsNotSupported_returnsMethodNotAllowed() throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(server.getBaseUrl() + digest("key")).openConnection();
+        connection.setRequestMethod("DELETE");
+        try {
+            assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_BAD_METHOD);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void serve_storageFailsWhileReadingEntry_returnsInternalError() throws IOException {
+        final InputStream content = new InputStream() {
+
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (++position > 100) {
+                    throw new IOException("disk failure");
+                }
+                return 'a';
+            }
+        };
+        final CacheBackend storage = mock(CacheBackend.class);
+        when(storage.get(anyString())).thenReturn(content);
+        try (HttpCacheServer failingServer = new HttpCacheServer(storage)) {
+            failingServer.start();
+            final HttpURLConnection connection = (HttpURLConnection) new URL(failingServer.getBaseUrl() + digest("key")).openConnection();
+            try {
+                assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_INTERNAL_ERROR);
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static String digest(final String text) {
+        return new DigestBuilder().append(text).build();
+    }
+
+    private static String readLine(final InputStream input) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        for (int character = input.read(); character != '\n'; character = input.read()) {
+            if (character == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (character != '\r') {
+                line.append((char) character);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void readHeaders(final InputStream input) throws IOException {
+        for (String line = readLine(input); !line.isEmpty(); line = readLine(input)) {
+            // skip header
+        }
+    }
+
+    private static String readChunkedBody(final InputStream input) throws IOException {
+        final StringBuilder body = new StringBuilder();
+        for (int length = Integer.parseInt(readLine(input), 16); length > 0; length = Integer.parseInt(readLine(input), 16)) {
+            for (int i = 0; i < length; ++i) {
+                body.append((char) input.read());
+            }
+            readLine(input);
+        }
+        readLine(input);
+        return body.toString();
+    }
+}
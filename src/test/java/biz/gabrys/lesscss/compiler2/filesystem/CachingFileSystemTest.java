@@ -0,0 +1,282 @@
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+public final class CachingFileSystemTest {
+
+    @After
+    public void cleanup() {
+        CachingFileSystem.clearCaches();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configure_delegateIsNotSet_throwsException() throws Exception {
+        new CachingFileSystem().configure(new HashMap<String, String>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configure_ttlIsNotNumber_throwsException() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.FETCH_TTL_PARAMETER, "minute");
+
+        new CachingFileSystem().configure(parameters);
+    }
+
+    @Test
+    public void configure_delegateIsSet_configuresDelegateWithSameParameters() throws Exception {
+        final Map<String, String> parameters = createParameters();
+
+        final CachingFileSystem fileSystem = createFileSystem(parameters);
+
+        assertThat(getDelegate(fileSystem).parameters).isEqualTo(parameters);
+        assertThat(fileSystem.isSupported("file.less")).isTrue();
+        assertThat(fileSystem.isSupported("unsupported.less")).isFalse();
+    }
+
+    @Test
+    public void operations_calledTwice_delegateCalledOnce() throws Exception {
+        final CachingFileSystem fileSystem = createFileSystem(createParameters());
+        final CountingFileSystem delegate = getDelegate(fileSystem);
+
+        for (int i = 0; i < 2; ++i) {
+            assertThat(fileSystem.normalize("./file.less")).isEqualTo("/file.less");
+            assertThat(fileSystem.expandRedirection("/file.less")).isEqualTo("/file.less");
+            assertThat(fileSystem.exists("/file.less")).isTrue();
+            assertThat(fileSystem.fetch("/file.less").getContent()).isEqualTo("/file.less".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(delegate.normalized.get()).isEqualTo(1);
+        assertThat(delegate.expanded.get()).isEqualTo(1);
+        assertThat(delegate.checked.get()).isEqualTo(1);
+        assertThat(delegate.fetched.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void fetch_fileSystemsHaveEqualParameters_shareCache() throws Exception {
+        final CachingFileSystem first = createFileSystem(createParameters());
+        final CachingFileSystem second = createFileSystem(createParameters());
+        final Map<String, String> otherParameters = createParameters();
+        otherParameters.put("cacheName", "other");
+        final CachingFileSystem other = createFileSystem(otherParameters);
+
+        first.fetch("/file.less");
+        second.fetch("/file.less");
+        other.fetch("/file.less");
+
+        assertThat(getDelegate(first).fetched.get()).isEqualTo(1);
+        assertThat(getDelegate(second).fetched.get()).isZero();
+        assertThat(getDelegate(other).fetched.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void fetch_ttlIsZero_doesNotCacheData() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.FETCH_TTL_PARAMETER, "0");
+        final CachingFileSystem fileSystem = createFileSystem(parameters);
+
+        fileSystem.fetch("/file.less");
+        fileSystem.fetch("/file.less");
+
+        assertThat(getDelegate(fileSystem).fetched.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void fetch_ttlExpired_fetchesDataAgain() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.FETCH_TTL_PARAMETER, "10");
+        final AtomicLong clock = new AtomicLong();
+        final CachingFileSystem fileSystem = createFileSystem(parameters, clock);
+
+        fileSystem.fetch("/file.less");
+        clock.set(9);
+        fileSystem.fetch("/file.less");
+        assertThat(getDelegate(fileSystem).fetched.get()).isEqualTo(1);
+
+        clock.set(10);
+        fileSystem.fetch("/file.less");
+        assertThat(getDelegate(fileSystem).fetched.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void fetch_maxFilesIsExceeded_removesLeastRecentlyUsedFile() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.MAX_FILES_PARAMETER, "2");
+        final CachingFileSystem fileSystem = createFileSystem(parameters);
+        final CountingFileSystem delegate = getDelegate(fileSystem);
+
+        fileSystem.fetch("/first.less");
+        fileSystem.fetch("/second.less");
+        fileSystem.fetch("/first.less");
+        fileSystem.fetch("/third.less");
+        assertThat(delegate.fetched.get()).isEqualTo(3);
+
+        fileSystem.fetch("/first.less");
+        assertThat(delegate.fetched.get()).isEqualTo(3);
+        fileSystem.fetch("/second.less");
+        assertThat(delegate.fetched.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void exists_fileIsMissing_cachesMissUsingMissingTtl() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.MISSING_TTL_PARAMETER, "200");
+        final AtomicLong clock = new AtomicLong();
+        final CachingFileSystem fileSystem = createFileSystem(parameters, clock);
+        final CountingFileSystem delegate = getDelegate(fileSystem);
+
+        assertThat(fileSystem.exists("/missing.less")).isFalse();
+        clock.set(199);
+        assertThat(fileSystem.exists("/missing.less")).isFalse();
+        assertThat(delegate.checked.get()).isEqualTo(1);
+
+        clock.set(200);
+        assertThat(fileSystem.exists("/missing.less")).isFalse();
+        assertThat(delegate.checked.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void fetch_delegateFails_cachesFailure() throws Exception {
+        final CachingFileSystem fileSystem = createFileSystem(createParameters());
+
+        final List<IOException> exceptions = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            try {
+                fileSystem.fetch("/missing.less");
+                fail("File system should throw exception");
+            } catch (final IOException e) {
+                assertThat(e.getMessage()).isEqualTo("cannot find /missing.less");
+                exceptions.add(e);
+            }
+        }
+        assertThat(getDelegate(fileSystem).fetched.get()).isEqualTo(1);
+        assertThat(exceptions.get(1)).isNotSameAs(exceptions.get(2)).hasCause(exceptions.get(0));
+        assertThat(exceptions.get(2).getCause()).isSameAs(exceptions.get(0));
+    }
+
+    @Test
+    public void fetchIfExists_delegateIsFetchingFileSystem_cachesDataAndMisses() throws Exception {
+        final Map<String, String> parameters = createParameters();
+        parameters.put(CachingFileSystem.DELEGATE_PARAMETER, CountingFetchingFileSystem.class.getName());
+        final CachingFileSystem fileSystem = createFileSystem(parameters);
+        final CountingFetchingFileSystem delegate = (CountingFetchingFileSystem) fileSystem.getDelegate();
+
+        for (int i = 0; i < 2; ++i) {
+            assertThat(fileSystem.fetchIfExists("/file.less").getContent()).isEqualTo("/file.less".getBytes(StandardCharsets.UTF_8));
+            assertThat(fileSystem.fetchIfExists("/missing.less")).isNull();
+        }
+        assertThat(fileSystem.exists("/file.less")).isTrue();
+        assertThat(fileSystem.exists("/missing.less")).isFalse();
+        fileSystem.fetch("/file.less");
+
+        assertThat(delegate.fetchedIfExists.get()).isEqualTo(2);
+        assertThat(delegate.checked.get()).isZero();
+        assertThat(delegate.fetched.get()).isZero();
+    }
+
+    @Test
+    public void fetchIfExists_delegateIsNotFetchingFileSystem_checksAndFetchesFile() throws Exception {
+        final CachingFileSystem fileSystem = createFileSystem(createParameters());
+        final CountingFileSystem delegate = getDelegate(fileSystem);
+
+        assertThat(fileSystem.fetchIfExists("/file.less")).isNotNull();
+        assertThat(fileSystem.fetchIfExists("/missing.less")).isNull();
+
+        assertThat(delegate.checked.get()).isEqualTo(2);
+        assertThat(delegate.fetched.get()).isEqualTo(1);
+    }
+
+    private static Map<String, String> createParameters() {
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put(CachingFileSystem.DELEGATE_PARAMETER, CountingFileSystem.class.getName());
+        return parameters;
+    }
+
+    private static CachingFileSystem createFileSystem(final Map<String, String> parameters) throws Exception {
+        final CachingFileSystem fileSystem = new CachingFileSystem();
+        fileSystem.configure(parameters);
+        return fileSystem;
+    }
+
+    private static CachingFileSystem createFileSystem(final Map<String, String> parameters, final AtomicLong clock) throws Exception {
+        final CachingFileSystem fileSystem = new CachingFileSystem(clock::get);
+        fileSystem.configure(parameters);
+        return fileSystem;
+    }
+
+    private static CountingFileSystem getDelegate(final CachingFileSystem fileSystem) {
+        return (CountingFileSystem) fileSystem.getDelegate();
+    }
+
+    public static class CountingFileSystem implements FileSystem {
+
+        final AtomicInteger normalized = new AtomicInteger();
+        final AtomicInteger expanded = new AtomicInteger();
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicInteger fetched = new AtomicInteger();
+        private Map<String, String> parameters;
+
+        @Override
+        public void configure(final Map<String, String> parameters) {
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean isSupported(final String path) {
+            return !path.startsWith("unsupported");
+        }
+
+        @Override
+        public String normalize(final String path) {
+            normalized.incrementAndGet();
+            return path.replace("./", "/");
+        }
+
+        @Override
+        public String expandRedirection(final String path) {
+            expanded.incrementAndGet();
+            return path;
+        }
+
+        @Override
+        public boolean exists(final String path) {
+            checked.incrementAndGet();
+            return !path.startsWith("/missing");
+        }
+
+        @Override
+        public FileData fetch(final String path) throws IOException {
+            fetched.incrementAndGet();
+            if (path.startsWith("/missing")) {
+                throw new IOException("cannot find " + path);
+            }
+            return new FileData(path.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public static class CountingFetchingFileSystem extends CountingFileSystem implements FetchingFileSystem {
+
+        final AtomicInteger fetchedIfExists = new AtomicInteger();
+
+        @Override
+        public FileData fetchIfExists(final String path) {
+            fetchedIfExists.incrementAndGet();
+            if (path.startsWith("/missing")) {
+                return null;
+            }
+            return new FileData(path.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -8,6 +8,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -136,4 +137,25 @@ public final class ClassPathFileSystemTest {
         verify(classLoader).getResourceAsStream(name);
         verifyNoMoreInteractions(classLoader);
     }
+
+    @Test
+    public void fetchIfExists_resourceDoesNotExist_returnsNull() throws IOException {
+        final ClassLoader classLoader = mock(ClassLoader.class);
+        doReturn(classLoader).when(fileSystem).getClassLoader();
+        when(classLoader.getResourceAsStream("missing-file.less")).thenReturn(null);
+
+        assertThat(fileSystem.fetchIfExists("classpath://missing-file.less")).isNull();
+    }
+
+    @Test
+    public void fetchIfExists_resourceExists_returnsData() throws IOException {
+        final ClassLoader classLoader = mock(ClassLoader.class);
+        doReturn(classLoader).when(fileSystem).getClassLoader();
+        final byte[] content = new byte[] { 'l', 'e', 's', 's' };
+        when(classLoader.getResourceAsStream("existing-file.less")).thenReturn(new ByteArrayInputStream(content));
+
+        final FileData result = fileSystem.fetchIfExists("classpath://existing-file.less");
+
+        assertThat(result.getContent()).containsExactly(content);
+    }
 }
@@ -7,6 +7,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -297,4 +298,56 @@ public final class FtpFileSystemTest {
         fileSystem.disconnect(connection);
         verify(connection).disconnect();
     }
+
+    @Test
+    public void fetchIfExists_fileIsUnavailable_returnsNull() throws IOException {
+        final String path = "ftp://example.org/missing-file.less";
+        final FTPClient connection = mock(FTPClient.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class));
+        when(connection.retrieveFile(eq("/missing-file.less"), any(OutputStream.class))).thenReturn(false);
+        when(connection.getReplyCode()).thenReturn(FTPReply.FILE_UNAVAILABLE);
+
+        final FileData result = fileSystem.fetchIfExists(path);
+
+        assertThat(result).isNull();
+        verify(fileSystem).disconnect(connection);
+    }
+
+    @Test
+    public void fetchIfExists_fileExists_returnsFileDataUsingSingleConnection() throws IOException {
+        final String path = "ftp://example.org/existing-file.less";
+        final FTPClient connection = mock(FTPClient.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class));
+        when(connection.retrieveFile(eq("/existing-file.less"), any(OutputStream.class))).thenAnswer(invocation -> {
+            ((OutputStream) invocation.getArgument(1)).write(new byte[] { 'l', 'e', 's', 's' });
+            return true;
+        });
+
+        final FileData result = fileSystem.fetchIfExists(path);
+
+        assertThat(result.getContent()).containsExactly(new byte[] { 'l', 'e', 's', 's' });
+        verify(fileSystem).makeConnection(new URL(path));
+        verify(fileSystem).disconnect(connection);
+    }
+
+    @Test
+    public void fetchIfExists_retrievingIsRefused_returnsNullLikeExists() throws IOException {
+        final String path = "ftp://example.org/file.less";
+        final FTPClient connection = mock(FTPClient.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class));
+        when(connection.retrieveFile(eq("/file.less"), any(OutputStream.class))).thenReturn(false);
+        when(connection.retrieveFileStream("/file.less")).thenReturn(null);
+        when(connection.getReplyCode()).thenReturn(FTPReply.SERVICE_NOT_AVAILABLE);
+
+        assertThat(fileSystem.exists(path)).isFalse();
+        assertThat(fileSystem.fetchIfExists(path)).isNull();
+        verify(fileSystem, times(2)).disconnect(connection);
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchIfExists_connectionFails_throwsException() throws IOException {
+        doThrow(IOException.class).when(fileSystem).makeConnection(any(URL.class));
+
+        fileSystem.fetchIfExists("ftp://example.org/file.less");
+    }
 }
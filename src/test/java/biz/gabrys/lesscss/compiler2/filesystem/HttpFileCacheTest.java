@@ -0,0 +1,187 @@
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import biz.gabrys.lesscss.compiler2.cache.CacheBackend;
+import biz.gabrys.lesscss.compiler2.cache.DirectoryCacheBackend;
+
+public final class HttpFileCacheTest {
+
+    private static final String URL = "http://example.org/file.less";
+    private static final FileData DATA = new FileData("// less".getBytes(StandardCharsets.UTF_8), "UTF-8");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void create_responseContainsNoStore_returnsNull() {
+        final HttpURLConnection connection = createConnection("\"v1\"", null, "no-store, max-age=60");
+
+        assertThat(HttpFileCache.Entry.create(DATA, connection, 1000)).isNull();
+    }
+
+    @Test
+    public void create_responseHasNeitherValidatorsNorMaxAge_returnsNull() {
+        final HttpURLConnection connection = createConnection(null, null, null);
+
+        assertThat(HttpFileCache.Entry.create(DATA, connection, 1000)).isNull();
+    }
+
+    @Test
+    public void create_responseContainsMaxAge_entryIsFreshUntilMaxAgeExpires() {
+        final HttpURLConnection connection = createConnection(null, null, "public, max-age=60");
+
+        final HttpFileCache.Entry entry = HttpFileCache.Entry.create(DATA, connection, 1000);
+
+        assertThat(entry.getData()).isSameAs(DATA);
+        assertThat(entry.isFresh(1000)).isTrue();
+        assertThat(entry.isFresh(60999)).isTrue();
+        assertThat(entry.isFresh(61000)).isFalse();
+    }
+
+    @Test
+    public void create_responseContainsNoCache_entryIsNeverFresh() {
+        final HttpURLConnection connection = createConnection("\"v1\"", null, "no-cache, max-age=60");
+
+        final HttpFileCache.Entry entry = HttpFileCache.Entry.create(DATA, connection, 1000);
+
+        assertThat(entry.isFresh(1000)).isFalse();
+    }
+
+    @Test
+    public void addValidators_entryHasEtagAndLastModified_setsConditionalHeaders() {
+        final String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        final HttpFileCache.Entry entry = HttpFileCache.Entry.create(DATA, createConnection("\"v1\"", lastModified, null), 1000);
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+
+        entry.addValidators(connection);
+
+        verify(connection).setRequestProperty("If-None-Match", "\"v1\"");
+        verify(connection).setRequestProperty("If-Modified-Since", lastModified);
+    }
+
+    @Test
+    public void revalidate_responseContainsNewHeaders_replacesHeaders() {
+        final HttpFileCache.Entry entry = HttpFileCache.Entry.create(DATA, createConnection("\"v1\"", null, null), 1000);
+
+        final HttpFileCache.Entry revalidated = entry.revalidate(createConnection("\"v2\"", null, "max-age=10"), 2000);
+
+        assertThat(revalidated.getData()).isSameAs(DATA);
+        assertThat(revalidated.isFresh(11999)).isTrue();
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        revalidated.addValidators(connection);
+        verify(connection).setRequestProperty("If-None-Match", "\"v2\"");
+    }
+
+    @Test
+    public void revalidate_responseDoesNotContainHeaders_keepsStoredHeaders() {
+        final HttpFileCache.Entry entry = HttpFileCache.Entry.create(DATA, createConnection("\"v1\"", null, "max-age=10"), 1000);
+
+        final HttpFileCache.Entry revalidated = entry.revalidate(createConnection(null, null, null), 20000);
+
+        assertThat(revalidated.isFresh(29999)).isTrue();
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        revalidated.addValidators(connection);
+        verify(connection).setRequestProperty("If-None-Match", "\"v1\"");
+    }
+
+    @Test
+    public void put_maxFilesIsExceeded_removesLeastRecentlyUsedFile() {
+        final HttpFileCache cache = new HttpFileCache(2, null);
+        final HttpFileCache.Entry entry = new HttpFileCache.Entry(DATA, "\"v1\"", null, 1000, 0);
+        cache.put("http://example.org/1.less", entry);
+        cache.put("http://example.org/2.less", entry);
+        cache.get("http://example.org/1.less");
+
+        cache.put("http://example.org/3.less", entry);
+
+        assertThat(cache.get("http://example.org/1.less")).isSameAs(entry);
+        assertThat(cache.get("http://example.org/2.less")).isNull();
+        assertThat(cache.get("http://example.org/3.less")).isSameAs(entry);
+    }
+
+    @Test
+    public void get_fileHasBeenStoredByOtherInstance_returnsFileFromBackend() {
+        final CacheBackend backend = new DirectoryCacheBackend(temporaryFolder.getRoot(), 1024 * 1024);
+        new HttpFileCache(10, backend).put(URL, new HttpFileCache.Entry(DATA, "\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT", 1000, 5000));
+
+        final HttpFileCache.Entry result = new HttpFileCache(10, backend).get(URL);
+
+        assertThat(result).isNotNull();
+        assertThat(result.getData()).isEqualTo(DATA);
+        assertThat(result.isFresh(5999)).isTrue();
+        assertThat(result.isFresh(6000)).isFalse();
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        result.addValidators(connection);
+        verify(connection).setRequestProperty("If-None-Match", "\"v1\"");
+        verify(connection).setRequestProperty("If-Modified-Since", "Wed, 21 Oct 2015 07:28:00 GMT");
+    }
+
+    @Test
+    public void update_fileHasBeenRevalidated_storesOnlyMetadata() throws IOException {
+        final CacheBackend backend = spy(new DirectoryCacheBackend(temporaryFolder.getRoot(), 1024 * 1024));
+        final HttpFileCache.Entry entry = new HttpFileCache.Entry(DATA, "\"v1\"", null, 1000, 5000);
+        new HttpFileCache(10, backend).put(URL, entry);
+        verify(backend, times(2)).put(anyString(), any(InputStream.class));
+
+        new HttpFileCache(10, backend).update(URL, entry.revalidate(createConnection(null, null, "max-age=10"), 2000));
+
+        // the first call stores the content, the next ones store the metadata
+        final ArgumentCaptor<String> digests = ArgumentCaptor.forClass(String.class);
+        verify(backend, times(3)).put(digests.capture(), any(InputStream.class));
+        assertThat(digests.getAllValues().get(2)).isEqualTo(digests.getAllValues().get(1)).isNotEqualTo(digests.getAllValues().get(0));
+        final HttpFileCache.Entry result = new HttpFileCache(10, backend).get(URL);
+        assertThat(result).isNotNull();
+        assertThat(result.getData()).isEqualTo(DATA);
+        assertThat(result.isFresh(11999)).isTrue();
+        assertThat(result.isFresh(12000)).isFalse();
+    }
+
+    @Test
+    public void get_backendThrowsException_returnsNull() throws IOException {
+        final CacheBackend backend = mock(CacheBackend.class);
+        when(backend.get(anyString())).thenThrow(IOException.class);
+
+        assertThat(new HttpFileCache(10, backend).get(URL)).isNull();
+    }
+
+    @Test
+    public void put_backendThrowsException_keepsFileInMemory() throws IOException {
+        final CacheBackend backend = mock(CacheBackend.class);
+        doThrow(IOException.class).when(backend).put(anyString(), any(InputStream.class));
+        final HttpFileCache cache = new HttpFileCache(10, backend);
+        final HttpFileCache.Entry entry = new HttpFileCache.Entry(DATA, "\"v1\"", null, 1000, 0);
+
+        cache.put(URL, entry);
+
+        assertThat(cache.get(URL)).isSameAs(entry);
+        verify(backend, never()).get(anyString());
+    }
+
+    private static HttpURLConnection createConnection(final String etag, final String lastModified, final String cacheControl) {
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getHeaderField("ETag")).thenReturn(etag);
+        when(connection.getHeaderField("Last-Modified")).thenReturn(lastModified);
+        when(connection.getHeaderField("Cache-Control")).thenReturn(cacheControl);
+        return connection;
+    }
+}
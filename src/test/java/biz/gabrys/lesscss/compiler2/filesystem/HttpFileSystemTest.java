@@ -3,8 +3,10 @@ package biz.gabrys.lesscss.compiler2.filesystem;
 import static java.net.HttpURLConnection.HTTP_MOVED_PERM;
 import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
@@ -13,26 +15,57 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
 @RunWith(MockitoJUnitRunner.class)
 public final class HttpFileSystemTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Spy
     private HttpFileSystem fileSystem;
 
+    @After
+    public void clearCaches() {
+        HttpFileSystem.clearCaches();
+    }
+
     @Test
     public void isSupported_pathDoesNotStartWithFtpProtocol_returnsFalse() {
         assertThat(fileSystem.isSupported("./file.less")).isFalse();
@@ -294,4 +327,509 @@ public final class HttpFileSystemTest {
         fileSystem.disconnect(connection);
         verify(connection).disconnect();
     }
+
+    @Test
+    public void fetchIfExists_responseIsNotFound_returnsNull() throws IOException {
+        final String path = "http://example.org/missing-file.less";
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class), eq(true));
+        when(connection.getResponseCode()).thenReturn(HTTP_NOT_FOUND);
+
+        final FileData result = fileSystem.fetchIfExists(path);
+
+        assertThat(result).isNull();
+        verify(fileSystem).disconnect(connection);
+    }
+
+    @Test
+    public void fetchIfExists_responseIsOk_returnsFileDataUsingSingleRequest() throws IOException {
+        final String path = "http://example.org/existing-file.less";
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class), eq(true));
+        when(connection.getResponseCode()).thenReturn(HTTP_OK);
+        doReturn("UTF-8").when(fileSystem).readEncoding(connection);
+        when(connection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[] { 'l', 'e', 's', 's' }));
+
+        final FileData result = fileSystem.fetchIfExists(path);
+
+        assertThat(result).isEqualTo(new FileData(new byte[] { 'l', 'e', 's', 's' }, "UTF-8"));
+        verify(fileSystem).makeConnection(new URL(path), true);
+        verify(fileSystem).disconnect(connection);
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchIfExists_responseIsRedirect_throwsException() throws IOException {
+        final String path = "http://example.org/moved-file.less";
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        doReturn(connection).when(fileSystem).makeConnection(any(URL.class), eq(true));
+        when(connection.getResponseCode()).thenReturn(HTTP_MOVED_PERM);
+
+        fileSystem.fetchIfExists(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configure_maxConnectionsIsNotNumber_throwsException() {
+        fileSystem.configure(Collections.singletonMap(HttpFileSystem.MAX_CONNECTIONS_PARAMETER, "many"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configure_maxConnectionsIsZero_throwsException() {
+        fileSystem.configure(Collections.singletonMap(HttpFileSystem.MAX_CONNECTIONS_PARAMETER, "0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configure_readTimeoutIsNegative_throwsException() {
+        fileSystem.configure(Collections.singletonMap(HttpFileSystem.READ_TIMEOUT_PARAMETER, "-1"));
+    }
+
+    @Test
+    public void makeConnection_timeoutsAreConfigured_setsTimeouts() throws IOException {
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put(HttpFileSystem.CONNECT_TIMEOUT_PARAMETER, "1000");
+        parameters.put(HttpFileSystem.READ_TIMEOUT_PARAMETER, "2000");
+        fileSystem.configure(parameters);
+        final URL url = new URL("http://example.org/file.less");
+        final HttpURLConnection connection = mock(HttpURLConnection.class);
+        doReturn(connection).when(fileSystem).openConnection(url);
+
+        fileSystem.makeConnection(url, true);
+
+        verify(connection).setConnectTimeout(1000);
+        verify(connection).setReadTimeout(2000);
+    }
+
+    // the JDK HTTP server does not send Content-Length headers in HEAD responses, so the JVM cannot reuse connections
+    // after the HEAD requests and the tests count connections used by the GET requests
+    @Test
+    public void fetch_keepAliveIsDisabled_closesConnectionAfterMissingFile() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.<String, String>emptyMap());
+
+            fetchFiles(server, 3);
+
+            assertThat(server.getRequests()).isEqualTo(6);
+            assertThat(server.getConnections()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void fetch_keepAliveIsEnabled_reusesSingleConnection() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.KEEP_ALIVE_PARAMETER, "true"));
+
+            fetchFiles(server, 30);
+
+            assertThat(server.getRequests()).isEqualTo(60);
+            assertThat(server.getConnections()).isEqualTo(1);
+        }
+    }
+
+    private void fetchFiles(final CountingHttpServer server, final int files) throws Exception {
+        for (int i = 0; i < files; ++i) {
+            final String path = server.getUrl("file" + i + ".less");
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo(("// /file" + i + ".less").getBytes(StandardCharsets.UTF_8));
+            assertThat(fileSystem.fetchIfExists(server.getUrl("missing" + i + ".less"))).isNull();
+        }
+    }
+
+    @Test
+    public void expandRedirection_keepAliveIsEnabled_followsRedirection() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.KEEP_ALIVE_PARAMETER, "true"));
+
+            final String result = fileSystem.expandRedirection(server.getUrl("moved/file.less"));
+
+            assertThat(result).isEqualTo(server.getUrl("file.less"));
+            assertThat(fileSystem.exists(result)).isTrue();
+            assertThat(fileSystem.exists(server.getUrl("missing.less"))).isFalse();
+        }
+    }
+
+    @Test
+    public void fetch_keepAliveIsEnabledAndFileIsMissing_reusesConnectionAfterError() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.KEEP_ALIVE_PARAMETER, "true"));
+
+            for (int i = 0; i < 3; ++i) {
+                try {
+                    fileSystem.fetch(server.getUrl("missing.less"));
+                } catch (final IOException e) {
+                    // expected
+                }
+            }
+            fileSystem.fetch(server.getUrl("file.less"));
+
+            assertThat(server.getConnections()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void fetch_keepAliveIsEnabledAndRequestsAreConcurrent_limitsConnectionsPerHost() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(50)) {
+            final Map<String, String> parameters = new HashMap<>();
+            parameters.put(HttpFileSystem.KEEP_ALIVE_PARAMETER, "true");
+            parameters.put(HttpFileSystem.MAX_CONNECTIONS_PARAMETER, "2");
+            fileSystem.configure(parameters);
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<FileData>> futures = new ArrayList<>();
+                for (int i = 0; i < 16; ++i) {
+                    final String path = server.getUrl("file" + i + ".less");
+                    futures.add(executor.submit(() -> fileSystem.fetch(path)));
+                }
+                for (final Future<FileData> future : futures) {
+                    assertThat(future.get().getContent()).isNotEmpty();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(server.getMaxActiveRequests()).isEqualTo(2);
+            assertThat(server.getConnections()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void fetch_fileSystemsHaveDifferentMaxConnections_shareLimitOfFirstFileSystem() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(50)) {
+            final List<HttpFileSystem> fileSystems = new ArrayList<>();
+            for (final String maxConnections : Arrays.asList("2", "3")) {
+                final Map<String, String> parameters = new HashMap<>();
+                parameters.put(HttpFileSystem.KEEP_ALIVE_PARAMETER, "true");
+                parameters.put(HttpFileSystem.MAX_CONNECTIONS_PARAMETER, maxConnections);
+                final HttpFileSystem system = new HttpFileSystem();
+                system.configure(parameters);
+                fileSystems.add(system);
+            }
+            fileSystems.get(0).fetch(server.getUrl("first.less"));
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<FileData>> futures = new ArrayList<>();
+                for (int i = 0; i < 16; ++i) {
+                    final HttpFileSystem system = fileSystems.get(i % 2);
+                    final String path = server.getUrl("file" + i + ".less");
+                    futures.add(executor.submit(() -> system.fetch(path)));
+                }
+                for (final Future<FileData> future : futures) {
+                    assertThat(future.get().getContent()).isNotEmpty();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(server.getMaxActiveRequests()).isEqualTo(2);
+        }
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void fetch_responseIsSlowerThanReadTimeout_throwsException() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(2000)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.READ_TIMEOUT_PARAMETER, "100"));
+
+            fileSystem.fetch(server.getUrl("file.less"));
+        }
+    }
+
+    @Test
+    public void resolve_singleRequestIsDisabled_sendsRequestPerOperation() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.<String, String>emptyMap());
+
+            final String path = fileSystem.expandRedirection(server.getUrl("moved/moved/file.less"));
+            assertThat(fileSystem.expandRedirection(path)).isEqualTo(path);
+            assertThat(fileSystem.exists(path)).isTrue();
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(server.getRequests()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    public void resolve_singleRequestIsEnabled_reusesLastResponseOfRedirectionChain() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.SINGLE_REQUEST_PARAMETER, "true"));
+
+            final String path = fileSystem.expandRedirection(server.getUrl("moved/moved/file.less"));
+            assertThat(path).isEqualTo(server.getUrl("file.less"));
+            assertThat(fileSystem.expandRedirection(path)).isEqualTo(path);
+            assertThat(fileSystem.exists(path)).isTrue();
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(server.getRequests()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void resolve_singleRequestIsEnabledAndFileIsMissing_reusesNotFoundResponse() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.SINGLE_REQUEST_PARAMETER, "true"));
+
+            final String path = fileSystem.expandRedirection(server.getUrl("missing.less"));
+            assertThat(fileSystem.exists(path)).isFalse();
+            assertThat(fileSystem.fetchIfExists(path)).isNull();
+
+            assertThat(server.getRequests()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void fetch_singleRequestIsEnabledAndFileIsMissing_throwsException() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.SINGLE_REQUEST_PARAMETER, "true"));
+            final String path = fileSystem.expandRedirection(server.getUrl("missing.less"));
+
+            try {
+                fileSystem.fetch(path);
+                fail("File system should throw exception");
+            } catch (final IOException e) {
+                assertThat(e.getMessage()).isEqualTo("response HTTP status code 404 is not allowed (supports only: 200)");
+            }
+            assertThat(server.getRequests()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void fetch_singleRequestIsEnabledAndResponseHasBeenUsed_sendsNewRequest() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.SINGLE_REQUEST_PARAMETER, "true"));
+            final String path = fileSystem.expandRedirection(server.getUrl("file.less"));
+
+            fileSystem.fetchIfExists(path);
+            final FileData result = fileSystem.fetch(path);
+
+            assertThat(result.getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+            assertThat(server.getRequests()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void fetch_httpCacheIsEnabledAndFileIsFresh_doesNotSendRequests() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            server.cacheControl = "max-age=60";
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.HTTP_CACHE_PARAMETER, "true"));
+            final String path = server.getUrl("file.less");
+
+            fileSystem.fetch(path);
+            assertThat(fileSystem.expandRedirection(path)).isEqualTo(path);
+            assertThat(fileSystem.exists(path)).isTrue();
+            assertThat(fileSystem.fetchIfExists(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(server.getRequests()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void fetch_httpCacheIsEnabledAndFileIsStale_revalidatesFile() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.HTTP_CACHE_PARAMETER, "true"));
+            final String path = server.getUrl("file.less");
+
+            for (int i = 0; i < 3; ++i) {
+                assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(server.getRequests()).isEqualTo(3);
+            assertThat(server.getNotModifiedResponses()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void fetch_httpCacheIsEnabledAndFileHasChanged_downloadsNewContent() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.HTTP_CACHE_PARAMETER, "true"));
+            final String path = server.getUrl("file.less");
+            fileSystem.fetch(path);
+
+            server.version = 2;
+            final FileData result = fileSystem.fetchIfExists(path);
+
+            assertThat(result.getContent()).isEqualTo("// /file.less v2".getBytes(StandardCharsets.UTF_8));
+            assertThat(server.getNotModifiedResponses()).isZero();
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less v2".getBytes(StandardCharsets.UTF_8));
+            assertThat(server.getNotModifiedResponses()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void fetch_httpCacheIsEnabledAndResponseContainsNoStore_downloadsFileEveryTime() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            server.cacheControl = "no-store";
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.HTTP_CACHE_PARAMETER, "true"));
+            final String path = server.getUrl("file.less");
+
+            fileSystem.fetch(path);
+            fileSystem.fetch(path);
+
+            assertThat(server.getRequests()).isEqualTo(2);
+            assertThat(server.getNotModifiedResponses()).isZero();
+        }
+    }
+
+    @Test
+    public void fetch_httpCacheDirectoryIsConfigured_revalidatesFileStoredByOtherJvm() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            final Map<String, String> parameters = Collections.singletonMap(HttpFileSystem.HTTP_CACHE_DIRECTORY_PARAMETER,
+                    temporaryFolder.getRoot().getAbsolutePath());
+            fileSystem.configure(parameters);
+            final String path = server.getUrl("file.less");
+            fileSystem.fetch(path);
+            HttpFileSystem.clearCaches();
+
+            final HttpFileSystem otherFileSystem = new HttpFileSystem();
+            otherFileSystem.configure(parameters);
+            final FileData result = otherFileSystem.fetch(path);
+
+            assertThat(result.getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+            assertThat(result.getEncoding()).isEqualTo("UTF-8");
+            assertThat(server.getNotModifiedResponses()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void getVersion_httpCacheIsDisabled_returnsNull() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            final String path = server.getUrl("file.less");
+            fileSystem.fetch(path);
+
+            assertThat(fileSystem.getVersion(path)).isNull();
+            assertThat(server.getRequests()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void getVersion_httpCacheIsEnabledAndFileIsStale_revalidatesFile() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            fileSystem.configure(Collections.singletonMap(HttpFileSystem.HTTP_CACHE_PARAMETER, "true"));
+            final String path = server.getUrl("file.less");
+            fileSystem.fetch(path);
+
+            final String version = fileSystem.getVersion(path);
+            assertThat(version).isNotNull();
+            assertThat(server.getNotModifiedResponses()).isEqualTo(1);
+
+            server.version = 2;
+            assertThat(fileSystem.getVersion(path)).isNotEqualTo(version);
+            assertThat(fileSystem.fetch(path).getContent()).isEqualTo("// /file.less v2".getBytes(StandardCharsets.UTF_8));
+            assertThat(server.getRequests()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void resolve_singleRequestAndHttpCacheAreEnabled_revalidatesFileUsingSingleRequest() throws Exception {
+        try (CountingHttpServer server = new CountingHttpServer(0)) {
+            final Map<String, String> parameters = new HashMap<>();
+            parameters.put(HttpFileSystem.SINGLE_REQUEST_PARAMETER, "true");
+            parameters.put(HttpFileSystem.HTTP_CACHE_PARAMETER, "true");
+            fileSystem.configure(parameters);
+
+            for (int i = 0; i < 2; ++i) {
+                final String path = fileSystem.expandRedirection(server.getUrl("file.less"));
+                assertThat(fileSystem.fetchIfExists(path).getContent()).isEqualTo("// /file.less".getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(server.getRequests()).isEqualTo(2);
+            assertThat(server.getNotModifiedResponses()).isEqualTo(1);
+        }
+    }
+
+    private static class CountingHttpServer implements AutoCloseable {
+
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final long delay;
+        private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger activeRequests = new AtomicInteger();
+        private final AtomicInteger maxActiveRequests = new AtomicInteger();
+        private final AtomicInteger notModifiedResponses = new AtomicInteger();
+        private volatile String cacheControl;
+        private volatile int version = 1;
+
+        CountingHttpServer(final long delay) throws IOException {
+            this.delay = delay;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        String getUrl(final String file) {
+            return String.format("http://localhost:%s/%s", server.getAddress().getPort(), file);
+        }
+
+        int getConnections() {
+            return clientPorts.size();
+        }
+
+        int getRequests() {
+            return requests.get();
+        }
+
+        int getMaxActiveRequests() {
+            return maxActiveRequests.get();
+        }
+
+        int getNotModifiedResponses() {
+            return notModifiedResponses.get();
+        }
+
+        private void handle(final HttpExchange exchange) throws IOException {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            requests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+            try {
+                sleep();
+                final String path = exchange.getRequestURI().getPath();
+                if (path.startsWith("/moved/")) {
+                    exchange.getResponseHeaders().add("Location", path.substring("/moved".length()));
+                    exchange.sendResponseHeaders(HTTP_MOVED_TEMP, -1);
+                } else if (path.startsWith("/missing")) {
+                    final byte[] body = "not found".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(HTTP_NOT_FOUND, "HEAD".equals(exchange.getRequestMethod()) ? -1 : body.length);
+                    write(exchange, body);
+                } else {
+                    final String etag = "\"v" + version + '"';
+                    exchange.getResponseHeaders().add("ETag", etag);
+                    if (cacheControl != null) {
+                        exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+                    }
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModifiedResponses.incrementAndGet();
+                        exchange.sendResponseHeaders(HTTP_NOT_MODIFIED, -1);
+                        return;
+                    }
+                    final byte[] body = ("// " + path + (version > 1 ? " v" + version : "")).getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+                    exchange.sendResponseHeaders(HTTP_OK, "HEAD".equals(exchange.getRequestMethod()) ? -1 : body.length);
+                    write(exchange, body);
+                }
+            } finally {
+                activeRequests.decrementAndGet();
+                exchange.close();
+            }
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void write(final HttpExchange exchange, final byte[] body) throws IOException {
+            if (!"HEAD".equals(exchange.getRequestMethod())) {
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
 }
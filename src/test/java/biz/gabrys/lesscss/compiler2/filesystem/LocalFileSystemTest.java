@@ -0,0 +1,54 @@
+package biz.gabrys.lesscss.compiler2.filesystem;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class LocalFileSystemTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fetchIfExists_fileExists_returnsData() throws IOException {
+        final File file = temporaryFolder.newFile("file.less");
+        Files.write(file.toPath(), "// less".getBytes(StandardCharsets.UTF_8));
+
+        final FileData data = new LocalFileSystem().fetchIfExists(file.getAbsolutePath());
+
+        assertThat(data.getContent()).isEqualTo("// less".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void fetchIfExists_fileIsMissing_returnsNull() throws IOException {
+        final String path = new File(temporaryFolder.getRoot(), "missing.less").getAbsolutePath();
+        final LocalFileSystem fileSystem = new LocalFileSystem();
+
+        assertThat(fileSystem.exists(path)).isFalse();
+        assertThat(fileSystem.fetchIfExists(path)).isNull();
+    }
+
+    @Test
+    public void fetchIfExists_parentIsRegularFile_returnsNullLikeExists() throws IOException {
+        final File parent = temporaryFolder.newFile("parent.less");
+        final String path = new File(parent, "file.less").getAbsolutePath();
+        final LocalFileSystem fileSystem = new LocalFileSystem();
+
+        assertThat(fileSystem.exists(path)).isFalse();
+        assertThat(fileSystem.fetchIfExists(path)).isNull();
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchIfExists_pathIsDirectory_throwsException() throws IOException {
+        final File directory = temporaryFolder.newFolder("directory.less");
+
+        new LocalFileSystem().fetchIfExists(directory.getAbsolutePath());
+    }
+}
@@ -0,0 +1,39 @@
+package biz.gabrys.lesscss.compiler2.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public final class DigestBuilderTest {
+
+    @Test
+    public void build_noValues_returnsDigestOfEmptyInput() {
+        final String digest = new DigestBuilder().build();
+
+        assertThat(digest).isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+    }
+
+    @Test
+    public void build_sameValues_returnsSameDigests() {
+        final String digest1 = new DigestBuilder().append("text").append(true).append(new byte[] { 1, 2 }).build();
+        final String digest2 = new DigestBuilder().append("text").append(true).append(new byte[] { 1, 2 }).build();
+
+        assertThat(digest1).hasSize(64).isEqualTo(digest2);
+    }
+
+    @Test
+    public void build_valuesWithDifferentBoundaries_returnsDifferentDigests() {
+        final String digest1 = new DigestBuilder().append("ab").append("c").build();
+        final String digest2 = new DigestBuilder().append("a").append("bc").build();
+
+        assertThat(digest1).isNotEqualTo(digest2);
+    }
+
+    @Test
+    public void build_nullAndEmptyText_returnsDifferentDigests() {
+        final String digest1 = new DigestBuilder().append((String) null).build();
+        final String digest2 = new DigestBuilder().append("").build();
+
+        assertThat(digest1).isNotEqualTo(digest2);
+    }
+}